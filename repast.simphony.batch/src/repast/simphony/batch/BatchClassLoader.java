@@ -1,6 +1,8 @@
 package repast.simphony.batch;
 
+import javassist.ClassPool;
 import javassist.Loader;
+import javassist.LoaderClassPath;
 
 /**
  * @author Nick Collier
@@ -8,6 +10,29 @@ import javassist.Loader;
  */
 public class BatchClassLoader extends Loader {
 
+	public BatchClassLoader() {
+	}
+
+	/**
+	 * Creates a BatchClassLoader that defines the classes found by the
+	 * specified class loader itself, rather than delegating to it. Each such
+	 * BatchClassLoader has its own copy of those classes, and so of their
+	 * static state. Only the JDK classes, and any classes the specified loader
+	 * can't find, are shared.
+	 *
+	 * @param classes
+	 *            the class loader used to find the class files
+	 */
+	public BatchClassLoader(ClassLoader classes) {
+		super(classes, createPool(classes));
+	}
+
+	private static ClassPool createPool(ClassLoader classes) {
+		ClassPool pool = new ClassPool(false);
+		pool.appendClassPath(new LoaderClassPath(classes));
+		return pool;
+	}
+
 	public void initBatch(String classname, String[] args) throws Throwable {
 		Class c = loadClass(classname);
 		try {
@@ -0,0 +1,69 @@
+/*CopyrightHere*/
+package repast.simphony.parameter.optimizer;
+
+/**
+ * Base class for BatchOptimizers. This keeps the best point evaluated so far
+ * and stops the search after a maximum number of batches.
+ */
+public abstract class AbstractBatchOptimizer implements BatchOptimizer {
+
+	protected int dimensions;
+	protected int batchSize;
+	protected int maxBatches;
+	protected int batches;
+
+	private double[] bestPoint;
+	private double bestValue;
+
+	/**
+	 * Creates an AbstractBatchOptimizer.
+	 *
+	 * @param batchSize
+	 *            the number of points in a batch, or 0 to let the optimizer
+	 *            choose it from the number of dimensions
+	 * @param maxBatches
+	 *            the maximum number of batches
+	 */
+	public AbstractBatchOptimizer(int batchSize, int maxBatches) {
+		this.batchSize = batchSize;
+		this.maxBatches = maxBatches;
+	}
+
+	public void init(int dimensions, int seed) {
+		this.dimensions = dimensions;
+		batches = 0;
+		bestPoint = null;
+		bestValue = Double.NEGATIVE_INFINITY;
+	}
+
+	public void evaluated(double[][] points, double[] values) {
+		batches++;
+		for (int i = 0; i < points.length; i++) {
+			if (bestPoint == null || values[i] > bestValue) {
+				bestPoint = points[i].clone();
+				bestValue = values[i];
+			}
+		}
+	}
+
+	public boolean isFinished() {
+		return batches >= maxBatches;
+	}
+
+	public double[] getBestPoint() {
+		return bestPoint == null ? null : bestPoint.clone();
+	}
+
+	public double getBestValue() {
+		return bestValue;
+	}
+
+	/**
+	 * Gets the number of points in a batch.
+	 *
+	 * @return the number of points in a batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+}
@@ -0,0 +1,69 @@
+/*CopyrightHere*/
+package repast.simphony.parameter.optimizer;
+
+/**
+ * An optimizer that proposes batches of points to evaluate, so that the runs
+ * for a batch can be made in parallel. Unlike an {@link AdvancementChooser},
+ * which moves one {@link OptimizableParameterSetter} at a time, a
+ * BatchOptimizer works on the whole of a {@link ParameterSpace}, with each of
+ * the space's dimensions mapped onto [0, 1]. The optimizer maximizes the run
+ * values, as produced by a {@link repast.simphony.parameter.RunResultProducer}.
+ * <p/>
+ *
+ * The optimizer is used by alternately calling {@link #propose()} and
+ * {@link #evaluated(double[][], double[])} until {@link #isFinished()} returns
+ * true.
+ */
+public interface BatchOptimizer {
+
+	/**
+	 * Initializes the optimizer for a search of a space with the specified
+	 * number of dimensions.
+	 *
+	 * @param dimensions
+	 *            the number of dimensions
+	 * @param seed
+	 *            the seed for the optimizer's random numbers
+	 */
+	void init(int dimensions, int seed);
+
+	/**
+	 * Proposes the next batch of points to evaluate.
+	 *
+	 * @return the points, each with a coordinate in [0, 1] for each dimension.
+	 */
+	double[][] propose();
+
+	/**
+	 * Gives the optimizer the values of the points it proposed.
+	 *
+	 * @param points
+	 *            the points returned by the last call to propose
+	 * @param values
+	 *            the value of each point
+	 */
+	void evaluated(double[][] points, double[] values);
+
+	/**
+	 * Gets whether the search has finished.
+	 *
+	 * @return true if the search has finished, otherwise false.
+	 */
+	boolean isFinished();
+
+	/**
+	 * Gets the point with the greatest value evaluated so far.
+	 *
+	 * @return the point with the greatest value evaluated so far, or null if no
+	 *         points have been evaluated.
+	 */
+	double[] getBestPoint();
+
+	/**
+	 * Gets the greatest value evaluated so far.
+	 *
+	 * @return the greatest value evaluated so far, or negative infinity if no
+	 *         points have been evaluated.
+	 */
+	double getBestValue();
+}
@@ -0,0 +1,260 @@
+/*CopyrightHere*/
+package repast.simphony.parameter.optimizer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+
+import cern.jet.random.Normal;
+import cern.jet.random.engine.MersenneTwister;
+
+/**
+ * A BatchOptimizer that uses the covariance matrix adaptation evolution
+ * strategy (CMA-ES). Each batch is a generation of points sampled from a
+ * multivariate normal distribution, whose mean, step size and covariance are
+ * adapted from the best half of the previous generation. Points sampled
+ * outside [0, 1] are moved onto its boundary before they are evaluated.
+ * <p/>
+ *
+ * The search finishes when the step size becomes smaller than the tolerance,
+ * or after the maximum number of batches.
+ */
+public class CMAESBatchOptimizer extends AbstractBatchOptimizer {
+
+	private double initialSigma;
+	private double tolerance;
+
+	private Normal normal;
+	private int lambda, mu;
+	private double[] weights;
+	private double mueff, cc, cs, c1, cmu, damps, chiN;
+
+	private double[] mean;
+	private double sigma;
+	private double[] pc, ps;
+	private double[][] c, b, invSqrtC;
+	private double[] d;
+	private int evaluations;
+
+	/**
+	 * Creates a CMAESBatchOptimizer with the default batch size of 4 + 3 *
+	 * ln(dimensions), an initial step size of 0.3, a tolerance of 0.001 and at
+	 * most 100 batches.
+	 */
+	public CMAESBatchOptimizer() {
+		this(0, 100, 0.3, 0.001);
+	}
+
+	/**
+	 * Creates a CMAESBatchOptimizer.
+	 *
+	 * @param batchSize
+	 *            the number of points in a batch, or 0 for 4 + 3 *
+	 *            ln(dimensions)
+	 * @param maxBatches
+	 *            the maximum number of batches
+	 * @param initialSigma
+	 *            the initial step size
+	 * @param tolerance
+	 *            the step size at which the search finishes
+	 */
+	public CMAESBatchOptimizer(int batchSize, int maxBatches, double initialSigma, double tolerance) {
+		super(batchSize, maxBatches);
+		this.initialSigma = initialSigma;
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public void init(int dimensions, int seed) {
+		super.init(dimensions, seed);
+		int n = dimensions;
+		normal = new Normal(0, 1, new MersenneTwister(seed));
+		lambda = batchSize > 0 ? batchSize : 4 + (int) (3 * Math.log(n));
+		lambda = Math.max(lambda, 2);
+		mu = lambda / 2;
+
+		weights = new double[mu];
+		double sum = 0, sumSq = 0;
+		for (int i = 0; i < mu; i++) {
+			weights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+			sum += weights[i];
+		}
+		for (int i = 0; i < mu; i++) {
+			weights[i] /= sum;
+			sumSq += weights[i] * weights[i];
+		}
+		mueff = 1 / sumSq;
+
+		cc = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+		cs = (mueff + 2) / (n + mueff + 5);
+		c1 = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+		cmu = Math.min(1 - c1, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+		damps = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+		chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21 * n * n));
+
+		mean = new double[n];
+		Arrays.fill(mean, 0.5);
+		sigma = initialSigma;
+		pc = new double[n];
+		ps = new double[n];
+		d = new double[n];
+		Arrays.fill(d, 1);
+		c = identity(n);
+		b = identity(n);
+		invSqrtC = identity(n);
+		evaluations = 0;
+	}
+
+	private static double[][] identity(int n) {
+		double[][] m = new double[n][n];
+		for (int i = 0; i < n; i++) {
+			m[i][i] = 1;
+		}
+		return m;
+	}
+
+	public double[][] propose() {
+		int n = dimensions;
+		double[][] points = new double[lambda][n];
+		double[] z = new double[n];
+		for (int k = 0; k < lambda; k++) {
+			for (int i = 0; i < n; i++) {
+				z[i] = d[i] * normal.nextDouble();
+			}
+			for (int i = 0; i < n; i++) {
+				double y = 0;
+				for (int j = 0; j < n; j++) {
+					y += b[i][j] * z[j];
+				}
+				points[k][i] = Math.max(0, Math.min(1, mean[i] + sigma * y));
+			}
+		}
+		return points;
+	}
+
+	@Override
+	public void evaluated(final double[][] points, final double[] values) {
+		super.evaluated(points, values);
+		int n = dimensions;
+		evaluations += points.length;
+
+		// best first
+		Integer[] order = new Integer[points.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(values[i2], values[i1]);
+			}
+		});
+		int count = Math.min(mu, points.length);
+		double weightSum = 0;
+		for (int k = 0; k < count; k++) {
+			weightSum += weights[k];
+		}
+
+		double[] old = mean.clone();
+		for (int i = 0; i < n; i++) {
+			double x = 0;
+			for (int k = 0; k < count; k++) {
+				x += weights[k] * points[order[k]][i];
+			}
+			mean[i] = x / weightSum;
+		}
+
+		double[] yw = new double[n];
+		for (int i = 0; i < n; i++) {
+			yw[i] = (mean[i] - old[i]) / sigma;
+		}
+
+		double csn = Math.sqrt(cs * (2 - cs) * mueff);
+		double psNorm = 0;
+		for (int i = 0; i < n; i++) {
+			double x = 0;
+			for (int j = 0; j < n; j++) {
+				x += invSqrtC[i][j] * yw[j];
+			}
+			ps[i] = (1 - cs) * ps[i] + csn * x;
+			psNorm += ps[i] * ps[i];
+		}
+		psNorm = Math.sqrt(psNorm);
+		boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2.0 * evaluations / lambda)) / chiN
+				< 1.4 + 2.0 / (n + 1);
+
+		double ccn = Math.sqrt(cc * (2 - cc) * mueff);
+		for (int i = 0; i < n; i++) {
+			pc[i] = (1 - cc) * pc[i] + (hsig ? ccn * yw[i] : 0);
+		}
+
+		double[][] steps = new double[count][n];
+		for (int k = 0; k < count; k++) {
+			for (int i = 0; i < n; i++) {
+				steps[k][i] = (points[order[k]][i] - old[i]) / sigma;
+			}
+		}
+		double decay = 1 - c1 - cmu;
+		double correction = hsig ? 0 : c1 * cc * (2 - cc);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double rankMu = 0;
+				for (int k = 0; k < count; k++) {
+					rankMu += weights[k] * steps[k][i] * steps[k][j];
+				}
+				double value = decay * c[i][j] + c1 * pc[i] * pc[j] + correction * c[i][j] + cmu
+						* rankMu;
+				c[i][j] = value;
+				c[j][i] = value;
+			}
+		}
+
+		sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1));
+		decompose();
+	}
+
+	// B and D from the eigen decomposition of C, and C^-1/2 = B D^-1 B^T
+	private void decompose() {
+		int n = dimensions;
+		EigenDecomposition eigen = new EigenDecomposition(new Array2DRowRealMatrix(c));
+		RealMatrix v = eigen.getV();
+		for (int i = 0; i < n; i++) {
+			d[i] = Math.sqrt(Math.max(eigen.getRealEigenvalue(i), 1e-20));
+			for (int j = 0; j < n; j++) {
+				b[i][j] = v.getEntry(i, j);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				double x = 0;
+				for (int k = 0; k < n; k++) {
+					x += b[i][k] * b[j][k] / d[k];
+				}
+				invSqrtC[i][j] = x;
+			}
+		}
+	}
+
+	@Override
+	public boolean isFinished() {
+		if (super.isFinished()) {
+			return true;
+		}
+		double maxD = 0;
+		for (double x : d) {
+			maxD = Math.max(maxD, x);
+		}
+		return sigma * maxD < tolerance;
+	}
+
+	/**
+	 * Gets the current step size.
+	 *
+	 * @return the current step size.
+	 */
+	public double getSigma() {
+		return sigma;
+	}
+}
@@ -0,0 +1,98 @@
+/*CopyrightHere*/
+package repast.simphony.parameter.optimizer;
+
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+
+/**
+ * A BatchOptimizer that refines a Latin hypercube sample. The first batch is a
+ * Latin hypercube sample of the whole space. Each batch after that is a Latin
+ * hypercube sample of a box around the best point so far, and the box shrinks
+ * by the specified factor with each batch.
+ * <p/>
+ *
+ * The search finishes when the box's width becomes smaller than the tolerance,
+ * or after the maximum number of batches.
+ */
+public class LatinHypercubeOptimizer extends AbstractBatchOptimizer {
+
+	private double shrink;
+	private double tolerance;
+
+	private Uniform uniform;
+	private double width;
+
+	/**
+	 * Creates a LatinHypercubeOptimizer with a batch size of 10 * dimensions,
+	 * a shrink factor of 0.5, a tolerance of 0.001 and at most 100 batches.
+	 */
+	public LatinHypercubeOptimizer() {
+		this(0, 100, 0.5, 0.001);
+	}
+
+	/**
+	 * Creates a LatinHypercubeOptimizer.
+	 *
+	 * @param batchSize
+	 *            the number of points in a batch, or 0 for 10 * dimensions
+	 * @param maxBatches
+	 *            the maximum number of batches
+	 * @param shrink
+	 *            the factor the box's width is multiplied by after each batch
+	 * @param tolerance
+	 *            the box width at which the search finishes
+	 */
+	public LatinHypercubeOptimizer(int batchSize, int maxBatches, double shrink, double tolerance) {
+		super(batchSize, maxBatches);
+		this.shrink = shrink;
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public void init(int dimensions, int seed) {
+		super.init(dimensions, seed);
+		uniform = new Uniform(new MersenneTwister(seed));
+		width = 1;
+	}
+
+	public double[][] propose() {
+		int count = batchSize > 0 ? batchSize : 10 * Math.max(dimensions, 1);
+		double[][] points = new double[count][dimensions];
+		double[] best = getBestPoint();
+		int[] strata = new int[count];
+		for (int i = 0; i < dimensions; i++) {
+			// the box, moved inside [0, 1]
+			double lower = 0;
+			if (best != null) {
+				lower = Math.max(0, Math.min(1 - width, best[i] - width / 2));
+			}
+
+			// a random permutation of the strata
+			for (int k = 0; k < count; k++) {
+				strata[k] = k;
+			}
+			for (int k = count - 1; k > 0; k--) {
+				int j = uniform.nextIntFromTo(0, k);
+				int tmp = strata[k];
+				strata[k] = strata[j];
+				strata[j] = tmp;
+			}
+
+			for (int k = 0; k < count; k++) {
+				points[k][i] = lower + width * (strata[k] + uniform.nextDouble()) / count;
+			}
+		}
+		return points;
+	}
+
+	@Override
+	public void evaluated(double[][] points, double[] values) {
+		super.evaluated(points, values);
+		width *= shrink;
+	}
+
+	@Override
+	public boolean isFinished() {
+		return super.isFinished() || width < tolerance;
+	}
+}
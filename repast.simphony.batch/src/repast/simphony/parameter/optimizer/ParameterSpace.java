@@ -0,0 +1,157 @@
+/*CopyrightHere*/
+package repast.simphony.parameter.optimizer;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import repast.simphony.parameter.ParameterConstants;
+import repast.simphony.parameter.ParameterSetter;
+import repast.simphony.parameter.ParameterTreeSweeper;
+import repast.simphony.parameter.Parameters;
+
+/**
+ * The space searched by a {@link BatchOptimizer}, made from the
+ * {@link OptimizableParameterSetter}s of a parameter sweeper. Each of those
+ * setters is a dimension of the space, and its values are mapped, in order,
+ * onto [0, 1]. The other setters, e.g. those of constants, keep their first
+ * value. The random seed is not a dimension of the space, even if it is swept.
+ *
+ * @see BatchOptimizer
+ */
+public class ParameterSpace {
+
+	private Parameters params;
+	private List<OptimizableParameterSetter> setters = new ArrayList<OptimizableParameterSetter>();
+	private List<String> names = new ArrayList<String>();
+	private int[] steps;
+	private int replicates;
+
+	/**
+	 * Creates a ParameterSpace from the specified sweeper. The sweeper is
+	 * moved to its first parameter combination and shouldn't be used to sweep
+	 * afterwards.
+	 *
+	 * @param sweeper
+	 *            the sweeper
+	 * @param params
+	 *            the parameters the sweeper sets
+	 */
+	public ParameterSpace(ParameterTreeSweeper sweeper, Parameters params) {
+		this.params = params;
+		replicates = sweeper.getRunCount();
+		sweeper.next(params);
+		addSetters(sweeper, sweeper.getRootParameterSetter());
+
+		steps = new int[setters.size()];
+		for (int i = 0; i < steps.length; i++) {
+			OptimizableParameterSetter setter = setters.get(i);
+			setter.reset(params);
+			int count = 1;
+			while (!setter.atEnd()) {
+				setter.next(params);
+				count++;
+			}
+			steps[i] = count;
+			setter.reset(params);
+		}
+	}
+
+	private void addSetters(ParameterTreeSweeper sweeper, ParameterSetter parent) {
+		for (ParameterSetter setter : sweeper.getChildren(parent)) {
+			if (setter instanceof OptimizableParameterSetter) {
+				String name = getParameterName(setter);
+				if (!ParameterConstants.DEFAULT_RANDOM_SEED_USAGE_NAME.equals(name)) {
+					setters.add((OptimizableParameterSetter) setter);
+					names.add(name);
+				}
+			}
+			addSetters(sweeper, setter);
+		}
+	}
+
+	// the setters have a getParameterName method, but it's not part of the
+	// interface
+	private String getParameterName(ParameterSetter setter) {
+		try {
+			Method method = setter.getClass().getMethod("getParameterName");
+			return (String) method.invoke(setter);
+		} catch (Exception ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the number of dimensions of the space.
+	 *
+	 * @return the number of dimensions of the space.
+	 */
+	public int getDimensions() {
+		return setters.size();
+	}
+
+	/**
+	 * Gets the name of the parameter of the specified dimension.
+	 *
+	 * @param dimension
+	 *            the dimension
+	 * @return the name of the parameter of the specified dimension, or null if
+	 *         it isn't known.
+	 */
+	public String getParameterName(int dimension) {
+		return names.get(dimension);
+	}
+
+	/**
+	 * Gets the number of values of the specified dimension.
+	 *
+	 * @param dimension
+	 *            the dimension
+	 * @return the number of values of the specified dimension.
+	 */
+	public int getValueCount(int dimension) {
+		return steps[dimension];
+	}
+
+	/**
+	 * Gets the number of runs the sweeper makes for each parameter
+	 * combination.
+	 *
+	 * @return the number of runs the sweeper makes for each parameter
+	 *         combination.
+	 */
+	public int getReplicates() {
+		return replicates;
+	}
+
+	/**
+	 * Gets the parameters that the space sets. Their values are those of the
+	 * last point set.
+	 *
+	 * @return the parameters that the space sets.
+	 */
+	public Parameters getParameters() {
+		return params;
+	}
+
+	/**
+	 * Sets the parameters to the values nearest the specified point.
+	 * Coordinates outside [0, 1] are clamped to it.
+	 *
+	 * @param point
+	 *            the point, with a coordinate for each dimension
+	 * @return the parameters.
+	 */
+	public Parameters setPoint(double[] point) {
+		for (int i = 0; i < steps.length; i++) {
+			double x = Math.max(0, Math.min(1, point[i]));
+			int index = (int) Math.round(x * (steps[i] - 1));
+			OptimizableParameterSetter setter = setters.get(i);
+			setter.reset(params);
+			for (int j = 0; j < index; j++) {
+				setter.next(params);
+			}
+		}
+		return params;
+	}
+}
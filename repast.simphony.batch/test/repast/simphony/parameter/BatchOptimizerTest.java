@@ -0,0 +1,127 @@
+/*CopyrightHere*/
+package repast.simphony.parameter;
+
+import junit.framework.TestCase;
+import repast.simphony.parameter.optimizer.BatchOptimizer;
+import repast.simphony.parameter.optimizer.CMAESBatchOptimizer;
+import repast.simphony.parameter.optimizer.LatinHypercubeOptimizer;
+import repast.simphony.parameter.optimizer.ParameterSpace;
+
+/**
+ * Tests for {@link repast.simphony.parameter.optimizer.ParameterSpace} and the
+ * {@link repast.simphony.parameter.optimizer.BatchOptimizer}s.
+ */
+public class BatchOptimizerTest extends TestCase {
+
+	private static final double[] TARGET = { 0.2, 0.7, 0.4 };
+
+	private Parameters params;
+	private ParameterTreeSweeper sweeper;
+
+	@Override
+	protected void setUp() throws Exception {
+		ParametersCreator creator = new ParametersCreator();
+		creator.addParameter("name", String.class, "nameValue", false);
+		creator.addParameter("intRange", Integer.class, 0, false);
+		creator.addParameter("doubleList", Double.class, 0.0, false);
+		creator.addParameter(ParameterConstants.DEFAULT_RANDOM_SEED_USAGE_NAME, Integer.class, 1,
+				false);
+		params = creator.createParameters();
+
+		sweeper = new ParameterTreeSweeper();
+		sweeper.setRunCount(3);
+		ParameterSetter root = sweeper.getRootParameterSetter();
+		ParameterSetter seed = new IntSteppedSetter(
+				ParameterConstants.DEFAULT_RANDOM_SEED_USAGE_NAME, 1, 5, 1);
+		ParameterSetter name = new ConstantSetter<String>("name", "nameValue");
+		ParameterSetter intRange = new IntSteppedSetter("intRange", 0, 10, 2);
+		ParameterSetter doubleList = new ListParameterSetter<Double>("doubleList", new Double[] {
+				0.5, 1.5, 2.5 });
+		sweeper.add(root, seed);
+		sweeper.add(seed, name);
+		sweeper.add(name, intRange);
+		sweeper.add(intRange, doubleList);
+	}
+
+	public void testSpace() {
+		ParameterSpace space = new ParameterSpace(sweeper, params);
+		assertEquals(2, space.getDimensions());
+		assertEquals(3, space.getReplicates());
+		assertEquals("intRange", space.getParameterName(0));
+		assertEquals(6, space.getValueCount(0));
+		assertEquals("doubleList", space.getParameterName(1));
+		assertEquals(3, space.getValueCount(1));
+
+		space.setPoint(new double[] { 0, 0 });
+		assertEquals(0, params.getValue("intRange"));
+		assertEquals(0.5, params.getValue("doubleList"));
+		assertEquals("nameValue", params.getValue("name"));
+
+		space.setPoint(new double[] { 1, 0.5 });
+		assertEquals(10, params.getValue("intRange"));
+		assertEquals(1.5, params.getValue("doubleList"));
+
+		space.setPoint(new double[] { 0.55, 2 });
+		assertEquals(6, params.getValue("intRange"));
+		assertEquals(2.5, params.getValue("doubleList"));
+
+		space.setPoint(new double[] { 0.15, -1 });
+		assertEquals(2, params.getValue("intRange"));
+		assertEquals(0.5, params.getValue("doubleList"));
+		assertEquals(1, params.getValue(ParameterConstants.DEFAULT_RANDOM_SEED_USAGE_NAME));
+	}
+
+	private double value(double[] point) {
+		double sum = 0;
+		for (int i = 0; i < point.length; i++) {
+			sum -= (point[i] - TARGET[i]) * (point[i] - TARGET[i]);
+		}
+		return sum;
+	}
+
+	private void optimize(BatchOptimizer optimizer) {
+		optimizer.init(TARGET.length, 7);
+		int batches = 0;
+		while (!optimizer.isFinished()) {
+			double[][] points = optimizer.propose();
+			double[] values = new double[points.length];
+			for (int i = 0; i < points.length; i++) {
+				assertEquals(TARGET.length, points[i].length);
+				for (double x : points[i]) {
+					assertTrue(x >= 0 && x <= 1);
+				}
+				values[i] = value(points[i]);
+			}
+			optimizer.evaluated(points, values);
+			batches++;
+		}
+
+		assertTrue(batches < 100);
+		double[] best = optimizer.getBestPoint();
+		assertEquals(value(best), optimizer.getBestValue(), 0);
+		for (int i = 0; i < TARGET.length; i++) {
+			assertEquals(TARGET[i], best[i], 0.01);
+		}
+	}
+
+	public void testCMAES() {
+		optimize(new CMAESBatchOptimizer());
+	}
+
+	public void testLatinHypercube() {
+		optimize(new LatinHypercubeOptimizer());
+	}
+
+	public void testMaxBatches() {
+		BatchOptimizer optimizer = new CMAESBatchOptimizer(8, 3, 0.3, 0.001);
+		optimizer.init(2, 1);
+		assertNull(optimizer.getBestPoint());
+		for (int i = 0; i < 3; i++) {
+			assertFalse(optimizer.isFinished());
+			double[][] points = optimizer.propose();
+			assertEquals(8, points.length);
+			optimizer.evaluated(points, new double[points.length]);
+		}
+		assertTrue(optimizer.isFinished());
+	}
+}
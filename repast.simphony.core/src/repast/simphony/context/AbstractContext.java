@@ -30,7 +30,7 @@ import simphony.util.messages.MessageCenter;
  * Abstract base class implementation of the <code>Context</code> interface.
  */
 public abstract class AbstractContext<T> extends AbstractCollection<T> implements Context<T>,
-    ContextListener {
+    BatchContextListener {
 
   private Object id;
   private Object typeID;
@@ -123,7 +123,59 @@ public abstract class AbstractContext<T> extends AbstractCollection<T> implement
    * @param o
    */
   protected void fireAddContextEvent(T o) {
-    fireContextEvent(new ContextEvent<T>(EventType.AGENT_ADDED, this, o));
+    if (!listeners.isEmpty())
+      fireContextEvent(new ContextEvent<T>(EventType.AGENT_ADDED, this, o));
+  }
+
+  /**
+   * Adds all the objects in the specified collection to this context. The
+   * added objects are reported to any {@link BatchContextListener}s as a
+   * single AGENTS_ADDED event, and to the other listeners as an AGENT_ADDED
+   * event per object.
+   */
+  @Override
+  public boolean addAll(Collection<? extends T> c) {
+    List<T> added = listeners.isEmpty() ? null : new ArrayList<T>(c.size());
+    boolean changed = false;
+    for (T o : c) {
+      if (addInternal(o)) {
+        agentClasses.add(o.getClass());
+        changed = true;
+        if (added != null)
+          added.add(o);
+      }
+    }
+    if (added != null && !added.isEmpty())
+      fireContextEvent(ContextEvent.createBatchEvent(EventType.AGENTS_ADDED, this, added));
+    return changed;
+  }
+
+  /**
+   * Removes all the objects in the specified collection from this context and
+   * its subcontexts. The removed objects are reported to any
+   * {@link BatchContextListener}s as a single AGENTS_REMOVED event, and to the
+   * other listeners as an AGENT_REMOVED event per object.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    List<T> removed = listeners.isEmpty() ? null : new ArrayList<T>(c.size());
+    boolean changed = false;
+    for (Object o : c) {
+      boolean result = handleRemove(o);
+      if (removeInternal(o)) {
+        result = true;
+      }
+
+      if (result) {
+        changed = true;
+        if (removed != null)
+          removed.add((T) o);
+      }
+    }
+    if (removed != null && !removed.isEmpty())
+      fireContextEvent(ContextEvent.createBatchEvent(EventType.AGENTS_REMOVED, this, removed));
+    return changed;
   }
 
   protected abstract boolean addInternal(T o);
@@ -167,9 +219,7 @@ public abstract class AbstractContext<T> extends AbstractCollection<T> implement
    * @param ev
    */
   public void eventOccured(ContextEvent ev) {
-    for (ContextListener<T> listener : listeners) {
-      listener.eventOccured(ev);
-    }
+    fireContextEvent(ev);
   }
 
   public void addSubContext(Context<? extends T> context) {
@@ -239,7 +289,8 @@ public abstract class AbstractContext<T> extends AbstractCollection<T> implement
   }
 
   protected void fireRemoveEvent(Object o) {
-    fireContextEvent(new ContextEvent<T>(EventType.AGENT_REMOVED, this, (T) o));
+    if (!listeners.isEmpty())
+      fireContextEvent(new ContextEvent<T>(EventType.AGENT_REMOVED, this, (T) o));
   }
 
   protected void fireSubContextAdded(Context<? extends T> context) {
@@ -388,12 +439,52 @@ public abstract class AbstractContext<T> extends AbstractCollection<T> implement
   }
 
   private void fireContextEvent(ContextEvent<T> evt) {
-    
+    EventType type = evt.getType();
+    if (type == EventType.AGENTS_ADDED || type == EventType.AGENTS_REMOVED) {
+      fireBatchEvent(evt);
+      return;
+    }
+
     for (ContextListener<T> listener : listeners) {
       listener.eventOccured(evt);
     }
   }
 
+  // sends the batch event to the batch listeners, and an event per
+  // target to the others
+  private void fireBatchEvent(ContextEvent<T> evt) {
+    List<ContextListener<T>> batchListeners = null;
+    List<ContextListener<T>> others = null;
+    for (ContextListener<T> listener : listeners) {
+      if (listener instanceof BatchContextListener) {
+        if (batchListeners == null)
+          batchListeners = new ArrayList<ContextListener<T>>();
+        batchListeners.add(listener);
+      } else {
+        if (others == null)
+          others = new ArrayList<ContextListener<T>>();
+        others.add(listener);
+      }
+    }
+
+    if (others != null) {
+      EventType type = evt.getType() == EventType.AGENTS_ADDED ? EventType.AGENT_ADDED
+          : EventType.AGENT_REMOVED;
+      for (T target : evt.getTargets()) {
+        ContextEvent<T> single = new ContextEvent<T>(type, evt.getContext(), target);
+        for (ContextListener<T> listener : others) {
+          listener.eventOccured(single);
+        }
+      }
+    }
+
+    if (batchListeners != null) {
+      for (ContextListener<T> listener : batchListeners) {
+        listener.eventOccured(evt);
+      }
+    }
+  }
+
   /**
    * Gets an iterable over all the projections contained by this Context.
    * 
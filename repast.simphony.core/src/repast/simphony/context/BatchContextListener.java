@@ -0,0 +1,13 @@
+package repast.simphony.context;
+
+/**
+ * A ContextListener that can be notified of objects added to or removed from
+ * a Context in bulk. A Context's addAll and removeAll report all the objects
+ * to a BatchContextListener as a single AGENTS_ADDED or AGENTS_REMOVED event,
+ * whose {@link ContextEvent#getTargets()} are the added or removed objects.
+ * Other listeners receive an AGENT_ADDED or AGENT_REMOVED event for each
+ * object.
+ */
+public interface BatchContextListener<T> extends ContextListener<T> {
+
+}
@@ -1,12 +1,17 @@
 /*CopyrightHere*/
 package repast.simphony.context;
 
+import java.util.Collection;
+
 import repast.simphony.space.projection.Projection;
 
 /**
  * Represents a change occuring to a Context. This includes when objects are
  * added to and removed from a Context (with the {@link #getTarget()} being valid) or when
  * projections are added and removed (with the {@link #getProjection()} being valid).
+ * Objects added to or removed from a Context in bulk may be reported to a
+ * {@link BatchContextListener} as a single event with {@link #getTargets()}
+ * being valid.
  * 
  * @author Tom Howe
  */
@@ -16,7 +21,7 @@ public class ContextEvent<T> {
 	 */
 	public static enum EventType {
 		AGENT_ADDED, AGENT_REMOVED, AGENT_MOVED, PROJECTION_ADDED, PROJECTION_REMOVED,
-		SUBCONTEXT_ADDED, SUBCONTEXT_REMOVED
+		SUBCONTEXT_ADDED, SUBCONTEXT_REMOVED, AGENTS_ADDED, AGENTS_REMOVED
 	};
 
 	/**
@@ -38,6 +43,7 @@ public class ContextEvent<T> {
 	private T target;
 	private Projection<? super T> projection;
 	private Context<? extends T> subContext;
+	private Collection<? extends T> targets;
 	
 	/**
 	 * Creates a new instance of ContextEvent with a given type, context and
@@ -91,6 +97,26 @@ public class ContextEvent<T> {
 		}
 
 
+	/**
+	 * Creates a ContextEvent for a group of objects added to or removed from a
+	 * context together.
+	 * 
+	 * @param type
+	 *            The type of event which occured, either AGENTS_ADDED or
+	 *            AGENTS_REMOVED.
+	 * @param context
+	 *            The context to which the event occured.
+	 * @param targets
+	 *            The objects which were the targets of the event.
+	 * @return the created event.
+	 */
+	public static <T> ContextEvent<T> createBatchEvent(EventType type, Context<T> context,
+			Collection<? extends T> targets) {
+		ContextEvent<T> evt = new ContextEvent<T>(type, context, (T) null);
+		evt.targets = targets;
+		return evt;
+	}
+
 	/**
 	 * Get the type of event this represents.
 	 * 
@@ -118,6 +144,16 @@ public class ContextEvent<T> {
 		return target;
 	}
 	
+	/**
+	 * Gets the targets of an AGENTS_ADDED or AGENTS_REMOVED event.
+	 * 
+	 * @return the objects which were the targets of the event, or null if
+	 *         this is not a batch event.
+	 */
+	public Collection<? extends T> getTargets() {
+		return targets;
+	}
+
 	/**
 	 * Gets the project that was the target of the event.
 	 * 
@@ -0,0 +1,353 @@
+package repast.simphony.context;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.collections15.iterators.SingletonIterator;
+
+import repast.simphony.random.RandomHelper;
+import repast.simphony.util.collections.CompositeIndexedIterable;
+import repast.simphony.util.collections.IndexedIterable;
+import repast.simphony.util.collections.IterableAdaptor;
+
+/**
+ * Context for models that add and remove many agents. The agents are kept in
+ * a dense array, indexed by an open addressed hash table and by per class
+ * arrays, so that adding, removing and finding an agent take constant time and
+ * allocate nothing once the arrays have grown to size. An agent is removed by
+ * moving the last agent into its place, so, unlike DefaultContext, the
+ * iteration order changes as agents are removed. As with the other contexts
+ * agents are compared using equals and hashCode.
+ * <p>
+ *
+ * Context events are only created when the context has listeners, and
+ * {@link #addAll(Collection)} and {@link #removeAll(Collection)} report their
+ * agents to {@link BatchContextListener}s as a single event.
+ */
+public class IndexedContext<T> extends AbstractContext<T> {
+
+  // a class's agents, with each agent's index in objs
+  private static class ClassList {
+    Class<?> clazz;
+    Object[] items = new Object[8];
+    int[] indices = new int[8];
+    int size;
+  }
+
+  private Object[] objs = new Object[16];
+  private int[] hashes = new int[16];
+  private ClassList[] classLists = new ClassList[16];
+  // each agent's position in its ClassList
+  private int[] classSlots = new int[16];
+  private int size;
+
+  // open addressed with linear probing, holds an index into objs + 1, or 0
+  private int[] table = new int[32];
+
+  // to insure iteration order is repeatable.
+  private Map<Class<?>, ClassList> classMap = new LinkedHashMap<Class<?>, ClassList>();
+
+  private int modCount;
+
+  public IndexedContext() {
+    super();
+  }
+
+  public IndexedContext(Object id) {
+    this(id, id);
+  }
+
+  public IndexedContext(Object name, Object typeID) {
+    setId(name);
+    setTypeID(typeID);
+  }
+
+  private static int hash(Object o) {
+    int h = o.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // gets the table slot that holds o, or -1
+  private int find(Object o, int hash) {
+    int mask = table.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      int entry = table[i];
+      if (entry == 0)
+        return -1;
+      int index = entry - 1;
+      if (hashes[index] == hash && (objs[index] == o || objs[index].equals(o)))
+        return i;
+    }
+  }
+
+  // gets the table slot that holds the specified index into objs
+  private int slotOf(int index) {
+    int mask = table.length - 1;
+    for (int i = hashes[index] & mask;; i = (i + 1) & mask) {
+      if (table[i] == index + 1)
+        return i;
+    }
+  }
+
+  private void insert(int index) {
+    int mask = table.length - 1;
+    int i = hashes[index] & mask;
+    while (table[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    table[i] = index + 1;
+  }
+
+  // empties the slot, shifting back any entries that probed past it
+  private void deleteSlot(int i) {
+    int mask = table.length - 1;
+    for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+      int home = hashes[table[j] - 1] & mask;
+      // move the entry if its home slot is not cyclically in (i, j]
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+        table[i] = table[j];
+        i = j;
+      }
+    }
+    table[i] = 0;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > objs.length) {
+      int length = Math.max(capacity, objs.length * 2);
+      Object[] newObjs = new Object[length];
+      System.arraycopy(objs, 0, newObjs, 0, size);
+      objs = newObjs;
+      int[] newHashes = new int[length];
+      System.arraycopy(hashes, 0, newHashes, 0, size);
+      hashes = newHashes;
+      ClassList[] newLists = new ClassList[length];
+      System.arraycopy(classLists, 0, newLists, 0, size);
+      classLists = newLists;
+      int[] newSlots = new int[length];
+      System.arraycopy(classSlots, 0, newSlots, 0, size);
+      classSlots = newSlots;
+    }
+
+    // keep the table at most half full
+    if (capacity * 2 > table.length) {
+      int length = table.length;
+      while (capacity * 2 > length) {
+        length *= 2;
+      }
+      table = new int[length];
+      for (int i = 0; i < size; i++) {
+        insert(i);
+      }
+    }
+  }
+
+  @Override
+  protected boolean addInternal(T o) {
+    int hash = hash(o);
+    if (find(o, hash) != -1)
+      return false;
+    ensureCapacity(size + 1);
+
+    Class<?> clazz = o.getClass();
+    ClassList list = classMap.get(clazz);
+    if (list == null) {
+      list = new ClassList();
+      list.clazz = clazz;
+      classMap.put(clazz, list);
+    } else if (list.size == list.items.length) {
+      Object[] items = new Object[list.size * 2];
+      System.arraycopy(list.items, 0, items, 0, list.size);
+      list.items = items;
+      int[] indices = new int[list.size * 2];
+      System.arraycopy(list.indices, 0, indices, 0, list.size);
+      list.indices = indices;
+    }
+
+    int index = size++;
+    objs[index] = o;
+    hashes[index] = hash;
+    classLists[index] = list;
+    classSlots[index] = list.size;
+    list.items[list.size] = o;
+    list.indices[list.size] = index;
+    list.size++;
+    insert(index);
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends T> c) {
+    ensureCapacity(size + c.size());
+    return super.addAll(c);
+  }
+
+  @Override
+  protected boolean removeInternal(Object o) {
+    if (o == null)
+      return false;
+    int slot = find(o, hash(o));
+    if (slot == -1)
+      return false;
+    int index = table[slot] - 1;
+    deleteSlot(slot);
+
+    // remove from the class list, moving its last agent into the gap
+    ClassList list = classLists[index];
+    int classSlot = classSlots[index];
+    int lastSlot = --list.size;
+    if (classSlot != lastSlot) {
+      list.items[classSlot] = list.items[lastSlot];
+      list.indices[classSlot] = list.indices[lastSlot];
+      classSlots[list.indices[classSlot]] = classSlot;
+    }
+    list.items[lastSlot] = null;
+    if (list.size == 0)
+      classMap.remove(list.clazz);
+
+    // move the last agent into the gap
+    int last = --size;
+    if (index != last) {
+      table[slotOf(last)] = index + 1;
+      objs[index] = objs[last];
+      hashes[index] = hashes[last];
+      classLists[index] = classLists[last];
+      classSlots[index] = classSlots[last];
+      classLists[index].indices[classSlots[index]] = index;
+    }
+    objs[last] = null;
+    classLists[last] = null;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  protected boolean containsInternal(Object o) {
+    return o != null && find(o, hash(o)) != -1;
+  }
+
+  @Override
+  protected int sizeInternal() {
+    return size;
+  }
+
+  @Override
+  protected Iterator<T> iteratorInternal() {
+    return new ArrayIterator(null);
+  }
+
+  /**
+   * Iterates over the agents in objs, or in a ClassList. Removing through the
+   * iterator removes the agent from the context.
+   */
+  private class ArrayIterator implements Iterator<T> {
+
+    private ClassList list;
+    private int cursor = 0;
+    private T last;
+    private int expectedModCount = modCount;
+
+    ArrayIterator(ClassList list) {
+      this.list = list;
+    }
+
+    private int limit() {
+      return list == null ? size : list.size;
+    }
+
+    public boolean hasNext() {
+      return cursor < limit();
+    }
+
+    @SuppressWarnings("unchecked")
+    public T next() {
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if (cursor >= limit())
+        throw new NoSuchElementException();
+      last = (T) (list == null ? objs[cursor] : list.items[cursor]);
+      cursor++;
+      return last;
+    }
+
+    public void remove() {
+      if (last == null)
+        throw new IllegalStateException();
+      if (modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      IndexedContext.this.remove(last);
+      // the last agent has been moved into the removed agent's place
+      cursor--;
+      last = null;
+      expectedModCount = modCount;
+    }
+  }
+
+  /**
+   * An IndexedIterable view of a ClassList.
+   */
+  private class ClassIterable implements IndexedIterable<T> {
+
+    private ClassList list;
+
+    ClassIterable(ClassList list) {
+      this.list = list;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      if (index < 0 || index >= list.size)
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + list.size);
+      return (T) list.items[index];
+    }
+
+    public int size() {
+      return list.size;
+    }
+
+    public Iterator<T> iterator() {
+      return new ArrayIterator(list);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public IndexedIterable<T> getObjects(Class<?> clazz) {
+    CompositeIndexedIterable<T> iter = new CompositeIndexedIterable<T>();
+    for (Map.Entry<Class<?>, ClassList> entry : classMap.entrySet()) {
+      if (clazz.isAssignableFrom(entry.getKey()))
+        iter.addIndexedIterable(new ClassIterable(entry.getValue()));
+    }
+    if (subContexts.size() == 0) return iter;
+
+    for (Context context : subContexts.values()) {
+      IndexedIterable child = context.getObjects(clazz);
+      if (child.size() > 0) iter.addIndexedIterable(child);
+    }
+    return iter;
+  }
+
+  public Iterable<T> getRandomObjects(Class<? extends T> clazz, long count) {
+    IndexedIterable<T> iter = getObjects(clazz);
+    if (iter.size() == 0) return Collections.emptyList();
+    if (count == 1) {
+      T obj = iter.get(RandomHelper.nextIntFromTo(0, iter.size() - 1));
+      return new IterableAdaptor<T>(new SingletonIterator<T>(obj, false));
+    }
+    return new ContextIterable<T>(iter, count, this);
+  }
+
+  @SuppressWarnings("unchecked")
+  public T getRandomObject() {
+    if (subContexts.size() > 0) {
+      IndexedIterable<T> iter = getObjects(Object.class);
+      return iter.get(RandomHelper.nextIntFromTo(0, iter.size() - 1));
+    }
+    return (T) objs[RandomHelper.nextIntFromTo(0, size - 1)];
+  }
+}
@@ -95,18 +95,6 @@ public class SmallDefaultContext<T> extends AbstractContext<T> {
     return val;
   }
 
-  /* (non-Javadoc)
-   * @see java.util.AbstractCollection#removeAll(java.util.Collection)
-   */
-  @Override
-  public boolean removeAll(Collection<?> c) {
-    boolean ret = false;
-    for (Object obj : c) {
-      if (remove(obj)) ret = true;
-    }
-    return ret;
-  }
-
   /* (non-Javadoc)
    * @see java.util.AbstractCollection#retainAll(java.util.Collection)
    */
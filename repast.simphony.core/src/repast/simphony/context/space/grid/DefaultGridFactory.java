@@ -18,6 +18,12 @@ public class DefaultGridFactory implements GridFactory {
 
 	public <T> Grid<T> createGrid(String name, Context<T> context,
 	                              GridBuilderParameters<T> params) {
+		if (params.isMultOccupancy() && params.isDense()) {
+			ContextFastMultiGrid<T> grid = new ContextFastMultiGrid<T>(name, params.getAdder(),
+					params.getGridPointTranslator(), params.getDimensions(), params.getOrigin());
+			context.addProjection(grid);
+			return grid;
+		}
 		CellAccessor<T, Map<GridPoint, Object>> accessor = params.isMultOccupancy() ? new MultiOccupancyCellAccessor<T>()
 				: new SingleOccupancyCellAccessor<T>();
 		ContextGrid<T> dGrid = new ContextGrid<T>(name, params.getAdder(),
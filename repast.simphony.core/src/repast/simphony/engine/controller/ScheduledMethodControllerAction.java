@@ -19,6 +19,7 @@ import repast.simphony.engine.schedule.DynamicTargetAction;
 import repast.simphony.engine.schedule.IAction;
 import repast.simphony.engine.schedule.ISchedulableAction;
 import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.engine.schedule.ParallelActionExecutor;
 import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.engine.schedule.ScheduledMethod;
 import repast.simphony.parameter.Parameters;
@@ -55,6 +56,9 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
         params = ScheduleParameters.createOneTime(annotation.start(), annotation.priority(),
             duration);
       }
+      if (annotation.parallel()) {
+        params = ScheduleParameters.makeParallel(params);
+      }
       return params;
     }
   }
@@ -224,7 +228,7 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
       } else if (data.annotation.pick() == ScheduledMethod.ALL) {
         ClassFilter filter = createFilter(data);
         IAction action = new ScheduleMethodAllAction(context, data.method.getDeclaringClass(),
-            data.method, data.shuffle, filter);
+            data.method, data.shuffle, data.annotation.parallel(), filter);
         schedule.schedule(data.getParameters(), action);
       } else {
         ClassFilter filter = createFilter(data);
@@ -304,20 +308,24 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
     private Class<?> targetClass;
     private DynamicTargetAction action;
     private boolean shuffle;
+    private boolean parallel;
     private ClassFilter filter;
 
     public ScheduleMethodAllAction(Context<Object> context, Class<?> targetClass, Method method,
-        boolean shuffle, ClassFilter filter) {
+        boolean shuffle, boolean parallel, ClassFilter filter) {
       this.context = context;
       this.targetClass = targetClass;
       action = new DynamicTargetAction(method);
       this.shuffle = shuffle;
+      this.parallel = parallel;
       this.filter = filter;
     }
 
     /**
      * Executes this IAction, retrieving the objects from the context and then
-     * executing the method on each one.
+     * executing the method on each one. If the method is parallel, the objects
+     * are gathered first, in the same order as for sequential execution, and then
+     * the method is called on them concurrently.
      */
     public void execute() {
       Iterable<Object> iter;
@@ -327,6 +335,17 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
         iter = context.getObjects(targetClass);
       }
 
+      if (parallel) {
+        List<Object> targets = new ArrayList<Object>();
+        for (Object obj : iter) {
+          if (filter.apply(obj.getClass())) {
+            targets.add(obj);
+          }
+        }
+        ParallelActionExecutor.execute(targets, action);
+        return;
+      }
+
       for (Object obj : iter) {
         if (filter.apply(obj.getClass())) {
           action.setTarget(obj);
@@ -22,6 +22,12 @@ public abstract class AbstractAction implements ISchedulableAction {
   protected double nextTime = Double.NaN;
   
   protected PriorityType pType;
+  
+  /**
+   * Whether or not this action can be executed in parallel with other
+   * parallel actions of the same priority.
+   */
+  protected boolean parallel = false;
 
   /**
    * The interval at which to execute this action.
@@ -98,6 +104,7 @@ public abstract class AbstractAction implements ISchedulableAction {
     priority = params.getPriority();
     interval = params.getInterval();
     pType = params.getPriorityType();
+    parallel = params.isParallel();
   }
 
   /**
@@ -167,6 +174,13 @@ public abstract class AbstractAction implements ISchedulableAction {
   public PriorityType getPriorityType() {
     return pType;
   }
+  
+  /* (non-Javadoc)
+   * @see repast.simphony.engine.schedule.ISchedulableAction#isParallel()
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
 
   /**
    * Gets an index indicating where this IAction was added to a schedule w/r to all other
@@ -93,6 +93,17 @@ public class ActionList implements Iterable<ISchedulableAction> {
     return list.size();
   }
 
+  /**
+   * Gets the action at the specified index.
+   * 
+   * @param index
+   *          the index of the action to get
+   * @return the action at the specified index.
+   */
+  public ISchedulableAction get(int index) {
+    return list.get(index);
+  }
+
   /**
    * Shuffles the elements of this list.
    */
@@ -216,6 +216,23 @@ public class ActionQueue {
     return a;
   }
 
+  /**
+   * Removes all the elements whose next time equals the minimum next time from
+   * the queue and adds them to the specified group for execution.
+   * 
+   * @param group
+   *          the group to add the removed elements to
+   * @return the next time of the removed elements.
+   */
+  public double popMinGroup(ScheduleGroup group) {
+    double time = peekMin().getNextTime();
+    popMin().addForExecution(group);
+    while (currentSize > 0 && peekMin().getNextTime() == time) {
+      popMin().addForExecution(group);
+    }
+    return time;
+  }
+
   /**
    * Insert the specified action into the queue without maintain heap order.
    * 
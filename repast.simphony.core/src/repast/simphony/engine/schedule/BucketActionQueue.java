@@ -0,0 +1,245 @@
+package repast.simphony.engine.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * An ActionQueue that groups its actions into buckets keyed by their next
+ * time. Unlike the binary heap ActionQueue, inserting an action only appends
+ * it to its bucket, and all the actions scheduled for the minimum time are
+ * removed together as a single bucket. This is well suited to the common case
+ * where many actions repeat on the same (typically integer) ticks, as the
+ * cost of rescheduling an action does not depend on the number of actions in
+ * the queue.
+ * <p>
+ *
+ * The actions within a bucket are not ordered. The ScheduleGroup that
+ * executes them orders them by their priority and the order in which they
+ * were scheduled.
+ *
+ * @see repast.simphony.engine.schedule.ActionQueue
+ */
+public class BucketActionQueue extends ActionQueue {
+
+  static final long serialVersionUID = 1918266318461497390L;
+
+  // the maximum number of emptied buckets to keep for reuse
+  private static final int MAX_SPARES = 4;
+
+  private TreeMap<Double, List<ISchedulableAction>> buckets = new TreeMap<Double, List<ISchedulableAction>>();
+  private List<List<ISchedulableAction>> spares = new ArrayList<List<ISchedulableAction>>();
+
+  // the bucket the last action was inserted into. Most insertions during
+  // rescheduling are for the same time, so this avoids the map lookup.
+  private double lastTime = Double.NaN;
+  private List<ISchedulableAction> lastBucket;
+
+  private int size = 0;
+  private int modelActionCount = 0;
+
+  /**
+   * Creates an empty BucketActionQueue.
+   */
+  public BucketActionQueue() {
+    super(1);
+  }
+
+  private List<ISchedulableAction> getBucket(double time) {
+    if (time == lastTime)
+      return lastBucket;
+
+    Double key = time;
+    List<ISchedulableAction> bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = spares.isEmpty() ? new ArrayList<ISchedulableAction>() : spares.remove(spares
+          .size() - 1);
+      buckets.put(key, bucket);
+    }
+    lastTime = time;
+    lastBucket = bucket;
+    return bucket;
+  }
+
+  // removes the bucket at the specified time and keeps it for reuse
+  private void removeBucket(Double time, List<ISchedulableAction> bucket) {
+    buckets.remove(time);
+    if (bucket == lastBucket) {
+      lastBucket = null;
+      lastTime = Double.NaN;
+    }
+    bucket.clear();
+    if (spares.size() < MAX_SPARES)
+      spares.add(bucket);
+  }
+
+  private void added(ISchedulableAction action) {
+    size++;
+    if (!action.isNonModelAction())
+      modelActionCount++;
+  }
+
+  private void removed(ISchedulableAction action) {
+    size--;
+    if (!action.isNonModelAction())
+      modelActionCount--;
+  }
+
+  // -0.0 and 0.0 must map to the same bucket
+  private double key(double time) {
+    return time + 0.0;
+  }
+
+  /**
+   * Find the specified Action in the queue and remove it.
+   *
+   * @return returns true if the action is found and removed, false if this
+   *         ActionQueue does not contain the specified action.
+   */
+  @Override
+  public boolean voidAction(ISchedulableAction action) {
+    Double time = key(action.getNextTime());
+    List<ISchedulableAction> bucket = buckets.get(time);
+    if (bucket == null)
+      return false;
+
+    boolean found = false;
+    while (bucket.remove(action)) {
+      removed(action);
+      found = true;
+    }
+    if (bucket.isEmpty())
+      removeBucket(time, bucket);
+    return found;
+  }
+
+  /**
+   * Insert the specified action into the queue.
+   */
+  @Override
+  public void insert(ISchedulableAction action) {
+    getBucket(key(action.getNextTime())).add(action);
+    added(action);
+  }
+
+  /**
+   * Insert the specified action into the queue. This is identical to insert
+   * as the buckets never need to be reordered.
+   *
+   * @param action
+   *          the action to insert into the queue
+   */
+  @Override
+  public void toss(ISchedulableAction action) {
+    insert(action);
+  }
+
+  /**
+   * Get an element with the minimum next time from the queue without removing
+   * it from the queue.
+   *
+   * @return an element with the minimum next time.
+   */
+  @Override
+  public ISchedulableAction peekMin() {
+    if (size == 0)
+      throw new NoSuchElementException("Queue is Empty");
+    List<ISchedulableAction> bucket = buckets.firstEntry().getValue();
+    return bucket.get(bucket.size() - 1);
+  }
+
+  /**
+   * Remove an element with the minimum next time from the queue and return
+   * it. This returns the same element as peekMin.
+   *
+   * @return an element with the minimum next time.
+   */
+  @Override
+  public ISchedulableAction popMin() {
+    if (size == 0)
+      throw new NoSuchElementException("Queue is Empty");
+    Map.Entry<Double, List<ISchedulableAction>> entry = buckets.firstEntry();
+    List<ISchedulableAction> bucket = entry.getValue();
+    ISchedulableAction action = bucket.remove(bucket.size() - 1);
+    if (bucket.isEmpty())
+      removeBucket(entry.getKey(), bucket);
+    removed(action);
+    return action;
+  }
+
+  /**
+   * Removes the bucket of elements with the minimum next time from the queue
+   * and adds them to the specified group for execution.
+   *
+   * @param group
+   *          the group to add the removed elements to
+   * @return the next time of the removed elements.
+   */
+  @Override
+  public double popMinGroup(ScheduleGroup group) {
+    if (size == 0)
+      throw new NoSuchElementException("Queue is Empty");
+    Map.Entry<Double, List<ISchedulableAction>> entry = buckets.firstEntry();
+    List<ISchedulableAction> bucket = entry.getValue();
+    for (int i = 0, n = bucket.size(); i < n; i++) {
+      ISchedulableAction action = bucket.get(i);
+      removed(action);
+      action.addForExecution(group);
+    }
+    removeBucket(entry.getKey(), bucket);
+    return entry.getKey();
+  }
+
+  /**
+   * Removes all elements from the queue.
+   */
+  @Override
+  public void clear() {
+    buckets.clear();
+    spares.clear();
+    lastBucket = null;
+    lastTime = Double.NaN;
+    size = 0;
+    modelActionCount = 0;
+  }
+
+  /**
+   * Does nothing as the buckets are always in order.
+   */
+  @Override
+  public void fixHeap() {
+  }
+
+  /**
+   * Returns true if the queue is empty, otherwise false.
+   *
+   * @return true if the queue is empty, otherwise false.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Gets the number of elements in the queue.
+   *
+   * @return the number of elements in the queue.
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Retrieves the number of actions whose
+   * {@link ISchedulableAction#isNonModelAction()} method returns false.
+   *
+   * @return the number of model actions
+   */
+  @Override
+  public int getModelActionCount() {
+    return modelActionCount;
+  }
+}
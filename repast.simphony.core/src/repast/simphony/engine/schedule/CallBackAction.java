@@ -8,6 +8,8 @@ import java.lang.reflect.Method;
 import net.sf.cglib.reflect.FastClass;
 import net.sf.cglib.reflect.FastMethod;
 import repast.simphony.util.ClassUtilities;
+import repast.simphony.util.bytecode.ByteCodeUtilities;
+import repast.simphony.util.bytecode.MethodInvoker;
 
 /**
  * An IAction created from a method name and method parameters. When a CallBackAction is executed
@@ -23,6 +25,8 @@ public class CallBackAction implements IAction {
   private Object target;
   // not serializable so don't serialize it
   private transient FastMethod method;
+  // invokes the method without reflection
+  private transient MethodInvoker invoker;
   private Object[] args;
   // we need to serialize this as we can't serialize the method name
   private String methodName;
@@ -38,6 +42,7 @@ public class CallBackAction implements IAction {
     args = new Object[method.getParameterTypes().length];
     this.target = target;
     this.method = FastClass.create(target.getClass()).getMethod(method);
+    invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method);
     methodName = this.method.getName();
   }
 
@@ -54,6 +59,7 @@ public class CallBackAction implements IAction {
     this.target = target;
     this.method = FastClass.create(target.getClass()).getMethod(method);
     System.arraycopy(parameters, 0, args, 0, parameters.length);
+    invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method);
     methodName = this.method.getName();
   }
 
@@ -100,6 +106,7 @@ public class CallBackAction implements IAction {
       // todo add some logging
       throw new IllegalArgumentException("Method " + target.getClass().getName() + "." + methodName + pTypes + " not found!");
     }
+    invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method.getJavaMethod());
   }
 
   /**
@@ -124,7 +131,7 @@ public class CallBackAction implements IAction {
    */
   public void execute() {
     try {
-      method.invoke(target, args);
+      invoker.invoke(target, args);
     } catch (InvocationTargetException e) {
       throw new RuntimeException(e);
     }
@@ -129,6 +129,9 @@ public class DefaultActionFactory implements IActionFactory {
           params = ScheduleParameters.createOneTime(scheduledMethod.start(), scheduledMethod.priority(),
                   duration);
         }
+        if (scheduledMethod.parallel()) {
+          params = ScheduleParameters.makeParallel(params);
+        }
         nameParamMap.put(methodName, params);
       }
     }
@@ -166,6 +169,9 @@ public class DefaultActionFactory implements IActionFactory {
           params = ScheduleParameters.createOneTime(scheduledMethod.start(), scheduledMethod.priority(),
                   duration);
         }
+        if (scheduledMethod.parallel()) {
+          params = ScheduleParameters.makeParallel(params);
+        }
         actions.add(new IActionParameterPair(action, params));
       }
     }
@@ -39,7 +39,24 @@ package repast.simphony.engine.schedule;
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
 public class DefaultScheduleFactory implements IScheduleFactory {
+	
+	/**
+	 * The kinds of ActionQueue that the created schedules can use.
+	 */
+	public enum QueueType {
+		/**
+		 * A binary heap ActionQueue.
+		 */
+		HEAP,
+		/**
+		 * A BucketActionQueue that groups actions by their next time.
+		 */
+		BUCKET
+	}
+	
 	private ISchedulableActionFactory defaultActionFactory;
+	
+	private QueueType queueType = QueueType.HEAP;
 
 	/**
 	 * Synonymous with DefaultScheduleFactory(new
@@ -73,7 +90,14 @@ public class DefaultScheduleFactory implements IScheduleFactory {
 	 * @return a schedule that uses the specified factory
 	 */
 	public ISchedule createSchedule(ISchedulableActionFactory factory) {
-		return new Schedule(factory);
+		return new Schedule(factory, createQueue());
+	}
+	
+	private ActionQueue createQueue() {
+		if (queueType == QueueType.BUCKET) {
+			return new BucketActionQueue();
+		}
+		return new ActionQueue();
 	}
 
 	/**
@@ -87,7 +111,7 @@ public class DefaultScheduleFactory implements IScheduleFactory {
 	 * @return a schedule that uses the default factory
 	 */
 	public ISchedule createSchedule() {
-		return new Schedule(defaultActionFactory);
+		return createSchedule(defaultActionFactory);
 	}
 
 	/**
@@ -101,4 +125,24 @@ public class DefaultScheduleFactory implements IScheduleFactory {
 			ISchedulableActionFactory defaultFactory) {
 		this.defaultActionFactory = defaultFactory;
 	}
+
+	/**
+	 * Sets the kind of ActionQueue that the created schedules will use. The
+	 * default is QueueType.HEAP.
+	 * 
+	 * @param queueType
+	 *            the kind of ActionQueue the created schedules will use
+	 */
+	public void setQueueType(QueueType queueType) {
+		this.queueType = queueType;
+	}
+
+	/**
+	 * Gets the kind of ActionQueue that the created schedules will use.
+	 * 
+	 * @return the kind of ActionQueue that the created schedules will use.
+	 */
+	public QueueType getQueueType() {
+		return queueType;
+	}
 }
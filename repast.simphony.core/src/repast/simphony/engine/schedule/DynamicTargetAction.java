@@ -8,6 +8,8 @@ import java.lang.reflect.Method;
 import net.sf.cglib.reflect.FastClass;
 import net.sf.cglib.reflect.FastMethod;
 import repast.simphony.util.ClassUtilities;
+import repast.simphony.util.bytecode.ByteCodeUtilities;
+import repast.simphony.util.bytecode.MethodInvoker;
 import simphony.util.messages.MessageCenter;
 
 /**
@@ -27,6 +29,8 @@ public class DynamicTargetAction implements IAction {
 	private Class<?> targetClass;
 	 // not serializable so don't serialize it
   private transient FastMethod method;
+  // invokes the method without reflection
+  private transient MethodInvoker invoker;
   // we need to serialize this as we can't serialize the method name
   private String methodName;
 
@@ -39,6 +43,7 @@ public class DynamicTargetAction implements IAction {
   public DynamicTargetAction(Method method) {
 	  targetClass = method.getDeclaringClass();
 	  this.method = FastClass.create(targetClass).getMethod(method);
+	  invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method);
     methodName = this.method.getName();
   }
 
@@ -58,6 +63,7 @@ public class DynamicTargetAction implements IAction {
       throw new IllegalArgumentException("Method " + target.getClass().getName() + "." + methodName +"."+
 				      " not found!");
     }
+    invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method.getJavaMethod());
   }
 
 
@@ -66,13 +72,28 @@ public class DynamicTargetAction implements IAction {
    */
   public void execute() {
     try {
-      method.invoke(target, EMPTY_CLASS_ARRAY);
+      invoker.invoke(target, EMPTY_CLASS_ARRAY);
     } catch (InvocationTargetException e) {
       //msgCenter.error("Tried to call: " + method.toString(), e);
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Calls the method named in the constructor on the specified target, leaving
+   * the current target unchanged. Unlike setTarget followed by execute, this
+   * can be safely called concurrently from several threads.
+   *
+   * @param obj the object on which to call the method
+   */
+  public void execute(Object obj) {
+    try {
+      invoker.invoke(obj, EMPTY_CLASS_ARRAY);
+    } catch (InvocationTargetException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   /**
    * Recreates the FastMethod member using the serialized methodName, target and args.
    *
@@ -49,6 +49,14 @@ public interface ISchedulableAction extends IAction {
    */
   PriorityType getPriorityType();
   
+  /**
+   * Gets whether or not this action can be executed in parallel with
+   * other parallel actions of the same priority scheduled for the same tick.
+   * 
+   * @return true if this action can be executed in parallel, otherwise false.
+   */
+  boolean isParallel();
+  
   /**
    * Gets an index indicating where this IAction was added to a schedule w/r to all other
    * actions added to a schedule. 
@@ -5,6 +5,8 @@ import net.sf.cglib.reflect.FastMethod;
 import repast.simphony.random.RandomHelper;
 import repast.simphony.util.ClassUtilities;
 import repast.simphony.util.SimUtilities;
+import repast.simphony.util.bytecode.ByteCodeUtilities;
+import repast.simphony.util.bytecode.MethodInvoker;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -27,6 +29,8 @@ public class IterableCallBackAction implements IAction {
   private Iterable<Object> target;
   // not serializable so don't serialize it
   private transient FastMethod method;
+  // invokes the method without reflection
+  private transient MethodInvoker invoker;
   private Object[] args;
   // we need to serialize this as we can't serialize the method name
   private String methodName;
@@ -71,6 +75,7 @@ public class IterableCallBackAction implements IAction {
       pTypes += ")";
       throw new IllegalArgumentException("Method " + target.getClass().getName() + "." + methodName + pTypes + " not found!");
     }
+    invoker = ByteCodeUtilities.getInstance().getMethodInvoker(method.getJavaMethod());
   }
 
   /**
@@ -116,7 +121,7 @@ public class IterableCallBackAction implements IAction {
       try {
         // todo add shuffle
         for (Object obj : target) {
-          method.invoke(obj, args);
+          invoker.invoke(obj, args);
         }
       } catch (InvocationTargetException e) {
         // todo add proper logging!!!!
@@ -136,7 +141,7 @@ public class IterableCallBackAction implements IAction {
       
       try {
         for (Object obj : list) {
-          method.invoke(obj, args);
+          invoker.invoke(obj, args);
         }
       } catch (InvocationTargetException e) {
         // todo add proper logging!!!!
@@ -151,7 +156,7 @@ public class IterableCallBackAction implements IAction {
       SimUtilities.shuffle((List)target, RandomHelper.getUniform());
       try {
         for (Object obj : target) {
-          method.invoke(obj, args);
+          invoker.invoke(obj, args);
         }
       } catch (InvocationTargetException e) {
         // todo add proper logging!!!!
@@ -0,0 +1,188 @@
+package repast.simphony.engine.schedule;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.random.RandomHelper;
+import repast.simphony.random.SplittableRandomRegistry;
+import repast.simphony.random.SplittableRandomRegistry.StreamBinding;
+
+/**
+ * Executes batches of actions concurrently on a ForkJoinPool. A call to one of
+ * the execute methods returns only when every action in the batch has
+ * completed, so the batch acts as a barrier with respect to whatever is
+ * executed next. The batch is split into index ranges whose boundaries depend
+ * only on the batch size and the pool's parallelism, and not on which worker
+ * happens to pick them up.<p>
+ *
+ * If the default random registry is a {@link SplittableRandomRegistry}, each
+ * action draws its random numbers from its own stream, keyed by its index in
+ * the batch, so a batch produces the same results whatever the number of
+ * threads.
+ */
+public class ParallelActionExecutor {
+
+  // the number of ranges per worker thread that a batch is split into.
+  private static final int SPLITS_PER_THREAD = 4;
+
+  private static ForkJoinPool pool;
+
+  /**
+   * Executes some index range of a batch.
+   */
+  private static abstract class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = -3458021743417155405L;
+
+    protected final int start, end, threshold;
+    // null unless the default random registry is splittable
+    protected final SplittableRandomRegistry streams;
+    protected final long batchSeed;
+
+    RangeTask(int start, int end, int threshold, SplittableRandomRegistry streams,
+        long batchSeed) {
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+      this.streams = streams;
+      this.batchSeed = batchSeed;
+    }
+
+    protected abstract RangeTask create(int start, int end);
+
+    protected abstract void execute(int index);
+
+    @Override
+    protected void compute() {
+      if (end - start <= threshold) {
+        if (streams == null) {
+          for (int i = start; i < end; i++) {
+            execute(i);
+          }
+        } else {
+          StreamBinding binding = streams.bind(batchSeed);
+          try {
+            for (int i = start; i < end; i++) {
+              binding.select(i);
+              execute(i);
+            }
+          } finally {
+            streams.unbind(binding);
+          }
+        }
+      } else {
+        int mid = (start + end) >>> 1;
+        invokeAll(create(start, mid), create(mid, end));
+      }
+    }
+  }
+
+  private static class ActionTask extends RangeTask {
+
+    private static final long serialVersionUID = 5380123564405812743L;
+
+    private final List<? extends IAction> actions;
+
+    ActionTask(List<? extends IAction> actions, int start, int end, int threshold,
+        SplittableRandomRegistry streams, long batchSeed) {
+      super(start, end, threshold, streams, batchSeed);
+      this.actions = actions;
+    }
+
+    protected RangeTask create(int start, int end) {
+      return new ActionTask(actions, start, end, threshold, streams, batchSeed);
+    }
+
+    protected void execute(int index) {
+      actions.get(index).execute();
+    }
+  }
+
+  private static class TargetTask extends RangeTask {
+
+    private static final long serialVersionUID = -2040856497520137218L;
+
+    private final List<?> targets;
+    private final DynamicTargetAction action;
+
+    TargetTask(List<?> targets, DynamicTargetAction action, int start, int end, int threshold,
+        SplittableRandomRegistry streams, long batchSeed) {
+      super(start, end, threshold, streams, batchSeed);
+      this.targets = targets;
+      this.action = action;
+    }
+
+    protected RangeTask create(int start, int end) {
+      return new TargetTask(targets, action, start, end, threshold, streams, batchSeed);
+    }
+
+    protected void execute(int index) {
+      action.execute(targets.get(index));
+    }
+  }
+
+  /**
+   * Sets the pool used to execute parallel batches. By default, the common
+   * ForkJoinPool is used.
+   *
+   * @param forkJoinPool
+   *          the pool used to execute parallel batches
+   */
+  public static synchronized void setPool(ForkJoinPool forkJoinPool) {
+    pool = forkJoinPool;
+  }
+
+  /**
+   * Gets the pool used to execute parallel batches.
+   *
+   * @return the pool used to execute parallel batches.
+   */
+  public static synchronized ForkJoinPool getPool() {
+    if (pool == null)
+      pool = ForkJoinPool.commonPool();
+    return pool;
+  }
+
+  private static int threshold(ForkJoinPool forkJoinPool, int size) {
+    return Math.max(1, size / (forkJoinPool.getParallelism() * SPLITS_PER_THREAD));
+  }
+
+  /**
+   * Executes the specified actions concurrently, returning when all of them
+   * have completed. Any exception thrown by an action is rethrown by this
+   * method.
+   *
+   * @param actions
+   *          the actions to execute
+   */
+  public static void execute(List<? extends IAction> actions) {
+    int size = actions.size();
+    if (size == 0) return;
+    ForkJoinPool forkJoinPool = getPool();
+    SplittableRandomRegistry streams = RandomHelper.getSplittableRegistry();
+    long batchSeed = streams == null ? 0 : streams.createBatchSeed();
+    forkJoinPool.invoke(new ActionTask(actions, 0, size, threshold(forkJoinPool, size), streams,
+        batchSeed));
+  }
+
+  /**
+   * Executes the specified action on each of the specified targets
+   * concurrently, returning when all of the calls have completed. Any exception
+   * thrown by the target method is rethrown by this method.
+   *
+   * @param targets
+   *          the objects on which to call the action's method
+   * @param action
+   *          the action whose method will be called
+   */
+  public static void execute(List<?> targets, DynamicTargetAction action) {
+    int size = targets.size();
+    if (size == 0) return;
+    ForkJoinPool forkJoinPool = getPool();
+    SplittableRandomRegistry streams = RandomHelper.getSplittableRegistry();
+    long batchSeed = streams == null ? 0 : streams.createBatchSeed();
+    forkJoinPool.invoke(new TargetTask(targets, action, 0, size, threshold(forkJoinPool, size),
+        streams, batchSeed));
+  }
+}
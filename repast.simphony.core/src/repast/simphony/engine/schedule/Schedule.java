@@ -47,8 +47,19 @@ public class Schedule implements ISchedule {
    * @param factory the factory to use to create the actions that the Schedule will schedule
    */
   public Schedule(ISchedulableActionFactory factory) {
+    this(factory, new ActionQueue());
+  }
+
+  /**
+   * Creates a Schedule that will use the specified ISchedulableActionFactory to create its scheduled actions
+   * and the specified ActionQueue to hold the actions until they are executed.
+   *
+   * @param factory the factory to use to create the actions that the Schedule will schedule
+   * @param queue   the queue that will hold the scheduled actions
+   */
+  public Schedule(ISchedulableActionFactory factory, ActionQueue queue) {
     actionFactory = factory;
-    actionQueue = new ActionQueue();
+    actionQueue = queue;
     groupToExecute = new ScheduleGroup();
     endActions = new ScheduleGroup();
   }
@@ -167,7 +178,9 @@ public class Schedule implements ISchedule {
     return sAction;
   }
 
-  private void scheduleAction(ISchedulableAction sAction) {
+  // synchronized so that actions executing in a parallel batch can schedule
+  // other actions
+  private synchronized void scheduleAction(ISchedulableAction sAction) {
     if (sAction.getNextTime() >= this.getTickCount()) {
       if (sAction.getNextTime() == ScheduleParameters.END) endActions.addAction(sAction);
       else if (sAction.getNextTime() == this.getTickCount()) {
@@ -290,7 +303,7 @@ public class Schedule implements ISchedule {
    *
    * @return whether or not the action was removed.
    */
-  public boolean removeAction(ISchedulableAction action) {
+  public synchronized boolean removeAction(ISchedulableAction action) {
     if (action.getNextTime() == ScheduleParameters.END) return endActions.remove(action);
     // removing at current time will always return false
     else if (action.getNextTime() == this.getTickCount()) return false;
@@ -307,31 +320,16 @@ public class Schedule implements ISchedule {
   protected void preExecute() {
     double queueMin = Double.POSITIVE_INFINITY;
     if (actionQueue.size() > 0) queueMin = actionQueue.peekMin().getNextTime();
+    groupToExecute.clear();
     if (queueMin == Double.POSITIVE_INFINITY) {
-      // nothing to execute so just clear this group and return
-      groupToExecute.clear();
+      // nothing to execute so just return
       return;
     }
 
-    double newTick = queueMin;
-    groupToExecute.clear();
-    // we call addToGroup rather than adding the popped action directly to
-    // the group so that "Removed" actions do not add themselves to the 
-    // group. See ActionQueue.EmptyAction
-    actionQueue.popMin().addForExecution(groupToExecute);
-
-    if (actionQueue.size() > 0) {
-      // only try and keep adding if there are BasicActions left in the
-      // queue.
-      queueMin = actionQueue.peekMin().getNextTime();
-      while (queueMin == newTick) {
-        // newTick is our original minimum nextTime we don't want to
-        // add any BasicActions whose nextTime is not equal to this.
-        actionQueue.popMin().addForExecution(groupToExecute);
-        if (actionQueue.size() == 0) break;
-        queueMin = actionQueue.peekMin().getNextTime();
-      }
-    }
+    // the queue adds the popped actions to the group via addForExecution rather 
+    // than adding them directly so that "Removed" actions do not add themselves 
+    // to the group. See ActionQueue.EmptyAction
+    double newTick = actionQueue.popMinGroup(groupToExecute);
 
     // there may have been empty removed actions in the queue. These don't
     // add themselves to group on addGroup so we only update the true tick count
@@ -2,7 +2,6 @@ package repast.simphony.engine.schedule;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
 import repast.simphony.random.RandomHelper;
@@ -13,7 +12,9 @@ import cern.jet.random.Uniform;
  * scheduled to execute at the same tick. A ScheduleGroup will order the
  * execution of its actions according to their priority and then execute them in
  * the proper order. This would be done by adding the appropriate actions to
- * this ScheduleGroup, calling sort() and then calling execute().
+ * this ScheduleGroup, calling sort() and then calling execute(). Consecutive
+ * parallel actions of the same priority are executed concurrently as a batch,
+ * and the batch completes before the next action is executed.
  * 
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
@@ -70,7 +71,7 @@ public class ScheduleGroup implements IAction {
   // whether or not to resort during execution -- will be true if an action is
   // added
   // while this group is executing.
-  private boolean actionsAddedDuringExec = false;
+  private volatile boolean actionsAddedDuringExec = false;
   private List<ISchedulableAction> actionsAddedWhileExecuting = new ArrayList<ISchedulableAction>();
 
   /**
@@ -105,7 +106,7 @@ public class ScheduleGroup implements IAction {
    * @param action
    *          the action to add
    */
-  public void addAction(ISchedulableAction action) {
+  public synchronized void addAction(ISchedulableAction action) {
     if (finishing) {
       return;
     }
@@ -124,7 +125,7 @@ public class ScheduleGroup implements IAction {
    *          the action to remove
    * @return whether or not an action was removed from this group.
    */
-  public boolean remove(ISchedulableAction action) {
+  public synchronized boolean remove(ISchedulableAction action) {
     boolean retVal = false;
     if (randomActions.remove(action)) {
       retVal = true;
@@ -195,16 +196,24 @@ public class ScheduleGroup implements IAction {
 
   private boolean executeList(ActionList list) {
     int i = 0;
+    int size = list.size();
     boolean interrupted = false;
-    for (Iterator<ISchedulableAction> iter = list.iterator(); iter.hasNext();) {
-      if (actionsAddedDuringExec) {
-        break;
+    while (i < size && !actionsAddedDuringExec) {
+      ISchedulableAction action = list.get(i);
+      int end = action.isParallel() ? findBatchEnd(list, i) : i + 1;
+      if (end - i > 1) {
+        List<ISchedulableAction> batch = new ArrayList<ISchedulableAction>(end - i);
+        for (int j = i; j < end; j++) {
+          batch.add(list.get(j));
+        }
+        executedActions.addAll(batch);
+        // returns only when all the actions in the batch have completed
+        ParallelActionExecutor.execute(batch);
       } else {
-        ISchedulableAction action = iter.next();
         executedActions.add(action);
         action.execute();
-        i++;
       }
+      i = end;
     }
     list.delete(i);
     
@@ -217,6 +226,21 @@ public class ScheduleGroup implements IAction {
     return interrupted;
   }
 
+  // finds the end (exclusive) of the run of parallel actions beginning at
+  // start that share the same priority.
+  private int findBatchEnd(ActionList list, int start) {
+    double priority = list.get(start).getPriority();
+    int end = start + 1;
+    int size = list.size();
+    while (end < size) {
+      ISchedulableAction next = list.get(end);
+      if (!next.isParallel() || Double.compare(priority, next.getPriority()) != 0)
+        break;
+      end++;
+    }
+    return end;
+  }
+
   /**
    * Executes all the ISchedulableAction in this ScheduleGroup.
    */
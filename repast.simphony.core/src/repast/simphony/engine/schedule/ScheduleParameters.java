@@ -42,11 +42,18 @@ public class ScheduleParameters {
   // be explicit.
   private double duration = 0;
   private Frequency frequency = Frequency.REPEAT;
+  private boolean parallel = false;
   private int hashCode = 17;
 
   protected ScheduleParameters(double start, Frequency frequency, double interval, double priority,
       PriorityType pType, double duration) {
+    this(start, frequency, interval, priority, pType, duration, false);
+  }
+
+  protected ScheduleParameters(double start, Frequency frequency, double interval, double priority,
+      PriorityType pType, double duration, boolean parallel) {
     this.start = start;
+    this.parallel = parallel;
     this.frequency = frequency;
     this.interval = interval;
     this.priority = priority;
@@ -75,6 +82,7 @@ public class ScheduleParameters {
     l = Double.doubleToLongBits(duration);
     hashCode = 31 * hashCode + frequency.hashCode();
     hashCode = 31 * hashCode + this.pType.hashCode();
+    hashCode = 31 * hashCode + (parallel ? 1 : 0);
   }
 
   /**
@@ -90,6 +98,24 @@ public class ScheduleParameters {
     return params.getPriorityType() == PriorityType.RANDOM;
   }
 
+  /**
+   * Creates a copy of the specified ScheduleParameters whose actions may be
+   * executed in parallel. Parallel actions that are scheduled for the same tick
+   * and that have the same priority are executed concurrently as a single batch.
+   * All the actions in a batch will have completed before any action with a
+   * lower priority is executed. Parallel actions should therefore not depend on
+   * each other's side effects, and should not share unsynchronized state such
+   * as the default random streams in RandomHelper.
+   * 
+   * @param params
+   *          the parameters to copy
+   * @return a parallel copy of the specified parameters.
+   */
+  public static ScheduleParameters makeParallel(ScheduleParameters params) {
+    return new ScheduleParameters(params.start, params.frequency, params.interval,
+        params.priority, params.getPriorityType(), params.duration, true);
+  }
+
   /**
    * Creates a ScheduleParameters appropriate for scheduling a repeating action.
    * The action will start at the specified time, and repeat at the specified
@@ -490,6 +516,17 @@ public class ScheduleParameters {
     return duration;
   }
 
+  /**
+   * Gets whether or not actions scheduled with these parameters can be executed
+   * in parallel with other parallel actions of the same priority.
+   * 
+   * @return true if actions scheduled with these parameters can be executed in
+   *         parallel, otherwise false.
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
   /**
    * Gets the hash code for this schedule parameters.
    * 
@@ -518,13 +555,14 @@ public class ScheduleParameters {
     return otherParams.start == this.start && otherParams.frequency.equals(this.frequency)
         && otherParams.interval == this.interval
         && ((Double) otherParams.priority).equals(this.priority)
-        && otherParams.duration == this.duration && otherParams.pType == this.pType;
+        && otherParams.duration == this.duration && otherParams.pType == this.pType
+        && otherParams.parallel == this.parallel;
   }
 
   public String toString() {
     return String
         .format(
-            "ScheduleParameters[start: %f, frequency: %s, interval: %f, priority: %f, priorityType: %s, duration: %f]",
-            start, frequency, interval, priority, pType, duration);
+            "ScheduleParameters[start: %f, frequency: %s, interval: %f, priority: %f, priorityType: %s, duration: %f, parallel: %b]",
+            start, frequency, interval, priority, pType, duration, parallel);
   }
 }
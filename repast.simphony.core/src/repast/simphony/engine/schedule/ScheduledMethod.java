@@ -56,4 +56,16 @@ public @interface ScheduledMethod {
    * methods, if more than one agent is being scheduled by this annonation.
    */
   boolean shuffle() default true;
+  
+  /**
+   * Whether or not the method can be executed in parallel. If true, when the
+   * method is scheduled on all the agents in a context, the agents' methods
+   * are called concurrently and the schedule waits until all the calls have
+   * completed before executing the next action. Parallel methods of the same
+   * priority that are scheduled as separate actions are executed concurrently
+   * with each other. Default is false.
+   * 
+   * @see ScheduleParameters#makeParallel(ScheduleParameters)
+   */
+  boolean parallel() default false;
 }
@@ -0,0 +1,90 @@
+package repast.simphony.engine.watcher;
+
+import repast.simphony.engine.schedule.IAction;
+import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.engine.watcher.query.IBooleanExpression;
+import repast.simphony.random.RandomHelper;
+import repast.simphony.util.SimUtilities;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schedules the execution of the trigger at the time defined by the Watch,
+ * coalescing the changes made to the watched field before then. Instead of
+ * scheduling an action for every change, the watchees whose field changed are
+ * recorded together with the last value the field was set to, and a single
+ * action scheduled for all of them. When the action executes, the watchers of
+ * each watchee are found using that last value, so a watcher is triggered at
+ * most once for each watchee, however often the watchee's field changed.
+ *
+ * @see WatcherTrigger#setCoalesceNotifications(boolean)
+ */
+public class CoalescingTriggerScheduler extends AbstractTriggerScheduler {
+
+  private ISchedule schedule;
+  private double delta, priority;
+  // the batch to which changes are currently added
+  private Batch pending;
+
+  private class Batch implements IAction {
+
+    private Notifier2 notifier;
+    private double start;
+    // the watchees in the order they first changed and their last value
+    private Map<Object, Object> changes = new LinkedHashMap<Object, Object>();
+
+    public Batch(Notifier2 notifier, double start) {
+      this.notifier = notifier;
+      this.start = start;
+    }
+
+    public void execute() {
+      // changes made by the triggers go into the next batch
+      if (pending == this) pending = null;
+      List<Object> watchers = new ArrayList<Object>();
+      for (Map.Entry<Object, Object> entry : changes.entrySet()) {
+        Object watchee = entry.getKey();
+        Object value = entry.getValue();
+        for (Object watcher : notifier.watchers(false, condition, watchee)) {
+          if (condition.execute(watcher, watchee, value)) watchers.add(watcher);
+        }
+        if (watchers.size() > amtToTrigger) watchers.subList(amtToTrigger, watchers.size()).clear();
+        if (shuffle) SimUtilities.shuffle(watchers, RandomHelper.getUniform());
+        for (Object watcher : watchers) {
+          trigger.execute(watcher, watchee, value);
+        }
+        watchers.clear();
+      }
+    }
+  }
+
+  public CoalescingTriggerScheduler(NotifierTrigger trigger, ISchedule schedule, WatchParameters watchParams,
+                                    IBooleanExpression condition) {
+    super(trigger, condition, watchParams.getWatcherCount(), watchParams.doShuffleWatchers());
+    this.schedule = schedule;
+    this.delta = watchParams.getScheduleDelta();
+    this.priority = watchParams.getSchedulePriority();
+  }
+
+  /**
+   * Records the change to the watchee's field, scheduling the execution of the
+   * trigger for all the watchees changed at the current tick if this is the
+   * first such change.
+   *
+   * @param notifier the notifier responsible for this particular watch
+   * @param watchee  the watchee
+   * @param value    the new field value.
+   */
+  public void scheduleExecution(Notifier2 notifier, Object watchee, Object value) {
+    double start = schedule.getTickCount() + delta;
+    if (pending == null || pending.start != start) {
+      pending = new Batch(notifier, start);
+      schedule.schedule(ScheduleParameters.createOneTime(start, priority), pending);
+    }
+    pending.changes.put(watchee, value);
+  }
+}
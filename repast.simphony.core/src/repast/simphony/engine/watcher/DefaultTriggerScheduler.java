@@ -40,7 +40,7 @@ public class DefaultTriggerScheduler extends AbstractTriggerScheduler {
   public void scheduleExecution(Notifier2 notifier, Object watchee, Object value) {
     List<Object> watchers = new ArrayList<Object>();
     // create a list of the watchers that pass the condition.
-    for (Object watcher : notifier.watchers(false)) {
+    for (Object watcher : notifier.watchers(false, condition, watchee)) {
       if (condition.execute(watcher, watchee, value)) watchers.add(watcher);
     }
 
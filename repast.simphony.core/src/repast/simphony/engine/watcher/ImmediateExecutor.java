@@ -26,13 +26,13 @@ public class ImmediateExecutor extends AbstractTriggerScheduler {
    */
   public void scheduleExecution(Notifier2 notifier, Object watchee, Object value) {
     if (notifier.getWatcherCount() <= amtToTrigger) {
-      for (Object watcher : notifier.watchers(shuffle)) {
+      for (Object watcher : notifier.watchers(shuffle, condition, watchee)) {
         if (condition.execute(watcher, watchee, value))
           trigger.execute(watcher, watchee, value);
       }
     } else {
       int i = 0;
-      for (Iterator iter = notifier.watchers(shuffle).iterator(); iter.hasNext() && i < amtToTrigger;) {
+      for (Iterator iter = notifier.watchers(shuffle, condition, watchee).iterator(); iter.hasNext() && i < amtToTrigger;) {
         Object watcher = iter.next();
         if (condition.execute(watcher, watchee, value)) {
           trigger.execute(watcher, watchee, value);
@@ -1,8 +1,12 @@
 package repast.simphony.engine.watcher;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.ClassUtils;
@@ -11,6 +15,7 @@ import repast.simphony.engine.schedule.CallBackAction;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.engine.watcher.query.AndBooleanCondition;
 import repast.simphony.engine.watcher.query.BooleanExpressionCreator;
+import repast.simphony.engine.watcher.query.CandidateExpression;
 import repast.simphony.engine.watcher.query.DefaultBooleanExpression;
 import repast.simphony.engine.watcher.query.IBooleanExpression;
 import repast.simphony.random.RandomHelper;
@@ -62,7 +67,16 @@ public class Notifier2 {
   }
 
 
-  private Set<Object> watchers = new LinkedHashSet<Object>();
+  // the watchers and the order in which they were added
+  private Map<Object, Long> watchers = new LinkedHashMap<Object, Long>();
+  private long watcherCount = 0;
+  // reused when finding the candidate watchers
+  private Set<Object> candidates = new HashSet<Object>();
+  private Comparator<Object> addOrder = new Comparator<Object>() {
+    public int compare(Object o1, Object o2) {
+      return watchers.get(o1).compareTo(watchers.get(o2));
+    }
+  };
   private NotifierID id;
   private ISchedule schedule;
   private WatchParameters watchParams;
@@ -79,7 +93,7 @@ public class Notifier2 {
   public Notifier2(NotifierID id, WatchParameters params, ISchedule schedule) {
     this.id = id;
     this.schedule = schedule;
-    watchers.add(params.getWatcher());
+    addWatcher(params.getWatcher());
     this.watchParams = params;
   }
 
@@ -107,14 +121,47 @@ public class Notifier2 {
    */
   public Iterable<Object> watchers(boolean shuffle) {
     if (shuffle) {
-      List<Object> list = new ArrayList<Object>(watchers);
+      List<Object> list = new ArrayList<Object>(watchers.keySet());
       SimUtilities.shuffle(list, RandomHelper.getUniform());
       return list;
     } else {
-      return watchers;
+      return watchers.keySet();
     }
   }
 
+  /**
+   * Gets an iterable over the watchers for which the specified condition may
+   * be true for the specified watchee. If the condition is a
+   * {@link CandidateExpression}, e.g. a within or linked_to query, only the
+   * watchers among its candidates are iterated, in the order in which they were
+   * added to this Notifier unless shuffled. Otherwise, this is the same as
+   * {@link #watchers(boolean)}.
+   *
+   * @param shuffle   whether or not the iterable should be over shuffled
+   *                  list of the watchers.
+   * @param condition the condition that the watchers will be evaluated against
+   * @param watchee   the watchee
+   * @return an iterable over the watchers for which the condition may be true.
+   */
+  public Iterable<Object> watchers(boolean shuffle, IBooleanExpression condition, Object watchee) {
+    if (condition instanceof CandidateExpression && watchers.size() > 1) {
+      try {
+        if (((CandidateExpression) condition).findCandidates(watchee, watchers.size(), candidates)) {
+          List<Object> list = new ArrayList<Object>(Math.min(candidates.size(), watchers.size()));
+          for (Object candidate : candidates) {
+            if (watchers.containsKey(candidate)) list.add(candidate);
+          }
+          Collections.sort(list, addOrder);
+          if (shuffle) SimUtilities.shuffle(list, RandomHelper.getUniform());
+          return list;
+        }
+      } finally {
+        candidates.clear();
+      }
+    }
+    return watchers(shuffle);
+  }
+
   /**
    * Gets the number watchers managed by this Notifier.
    *
@@ -133,7 +180,7 @@ public class Notifier2 {
    * @param watcher the watcher to add
    */
   public void addWatcher(Object watcher) {
-    watchers.add(watcher);
+    if (!watchers.containsKey(watcher)) watchers.put(watcher, watcherCount++);
   }
 
   /**
@@ -169,6 +216,10 @@ public class Notifier2 {
               watchParams.doShuffleWatchers());
     }
 
+    WatcherTrigger watcherTrigger = WatcherTrigger.getInstance();
+    if (watcherTrigger != null && watcherTrigger.isCoalesceNotifications()) {
+      return new CoalescingTriggerScheduler(trigger, schedule, watchParams, andCondition);
+    }
     return new DefaultTriggerScheduler(trigger, schedule, watchParams, andCondition);
   }
 }
@@ -0,0 +1,27 @@
+package repast.simphony.engine.watcher;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for declaring the watchee fields that a method depends on. The
+ * fields are instrumented in the same way as those of a {@link Watch}, but no
+ * watcher is created. Code that reacts to changes in the fields registers a
+ * {@link WatcheeListener} with the {@link WatcherTrigger} instead.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface WatchedFields {
+
+  /**
+   * The fully qualified class name of the watchee.
+   */
+  String watcheeClassName();
+
+  /**
+   * A comma separated list of the field names to watch in the watchee class.
+   */
+  String watcheeFieldNames();
+}
@@ -398,6 +398,10 @@ public class WatcheeDataFinder {
               .getAttribute(AnnotationsAttribute.visibleTag);
           if (attr != null) {
             Annotation an = attr.getAnnotation("repast.simphony.engine.watcher.Watch");
+            if (an == null) {
+              // fields that are watched by a WatcheeListener
+              an = attr.getAnnotation("repast.simphony.engine.watcher.WatchedFields");
+            }
             if (an != null) {
               String watcheeName = ((StringMemberValue) an.getMemberValue("watcheeClassName"))
                   .getValue();
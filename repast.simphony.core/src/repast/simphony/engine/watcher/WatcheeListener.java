@@ -0,0 +1,21 @@
+package repast.simphony.engine.watcher;
+
+/**
+ * Interface for classes that are called directly whenever an instrumented
+ * field is set, without the query and trigger condition evaluation and
+ * scheduling of a watch.
+ *
+ * @see WatcherTrigger#addWatcheeListener(String, String, WatcheeListener)
+ */
+public interface WatcheeListener {
+
+  /**
+   * Called when the watched field has been set on the specified watchee.
+   *
+   * @param watchee
+   *          the object whose field was set
+   * @param value
+   *          the new value of the field
+   */
+  void fieldSet(Object watchee, Object value);
+}
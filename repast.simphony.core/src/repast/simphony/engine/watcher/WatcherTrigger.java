@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Triggers registered watchers when a watched field and so on in a watchee fires.
@@ -26,7 +28,11 @@ public class WatcherTrigger {
   private Map<String, Map<NotifierID, Notifier2>> notifierMap = new HashMap<String, Map<NotifierID, Notifier2>>();
   // watch and list of ids of the notifiers of that watcher
   private Map<Object, List<Notifier2>> objNotifierMap = new HashMap<Object, List<Notifier2>>();
+  // key ids the watchee class and field. These can be added while the
+  // simulation runs, so are concurrent.
+  private Map<String, List<WatcheeListener>> listenerMap = new ConcurrentHashMap<String, List<WatcheeListener>>();
   private WatcheeInstrumentor instrumentor;
+  private boolean coalesceNotifications = false;
 
   /**
    * Gets the instance of the WatcherTrigger. initInstance must have been
@@ -51,6 +57,31 @@ public class WatcherTrigger {
     this.instrumentor = instrumentor;
   }
 
+  /**
+   * Sets whether the notifications of watches that trigger later, rather than
+   * immediately, are coalesced. If so, a watcher is triggered at most once per
+   * watchee and tick with the last value the field was set to, and all the
+   * notifications of a watch for a tick are delivered by a single scheduled
+   * action. This applies to the watches whose first notification occurs after
+   * this is set. The default is false.
+   *
+   * @param coalesceNotifications whether to coalesce notifications
+   */
+  public void setCoalesceNotifications(boolean coalesceNotifications) {
+    this.coalesceNotifications = coalesceNotifications;
+  }
+
+  /**
+   * Gets whether the notifications of watches that trigger later are
+   * coalesced.
+   *
+   * @return whether the notifications of watches that trigger later are
+   *         coalesced.
+   */
+  public boolean isCoalesceNotifications() {
+    return coalesceNotifications;
+  }
+
   /**
    * Adds a watch of a field set.
    *
@@ -88,6 +119,50 @@ public class WatcherTrigger {
     notList.add(notifier);
   }
 
+  /**
+   * Adds a listener that is called whenever the named field is set. The
+   * listener is called for any object whose class declares or inherits the
+   * field, immediately after the field is set and on the thread that set it.
+   * The field must have been instrumented, for example by a
+   * {@link WatchedFields} annotation.
+   *
+   * @param className the name of the class that has the field
+   * @param fieldName the name of the field
+   * @param listener the listener to call
+   * @return true if the listener was added, or false if the class has not been
+   *         instrumented.
+   */
+  public boolean addWatcheeListener(String className, String fieldName, WatcheeListener listener) {
+    if (!instrumentor.isInstrumented(className)) {
+      return false;
+    }
+
+    String id = new SharedWatchParameters(className, fieldName).createWatcheeID();
+    List<WatcheeListener> listeners = listenerMap.get(id);
+    if (listeners == null) {
+      listeners = new CopyOnWriteArrayList<WatcheeListener>();
+      List<WatcheeListener> current = listenerMap.putIfAbsent(id, listeners);
+      if (current != null) listeners = current;
+    }
+    listeners.add(listener);
+    return true;
+  }
+
+  /**
+   * Removes a listener added with addWatcheeListener.
+   *
+   * @param className the name of the class that has the field
+   * @param fieldName the name of the field
+   * @param listener the listener to remove
+   */
+  public void removeWatcheeListener(String className, String fieldName, WatcheeListener listener) {
+    String id = new SharedWatchParameters(className, fieldName).createWatcheeID();
+    List<WatcheeListener> listeners = listenerMap.get(id);
+    if (listeners != null) {
+      listeners.remove(listener);
+    }
+  }
+
   /**
    * Removes all the Notifiers associated with the specified watcher.
    *
@@ -109,6 +184,15 @@ public class WatcherTrigger {
   // Any change to the field by any class in the heirarchy
   // will trigger with this id. 
   private void notify(String id, Object watchee, Object val) {
+    if (listenerMap.size() > 0) {
+      List<WatcheeListener> listeners = listenerMap.get(id);
+      if (listeners != null) {
+        for (WatcheeListener listener : listeners) {
+          listener.fieldSet(watchee, val);
+        }
+      }
+    }
+
     if (notifierMap.size() > 0) {
       Map<NotifierID, Notifier2> notifiers = notifierMap.get(id);
       if (notifiers != null) {
@@ -146,6 +230,7 @@ public class WatcherTrigger {
     notify(id, watchee, val);
   }
 
+  // the watchee listeners aren't cleared as they aren't tied to a run
   public void clearNotifiers() {
     notifierMap.clear();
     objNotifierMap.clear();
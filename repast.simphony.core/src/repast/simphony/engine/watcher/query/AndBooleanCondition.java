@@ -1,5 +1,6 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
 
 /**
  * IBooleanExpression that when evaluated returns the logical 'and' of two child expressions.
@@ -7,7 +8,7 @@ package repast.simphony.engine.watcher.query;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class AndBooleanCondition implements IBooleanExpression {
+public class AndBooleanCondition implements CandidateExpression {
 
 	private IBooleanExpression first, second;
 	private String exp;
@@ -24,6 +25,14 @@ public class AndBooleanCondition implements IBooleanExpression {
 	}
 
 	public boolean execute(Object watcher, Object watchee, Object field) {
-		return (first.execute(watcher, watchee, field) && second.execute(watcher, watchee, field));
+		// the watchee condition is compiled and usually far cheaper than the query
+		return (second.execute(watcher, watchee, field) && first.execute(watcher, watchee, field));
+	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		return (first instanceof CandidateExpression && ((CandidateExpression) first).findCandidates(
+				watchee, watcherCount, candidates))
+				|| (second instanceof CandidateExpression && ((CandidateExpression) second)
+						.findCandidates(watchee, watcherCount, candidates));
 	}
 }
@@ -1,10 +1,12 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 /**
  * @author Nick Collier
  * @version $Revision$ $Date$
  */
-public class AndBooleanExpression implements IBooleanExpression {
+public class AndBooleanExpression implements CandidateExpression {
 
 	private IBooleanExpression lhs;
 	private IBooleanExpression rhs;
@@ -21,4 +23,11 @@ public class AndBooleanExpression implements IBooleanExpression {
 	public String getExpression() {
 		return lhs.getExpression() + " and " + rhs.getExpression();
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		return (lhs instanceof CandidateExpression && ((CandidateExpression) lhs).findCandidates(watchee,
+				watcherCount, candidates))
+				|| (rhs instanceof CandidateExpression && ((CandidateExpression) rhs).findCandidates(
+						watchee, watcherCount, candidates));
+	}
 }
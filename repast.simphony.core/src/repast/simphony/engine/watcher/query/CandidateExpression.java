@@ -0,0 +1,32 @@
+package repast.simphony.engine.watcher.query;
+
+import java.util.Collection;
+
+/**
+ * An IBooleanExpression that can find the watchers for which it may be true
+ * for a particular watchee, without being evaluated for every watcher. For
+ * example, a watcher can only be within some distance of a watchee in a grid if
+ * it's in one of the cells around the watchee.
+ *
+ */
+public interface CandidateExpression extends IBooleanExpression {
+
+	/**
+	 * Adds the objects for which this expression may be true for the specified
+	 * watchee to the candidates. The candidates may include objects for which
+	 * the expression is false, but must include every object for which it is
+	 * true.
+	 *
+	 * @param watchee
+	 *            the watchee
+	 * @param watcherCount
+	 *            the number of watchers. The candidates should not be found if
+	 *            finding them is likely to cost more than evaluating this
+	 *            expression that many times.
+	 * @param candidates
+	 *            the collection to add the candidates to
+	 * @return true if the candidates were found, or false if this expression
+	 *         must be evaluated for every watcher.
+	 */
+	boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates);
+}
@@ -0,0 +1,145 @@
+package repast.simphony.engine.watcher.query;
+
+import java.util.Collection;
+
+import repast.simphony.space.continuous.AbstractContinuousSpace;
+import repast.simphony.space.continuous.ContinuousSpace;
+import repast.simphony.space.continuous.NdPoint;
+import repast.simphony.space.graph.Network;
+import repast.simphony.space.grid.Grid;
+import repast.simphony.space.grid.GridDimensions;
+import repast.simphony.space.grid.GridPoint;
+import repast.simphony.space.projection.Projection;
+
+/**
+ * Finds the candidate watchers of the query expressions in a projection.
+ *
+ */
+class Candidates {
+
+	private Candidates() {
+	}
+
+	/**
+	 * Adds the objects in the grid cells within the specified Moore extent of
+	 * the watchee's cell, including that cell, to the candidates.
+	 *
+	 * @return false if there are more cells than watchers.
+	 */
+	static boolean inGrid(Grid<?> grid, Object watchee, int extent, int watcherCount,
+			Collection<Object> candidates) {
+		GridPoint point = grid.getLocation(watchee);
+		if (point == null)
+			return true;
+
+		GridDimensions dims = grid.getDimensions();
+		int size = dims.size();
+		int[] origin = dims.originToIntArray(null);
+		int[] mins = new int[size];
+		int[] maxs = new int[size];
+		long cells = 1;
+		for (int i = 0; i < size; i++) {
+			int coord = point.getCoord(i);
+			int dimMin = -origin[i];
+			int dimMax = dims.getDimension(i) - origin[i] - 1;
+			mins[i] = coord - extent;
+			maxs[i] = coord + extent;
+			// a non periodic grid ends at its borders, and the neighborhood in a
+			// periodic one would wrap onto itself
+			if (!grid.isPeriodic() || maxs[i] - mins[i] > dimMax - dimMin) {
+				mins[i] = Math.max(mins[i], dimMin);
+				maxs[i] = Math.min(maxs[i], dimMax);
+			}
+			cells *= maxs[i] - mins[i] + 1;
+		}
+		if (cells > watcherCount)
+			return false;
+
+		int[] location = mins.clone();
+		while (true) {
+			for (Object obj : grid.getObjectsAt(location)) {
+				candidates.add(obj);
+			}
+			int i = 0;
+			while (i < size && location[i] == maxs[i]) {
+				location[i] = mins[i];
+				i++;
+			}
+			if (i == size)
+				return true;
+			location[i]++;
+		}
+	}
+
+	/**
+	 * Adds the objects within the specified distance of the watchee to the
+	 * candidates.
+	 *
+	 * @return false if the space doesn't index the locations of its objects.
+	 */
+	@SuppressWarnings("unchecked")
+	static boolean inSpace(ContinuousSpace<?> space, Object watchee, double distance,
+			Collection<Object> candidates) {
+		if (!(space instanceof AbstractContinuousSpace)
+				|| !((AbstractContinuousSpace<?, ?>) space).isIndexed())
+			return false;
+		NdPoint point = space.getLocation(watchee);
+		if (point != null) {
+			((AbstractContinuousSpace<Object, ?>) space).getObjectsWithin(candidates, point,
+					distance, null);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the candidates of a within, within_moore or within_vn expression in
+	 * the projection.
+	 *
+	 * @param gridOnly
+	 *            whether the expression is only true in grids
+	 * @return false if the candidates can't be found in the projection.
+	 */
+	static boolean within(Projection<?> proj, Object watchee, double distance, boolean gridOnly,
+			int watcherCount, Collection<Object> candidates) {
+		if (proj instanceof Grid) {
+			return inGrid((Grid<?>) proj, watchee, (int) distance, watcherCount, candidates);
+		}
+		if (gridOnly) {
+			// only unknown projections might evaluate the predicate as true
+			return proj instanceof ContinuousSpace || proj instanceof Network;
+		}
+		if (proj instanceof ContinuousSpace) {
+			return inSpace((ContinuousSpace<?>) proj, watchee, distance, candidates);
+		}
+		// the path length in a network depends on the edge weights
+		return false;
+	}
+
+	/**
+	 * Adds the candidates of a linked, linked_to or linked_from expression in
+	 * the projection.
+	 *
+	 * @param to
+	 *            whether the watcher must link to the watchee
+	 * @param from
+	 *            whether the watcher must link from the watchee
+	 * @return false if the candidates can't be found in the projection.
+	 */
+	@SuppressWarnings("unchecked")
+	static boolean linked(Projection<?> proj, Object watchee, boolean to, boolean from,
+			Collection<Object> candidates) {
+		if (proj instanceof Network) {
+			Network<Object> net = (Network<Object>) proj;
+			Iterable<Object> iter = to ? (from ? net.getAdjacent(watchee) : net
+					.getPredecessors(watchee)) : net.getSuccessors(watchee);
+			// null if the watchee isn't in the network
+			if (iter != null) {
+				for (Object obj : iter) {
+					candidates.add(obj);
+				}
+			}
+			return true;
+		}
+		return proj instanceof Grid || proj instanceof ContinuousSpace;
+	}
+}
@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.Linked;
 import repast.simphony.space.projection.Projection;
@@ -11,7 +13,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class LinkedBooleanExpression implements IBooleanExpression {
+public class LinkedBooleanExpression implements CandidateExpression {
 
 	private Context context;
 
@@ -40,4 +42,12 @@ public class LinkedBooleanExpression implements IBooleanExpression {
 
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Iterable<Projection<?>> iter = context.getProjections();
+		for (Projection<?> proj : iter) {
+			if (!Candidates.linked(proj, watchee, true, true, candidates)) return false;
+		}
+		return true;
+	}
 }
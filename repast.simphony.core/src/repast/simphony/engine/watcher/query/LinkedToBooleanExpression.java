@@ -1,5 +1,6 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
 
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.LinkedTo;
@@ -13,7 +14,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class LinkedToBooleanExpression implements IBooleanExpression {
+public class LinkedToBooleanExpression implements CandidateExpression {
 
 	private Context context;
 
@@ -42,4 +43,12 @@ public class LinkedToBooleanExpression implements IBooleanExpression {
 
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Iterable<Projection<?>> iter = context.getProjections();
+		for (Projection<?> proj : iter) {
+			if (!Candidates.linked(proj, watchee, true, false, candidates)) return false;
+		}
+		return true;
+	}
 }
@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.Linked;
 import repast.simphony.space.projection.Projection;
@@ -11,7 +13,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class NamedLinkedBooleanExpression implements IBooleanExpression {
+public class NamedLinkedBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private String name;
@@ -34,4 +36,9 @@ public class NamedLinkedBooleanExpression implements IBooleanExpression {
 
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Projection<?> proj = context.getProjection(name);
+		return proj == null || Candidates.linked(proj, watchee, true, true, candidates);
+	}
 }
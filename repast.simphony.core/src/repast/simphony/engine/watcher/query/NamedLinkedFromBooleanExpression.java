@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.LinkedFrom;
 import repast.simphony.space.projection.Projection;
@@ -12,7 +14,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class NamedLinkedFromBooleanExpression implements IBooleanExpression {
+public class NamedLinkedFromBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private String name;
@@ -43,4 +45,9 @@ public class NamedLinkedFromBooleanExpression implements IBooleanExpression {
 
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Projection<?> proj = context.getProjection(name);
+		return proj == null || Candidates.linked(proj, watchee, false, true, candidates);
+	}
 }
@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.Within;
 import repast.simphony.space.projection.Projection;
@@ -11,7 +13,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class NamedWithinBooleanExpression implements IBooleanExpression {
+public class NamedWithinBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private double distance;
@@ -37,4 +39,9 @@ public class NamedWithinBooleanExpression implements IBooleanExpression {
 		}
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Projection<?> proj = context.getProjection(name);
+		return proj == null || Candidates.within(proj, watchee, distance, false, watcherCount, candidates);
+	}
 }
@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.WithinVN;
 import repast.simphony.space.projection.Projection;
@@ -12,7 +14,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class NamedWithinVNBooleanExpression implements IBooleanExpression {
+public class NamedWithinVNBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private double distance;
@@ -34,4 +36,9 @@ public class NamedWithinVNBooleanExpression implements IBooleanExpression {
 		if (proj != null) return proj.evaluate(within);
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Projection<?> proj = context.getProjection(name);
+		return proj == null || Candidates.within(proj, watchee, distance, true, watcherCount, candidates);
+	}
 }
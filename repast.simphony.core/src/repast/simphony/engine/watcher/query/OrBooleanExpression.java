@@ -1,10 +1,12 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 /**
  * @author Nick Collier
  * @version $Revision$ $Date$
  */
-public class OrBooleanExpression implements IBooleanExpression {
+public class OrBooleanExpression implements CandidateExpression {
 
 	private IBooleanExpression lhs;
 	private IBooleanExpression rhs;
@@ -21,4 +23,11 @@ public class OrBooleanExpression implements IBooleanExpression {
 	public String getExpression() {
 		return lhs.getExpression() + " or " + rhs.getExpression();
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		// the watchers that either expression may be true for
+		return lhs instanceof CandidateExpression && rhs instanceof CandidateExpression
+				&& ((CandidateExpression) lhs).findCandidates(watchee, watcherCount, candidates)
+				&& ((CandidateExpression) rhs).findCandidates(watchee, watcherCount, candidates);
+	}
 }
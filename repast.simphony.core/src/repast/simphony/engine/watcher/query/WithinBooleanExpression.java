@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.Within;
 import repast.simphony.space.projection.Projection;
@@ -11,7 +13,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class WithinBooleanExpression implements IBooleanExpression {
+public class WithinBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private double distance;
@@ -33,4 +35,12 @@ public class WithinBooleanExpression implements IBooleanExpression {
 		}
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Iterable<Projection<?>> iter = context.getProjections();
+		for (Projection<?> proj : iter) {
+			if (!Candidates.within(proj, watchee, distance, false, watcherCount, candidates)) return false;
+		}
+		return true;
+	}
 }
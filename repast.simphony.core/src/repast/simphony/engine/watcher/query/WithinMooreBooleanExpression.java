@@ -1,5 +1,7 @@
 package repast.simphony.engine.watcher.query;
 
+import java.util.Collection;
+
 import repast.simphony.context.Context;
 import repast.simphony.query.space.projection.WithinMoore;
 import repast.simphony.space.projection.Projection;
@@ -12,7 +14,7 @@ import repast.simphony.space.projection.Projection;
  * @author Nick Collier
  * @version $Revision: 1.1 $ $Date: 2005/12/21 22:25:34 $
  */
-public class WithinMooreBooleanExpression implements IBooleanExpression {
+public class WithinMooreBooleanExpression implements CandidateExpression {
 
 	private Context context;
 	private double distance;
@@ -34,4 +36,12 @@ public class WithinMooreBooleanExpression implements IBooleanExpression {
 		}
 		return false;
 	}
+
+	public boolean findCandidates(Object watchee, int watcherCount, Collection<Object> candidates) {
+		Iterable<Projection<?>> iter = context.getProjections();
+		for (Projection<?> proj : iter) {
+			if (!Candidates.within(proj, watchee, distance, true, watcherCount, candidates)) return false;
+		}
+		return true;
+	}
 }
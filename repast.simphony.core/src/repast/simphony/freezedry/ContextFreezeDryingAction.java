@@ -8,6 +8,10 @@ import simphony.util.messages.MessageCenter;
 
 /**
  * An action that will freeze dry a context of a specified id when it is executed.
+ * When incremental, each execution after the first only writes the objects that
+ * changed since the one before.
+ * 
+ * @see FreezeDryedRegistry#setIncremental(boolean)
  * 
  * @author Jerry Vos
  */
@@ -25,6 +29,10 @@ public class ContextFreezeDryingAction implements IAction {
 	
 	protected FreezeDryedDataSource dataSource;
 	
+	protected boolean incremental;
+	
+	protected int baseInterval;
+	
 	
 	public ContextFreezeDryingAction(Object contextId, FreezeDryedDataSource dataSource) {
 		super();
@@ -41,6 +49,8 @@ public class ContextFreezeDryingAction implements IAction {
 			registry = new FreezeDryedRegistry();
 			registry.setDataSource(dataSource);
 		}
+		registry.setIncremental(incremental);
+		registry.setBaseInterval(baseInterval);
 		Context context;
 		if (contextId.equals(USE_ROOT_ID)) {
 			context = RunState.getInstance().getMasterContext();
@@ -69,4 +79,36 @@ public class ContextFreezeDryingAction implements IAction {
 	public FreezeDryedDataSource getDataSource() {
 		return dataSource;
 	}
+	
+	/**
+	 * Sets whether each execution after the first only writes the objects that
+	 * changed since the one before.
+	 * 
+	 * @param incremental
+	 *            whether to write incremental checkpoints
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	
+	public boolean isIncremental() {
+		return incremental;
+	}
+	
+	/**
+	 * Sets the number of incremental checkpoints after which all the objects are
+	 * written again.
+	 * 
+	 * @see FreezeDryedRegistry#setBaseInterval(int)
+	 * 
+	 * @param baseInterval
+	 *            the number of checkpoints between base checkpoints
+	 */
+	public void setBaseInterval(int baseInterval) {
+		this.baseInterval = baseInterval;
+	}
+	
+	public int getBaseInterval() {
+		return baseInterval;
+	}
 }
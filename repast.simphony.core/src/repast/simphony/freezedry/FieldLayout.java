@@ -0,0 +1,162 @@
+package repast.simphony.freezedry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import repast.simphony.util.bytecode.ByteCodeUtilities;
+import repast.simphony.util.bytecode.FieldAccessor;
+
+/**
+ * The fields of a class that are freeze dried, that is, the fields declared by
+ * the class that are neither static, final nor transient. A layout is built
+ * once per class and cached, together with an accessor for each field and the
+ * keys under which the field is stored in a {@link FreezeDryedObject}, so that
+ * freeze drying an object doesn't walk the class's fields reflectively.
+ *
+ * @see ByteCodeUtilities#getFieldAccessor(Field)
+ */
+public class FieldLayout {
+
+	/**
+	 * A field of the layout.
+	 */
+	public static class Entry {
+		private final Field field;
+		private final FieldAccessor accessor;
+		private final boolean primitive;
+		private final String name;
+		private final String qualifiedName;
+		private final String classKey;
+		private final String idKey;
+
+		private Entry(Field field) {
+			this.field = field;
+			accessor = ByteCodeUtilities.getInstance().getFieldAccessor(field);
+			FieldUtilities util = FieldUtilities.INSTANCE;
+			primitive = util.isPrimitive(field) || util.isPrimitiveArray(field);
+			name = field.getName();
+			qualifiedName = field.getDeclaringClass().getName() + "_" + name;
+			classKey = name + FreezeDryer.CLASS_MARKER;
+			idKey = name + FreezeDryer.ID_MARKER;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public Class<?> getType() {
+			return field.getType();
+		}
+
+		/**
+		 * Gets whether the field's value is stored directly, as it's a primitive,
+		 * a String or a primitive array, rather than as a reference to another
+		 * freeze dried object.
+		 *
+		 * @return whether the field's value is stored directly
+		 */
+		public boolean isPrimitive() {
+			return primitive;
+		}
+
+		/**
+		 * Gets the field's name.
+		 *
+		 * @return the field's name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets the field's name prefixed with the name of its declaring class.
+		 *
+		 * @return the field's name prefixed with the name of its declaring class.
+		 */
+		public String getQualifiedName() {
+			return qualifiedName;
+		}
+
+		/**
+		 * Gets the key under which the class of a referenced object is stored.
+		 *
+		 * @return the key under which the class of a referenced object is stored.
+		 */
+		public String getClassKey() {
+			return classKey;
+		}
+
+		/**
+		 * Gets the key under which the id of a referenced object is stored.
+		 *
+		 * @return the key under which the id of a referenced object is stored.
+		 */
+		public String getIdKey() {
+			return idKey;
+		}
+
+		public Object get(Object target) throws IllegalAccessException {
+			return accessor.get(target);
+		}
+
+		public void set(Object target, Object value) throws IllegalAccessException {
+			accessor.set(target, value);
+		}
+
+		public String toString() {
+			return field.toString();
+		}
+	}
+
+	// keyed by class, so a layout goes away with the class it describes
+	private static final ClassValue<FieldLayout> layouts = new ClassValue<FieldLayout>() {
+		@Override
+		protected FieldLayout computeValue(Class<?> type) {
+			return new FieldLayout(type);
+		}
+	};
+
+	private final Entry[] entries;
+
+	private FieldLayout(Class<?> type) {
+		List<Entry> list = new ArrayList<Entry>();
+		for (Field field : type.getDeclaredFields()) {
+			int modifiers = field.getModifiers();
+			if (!Modifier.isTransient(modifiers) && !Modifier.isFinal(modifiers)
+					&& !Modifier.isStatic(modifiers)) {
+				list.add(new Entry(field));
+			}
+		}
+		entries = list.toArray(new Entry[list.size()]);
+	}
+
+	/**
+	 * Gets the layout of the fields declared by the specified class. Fields
+	 * inherited from its super classes are not included.
+	 *
+	 * @param type
+	 *            the class
+	 * @return the layout of the fields declared by the class.
+	 * @throws FreezeDryingException
+	 *             if the fields cannot be accessed
+	 */
+	public static FieldLayout getLayout(Class<?> type) throws FreezeDryingException {
+		try {
+			return layouts.get(type);
+		} catch (RuntimeException ex) {
+			throw new FreezeDryingException("Unable to access the fields of '" + type.getName()
+					+ "'", ex);
+		}
+	}
+
+	/**
+	 * Gets the fields of this layout.
+	 *
+	 * @return the fields of this layout.
+	 */
+	public Entry[] getEntries() {
+		return entries;
+	}
+}
@@ -2,10 +2,13 @@ package repast.simphony.freezedry;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import repast.simphony.context.Context;
@@ -20,6 +23,7 @@ import repast.simphony.freezedry.freezedryers.ContextFreezeDryer;
 import repast.simphony.freezedry.freezedryers.DefaultFreezeDryer;
 import repast.simphony.freezedry.freezedryers.MapFreezeDryer;
 import repast.simphony.freezedry.freezedryers.PrimitiveFreezeDryer;
+import repast.simphony.freezedry.freezedryers.ValueLayerStoreFreezeDryer;
 import simphony.util.messages.MessageCenter;
 
 public class FreezeDryedRegistry {
@@ -39,6 +43,13 @@ public class FreezeDryedRegistry {
 	private LinkedList<FreezeDryer> driers;
 
 	private FreezeDryedDataSource dataSource;
+
+	// the dryers of values that are created anew each time they're freeze dried
+	private Set<FreezeDryer> valueDryers;
+
+	private transient IncrementalCheckpoint checkpoint;
+
+	private int baseInterval;
 	
 //	private FreezeDryedDataSource reader;
 //
@@ -61,6 +72,14 @@ public class FreezeDryedRegistry {
 		driers.add(new ClassFreezeDryer(this));
     driers.add(new AmountFreezeDryer());
     driers.add(new BigDecimalFreezeDryer());
+    driers.add(new ValueLayerStoreFreezeDryer(this));
+
+    valueDryers = Collections.newSetFromMap(new IdentityHashMap<FreezeDryer, Boolean>());
+    for (FreezeDryer dryer : driers) {
+      if (!(dryer instanceof ContextFreezeDryer) && !(dryer instanceof ValueLayerStoreFreezeDryer)) {
+        valueDryers.add(dryer);
+      }
+    }
     
     // Add additional driers from the projection registry.
     for (ProjectionRegistryData data : ProjectionRegistry.getRegistryData()){
@@ -69,6 +88,9 @@ public class FreezeDryedRegistry {
   }
 
 	public String getId(Object o) throws FreezeDryingException {
+		if (checkpoint != null) {
+			return checkpoint.getId(o);
+		}
 		String id = objectCache.get(o);
 		if (id == null) {
 			id = freezeDryObject(o);
@@ -180,7 +202,13 @@ public class FreezeDryedRegistry {
 	}
 
   public String freezeDry(Object obj) throws FreezeDryingException {
-    String retVal = freezeDryObject(obj);
+    String retVal;
+    if (checkpoint != null) {
+      retVal = checkpoint.getId(obj);
+      checkpoint.finish();
+    } else {
+      retVal = freezeDryObject(obj);
+    }
     dataSource.close();
     return retVal;
   }
@@ -228,5 +256,58 @@ public class FreezeDryedRegistry {
 	public void reset() {
 		objectCache.clear();
 		keyCache.clear();
+		if (checkpoint != null) {
+			checkpoint.reset();
+		}
+	}
+
+	/**
+	 * Sets whether successive calls to {@link #freezeDry(Object)} write incremental
+	 * checkpoints. The first checkpoint writes all the objects, and each following
+	 * one only the objects that changed since the checkpoint before it, together
+	 * with the keys of the objects that were removed. The objects keep their keys
+	 * from one checkpoint to the next, so reading the checkpoints back with a
+	 * {@link repast.simphony.freezedry.datasource.DeltaDataSource} that layers them
+	 * in order restores the objects as of the last one.
+	 * 
+	 * @see IncrementalCheckpoint
+	 * 
+	 * @param incremental
+	 *            whether to write incremental checkpoints
+	 */
+	public void setIncremental(boolean incremental) {
+		if (incremental && checkpoint == null) {
+			checkpoint = new IncrementalCheckpoint(this);
+		} else if (!incremental) {
+			checkpoint = null;
+		}
+	}
+
+	public boolean isIncremental() {
+		return checkpoint != null;
+	}
+
+	/**
+	 * Sets the number of incremental checkpoints after which all the objects are
+	 * written again, so that the checkpoints before can be discarded. With 0, the
+	 * default, only the first checkpoint writes all the objects.
+	 * 
+	 * @param baseInterval
+	 *            the number of checkpoints between base checkpoints
+	 */
+	public void setBaseInterval(int baseInterval) {
+		this.baseInterval = baseInterval;
+	}
+
+	public int getBaseInterval() {
+		return baseInterval;
+	}
+
+	boolean isValueDryer(FreezeDryer dryer) {
+		return valueDryers.contains(dryer);
+	}
+
+	void write(FreezeDryedObject fdo) throws FreezeDryingException {
+		dataSource.write(fdo);
 	}
 }
@@ -0,0 +1,331 @@
+package repast.simphony.freezedry;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import repast.simphony.context.Context;
+import repast.simphony.util.collections.Pair;
+
+/**
+ * Freeze dries the objects of a {@link FreezeDryedRegistry} in incremental
+ * mode. Every checkpoint freeze dries all the objects reachable from the root
+ * as usual, but only writes those whose freeze dryed form changed since the
+ * previous checkpoint. The first checkpoint, and every checkpoint that is
+ * marked as a base, writes everything.<p>
+ *
+ * For an unchanged object to be skipped, it has to be written under the same
+ * key as before. Objects with an identity of their own, like agents, keep the
+ * key they were given the first time they were freeze dried. Values that the
+ * freeze dryers create anew each time, like collections, maps and their
+ * entries, and arrays, are keyed by their contents, together with the key of
+ * the nearest enclosing object with an identity.<p>
+ *
+ * Each checkpoint ends with an object of this type that lists the keys of the
+ * objects that are no longer reachable, so that a reader replaying the
+ * checkpoints can tell which of the objects written earlier are obsolete.<p>
+ *
+ * Changes are only detected per freeze dryed object. A context's membership
+ * and each of its projections are freeze dried as one object each, so adding,
+ * removing or moving a single agent rewrites the whole membership list or
+ * projection, however many agents it holds.
+ *
+ * @see FreezeDryedRegistry#setIncremental(boolean)
+ * @see repast.simphony.freezedry.datasource.DeltaDataSource
+ */
+public class IncrementalCheckpoint {
+
+	/**
+	 * The key of the checkpoint's sequence number, starting with 0.
+	 */
+	public static final String SEQUENCE_KEY = "sequence";
+
+	/**
+	 * The key of whether the checkpoint is a base, that contains all the objects.
+	 */
+	public static final String BASE_KEY = "base";
+
+	/**
+	 * The key of the array of the keys of the objects that are no longer
+	 * reachable.
+	 */
+	public static final String REMOVED_KEY = "removed";
+
+	private final FreezeDryedRegistry registry;
+
+	private int sequence;
+
+	// the fingerprints of the objects written, or skipped as unchanged, by the
+	// previous checkpoint, by key
+	private Map<String, Fingerprint> previous = new HashMap<String, Fingerprint>();
+
+	// the keys of the objects with an identity from the previous checkpoint
+	private Map<Object, String> stableKeys = new IdentityHashMap<Object, String>();
+
+	// this checkpoint's keys, objects and fingerprints
+	private Map<Object, String> keys = new IdentityHashMap<Object, String>();
+	private Map<Object, String> identities = new IdentityHashMap<Object, String>();
+	private Map<String, Object> objects = new HashMap<String, Object>();
+	private Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+
+	// keys of the enclosing objects with an identity, innermost last
+	private List<String> anchors = new ArrayList<String>();
+	// values being freeze dried, mapped to whether they were referred to
+	// while being freeze dried, in which case they keep their provisional key
+	private Map<Object, Boolean> provisional = new IdentityHashMap<Object, Boolean>();
+
+	IncrementalCheckpoint(FreezeDryedRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Discards the state of an unfinished checkpoint.
+	 */
+	void reset() {
+		keys.clear();
+		identities.clear();
+		objects.clear();
+		fingerprints.clear();
+		anchors.clear();
+		provisional.clear();
+	}
+
+	String getId(Object o) throws FreezeDryingException {
+		String key = keys.get(o);
+		if (key == null) {
+			return freezeDry(o);
+		}
+		if (provisional.containsKey(o)) {
+			provisional.put(o, Boolean.TRUE);
+		}
+		return key;
+	}
+
+	@SuppressWarnings("unchecked")
+	private String freezeDry(Object o) throws FreezeDryingException {
+		FreezeDryer dryer = registry.getFreezeDryer(o.getClass());
+		boolean value = false;
+		String key;
+		if (o instanceof Context) {
+			key = ((Context) o).getId().toString();
+		} else {
+			key = stableKeys.get(o);
+			// values that were part of a cycle keep their key like objects with
+			// an identity
+			value = key == null && (registry.isValueDryer(dryer) || o instanceof Pair);
+		}
+		if (key == null) {
+			key = registry.generateObjectKey();
+		}
+		keys.put(o, key);
+		objects.put(key, o);
+
+		FreezeDryedObject fdo;
+		if (value) {
+			provisional.put(o, Boolean.FALSE);
+		} else {
+			anchors.add(key);
+		}
+		try {
+			fdo = dryer.freezeDry(key, o);
+		} finally {
+			if (value) {
+				value = !provisional.remove(o);
+			} else {
+				anchors.remove(anchors.size() - 1);
+			}
+		}
+
+		Hasher hasher = new Hasher();
+		hasher.add(fdo);
+		Fingerprint fingerprint = hasher.getFingerprint();
+		if (value) {
+			// keyed by contents, unless it's part of a cycle
+			hasher.add(anchors.isEmpty() ? null : anchors.get(anchors.size() - 1));
+			String contentKey = hasher.toString();
+			String candidate = contentKey;
+			for (int i = 1; objects.containsKey(candidate); i++) {
+				candidate = contentKey + "_" + i;
+			}
+			objects.remove(key);
+			key = candidate;
+			keys.put(o, key);
+			objects.put(key, o);
+			fdo.setId(key);
+		} else if (!(o instanceof Context)) {
+			identities.put(o, key);
+		}
+
+		fingerprints.put(key, fingerprint);
+		if (!fingerprint.equals(previous.get(key))) {
+			registry.write(fdo);
+		}
+		return key;
+	}
+
+	/**
+	 * Finishes the checkpoint, writing the list of the objects that are no
+	 * longer reachable.
+	 */
+	void finish() throws FreezeDryingException {
+		List<String> removed = new ArrayList<String>();
+		for (String key : previous.keySet()) {
+			if (!fingerprints.containsKey(key)) {
+				removed.add(key);
+			}
+		}
+		FreezeDryedObject fdo = new FreezeDryedObject(UUID.randomUUID().toString(),
+				IncrementalCheckpoint.class);
+		fdo.put(SEQUENCE_KEY, sequence);
+		fdo.put(BASE_KEY, previous.isEmpty());
+		fdo.put(REMOVED_KEY, removed.toArray(new String[removed.size()]));
+		registry.write(fdo);
+
+		sequence++;
+		int baseInterval = registry.getBaseInterval();
+		if (baseInterval > 0 && sequence % baseInterval == 0) {
+			previous = new HashMap<String, Fingerprint>();
+		} else {
+			previous = fingerprints;
+		}
+		// values are keyed by their contents, so only the objects with an
+		// identity need to be remembered
+		stableKeys = identities;
+		identities = new IdentityHashMap<Object, String>();
+		fingerprints = new HashMap<String, Fingerprint>();
+		reset();
+	}
+
+	/**
+	 * The 128 bit hash of a freeze dryed object.
+	 */
+	private static final class Fingerprint {
+		private final long h1;
+		private final long h2;
+
+		private Fingerprint(long h1, long h2) {
+			this.h1 = h1;
+			this.h2 = h2;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Fingerprint)) {
+				return false;
+			}
+			Fingerprint other = (Fingerprint) obj;
+			return h1 == other.h1 && h2 == other.h2;
+		}
+
+		public int hashCode() {
+			return (int) (h1 ^ (h1 >>> 32));
+		}
+	}
+
+	/**
+	 * A 128 bit hash of freeze dryed objects.
+	 */
+	private static class Hasher {
+		private long h1 = 0x6a09e667f3bcc908L;
+		private long h2 = 0xbb67ae8584caa73bL;
+
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+		void add(long v) {
+			h1 = mix(h1 ^ mix(v + 0x9e3779b97f4a7c15L));
+			h2 = mix(h2 + mix(v ^ 0xc2b2ae3d27d4eb4fL));
+		}
+
+		void add(String s) {
+			if (s == null) {
+				add(-1);
+				return;
+			}
+			int length = s.length();
+			add(length);
+			for (int i = 0; i < length; i += 4) {
+				long v = 0;
+				for (int j = i; j < i + 4 && j < length; j++) {
+					v = (v << 16) | s.charAt(j);
+				}
+				add(v);
+			}
+		}
+
+		void add(FreezeDryedObject fdo) {
+			add(fdo.getType().getName());
+			for (Map.Entry<String, Object> entry : fdo.getProperties().entrySet()) {
+				add(entry.getKey());
+				addValue(entry.getValue());
+			}
+			if (fdo.hasChildren()) {
+				add(fdo.numChildren());
+				for (FreezeDryedParentChild child : fdo.getChildren()) {
+					add(child.getChildClass().getName());
+					add(child.getChildId());
+				}
+			} else {
+				add(-1);
+			}
+		}
+
+		private void addValue(Object value) {
+			if (value == null) {
+				add(0);
+			} else if (value instanceof String) {
+				add(1);
+				add((String) value);
+			} else if (value instanceof Double || value instanceof Float) {
+				add(2);
+				add(Double.doubleToLongBits(((Number) value).doubleValue()));
+			} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+					|| value instanceof Byte) {
+				add(3);
+				add(((Number) value).longValue());
+			} else if (value instanceof Boolean) {
+				add((Boolean) value ? 4 : 5);
+			} else if (value instanceof Character) {
+				add(6);
+				add((Character) value);
+			} else if (value instanceof FreezeDryedParentChild) {
+				FreezeDryedParentChild child = (FreezeDryedParentChild) value;
+				add(7);
+				add(child.getChildClass() == null ? null : child.getChildClass().getName());
+				add(child.getChildId());
+			} else if (value.getClass().isArray()) {
+				add(8);
+				add(value.getClass().getName());
+				int length = Array.getLength(value);
+				add(length);
+				if (value instanceof double[]) {
+					for (double d : (double[]) value) {
+						add(Double.doubleToLongBits(d));
+					}
+				} else {
+					for (int i = 0; i < length; i++) {
+						addValue(Array.get(value, i));
+					}
+				}
+			} else {
+				add(9);
+				add(value.getClass().getName());
+				add(value.toString());
+			}
+		}
+
+		Fingerprint getFingerprint() {
+			return new Fingerprint(h1, h2);
+		}
+
+		public String toString() {
+			return String.format("%016x%016x", h1, h2);
+		}
+	}
+}
@@ -0,0 +1,642 @@
+package repast.simphony.freezedry.datasource;
+
+import repast.simphony.engine.schedule.ParallelActionExecutor;
+import repast.simphony.freezedry.AbstractDataSource;
+import repast.simphony.freezedry.FieldUtilities;
+import repast.simphony.freezedry.FreezeDryedDataSource;
+import repast.simphony.freezedry.FreezeDryedObject;
+import repast.simphony.freezedry.FreezeDryedParentChild;
+import repast.simphony.freezedry.FreezeDryingException;
+import simphony.util.messages.MessageCenter;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A data source that freeze dries objects into a compact binary format. The
+ * objects are encoded as they are written and streamed through the compressor
+ * straight into a zip archive, without any intermediate files. Class and field
+ * names are written once and then referred to by their index.<p>
+ *
+ * The objects are split into blocks of a fixed number of objects, each stored
+ * in its own entry of the archive and encoded independently of the others, so
+ * that the blocks can be decoded in parallel when the archive is read. The
+ * whole archive is decoded on the first read and indexed by type and id.<p>
+ *
+ * Like the {@link DelimitedFileDataSource}, each freeze drying writes a new
+ * archive whose name is the specified file name followed by a time stamp.
+ */
+public class BinaryDataSource implements FreezeDryedDataSource {
+
+  /**
+   * The default number of objects in a block.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  private static final MessageCenter LOG = MessageCenter.getMessageCenter(BinaryDataSource.class);
+
+  private static final String BLOCK_PREFIX = "block_";
+  private static final int MAGIC = 0x52534644;
+  private static final int VERSION = 1;
+
+  // record tags
+  private static final int END = 0;
+  private static final int OBJECT = 1;
+
+  // value tags
+  private static final int NULL = 0;
+  private static final int STRING = 1;
+  private static final int INT = 2;
+  private static final int LONG = 3;
+  private static final int DOUBLE = 4;
+  private static final int FLOAT = 5;
+  private static final int SHORT = 6;
+  private static final int BYTE = 7;
+  private static final int CHAR = 8;
+  private static final int TRUE = 9;
+  private static final int FALSE = 10;
+  private static final int BYTES = 11;
+  private static final int ARRAY = 12;
+  private static final int REFERENCE = 13;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Encodes the objects of a block.
+   */
+  private static class Encoder {
+    private final DataOutputStream out;
+    private final Map<Class<?>, Integer> classIds = new HashMap<Class<?>, Integer>();
+    private final Map<String, Integer> fieldIds = new HashMap<String, Integer>();
+
+    private Encoder(DataOutputStream out) throws IOException {
+      this.out = out;
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+    }
+
+    private void writeObject(FreezeDryedObject fdo) throws IOException {
+      out.writeByte(OBJECT);
+      writeClass(fdo.getType());
+      writeString(fdo.getId());
+      for (String key : fdo.keySet()) {
+        Object value = fdo.get(key);
+        if (!isSupported(value)) {
+          LOG.warn("Unsupported field '" + key + "' in freeze dryed object's fields. Type '"
+                  + value.getClass().getName() + "' not handled");
+          continue;
+        }
+        Integer id = fieldIds.get(key);
+        if (id == null) {
+          writeVarInt(fieldIds.size() + 1);
+          writeString(key);
+          fieldIds.put(key, fieldIds.size());
+        } else {
+          writeVarInt(id + 1);
+        }
+        writeValue(value);
+      }
+      writeVarInt(0);
+
+      if (fdo.hasChildren()) {
+        writeVarInt(fdo.numChildren() + 1);
+        for (FreezeDryedParentChild child : fdo.getChildren()) {
+          writeClass(child.getChildClass());
+          writeString(child.getChildId());
+        }
+      } else {
+        writeVarInt(0);
+      }
+    }
+
+    private boolean isSupported(Object value) {
+      return value == null || value instanceof String || value instanceof Number
+              || value instanceof Character || value instanceof Boolean
+              || value instanceof FreezeDryedParentChild
+              || FieldUtilities.INSTANCE.isPrimitiveArray(value.getClass());
+    }
+
+    private void writeValue(Object value) throws IOException {
+      if (value == null) {
+        out.writeByte(NULL);
+      } else if (value instanceof String) {
+        out.writeByte(STRING);
+        writeString((String) value);
+      } else if (value instanceof Integer) {
+        out.writeByte(INT);
+        out.writeInt((Integer) value);
+      } else if (value instanceof Long) {
+        out.writeByte(LONG);
+        out.writeLong((Long) value);
+      } else if (value instanceof Double) {
+        out.writeByte(DOUBLE);
+        out.writeDouble((Double) value);
+      } else if (value instanceof Float) {
+        out.writeByte(FLOAT);
+        out.writeFloat((Float) value);
+      } else if (value instanceof Short) {
+        out.writeByte(SHORT);
+        out.writeShort((Short) value);
+      } else if (value instanceof Byte) {
+        out.writeByte(BYTE);
+        out.writeByte((Byte) value);
+      } else if (value instanceof Character) {
+        out.writeByte(CHAR);
+        out.writeChar((Character) value);
+      } else if (value instanceof Boolean) {
+        out.writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof byte[]) {
+        byte[] bytes = (byte[]) value;
+        out.writeByte(BYTES);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+      } else if (value instanceof FreezeDryedParentChild) {
+        FreezeDryedParentChild child = (FreezeDryedParentChild) value;
+        out.writeByte(REFERENCE);
+        writeClass(child.getChildClass());
+        writeString(child.getChildId());
+      } else if (value instanceof Number) {
+        // other numbers, e.g. BigDecimal, are stored as doubles
+        out.writeByte(DOUBLE);
+        out.writeDouble(((Number) value).doubleValue());
+      } else {
+        writeArray(value);
+      }
+    }
+
+    private void writeArray(Object array) throws IOException {
+      Class<?> type = array.getClass().getComponentType();
+      int length = Array.getLength(array);
+      out.writeByte(ARRAY);
+      writeClass(type);
+      writeVarInt(length);
+      if (type == Integer.TYPE) {
+        for (int i : (int[]) array) out.writeInt(i);
+      } else if (type == Long.TYPE) {
+        for (long l : (long[]) array) out.writeLong(l);
+      } else if (type == Double.TYPE) {
+        for (double d : (double[]) array) out.writeDouble(d);
+      } else if (type == Float.TYPE) {
+        for (float f : (float[]) array) out.writeFloat(f);
+      } else if (type == Short.TYPE) {
+        for (short s : (short[]) array) out.writeShort(s);
+      } else if (type == Character.TYPE) {
+        for (char c : (char[]) array) out.writeChar(c);
+      } else if (type == Boolean.TYPE) {
+        for (boolean b : (boolean[]) array) out.writeBoolean(b);
+      } else {
+        for (int i = 0; i < length; i++) {
+          writeValue(Array.get(array, i));
+        }
+      }
+    }
+
+    private void writeClass(Class<?> clazz) throws IOException {
+      Integer id = classIds.get(clazz);
+      if (id == null) {
+        writeVarInt(classIds.size());
+        writeString(clazz.getName());
+        classIds.put(clazz, classIds.size());
+      } else {
+        writeVarInt(id);
+      }
+    }
+
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        writeVarInt(0);
+      } else {
+        byte[] bytes = string.getBytes(UTF8);
+        writeVarInt(bytes.length + 1);
+        out.write(bytes);
+      }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7F) != 0) {
+        out.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+  }
+
+  /**
+   * Decodes the objects of a block.
+   */
+  private static class Decoder implements Callable<List<FreezeDryedObject>> {
+    private final ZipFile zipFile;
+    private final ZipEntry entry;
+    private DataInputStream in;
+    private final List<Class<?>> classes = new ArrayList<Class<?>>();
+    private final List<String> fields = new ArrayList<String>();
+
+    private Decoder(ZipFile zipFile, ZipEntry entry) {
+      this.zipFile = zipFile;
+      this.entry = entry;
+    }
+
+    public List<FreezeDryedObject> call() throws IOException, ClassNotFoundException {
+      List<FreezeDryedObject> objects = new ArrayList<FreezeDryedObject>();
+      in = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(entry)));
+      try {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+          throw new IOException("Entry '" + entry.getName() + "' is not a freeze dryed block");
+        }
+        int tag;
+        while ((tag = in.readByte()) != END) {
+          if (tag != OBJECT) {
+            throw new IOException("Unknown record in entry '" + entry.getName() + "'");
+          }
+          objects.add(readObject());
+        }
+      } finally {
+        in.close();
+      }
+      return objects;
+    }
+
+    private FreezeDryedObject readObject() throws IOException, ClassNotFoundException {
+      Class<?> type = readClass();
+      FreezeDryedObject fdo = new FreezeDryedObject(readString(), type);
+      int id;
+      while ((id = readVarInt()) != 0) {
+        id--;
+        if (id == fields.size()) {
+          fields.add(readString());
+        }
+        fdo.put(fields.get(id), readValue(fdo));
+      }
+      readComplexValues(fdo);
+
+      int children = readVarInt() - 1;
+      for (int i = 0; i < children; i++) {
+        Class<?> childClass = readClass();
+        fdo.addChild(new FreezeDryedParentChild(fdo.getType(), fdo.getId(), childClass,
+                readString()));
+      }
+      return fdo;
+    }
+
+    /**
+     * Turns the class and id columns written by
+     * {@link repast.simphony.freezedry.FreezeDryUtils#addComplex} into a
+     * reference, as {@link repast.simphony.freezedry.AbstractDataSource} does.
+     */
+    private void readComplexValues(FreezeDryedObject fdo) throws ClassNotFoundException {
+      for (String key : new ArrayList<String>(fdo.keySet())) {
+        if (key.startsWith(AbstractDataSource.SPECIAL_COL_MARKER)
+                && key.endsWith(AbstractDataSource.CLASS_MARKER)) {
+          String name = key.substring(AbstractDataSource.SPECIAL_COL_MARKER.length(),
+                  key.length() - AbstractDataSource.CLASS_MARKER.length());
+          Object className = fdo.get(key);
+          Object childId = fdo.get(AbstractDataSource.SPECIAL_COL_MARKER + name
+                  + AbstractDataSource.CHILD_ID_MARKER);
+          if (className instanceof String && childId instanceof String) {
+            fdo.put(name, new FreezeDryedParentChild(fdo.getType(), fdo.getId(),
+                    FieldUtilities.INSTANCE.getClassFromString((String) className), (String) childId));
+          }
+        }
+      }
+    }
+
+    private Object readValue(FreezeDryedObject fdo) throws IOException, ClassNotFoundException {
+      int tag = in.readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case STRING:
+          return readString();
+        case INT:
+          return in.readInt();
+        case LONG:
+          return in.readLong();
+        case DOUBLE:
+          return in.readDouble();
+        case FLOAT:
+          return in.readFloat();
+        case SHORT:
+          return in.readShort();
+        case BYTE:
+          return in.readByte();
+        case CHAR:
+          return in.readChar();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case BYTES:
+          byte[] bytes = new byte[readVarInt()];
+          in.readFully(bytes);
+          return bytes;
+        case REFERENCE:
+          Class<?> childClass = readClass();
+          return new FreezeDryedParentChild(fdo.getType(), fdo.getId(), childClass, readString());
+        case ARRAY:
+          return readArray(fdo);
+        default:
+          throw new IOException("Unknown value in entry '" + entry.getName() + "'");
+      }
+    }
+
+    private Object readArray(FreezeDryedObject fdo) throws IOException, ClassNotFoundException {
+      Class<?> type = readClass();
+      int length = readVarInt();
+      Object array = Array.newInstance(type, length);
+      if (type == Integer.TYPE) {
+        int[] values = (int[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readInt();
+      } else if (type == Long.TYPE) {
+        long[] values = (long[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readLong();
+      } else if (type == Double.TYPE) {
+        double[] values = (double[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readDouble();
+      } else if (type == Float.TYPE) {
+        float[] values = (float[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readFloat();
+      } else if (type == Short.TYPE) {
+        short[] values = (short[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readShort();
+      } else if (type == Character.TYPE) {
+        char[] values = (char[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readChar();
+      } else if (type == Boolean.TYPE) {
+        boolean[] values = (boolean[]) array;
+        for (int i = 0; i < length; i++) values[i] = in.readBoolean();
+      } else {
+        for (int i = 0; i < length; i++) {
+          Array.set(array, i, readValue(fdo));
+        }
+      }
+      return array;
+    }
+
+    private Class<?> readClass() throws IOException, ClassNotFoundException {
+      int id = readVarInt();
+      if (id == classes.size()) {
+        classes.add(FieldUtilities.INSTANCE.getClassFromString(readString()));
+      }
+      return classes.get(id);
+    }
+
+    private String readString() throws IOException {
+      int length = readVarInt() - 1;
+      if (length < 0) return null;
+      byte[] bytes = new byte[length];
+      in.readFully(bytes);
+      return new String(bytes, UTF8);
+    }
+
+    private int readVarInt() throws IOException {
+      int value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = in.readUnsignedByte();
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+
+  private String fileName;
+  private boolean reading;
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+
+  private transient File archive;
+  private transient ZipOutputStream zip;
+  private transient DataOutputStream out;
+  private transient Encoder encoder;
+  private transient int blockCount;
+  private transient int objectCount;
+
+  private transient Map<Class<?>, List<FreezeDryedObject>> typeObjects;
+  private transient Map<String, FreezeDryedObject> idObjects;
+
+  /**
+   * Creates a data source that reads from the specified archive if it exists,
+   * and otherwise writes archives named after it.
+   *
+   * @param fileName the name of the archive
+   */
+  public BinaryDataSource(String fileName) {
+    this(fileName, new File(fileName).exists());
+  }
+
+  /**
+   * Creates a data source that reads from the specified archive or writes
+   * archives named after it.
+   *
+   * @param fileName the name of the archive
+   * @param read     whether to read from the archive rather than write to it
+   */
+  public BinaryDataSource(String fileName, boolean read) {
+    this.fileName = fileName;
+    this.reading = read;
+  }
+
+  /**
+   * Sets the number of objects that are encoded in each block of the
+   * archive. Smaller blocks can be decoded with more parallelism, larger
+   * ones compress better.
+   *
+   * @param blockSize the number of objects in each block
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Gets the last archive written by this data source.
+   *
+   * @return the last archive written by this data source, or null if none
+   *         has been written.
+   */
+  public File getArchive() {
+    return archive;
+  }
+
+  /**
+   * Resets this data source.
+   */
+  public void reset() {
+  }
+
+  public void write(FreezeDryedObject object) throws FreezeDryingException {
+    try {
+      if (zip == null) {
+        startArchive();
+      } else if (objectCount == blockSize) {
+        finishBlock();
+        startBlock();
+      }
+      encoder.writeObject(object);
+      objectCount++;
+    } catch (IOException ex) {
+      throw new FreezeDryingException("Error writing '" + object.getId() + "' to archive '"
+              + archive + "'", ex);
+    }
+  }
+
+  private void startArchive() throws IOException {
+    DateFormat format = new SimpleDateFormat("yyyyMMdd_HH_mm_ss");
+    File file = new File(fileName).getAbsoluteFile();
+    String name = file.getName();
+    if (name.endsWith(".zip")) {
+      name = name.substring(0, name.length() - 4);
+    }
+    name += "_" + format.format(new Date());
+    archive = new File(file.getParentFile(), name + ".zip");
+    for (int i = 1; archive.exists(); i++) {
+      archive = new File(file.getParentFile(), name + "_" + i + ".zip");
+    }
+
+    zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive)));
+    // archives are written while the model runs, so favour speed over size
+    zip.setLevel(Deflater.BEST_SPEED);
+    out = new DataOutputStream(new BufferedOutputStream(zip));
+    blockCount = 0;
+    startBlock();
+  }
+
+  private void startBlock() throws IOException {
+    zip.putNextEntry(new ZipEntry(String.format("%s%08d", BLOCK_PREFIX, blockCount++)));
+    encoder = new Encoder(out);
+    objectCount = 0;
+  }
+
+  private void finishBlock() throws IOException {
+    out.writeByte(END);
+    out.flush();
+    zip.closeEntry();
+  }
+
+  public Iterable<FreezeDryedObject> read(Class clazz) throws FreezeDryingException {
+    List<FreezeDryedObject> objects = getTypeObjects().get(clazz);
+    if (objects == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(objects);
+  }
+
+  public FreezeDryedObject read(Class clazz, String key) throws FreezeDryingException {
+    getTypeObjects();
+    FreezeDryedObject fdo = idObjects.get(key);
+    return fdo != null && fdo.getType().equals(clazz) ? fdo : null;
+  }
+
+  /**
+   * Gets the classes of the objects in the archive.
+   *
+   * @return the classes of the objects in the archive.
+   * @throws FreezeDryingException if there is an error reading the archive
+   */
+  public List<Class<?>> getClasses() throws FreezeDryingException {
+    return new ArrayList<Class<?>>(getTypeObjects().keySet());
+  }
+
+  private Map<Class<?>, List<FreezeDryedObject>> getTypeObjects() throws FreezeDryingException {
+    if (typeObjects == null) {
+      if (!reading) {
+        throw new FreezeDryingException("Data source for '" + fileName + "' is not for reading");
+      }
+      typeObjects = new LinkedHashMap<Class<?>, List<FreezeDryedObject>>();
+      idObjects = new HashMap<String, FreezeDryedObject>();
+      for (List<FreezeDryedObject> block : readBlocks()) {
+        for (FreezeDryedObject fdo : block) {
+          List<FreezeDryedObject> objects = typeObjects.get(fdo.getType());
+          if (objects == null) {
+            objects = new ArrayList<FreezeDryedObject>();
+            typeObjects.put(fdo.getType(), objects);
+          }
+          objects.add(fdo);
+          idObjects.put(fdo.getId(), fdo);
+        }
+      }
+    }
+    return typeObjects;
+  }
+
+  // decodes the blocks, in parallel if there are more than one
+  private List<List<FreezeDryedObject>> readBlocks() throws FreezeDryingException {
+    ZipFile zipFile = null;
+    try {
+      zipFile = new ZipFile(fileName);
+      List<Decoder> decoders = new ArrayList<Decoder>();
+      for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+        ZipEntry entry = e.nextElement();
+        if (entry.getName().startsWith(BLOCK_PREFIX)) {
+          decoders.add(new Decoder(zipFile, entry));
+        }
+      }
+
+      List<List<FreezeDryedObject>> blocks = new ArrayList<List<FreezeDryedObject>>();
+      if (decoders.size() == 1) {
+        blocks.add(decoders.get(0).call());
+      } else {
+        for (Future<List<FreezeDryedObject>> future : ParallelActionExecutor.getPool()
+                .invokeAll(decoders)) {
+          blocks.add(future.get());
+        }
+      }
+      return blocks;
+    } catch (ExecutionException ex) {
+      throw new FreezeDryingException("Error reading archive '" + fileName + "'", ex.getCause());
+    } catch (Exception ex) {
+      throw new FreezeDryingException("Error reading archive '" + fileName + "'", ex);
+    } finally {
+      if (zipFile != null) {
+        try {
+          zipFile.close();
+        } catch (IOException ex) {
+          LOG.warn("Error closing archive '" + fileName + "'.", ex);
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes this data source. When writing, this finishes the archive, and the
+   * next write starts a new one. When reading, this releases the objects read
+   * from the archive.
+   *
+   * @throws FreezeDryingException if there is an error finishing the archive
+   */
+  public void close() throws FreezeDryingException {
+    typeObjects = null;
+    idObjects = null;
+    if (zip != null) {
+      try {
+        finishBlock();
+        zip.close();
+      } catch (IOException ex) {
+        throw new FreezeDryingException("Error finishing archive '" + archive + "'", ex);
+      } finally {
+        zip = null;
+        out = null;
+        encoder = null;
+      }
+    }
+  }
+}
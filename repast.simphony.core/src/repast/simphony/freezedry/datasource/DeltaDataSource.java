@@ -0,0 +1,125 @@
+package repast.simphony.freezedry.datasource;
+
+import repast.simphony.freezedry.FreezeDryedDataSource;
+import repast.simphony.freezedry.FreezeDryedObject;
+import repast.simphony.freezedry.FreezeDryingException;
+import repast.simphony.freezedry.IncrementalCheckpoint;
+
+import java.util.*;
+
+/**
+ * A read only data source that replays incremental checkpoints. The layers are
+ * the data sources the checkpoints were written to, oldest first. An object is
+ * read from the newest layer that contains it, unless a newer layer lists it as
+ * removed, and the layers older than the newest base checkpoint are ignored.<p>
+ *
+ * The layers must return null, or no objects, for the types and keys they
+ * don't contain, as the {@link BinaryDataSource} does.
+ *
+ * @see repast.simphony.freezedry.FreezeDryedRegistry#setIncremental(boolean)
+ */
+public class DeltaDataSource implements FreezeDryedDataSource {
+
+  private final List<FreezeDryedDataSource> layers;
+
+  // the layers that are read, newest first, and the keys each one removed
+  private List<FreezeDryedDataSource> replayed;
+  private List<Set<String>> removed;
+
+  /**
+   * Creates a data source that replays the specified layers.
+   *
+   * @param layers the data sources of the checkpoints, oldest first
+   */
+  public DeltaDataSource(FreezeDryedDataSource... layers) {
+    this(Arrays.asList(layers));
+  }
+
+  /**
+   * Creates a data source that replays the specified layers.
+   *
+   * @param layers the data sources of the checkpoints, oldest first
+   */
+  public DeltaDataSource(List<FreezeDryedDataSource> layers) {
+    this.layers = new ArrayList<FreezeDryedDataSource>(layers);
+  }
+
+  public List<FreezeDryedDataSource> getLayers() {
+    return Collections.unmodifiableList(layers);
+  }
+
+  private void init() throws FreezeDryingException {
+    if (replayed != null) return;
+    replayed = new ArrayList<FreezeDryedDataSource>();
+    removed = new ArrayList<Set<String>>();
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      FreezeDryedDataSource layer = layers.get(i);
+      Set<String> keys = new HashSet<String>();
+      boolean base = false;
+      Iterable<FreezeDryedObject> manifests = layer.read(IncrementalCheckpoint.class);
+      if (manifests != null) {
+        for (FreezeDryedObject manifest : manifests) {
+          String[] removedKeys = (String[]) manifest.get(IncrementalCheckpoint.REMOVED_KEY);
+          if (removedKeys != null) keys.addAll(Arrays.asList(removedKeys));
+          base |= Boolean.TRUE.equals(manifest.get(IncrementalCheckpoint.BASE_KEY));
+        }
+      }
+      replayed.add(layer);
+      removed.add(keys);
+      if (base) break;
+    }
+  }
+
+  /**
+   * Does nothing, as this data source is read only.
+   */
+  public void reset() {
+  }
+
+  /**
+   * Throws an exception, as this data source is read only.
+   */
+  public void write(FreezeDryedObject object) throws FreezeDryingException {
+    throw new FreezeDryingException("Incremental checkpoints can only be read");
+  }
+
+  public Iterable<FreezeDryedObject> read(Class clazz) throws FreezeDryingException {
+    init();
+    Map<String, FreezeDryedObject> objects = new LinkedHashMap<String, FreezeDryedObject>();
+    Set<String> hidden = new HashSet<String>();
+    for (int i = 0; i < replayed.size(); i++) {
+      Iterable<FreezeDryedObject> fdos = replayed.get(i).read(clazz);
+      if (fdos != null) {
+        for (FreezeDryedObject fdo : fdos) {
+          String id = fdo.getId();
+          if (!hidden.contains(id) && !objects.containsKey(id)) {
+            objects.put(id, fdo);
+          }
+        }
+      }
+      hidden.addAll(removed.get(i));
+    }
+    return new ArrayList<FreezeDryedObject>(objects.values());
+  }
+
+  public FreezeDryedObject read(Class clazz, String key) throws FreezeDryingException {
+    init();
+    for (int i = 0; i < replayed.size(); i++) {
+      FreezeDryedObject fdo = replayed.get(i).read(clazz, key);
+      if (fdo != null) return fdo;
+      if (removed.get(i).contains(key)) return null;
+    }
+    return null;
+  }
+
+  /**
+   * Closes the layers.
+   */
+  public void close() throws FreezeDryingException {
+    replayed = null;
+    removed = null;
+    for (FreezeDryedDataSource layer : layers) {
+      layer.close();
+    }
+  }
+}
@@ -1,9 +1,7 @@
 package repast.simphony.freezedry.freezedryers;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +9,7 @@ import java.util.Stack;
 import java.util.UUID;
 
 import repast.simphony.freezedry.AbstractFreezeDryer;
+import repast.simphony.freezedry.FieldLayout;
 import repast.simphony.freezedry.FieldUtilities;
 import repast.simphony.freezedry.FreezeDryedObject;
 import repast.simphony.freezedry.FreezeDryedParentChild;
@@ -35,8 +34,6 @@ public class DefaultFreezeDryer extends AbstractFreezeDryer<Object> {
 		FreezeDryedObject fdo = new FreezeDryedObject(id, type);
 		type = type.getSuperclass();
 
-		boolean accessibility;
-
 		Stack<Class> superStack = new Stack<Class>();
 		while (!type.equals(Object.class)) {
 			superStack.push(type);
@@ -57,76 +54,39 @@ public class DefaultFreezeDryer extends AbstractFreezeDryer<Object> {
 		}
 		while (!superStack.isEmpty()) {
 			type = superStack.pop();
-			for (Field field : type.getDeclaredFields()) {
-				accessibility = field.isAccessible();
-				try {
-					field.setAccessible(true);
-					if (Modifier.isTransient(field.getModifiers())
-							|| Modifier.isFinal(field.getModifiers())
-							|| Modifier.isStatic(field.getModifiers())) {
-						continue;
-					}
-					if (util.isPrimitive(field)) {
-						fdo.put(type.getName() + "_" + field.getName(), field.get(o));
-					} else if (util.isPrimitiveArray(field)) {
-						fdo.put(type.getName() + "_" + field.getName(), field.get(o));
-					} else {
-						Object child = field.get(o);
-						if (child != null) {
-							String childKey = registry.getId(child);
-							fdo.put(field.getName() + FreezeDryer.CLASS_MARKER, util
-									.getTypeAsString(child));
-							fdo.put(field.getName() + FreezeDryer.ID_MARKER, childKey);
-						} else {
-							fdo.put(field.getName() + FreezeDryer.CLASS_MARKER, null);
-							fdo.put(field.getName() + FreezeDryer.ID_MARKER, null);
-						}
-					}
-				} catch (Exception ex) {
-					LOG.error("Error writing child field '" + field + "' for '" + o + "'.", ex);
-					throw new FreezeDryingException(ex);
-				} finally {
-					field.setAccessible(accessibility);
-				}
-			}
+			freezeDryFields(fdo, o, FieldLayout.getLayout(type), true);
 		}
-		for (Field field : o.getClass().getDeclaredFields()) {
-			accessibility = field.isAccessible();
+		freezeDryFields(fdo, o, FieldLayout.getLayout(o.getClass()), false);
+		return fdo;
+	}
 
+	/**
+	 * Puts the values of the fields in the specified layout into the freeze dryed object.
+	 * Values stored directly are keyed by the qualified field name if qualify is true.
+	 */
+	private void freezeDryFields(FreezeDryedObject fdo, Object o, FieldLayout layout,
+			boolean qualify) throws FreezeDryingException {
+		for (FieldLayout.Entry field : layout.getEntries()) {
 			try {
-				field.setAccessible(true);
-				if (Modifier.isTransient(field.getModifiers())
-						|| Modifier.isFinal(field.getModifiers())
-						|| Modifier.isStatic(field.getModifiers())) {
-					continue;
-				}
-				if (util.isPrimitive(field)) {
-					fdo.put(field.getName(), field.get(o));
-				} else if (util.isPrimitiveArray(field)) {
-					fdo.put(field.getName(), field.get(o));
+				if (field.isPrimitive()) {
+					fdo.put(qualify ? field.getQualifiedName() : field.getName(), field.get(o));
 				} else {
 					Object child = field.get(o);
 					if (child != null) {
 						String childKey = registry.getId(child);
-						fdo.put(field.getName() + FreezeDryer.CLASS_MARKER, util
-								.getTypeAsString(child));
-						fdo.put(field.getName() + FreezeDryer.ID_MARKER, childKey);
+						fdo.put(field.getClassKey(), util.getTypeAsString(child));
+						fdo.put(field.getIdKey(), childKey);
 					} else {
-						fdo.put(field.getName() + FreezeDryer.CLASS_MARKER, null);
-						fdo.put(field.getName() + FreezeDryer.ID_MARKER, null);
+						fdo.put(field.getClassKey(), null);
+						fdo.put(field.getIdKey(), null);
 					}
 				}
 			} catch (Exception ex) {
 				LOG.error("Error writing child field '" + field + "' for '" + o + "'.", ex);
 				throw new FreezeDryingException(ex);
-			} finally {
-				field.setAccessible(accessibility);
 			}
 		}
-		return fdo;
-	} 
-	
-	
+	}
 
 	@SuppressWarnings("unchecked")
 	public Object rehydrate(FreezeDryedObject fdo) throws FreezeDryingException {
@@ -153,62 +113,49 @@ public class DefaultFreezeDryer extends AbstractFreezeDryer<Object> {
 				}
 				instance = cons.newInstance(paramInst);	
 			}
-			boolean accessibility;
-			for (Field field : getFields(type)) {
-				accessibility = field.isAccessible();
-				try {
-					field.setAccessible(true);
-					if (Modifier.isTransient(field.getModifiers())
-							|| Modifier.isFinal(field.getModifiers())) {
+			for (FieldLayout.Entry field : getFields(type)) {
+				if (util.isPrimitive(field.getType())) {
+					// registry.getPrimitiveDryer().rehydrate()
+					// registry.rehydrateObject(field.getType(), fdo.get(field.getName())));
+					Object val = fdo.get(field.getName());
+					if (val == null) {
 						continue;
 					}
-					if (util.isPrimitive(field)) {
-						// registry.getPrimitiveDryer().rehydrate()
-						// registry.rehydrateObject(field.getType(), fdo.get(field.getName())));
-						Object val = fdo.get(field.getName());
-						if (val == null) {
-							continue;
-						}
-						if (field.getType().equals(Double.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).doubleValue());
-						} else if (field.getType().equals(Integer.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).intValue());
-						} else if (field.getType().equals(Short.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).shortValue());
-						} else if (field.getType().equals(Float.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).floatValue());
-						} else if (field.getType().equals(Byte.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).byteValue());
-						} else if (field.getType().equals(Long.TYPE)) {
-							field.set(instance, ((Number) fdo.get(field.getName())).longValue());
-						} else if (field.getType().equals(String.class)) {
-							field.set(instance, fdo.get(field.getName()));
-						} else if (field.getType().equals(Boolean.TYPE)) {
-							field.set(instance, Boolean.valueOf(fdo.get(field.getName()).toString()));
-						} else if (field.getType().equals(Character.TYPE)) {
-							Object fdoVal = fdo.get(field.getName());
-							if (fdoVal instanceof String) {
-								if (((String) fdoVal).length() > 0) {
-									fdoVal = ((String) fdoVal).charAt(0);
-								}
+					if (field.getType().equals(Double.TYPE)) {
+						field.set(instance, ((Number) val).doubleValue());
+					} else if (field.getType().equals(Integer.TYPE)) {
+						field.set(instance, ((Number) val).intValue());
+					} else if (field.getType().equals(Short.TYPE)) {
+						field.set(instance, ((Number) val).shortValue());
+					} else if (field.getType().equals(Float.TYPE)) {
+						field.set(instance, ((Number) val).floatValue());
+					} else if (field.getType().equals(Byte.TYPE)) {
+						field.set(instance, ((Number) val).byteValue());
+					} else if (field.getType().equals(Long.TYPE)) {
+						field.set(instance, ((Number) val).longValue());
+					} else if (field.getType().equals(String.class)) {
+						field.set(instance, val);
+					} else if (field.getType().equals(Boolean.TYPE)) {
+						field.set(instance, Boolean.valueOf(val.toString()));
+					} else if (field.getType().equals(Character.TYPE)) {
+						Object fdoVal = val;
+						if (fdoVal instanceof String) {
+							if (((String) fdoVal).length() > 0) {
+								fdoVal = ((String) fdoVal).charAt(0);
 							}
-							field.set(instance, (Character) fdoVal);
-						}
-					} else {
-						String typeName = (String) fdo.get(field.getName()
-								+ FreezeDryer.CLASS_MARKER);
-						String id = (String) fdo.get(field.getName() + FreezeDryer.ID_MARKER);
-						if (typeName == null || id == null) {
-							continue;
 						}
-						Class childType = util.getClassFromString(typeName);
-						Object child = registry.getObject(id, childType);
-						field.set(instance, child);
+						field.set(instance, (Character) fdoVal);
 					}
-				} finally {
-					field.setAccessible(accessibility);
+				} else {
+					String typeName = (String) fdo.get(field.getClassKey());
+					String id = (String) fdo.get(field.getIdKey());
+					if (typeName == null || id == null) {
+						continue;
+					}
+					Class childType = util.getClassFromString(typeName);
+					Object child = registry.getObject(id, childType);
+					field.set(instance, child);
 				}
-
 			}
 			return instance;
 		} catch (SecurityException e) {
@@ -226,11 +173,11 @@ public class DefaultFreezeDryer extends AbstractFreezeDryer<Object> {
 		}
 	}
 
-	private List<Field> getFields(Class type) {
-		List<Field> fields = new ArrayList<Field>();
+	private List<FieldLayout.Entry> getFields(Class type) throws FreezeDryingException {
+		List<FieldLayout.Entry> fields = new ArrayList<FieldLayout.Entry>();
 
 		while (type != Object.class) {
-			for (Field field : type.getDeclaredFields()) {
+			for (FieldLayout.Entry field : FieldLayout.getLayout(type).getEntries()) {
 				fields.add(field);
 			}
 
@@ -0,0 +1,84 @@
+package repast.simphony.freezedry.freezedryers;
+
+import repast.simphony.freezedry.AbstractFreezeDryer;
+import repast.simphony.freezedry.FreezeDryedObject;
+import repast.simphony.freezedry.FreezeDryedParentChild;
+import repast.simphony.freezedry.FreezeDryedRegistry;
+import repast.simphony.freezedry.FreezeDryingException;
+import repast.simphony.valueLayer.DenseValueLayerStore;
+
+/**
+ * Freeze dries the values of a {@link DenseValueLayerStore} as tiles of
+ * consecutive cells, each stored as a double[] child. Incremental checkpoints
+ * then only write the tiles whose cells changed.<p>
+ *
+ * Stores freeze dried before this dryer existed hold their values in an
+ * {@link #ARRAY_KEY} property instead, and are rehydrated from it.
+ */
+public class ValueLayerStoreFreezeDryer extends AbstractFreezeDryer<DenseValueLayerStore> {
+
+	public static final String SIZE_KEY = "size";
+
+	/**
+	 * The key of the cell values of a store freeze dried field by field, as the
+	 * {@link DefaultFreezeDryer} does.
+	 */
+	public static final String ARRAY_KEY = "array";
+
+	/**
+	 * The number of cells in a tile.
+	 */
+	public static final int TILE_SIZE = 1024;
+
+	public ValueLayerStoreFreezeDryer(FreezeDryedRegistry registry) {
+		super(registry);
+	}
+
+	public FreezeDryedObject freezeDry(String id, DenseValueLayerStore o)
+			throws FreezeDryingException {
+		FreezeDryedObject fdo = new FreezeDryedObject(id, o.getClass());
+		int size = o.size();
+		fdo.put(SIZE_KEY, size);
+		for (int start = 0; start < size; start += TILE_SIZE) {
+			double[] tile = new double[Math.min(TILE_SIZE, size - start)];
+			for (int i = 0; i < tile.length; i++) {
+				tile[i] = o.get(start + i);
+			}
+			fdo.addChild(new FreezeDryedParentChild(o.getClass(), id, double[].class, registry
+					.getId(tile)));
+		}
+		return fdo;
+	}
+
+	public DenseValueLayerStore rehydrate(FreezeDryedObject fdo) throws FreezeDryingException {
+		Object size = fdo.get(SIZE_KEY);
+		if (size == null) {
+			return rehydrateArray(fdo);
+		}
+		DenseValueLayerStore store = new DenseValueLayerStore(((Number) size).intValue());
+		int start = 0;
+		for (FreezeDryedParentChild child : fdo.getChildren()) {
+			double[] tile = (double[]) getChild(child);
+			for (int i = 0; i < tile.length; i++) {
+				store.set(start + i, tile[i]);
+			}
+			start += tile.length;
+		}
+		return store;
+	}
+
+	// rehydrates a store in the layout written by the DefaultFreezeDryer
+	private DenseValueLayerStore rehydrateArray(FreezeDryedObject fdo) {
+		Object val = fdo.get(ARRAY_KEY);
+		double[] array = val instanceof double[] ? (double[]) val : new double[0];
+		DenseValueLayerStore store = new DenseValueLayerStore(array.length);
+		for (int i = 0; i < array.length; i++) {
+			store.set(i, array[i]);
+		}
+		return store;
+	}
+
+	public boolean handles(Class<?> clazz) {
+		return clazz == DenseValueLayerStore.class;
+	}
+}
@@ -1,9 +1,13 @@
 package repast.simphony.query.space.continuous;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.collections15.Predicate;
 import org.apache.commons.collections15.iterators.IteratorChain;
 import repast.simphony.context.Context;
 import repast.simphony.query.WithinDistance;
+import repast.simphony.space.continuous.AbstractContinuousSpace;
 import repast.simphony.space.continuous.ContinuousSpace;
 import repast.simphony.space.continuous.NdPoint;
 import repast.simphony.util.collections.FilteredIterator;
@@ -14,7 +18,9 @@ import repast.simphony.util.collections.IterableAdaptor;
  * that are within a specified distance of a specified object in either
  * all the continuous spaces in a context or in a specific continuous space.
  * "Within" includes the distance, so within 10 means all the objects from a
- * distance of 0 to 10 including 10.
+ * distance of 0 to 10 including 10. If a space is indexed (see
+ * {@link AbstractContinuousSpace#setIndexBinSize(double)}), the index is used
+ * to check only the objects near the specified object.
  *
  * @author Nick Collier
  * @version $Revision$ $Date$
@@ -69,6 +75,18 @@ public class ContinuousWithin<T> extends WithinDistance<T> {
 		this.space = space;
 	}
 
+	// returns the objects within the distance using the space's index, or null
+	// if the space is not indexed
+	private List<T> indexedQuery(ContinuousSpace<T> space, NdPoint origin) {
+		if (space instanceof AbstractContinuousSpace
+				&& ((AbstractContinuousSpace<T, ?>) space).isIndexed()) {
+			List<T> list = new ArrayList<T>();
+			((AbstractContinuousSpace<T, ?>) space).getObjectsWithin(list, origin, distance, obj);
+			return list;
+		}
+		return null;
+	}
+
 	/**
 	 * Creates an iterable over all the objects within
 	 * the specified distance in the space.
@@ -79,6 +97,8 @@ public class ContinuousWithin<T> extends WithinDistance<T> {
 	protected Iterable<T> createIterable() {
 		NdPoint origin = space.getLocation(obj);
 		if (origin == null) return EMPTY;
+		List<T> list = indexedQuery(space, origin);
+		if (list != null) return list;
 		return new FilteredIterator<T>(space.getObjects().iterator(),
 						new WithinPredicate(distanceSq, origin, space, obj));
 	}
@@ -97,7 +117,10 @@ public class ContinuousWithin<T> extends WithinDistance<T> {
 		IteratorChain<T> chain = new IteratorChain<T>();
 		for (ContinuousSpace<T> space : context.getProjections(ContinuousSpace.class)) {
 			NdPoint origin = space.getLocation(obj);
-			if (origin != null) {
+			List<T> list = origin == null ? null : indexedQuery(space, origin);
+			if (list != null) {
+				chain.addIterator(list.iterator());
+			} else if (origin != null) {
 				chain.addIterator(new FilteredIterator<T>(space.getObjects().iterator(),
 								new WithinPredicate(distanceSq, origin, space, obj)));
 			}
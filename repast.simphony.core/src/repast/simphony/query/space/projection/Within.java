@@ -44,7 +44,11 @@ public class Within extends SpatialPredicate {
 	 */
 	public boolean evaluate(Network network) {
 		ShortestPath path = new ShortestPath(network);
-		return path.getPathLength(obj1,obj2) <= distance;
+		try {
+			return path.getPathLength(obj1,obj2) <= distance;
+		} finally {
+			path.close();
+		}
 	}
 
 	/**
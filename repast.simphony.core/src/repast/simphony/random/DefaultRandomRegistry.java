@@ -57,7 +57,6 @@ public class DefaultRandomRegistry implements RandomRegistry {
   private Uniform uniform;
   private VonMises vonMises;
   private Zeta zeta;
-  private Map<Thread,Uniform> uniformValues = new HashMap<Thread,Uniform>();
 	/**
 	 * Default constructor
 	 */
@@ -70,18 +69,43 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * with the specified name and seed. The generator
 	 * can then be retrieved later using #getGenerator(String).<p>
 	 *
-	 * This will create a MersenneTwister for the generator.
+	 * This will create a MersenneTwister for the generator, unless
+	 * {@link #createGenerator(int)} is overridden.
 	 *
 	 * @param name the name of the generator to create and register
 	 * @param seed the new generators seed
 	 * @return the new generator itself
 	 */
 	public RandomEngine registerGenerator(String name, int seed) {
-		RandomEngine engine = new MersenneTwister(seed);
+		RandomEngine engine = createGenerator(seed);
 		generators.put(name, new GeneratorInfo(engine, seed));
 		return engine;
 	}
 
+	/**
+	 * Creates the random number generator registered by
+	 * #registerGenerator(String, int). Note that this is called from the
+	 * constructor to create the default generator.
+	 *
+	 * @param seed the generator's seed
+	 * @return the new generator
+	 */
+	protected RandomEngine createGenerator(int seed) {
+		return new MersenneTwister(seed);
+	}
+
+	/**
+	 * Called by the get* methods of the default distributions with the
+	 * distribution to return, so that subclasses can return a different
+	 * instance per thread. This returns the distribution itself.
+	 *
+	 * @param dist the default distribution, or null if it hasn't been created
+	 * @return the distribution to return to the caller
+	 */
+	protected <T extends AbstractDistribution> T threadLocal(T dist) {
+		return dist;
+	}
+
 	/**
 	 * Gets a previously registered random number generator.
 	 *
@@ -143,7 +167,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default Zeta distribution.
 	 */
 	public Zeta getZeta() {
-		return zeta;
+		return threadLocal(zeta);
 	}
 
 
@@ -421,7 +445,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default beta distribution.
 	 */
 	public Beta getBeta() {
-		return beta;
+		return threadLocal(beta);
 	}
 
 	/**
@@ -430,7 +454,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default binomial distribution.
 	 */
 	public Binomial getBinomial() {
-		return binomial;
+		return threadLocal(binomial);
 	}
 /**
 	 * Gets the default BreitWigner distribution.
@@ -438,7 +462,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default BreitWigner distribution.
 	 */
 	public BreitWigner getBreitWigner() {
-		return breitWigner;
+		return threadLocal(breitWigner);
 	}
 
 	/**
@@ -447,7 +471,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default BreitWignerMeanSquare distribution.
 	 */
 	public BreitWignerMeanSquare getBreitWignerMeanSquare() {
-		return breitWignerMeanSquare;
+		return threadLocal(breitWignerMeanSquare);
 	}
 
 	/**
@@ -456,7 +480,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default Zeta distribution.
 	 */
 	public ChiSquare getChiSquare() {
-		return chiSquare;
+		return threadLocal(chiSquare);
 	}
 
 	/**
@@ -465,7 +489,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default ChiSquare distribution.
 	 */
 	public Empirical getEmpirical() {
-		return empirical;
+		return threadLocal(empirical);
 	}
 
 	/**
@@ -474,7 +498,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default EmpiricalWalker distribution.
 	 */
 	public EmpiricalWalker getEmpiricalWalker() {
-		return empiricalWalker;
+		return threadLocal(empiricalWalker);
 	}
 
 	/**
@@ -483,7 +507,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default Exponential distribution.
 	 */
 	public Exponential getExponential() {
-		return exponential;
+		return threadLocal(exponential);
 	}
 
 	/**
@@ -492,7 +516,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default exponentialPower distribution.
 	 */
 	public ExponentialPower getExponentialPower() {
-		return exponentialPower;
+		return threadLocal(exponentialPower);
 	}
 
 	/**
@@ -501,7 +525,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default gamma distribution.
 	 */
 	public Gamma getGamma() {
-		return gamma;
+		return threadLocal(gamma);
 	}
 
 	/**
@@ -510,7 +534,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default hyperbolic distribution.
 	 */
 	public Hyperbolic getHyperbolic() {
-		return hyperbolic;
+		return threadLocal(hyperbolic);
 	}
 
 	/**
@@ -519,7 +543,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default hyperGeometric distribution.
 	 */
 	public HyperGeometric getHyperGeometric() {
-		return hyperGeometric;
+		return threadLocal(hyperGeometric);
 	}
 
 	/**
@@ -528,7 +552,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default logarithmic distribution.
 	 */
 	public Logarithmic getLogarithmic() {
-		return logarithmic;
+		return threadLocal(logarithmic);
 	}
 
 	/**
@@ -537,7 +561,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default negativeBinomial distribution.
 	 */
 	public NegativeBinomial getNegativeBinomial() {
-		return negativeBinomial;
+		return threadLocal(negativeBinomial);
 	}
 
 	/**
@@ -546,7 +570,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default normal distribution.
 	 */
 	public Normal getNormal() {
-		return normal;
+		return threadLocal(normal);
 	}
 
 	/**
@@ -555,7 +579,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default poisson distribution.
 	 */
 	public Poisson getPoisson() {
-		return poisson;
+		return threadLocal(poisson);
 	}
 
 	/**
@@ -564,7 +588,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default slow poisson distribution.
 	 */
 	public PoissonSlow getPoissonSlow() {
-		return poissonSlow;
+		return threadLocal(poissonSlow);
 	}
 
 	/**
@@ -573,7 +597,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default studentT distribution.
 	 */
 	public StudentT getStudentT() {
-		return studentT;
+		return threadLocal(studentT);
 	}
 
 	/**
@@ -584,7 +608,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	public Uniform getUniform() {
 		if(uniform==null)
 			uniform=createUniform();
-		return uniform;
+		return threadLocal(uniform);
 	}
 
 	/**
@@ -593,7 +617,7 @@ public class DefaultRandomRegistry implements RandomRegistry {
 	 * @return the default vonMises distribution.
 	 */
 	public VonMises getVonMises() {
-		return vonMises;
+		return threadLocal(vonMises);
 	}
 
 	/**
@@ -37,6 +37,8 @@ public class RandomHelper {
 
 	private static DefaultRandomRegistry defaultRegistry = new DefaultRandomRegistry();
 
+	private static boolean splittable = false;
+
 	static {
 		init();
 	}
@@ -541,11 +543,49 @@ public class RandomHelper {
 	 * distribution.
 	 */
 	public static void init() {
-		defaultRegistry = new DefaultRandomRegistry();
+		defaultRegistry = splittable ? new SplittableRandomRegistry() : new DefaultRandomRegistry();
 		setSeed((int) System.currentTimeMillis());
 		createUniform();
 	}
 
+	/**
+	 * Sets whether the default registry is a {@link SplittableRandomRegistry}, whose
+	 * generators and distributions can be used concurrently by agents executing in
+	 * parallel. The mode applies to every subsequent call to {@link #init()}. If the
+	 * mode changes, the default registry is recreated with the current seed, invalidating
+	 * any previously created distributions.
+	 *
+	 * @param splittable whether the default registry is a SplittableRandomRegistry
+	 */
+	public static void setSplittable(boolean splittable) {
+		if (RandomHelper.splittable != splittable) {
+			int seed = getSeed();
+			RandomHelper.splittable = splittable;
+			init();
+			setSeed(seed);
+		}
+	}
+
+	/**
+	 * Gets whether the default registry is a {@link SplittableRandomRegistry}.
+	 *
+	 * @return whether the default registry is a SplittableRandomRegistry.
+	 */
+	public static boolean isSplittable() {
+		return splittable;
+	}
+
+	/**
+	 * Gets the default registry if it's a {@link SplittableRandomRegistry}. Code that
+	 * executes agents in parallel uses this to give each task its own stream.
+	 *
+	 * @return the default registry, or null if it isn't a SplittableRandomRegistry.
+	 */
+	public static SplittableRandomRegistry getSplittableRegistry() {
+		DefaultRandomRegistry registry = defaultRegistry;
+		return registry instanceof SplittableRandomRegistry ? (SplittableRandomRegistry) registry : null;
+	}
+
 	/**
 	 * Gets the default random registry.
 	 *
@@ -0,0 +1,121 @@
+/*CopyrightHere*/
+package repast.simphony.random;
+
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * A SplitMix64 random number generator. The generator's whole state is a
+ * single long, so it can be reseeded without allocating, and independent
+ * child generators can be derived from it or from any seed and key with
+ * {@link #split()} and {@link #deriveSeed(long, long)}. The generator is
+ * not thread safe, but it is cheap enough to give each thread, task or agent
+ * its own.
+ *
+ * @see SplittableRandomRegistry
+ */
+public class SplittableEngine extends RandomEngine {
+	private static final long serialVersionUID = 2471809376105387126L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+	private long seed;
+
+	/**
+	 * Constructs this generator with the specified seed.
+	 *
+	 * @param seed
+	 *            the seed
+	 */
+	public SplittableEngine(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Mixes the bits of the specified value. Values that differ in a single
+	 * bit are mixed into values that are statistically unrelated.
+	 *
+	 * @param z
+	 *            the value to mix
+	 * @return the mixed value
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Derives the seed of the child stream identified by the specified key from
+	 * a parent seed. The same seed and key always derive the same child seed.
+	 *
+	 * @param seed
+	 *            the parent seed
+	 * @param key
+	 *            the key of the child stream, e.g. a task index or an agent id
+	 * @return the seed of the child stream
+	 */
+	public static long deriveSeed(long seed, long key) {
+		return mix64(seed ^ mix64((key + 1) * GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Sets the seed of this generator.
+	 *
+	 * @param seed
+	 *            the new seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Creates a new generator whose seed is drawn from this one. The numbers
+	 * produced by the new generator are independent of those that this
+	 * generator goes on to produce.
+	 *
+	 * @return the new generator
+	 */
+	public SplittableEngine split() {
+		return new SplittableEngine(mix64(nextLong() ^ GOLDEN_GAMMA));
+	}
+
+	/**
+	 * Returns a 64 bit uniformly distributed random number.
+	 */
+	@Override
+	public long nextLong() {
+		return mix64(seed += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Returns a 32 bit uniformly distributed random number.
+	 */
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	/**
+	 * Returns a 53 bit uniformly distributed random number in the open
+	 * interval <code>(0.0,1.0)</code>.
+	 */
+	@Override
+	public double nextDouble() {
+		double d;
+		do {
+			d = (nextLong() >>> 11) * DOUBLE_UNIT;
+		} while (d == 0.0);
+		return d;
+	}
+
+	/**
+	 * Returns a 53 bit uniformly distributed random number in the open
+	 * interval <code>(0.0,1.0)</code>.
+	 */
+	@Override
+	public double raw() {
+		return nextDouble();
+	}
+}
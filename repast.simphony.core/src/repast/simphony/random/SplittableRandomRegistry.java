@@ -0,0 +1,269 @@
+/*CopyrightHere*/
+package repast.simphony.random;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import cern.jet.random.AbstractDistribution;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * A random registry whose generators can be used concurrently by any number
+ * of threads without locking. Each generator registered with this registry is
+ * a facade over {@link SplittableEngine}s whose seeds are derived from the
+ * generator's seed, so the Colt distributions created on top of it draw from
+ * the stream selected for the calling thread.<p>
+ *
+ * Outside of a parallel batch every thread draws from the generator's master
+ * stream, so a serial run is reproducible from the seed alone, whichever
+ * thread seeds the registry or runs the model. Draws from the master stream
+ * are synchronized. Inside a batch,
+ * the code executing the batch binds the thread to the batch with
+ * {@link #bind(long)} and selects the child stream of each task with
+ * {@link StreamBinding#select(long)}. The numbers drawn by a task then depend
+ * only on the seed, the batch and the task's key, and not on the number of
+ * threads or on which of them executes the task.<p>
+ *
+ * The stateless default uniform distribution is shared by all the threads.
+ * The other default distributions cache values between draws, so a task bound
+ * to a batch gets its own copies of them.
+ *
+ * @see RandomHelper#setSplittable(boolean)
+ */
+public class SplittableRandomRegistry extends DefaultRandomRegistry {
+
+	/**
+	 * Binds a thread's streams to the child streams of a batch of tasks.
+	 */
+	public static final class StreamBinding {
+
+		private final long batchSeed;
+		private final StreamBinding previous;
+		private long keySeed;
+		private int version;
+		// the engines of the generators, indexed by generator id
+		private SplittableEngine[] engines = new SplittableEngine[0];
+		private int[] versions = new int[0];
+		private Map<AbstractDistribution, AbstractDistribution> distributions;
+
+		private StreamBinding(long batchSeed, StreamBinding previous) {
+			this.batchSeed = batchSeed;
+			this.previous = previous;
+			keySeed = batchSeed;
+		}
+
+		/**
+		 * Selects the child stream of the batch that the bound thread draws from.
+		 * The same key always selects a stream that starts with the same numbers.
+		 *
+		 * @param key
+		 *            the key of the stream, typically the index of the task in the
+		 *            batch
+		 */
+		public void select(long key) {
+			keySeed = SplittableEngine.deriveSeed(batchSeed, key);
+			version++;
+			if (distributions != null)
+				distributions.clear();
+		}
+
+		private SplittableEngine engine(int id, long generatorSeed) {
+			if (id >= engines.length) {
+				engines = Arrays.copyOf(engines, id + 1);
+				versions = Arrays.copyOf(versions, id + 1);
+			}
+			SplittableEngine engine = engines[id];
+			if (engine == null) {
+				engine = new SplittableEngine(0);
+				engines[id] = engine;
+				versions[id] = ~version;
+			}
+			// reseeded lazily, so selecting a stream costs nothing for the
+			// generators that the task doesn't use
+			if (versions[id] != version) {
+				engine.setSeed(SplittableEngine.deriveSeed(keySeed, generatorSeed));
+				versions[id] = version;
+			}
+			return engine;
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends AbstractDistribution> T distribution(T dist) {
+			if (distributions == null)
+				distributions = new IdentityHashMap<AbstractDistribution, AbstractDistribution>();
+			AbstractDistribution copy = distributions.get(dist);
+			if (copy == null) {
+				copy = (AbstractDistribution) dist.clone();
+				distributions.put(dist, copy);
+			}
+			return (T) copy;
+		}
+	}
+
+	/**
+	 * The generator handed out by this registry. Every call is forwarded to the
+	 * engine of the task that the calling thread is bound to, or to the master
+	 * stream when the thread isn't bound to a batch.
+	 */
+	private class StreamEngine extends RandomEngine {
+		private static final long serialVersionUID = -5305207322346689117L;
+
+		private final int id;
+		private final long seed;
+		private final SplittableEngine master;
+
+		private StreamEngine(int id, int seed) {
+			this.id = id;
+			this.seed = SplittableEngine.mix64(seed);
+			master = new SplittableEngine(this.seed);
+		}
+
+		// the engine of the bound task, or null if the thread isn't bound
+		private SplittableEngine bound() {
+			StreamBinding binding = bindings.get();
+			return binding == null ? null : binding.engine(id, seed);
+		}
+
+		@Override
+		public int nextInt() {
+			SplittableEngine engine = bound();
+			if (engine != null)
+				return engine.nextInt();
+			synchronized (master) {
+				return master.nextInt();
+			}
+		}
+
+		@Override
+		public long nextLong() {
+			SplittableEngine engine = bound();
+			if (engine != null)
+				return engine.nextLong();
+			synchronized (master) {
+				return master.nextLong();
+			}
+		}
+
+		@Override
+		public double nextDouble() {
+			SplittableEngine engine = bound();
+			if (engine != null)
+				return engine.nextDouble();
+			synchronized (master) {
+				return master.nextDouble();
+			}
+		}
+
+		@Override
+		public float nextFloat() {
+			SplittableEngine engine = bound();
+			if (engine != null)
+				return engine.nextFloat();
+			synchronized (master) {
+				return master.nextFloat();
+			}
+		}
+
+		@Override
+		public double raw() {
+			SplittableEngine engine = bound();
+			if (engine != null)
+				return engine.raw();
+			synchronized (master) {
+				return master.raw();
+			}
+		}
+
+		/**
+		 * Returns this generator, so that distributions cloned from one using this
+		 * generator also draw from the stream selected for the calling thread.
+		 */
+		@Override
+		public Object clone() {
+			return this;
+		}
+	}
+
+	// not initialized in its declaration, as the super constructor registers
+	// the default generator before this class's initializers run
+	private int generatorCount;
+
+	// the innermost batch that each thread is bound to
+	private final ThreadLocal<StreamBinding> bindings = new ThreadLocal<StreamBinding>();
+
+	/**
+	 * Creates a generator that draws from the stream selected for the calling
+	 * thread.
+	 */
+	@Override
+	protected RandomEngine createGenerator(int seed) {
+		return new StreamEngine(generatorCount++, seed);
+	}
+
+	/**
+	 * Returns the specified distribution, or the bound task's copy of it when
+	 * the calling thread is bound to a batch.
+	 */
+	@Override
+	protected <T extends AbstractDistribution> T threadLocal(T dist) {
+		if (dist == null || dist instanceof Uniform)
+			return dist;
+		StreamBinding binding = bindings.get();
+		return binding == null ? dist : binding.distribution(dist);
+	}
+
+	/**
+	 * Draws the seed of a new batch of tasks from the default generator's master
+	 * stream, or from the bound task's stream when batches are nested. Called by the thread that starts the batch, before
+	 * any of its tasks run.
+	 *
+	 * @return the seed of the new batch.
+	 */
+	public long createBatchSeed() {
+		return getGenerator(DEFAULT_GENERATOR).nextLong();
+	}
+
+	/**
+	 * Binds the calling thread to the batch with the specified seed, until
+	 * {@link #unbind(StreamBinding)} is called. Bindings nest, so a thread that
+	 * runs a task of another batch while waiting for its own can bind to that
+	 * batch too.
+	 *
+	 * @param batchSeed
+	 *            the seed of the batch, as returned by {@link #createBatchSeed()}
+	 * @return the binding through which the stream of each task is selected.
+	 */
+	public StreamBinding bind(long batchSeed) {
+		StreamBinding binding = new StreamBinding(batchSeed, bindings.get());
+		bindings.set(binding);
+		return binding;
+	}
+
+	/**
+	 * Unbinds the calling thread from the specified binding, restoring the
+	 * binding that it replaced.
+	 *
+	 * @param binding
+	 *            the binding returned by {@link #bind(long)}
+	 */
+	public void unbind(StreamBinding binding) {
+		bindings.set(binding.previous);
+	}
+
+	/**
+	 * Creates a generator for the stream identified by the specified key, e.g. an
+	 * agent's id. The generator's seed is derived from the default generator's
+	 * seed and the key alone, so it produces the same numbers regardless of when
+	 * and on which thread it is created. The generator is not thread safe.
+	 *
+	 * @param key
+	 *            the key of the stream
+	 * @return the new generator
+	 */
+	public SplittableEngine createStream(long key) {
+		return new SplittableEngine(SplittableEngine.deriveSeed(
+				SplittableEngine.mix64(getSeed(DEFAULT_GENERATOR)), key));
+	}
+}
@@ -1,6 +1,8 @@
 /*CopyrightHere*/
 package repast.simphony.space.continuous;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +25,10 @@ public abstract class AbstractContinuousSpace<T, U> extends DefaultProjection<T>
 	 */
 	public static class PointHolder { 
 		public NdPoint point;
+
+		// the object, and its bin and slot in the spatial index, if any
+		Object obj;
+		int bin = -1, slot;
 	}
 	
 	// this holds the objects that have been added, this includes ones that have
@@ -43,6 +49,8 @@ public abstract class AbstractContinuousSpace<T, U> extends DefaultProjection<T>
 	
 	protected int size = 0;
 
+	private SpatialBinIndex index;
+
 	/**
 	 * Constructs this space with the specified name, adder, translator,
 	 * accessor and size. The size is the size of the space meaning [3, 3] is a
@@ -156,6 +164,9 @@ public abstract class AbstractContinuousSpace<T, U> extends DefaultProjection<T>
 				size++;
 			}
 			holder.point = movedPoint; 
+			if (index != null) {
+				index.update(object, holder);
+			}
 			fireProjectionEvent(new ProjectionEvent(this, object,
 					ProjectionEvent.OBJECT_MOVED));
 			return true;
@@ -356,13 +367,17 @@ public abstract class AbstractContinuousSpace<T, U> extends DefaultProjection<T>
 	}
 
 	protected void removeAll() {
-		for (T t : agentLocationMap.keySet()) {
+		for (T t : new ArrayList<T>(agentLocationMap.keySet())) {
 			remove(t);
 		}
 	}
 
 	protected void remove(T t) {
-		NdPoint location = agentLocationMap.remove(t).point;
+		PointHolder holder = agentLocationMap.remove(t);
+		NdPoint location = holder.point;
+		if (index != null) {
+			index.remove(holder);
+		}
 		if (location != null) {
 			accessor.remove(t, locationStorage, location);
 		}
@@ -375,6 +390,93 @@ public abstract class AbstractContinuousSpace<T, U> extends DefaultProjection<T>
 		return translator.isPeriodic();
 	}
 
+	/**
+	 * Sets the size of the bins used to index the locations of the objects in
+	 * this space. When the space is indexed, the objects within some distance of
+	 * a point are found by checking only the objects in the nearby bins rather
+	 * than every object in the space. The index is kept current as objects
+	 * move. The bin size should be close to the distance typically used in
+	 * queries. A bin size of 0 or less removes the index.
+	 * 
+	 * @param binSize
+	 *            the minimum width of the index's bins
+	 */
+	public void setIndexBinSize(double binSize) {
+		if (index != null) {
+			for (PointHolder holder : agentLocationMap.values()) {
+				index.remove(holder);
+			}
+			index = null;
+		}
+		if (binSize <= 0) {
+			return;
+		}
+
+		index = new SpatialBinIndex(this, binSize);
+		for (Map.Entry<T, PointHolder> entry : agentLocationMap.entrySet()) {
+			if (entry.getValue().point != null) {
+				index.update(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Gets the minimum width of the bins used to index the locations of the
+	 * objects in this space. This may be larger than the size that was set, if
+	 * that size would have required too many bins.
+	 * 
+	 * @return the minimum width of the index's bins, or 0 if this space is not
+	 *         indexed.
+	 */
+	public double getIndexBinSize() {
+		return index == null ? 0 : index.getBinSize();
+	}
+
+	/**
+	 * Gets whether or not the locations of the objects in this space are
+	 * indexed.
+	 * 
+	 * @return true if this space is indexed, otherwise false.
+	 */
+	public boolean isIndexed() {
+		return index != null;
+	}
+
+	/**
+	 * Adds all the objects within the specified distance of the specified point
+	 * to the specified collection. "Within" includes the distance. If this
+	 * space is indexed, only the objects in the index's bins near the point are
+	 * checked, otherwise every object is checked.
+	 * 
+	 * @param result
+	 *            the collection to add the objects to
+	 * @param point
+	 *            the point to measure the distance from
+	 * @param distance
+	 *            the distance
+	 * @param exclude
+	 *            an object that should not be added to the collection, or null
+	 * @return the number of objects added to the collection.
+	 */
+	public int getObjectsWithin(Collection<? super T> result, NdPoint point, double distance,
+			Object exclude) {
+		if (index != null) {
+			return index.getObjectsWithin(result, point, distance, exclude);
+		}
+
+		double distanceSq = distance * distance;
+		int count = 0;
+		for (Map.Entry<T, PointHolder> entry : agentLocationMap.entrySet()) {
+			NdPoint location = entry.getValue().point;
+			if (location != null && getDistanceSq(location, point) <= distanceSq
+					&& !entry.getKey().equals(exclude)) {
+				result.add(entry.getKey());
+				count++;
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * Evaluate this Projection against the specified Predicate. This typically
 	 * involves a double dispatch where the Projection calls back to the
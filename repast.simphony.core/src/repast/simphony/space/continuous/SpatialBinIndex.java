@@ -0,0 +1,190 @@
+package repast.simphony.space.continuous;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import repast.simphony.space.Dimensions;
+import repast.simphony.space.continuous.AbstractContinuousSpace.PointHolder;
+
+/**
+ * Uniform grid of bins over a continuous space used to find the objects within
+ * some distance of a point without testing every object in the space. Each
+ * bin holds the PointHolders of the objects whose locations fall in it, and
+ * the holders record their bin and their slot within it so that an object can
+ * be moved between bins in constant time.
+ * <p>
+ *
+ * The number of bins along each dimension is chosen so that the bins evenly
+ * divide the dimension and are at least as wide as the requested bin size.
+ * Evenly sized bins let a query on a periodic space wrap around the borders.
+ * Locations outside the space's bounds, as can happen with InfiniteBorders,
+ * are put in the nearest edge bin.
+ */
+class SpatialBinIndex {
+
+  // the maximum number of bins, the bin size is increased if the requested
+  // size would require more than this
+  private static final int MAX_BINS = 1 << 22;
+
+  // slop, in bins, added to query ranges to allow for rounding
+  private static final double EPSILON = 1E-9;
+
+  private final AbstractContinuousSpace<?, ?> space;
+  private final double binSize;
+  private final int[] counts;
+  private final PointHolder[][] bins;
+  private final int[] binsPerDim;
+  private final int[] strides;
+  private final double[] widths;
+  private final double[] offsets;
+
+  SpatialBinIndex(AbstractContinuousSpace<?, ?> space, double binSize) {
+    this.space = space;
+    Dimensions dims = space.getDimensions();
+    int n = dims.size();
+    double total = 1;
+    for (int i = 0; i < n; i++) {
+      total *= Math.max(1, Math.floor(dims.getDimension(i) / binSize));
+    }
+    if (total > MAX_BINS) {
+      binSize *= Math.pow(total / MAX_BINS, 1.0 / n);
+    }
+    this.binSize = binSize;
+
+    binsPerDim = new int[n];
+    strides = new int[n];
+    widths = new double[n];
+    offsets = new double[n];
+    int count = 1;
+    for (int i = n - 1; i >= 0; i--) {
+      double dim = dims.getDimension(i);
+      binsPerDim[i] = (int) Math.max(1, Math.min(MAX_BINS, Math.floor(dim / binSize)));
+      widths[i] = dim / binsPerDim[i];
+      offsets[i] = dims.getOrigin(i);
+      strides[i] = count;
+      count *= binsPerDim[i];
+    }
+    counts = new int[count];
+    bins = new PointHolder[count][];
+  }
+
+  /**
+   * Gets the minimum width of the bins.
+   */
+  double getBinSize() {
+    return binSize;
+  }
+
+  private int bin(NdPoint point) {
+    int bin = 0;
+    for (int i = 0; i < binsPerDim.length; i++) {
+      int b = (int) Math.floor((point.point[i] + offsets[i]) / widths[i]);
+      if (b < 0)
+        b = 0;
+      else if (b >= binsPerDim[i])
+        b = binsPerDim[i] - 1;
+      bin += b * strides[i];
+    }
+    return bin;
+  }
+
+  /**
+   * Updates the index with the holder's current point. This adds the holder to
+   * the index if it is not already in it.
+   */
+  void update(Object obj, PointHolder holder) {
+    int bin = bin(holder.point);
+    if (bin == holder.bin)
+      return;
+    if (holder.bin != -1)
+      removeFromBin(holder);
+    holder.obj = obj;
+    PointHolder[] contents = bins[bin];
+    int count = counts[bin];
+    if (contents == null) {
+      contents = bins[bin] = new PointHolder[4];
+    } else if (count == contents.length) {
+      contents = bins[bin] = Arrays.copyOf(contents, count * 2);
+    }
+    contents[count] = holder;
+    holder.bin = bin;
+    holder.slot = count;
+    counts[bin] = count + 1;
+  }
+
+  /**
+   * Removes the holder from the index.
+   */
+  void remove(PointHolder holder) {
+    if (holder.bin != -1) {
+      removeFromBin(holder);
+      holder.bin = -1;
+    }
+  }
+
+  private void removeFromBin(PointHolder holder) {
+    PointHolder[] contents = bins[holder.bin];
+    int last = --counts[holder.bin];
+    PointHolder moved = contents[last];
+    contents[holder.slot] = moved;
+    moved.slot = holder.slot;
+    contents[last] = null;
+  }
+
+  /**
+   * Adds the objects within the specified distance of the specified point,
+   * except the excluded object, to the result.
+   *
+   * @return the number of objects added.
+   */
+  @SuppressWarnings("unchecked")
+  <T> int getObjectsWithin(Collection<? super T> result, NdPoint point, double distance,
+      Object exclude) {
+    return query((Collection<Object>) result, point, distance * distance, distance, exclude,
+        space.isPeriodic(), 0, 0);
+  }
+
+  private int query(Collection<Object> result, NdPoint point, double distanceSq, double distance,
+      Object exclude, boolean periodic, int dim, int base) {
+    int n = binsPerDim[dim];
+    double c = point.point[dim] + offsets[dim];
+    int lo = (int) Math.floor((c - distance) / widths[dim] - EPSILON);
+    int hi = (int) Math.floor((c + distance) / widths[dim] + EPSILON);
+    boolean wrap = periodic;
+    if (periodic && hi - lo + 1 >= n) {
+      lo = 0;
+      hi = n - 1;
+      wrap = false;
+    } else if (!periodic) {
+      // the edge bins also hold any locations beyond the borders
+      lo = Math.min(Math.max(lo, 0), n - 1);
+      hi = Math.max(Math.min(hi, n - 1), 0);
+    }
+
+    boolean lastDim = dim == binsPerDim.length - 1;
+    int found = 0;
+    for (int i = lo; i <= hi; i++) {
+      int b = i;
+      if (wrap) {
+        b = i % n;
+        if (b < 0)
+          b += n;
+      }
+      int bin = base + b * strides[dim];
+      if (lastDim) {
+        PointHolder[] contents = bins[bin];
+        for (int j = 0, count = counts[bin]; j < count; j++) {
+          PointHolder holder = contents[j];
+          if (space.getDistanceSq(holder.point, point) <= distanceSq
+              && !holder.obj.equals(exclude)) {
+            result.add(holder.obj);
+            found++;
+          }
+        }
+      } else {
+        found += query(result, point, distanceSq, distance, exclude, periodic, dim + 1, bin);
+      }
+    }
+    return found;
+  }
+}
@@ -1,5 +1,6 @@
 package repast.simphony.space.graph;
 
+import java.io.Closeable;
 import java.util.List;
 
 import repast.simphony.context.space.graph.ContextJungNetwork;
@@ -10,14 +11,20 @@ import edu.uci.ics.jung.graph.Graph;
 
 /**
  * Calculates the shortest path from a specified node to all other nodes in the
- * net using Dijkstra's algorithm.
+ * net using Dijkstra's algorithm. All the paths are recalculated whenever the
+ * network changes. {@link ShortestPathCache} updates its paths incrementally
+ * and is better suited to networks that change while many paths are queried.
+ * <p>
+ * 
+ * A ShortestPath listens to its network for changes, and so {@link #close()}
+ * should be called when it is no longer needed.
  * 
  * @author Nick Collier
  * @author Eric Tatara
  * @version $Revision$ $Date$
  */
 
-public class ShortestPath<T> implements ProjectionListener<T> {
+public class ShortestPath<T> implements ProjectionListener<T>, Closeable {
 
 	private Network<T> net;
 	private boolean calc = true;
@@ -135,13 +142,26 @@ public class ShortestPath<T> implements ProjectionListener<T> {
 		}
 	}
 	
+	/**
+	 * Removes this as a projection listener of its network and discards the
+	 * calculated paths.
+	 */
+	public void close() {
+		if (net != null) {
+			net.removeProjectionListener(this);
+			net = null;
+		}
+		dsp = null;
+		calc = true;
+	}
+
 	/**
 	 * Removes this as a projection listener when this ShortestPath is garbage
-	 * collected.
+	 * collected. As the network refers to this through its listeners, this
+	 * will not happen until {@link #close()} is called.
 	 */
 	public void finalize() {
-		if (net != null)
-			net.removeProjectionListener(this);
+		close();
 	}
 	
 	/**
@@ -149,7 +169,7 @@ public class ShortestPath<T> implements ProjectionListener<T> {
 	 * the object from the jvm.
 	 */
 	public static ShortestPath finished(ShortestPath<?> sp){
-		sp.finalize();
+		sp.close();
 		sp=null;
 		return sp;
 	}
@@ -0,0 +1,399 @@
+package repast.simphony.space.graph;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import repast.simphony.space.projection.ProjectionEvent;
+import repast.simphony.space.projection.ProjectionListener;
+
+/**
+ * Calculates shortest paths between the nodes of a network, caching the
+ * shortest path tree of the most recently used source nodes. Unlike
+ * {@link ShortestPath}, which recalculates all its paths whenever the network
+ * changes, this updates each cached tree incrementally as edges are added
+ * and removed. Adding an edge or decreasing its weight only relaxes the paths
+ * that it shortens, and removing an edge or increasing its weight only
+ * recalculates the part of a tree that was reached through that edge.
+ * <p>
+ *
+ * RepastEdge does not notify its network when its weight changes, so weights
+ * of edges in the network should be changed through
+ * {@link #setEdgeWeight(RepastEdge, double)}. If weights are changed in some
+ * other way, {@link #invalidate()} must be called before this is next used.
+ * <p>
+ *
+ * A ShortestPathCache listens to its network for changes, and so
+ * {@link #close()} should be called when it is no longer needed.
+ */
+public class ShortestPathCache<T> implements ProjectionListener<T>, Closeable {
+
+  /**
+   * The default maximum number of source trees that are cached.
+   */
+  public static final int DEFAULT_MAX_SOURCES = 256;
+
+  // the distance to and edge into a node in a source tree
+  private static class Label<T> {
+    double distance;
+    RepastEdge<T> edge;
+
+    Label(double distance, RepastEdge<T> edge) {
+      this.distance = distance;
+      this.edge = edge;
+    }
+  }
+
+  // an entry in the dijkstra queue
+  private static class QueueEntry<T> implements Comparable<QueueEntry<T>> {
+    final T node;
+    final double distance;
+
+    QueueEntry(T node, double distance) {
+      this.node = node;
+      this.distance = distance;
+    }
+
+    public int compareTo(QueueEntry<T> o) {
+      return Double.compare(distance, o.distance);
+    }
+  }
+
+  // the shortest path tree from a single source
+  private static class SourceTree<T> {
+    final Map<T, Label<T>> labels = new HashMap<T, Label<T>>();
+  }
+
+  private Network<T> net;
+  private int maxSources;
+  private LinkedHashMap<T, SourceTree<T>> trees;
+
+  /**
+   * Creates a ShortestPathCache for the specified network that caches at most
+   * {@link #DEFAULT_MAX_SOURCES} source trees.
+   *
+   * @param net
+   *          the network
+   */
+  public ShortestPathCache(Network<T> net) {
+    this(net, DEFAULT_MAX_SOURCES);
+  }
+
+  /**
+   * Creates a ShortestPathCache for the specified network that caches at most
+   * the specified number of source trees. When that number is exceeded the
+   * least recently used tree is discarded.
+   *
+   * @param net
+   *          the network
+   * @param maxSources
+   *          the maximum number of source trees to cache
+   */
+  public ShortestPathCache(Network<T> net, int maxSources) {
+    if (maxSources < 1) {
+      throw new IllegalArgumentException("maxSources must be at least 1");
+    }
+    this.net = net;
+    this.maxSources = maxSources;
+    trees = new LinkedHashMap<T, SourceTree<T>>(16, 0.75f, true) {
+      private static final long serialVersionUID = 5547616442012390367L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<T, SourceTree<T>> eldest) {
+        return size() > ShortestPathCache.this.maxSources;
+      }
+    };
+    net.addProjectionListener(this);
+  }
+
+  /**
+   * Gets the maximum number of source trees that are cached.
+   *
+   * @return the maximum number of source trees that are cached.
+   */
+  public synchronized int getMaxSources() {
+    return maxSources;
+  }
+
+  /**
+   * Gets the number of source trees that are currently cached.
+   *
+   * @return the number of source trees that are currently cached.
+   */
+  public synchronized int getCachedSourceCount() {
+    return trees.size();
+  }
+
+  /**
+   * Returns a list of RepastEdges in the shortest path from source to target.
+   * The list is empty if there is no such path or if the source and target are
+   * the same.
+   *
+   * @param source
+   * @param target
+   * @return a list of RepastEdges in the shortest path from source to target.
+   */
+  public synchronized List<RepastEdge<T>> getPath(T source, T target) {
+    SourceTree<T> tree = getTree(source);
+    if (!tree.labels.containsKey(target)) {
+      return Collections.emptyList();
+    }
+    List<RepastEdge<T>> path = new ArrayList<RepastEdge<T>>();
+    T node = target;
+    Label<T> label = tree.labels.get(node);
+    while (label.edge != null) {
+      path.add(label.edge);
+      node = other(label.edge, node);
+      label = tree.labels.get(node);
+    }
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Gets the length of the shortest path from the source node to the target
+   * node.
+   *
+   * @param source
+   * @param target
+   * @return the length of the shortest path from the source node to the
+   *         target node, or Double.POSITIVE_INFINITY if there is no such path.
+   */
+  public synchronized double getPathLength(T source, T target) {
+    Label<T> label = getTree(source).labels.get(target);
+    return label == null ? Double.POSITIVE_INFINITY : label.distance;
+  }
+
+  /**
+   * Sets the weight of the specified edge, updating the cached paths.
+   *
+   * @param edge
+   *          the edge
+   * @param weight
+   *          the new weight of the edge
+   */
+  public synchronized void setEdgeWeight(RepastEdge<T> edge, double weight) {
+    checkWeight(weight);
+    double old = edge.getWeight();
+    edge.setWeight(weight);
+    if (weight < old) {
+      for (SourceTree<T> tree : trees.values()) {
+        edgeAdded(tree, edge);
+      }
+    } else if (weight > old) {
+      for (SourceTree<T> tree : trees.values()) {
+        edgeRemoved(tree, edge);
+      }
+    }
+  }
+
+  /**
+   * Discards all the cached paths.
+   */
+  public synchronized void invalidate() {
+    trees.clear();
+  }
+
+  /**
+   * Discards all the cached paths and stops listening to the network for
+   * changes.
+   */
+  public synchronized void close() {
+    if (net != null) {
+      net.removeProjectionListener(this);
+      net = null;
+    }
+    trees.clear();
+  }
+
+  /**
+   * Updates the cached paths when the network changes.
+   *
+   * @param evt
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized void projectionEventOccurred(ProjectionEvent<T> evt) {
+    if (evt.getType() == ProjectionEvent.EDGE_ADDED) {
+      RepastEdge<T> edge = (RepastEdge<T>) evt.getSubject();
+      checkWeight(edge.getWeight());
+      for (SourceTree<T> tree : trees.values()) {
+        edgeAdded(tree, edge);
+      }
+    } else if (evt.getType() == ProjectionEvent.EDGE_REMOVED) {
+      RepastEdge<T> edge = (RepastEdge<T>) evt.getSubject();
+      for (SourceTree<T> tree : trees.values()) {
+        edgeRemoved(tree, edge);
+      }
+    } else if (evt.getType() == ProjectionEvent.OBJECT_REMOVED) {
+      T node = (T) evt.getSubject();
+      trees.remove(node);
+      for (SourceTree<T> tree : trees.values()) {
+        if (tree.labels.containsKey(node)) {
+          recalculate(tree, subtree(tree, node), node);
+        }
+      }
+    }
+  }
+
+  private void checkWeight(double weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("Edge weights must be non-negative: " + weight);
+    }
+  }
+
+  private SourceTree<T> getTree(T source) {
+    if (net == null) {
+      throw new IllegalStateException("ShortestPathCache has been closed");
+    }
+    SourceTree<T> tree = trees.get(source);
+    if (tree == null) {
+      tree = new SourceTree<T>();
+      tree.labels.put(source, new Label<T>(0, null));
+      PriorityQueue<QueueEntry<T>> queue = new PriorityQueue<QueueEntry<T>>();
+      queue.add(new QueueEntry<T>(source, 0));
+      relax(tree, queue);
+      trees.put(source, tree);
+    }
+    return tree;
+  }
+
+  // gets the node at the other end of the edge
+  private T other(RepastEdge<T> edge, T node) {
+    T source = edge.getSource();
+    return source.equals(node) ? edge.getTarget() : source;
+  }
+
+  // runs dijkstra from the nodes in the queue, only lowering distances
+  private void relax(SourceTree<T> tree, PriorityQueue<QueueEntry<T>> queue) {
+    while (!queue.isEmpty()) {
+      QueueEntry<T> entry = queue.poll();
+      Label<T> label = tree.labels.get(entry.node);
+      if (label == null || entry.distance > label.distance) {
+        // stale entry
+        continue;
+      }
+      for (RepastEdge<T> edge : net.getOutEdges(entry.node)) {
+        checkWeight(edge.getWeight());
+        T next = other(edge, entry.node);
+        double distance = entry.distance + edge.getWeight();
+        Label<T> nextLabel = tree.labels.get(next);
+        if (nextLabel == null) {
+          tree.labels.put(next, new Label<T>(distance, edge));
+          queue.add(new QueueEntry<T>(next, distance));
+        } else if (distance < nextLabel.distance) {
+          nextLabel.distance = distance;
+          nextLabel.edge = edge;
+          queue.add(new QueueEntry<T>(next, distance));
+        }
+      }
+    }
+  }
+
+  // relaxes the paths that are shortened by the edge
+  private void edgeAdded(SourceTree<T> tree, RepastEdge<T> edge) {
+    PriorityQueue<QueueEntry<T>> queue = new PriorityQueue<QueueEntry<T>>();
+    offer(tree, queue, edge, edge.getSource(), edge.getTarget());
+    if (!edge.isDirected()) {
+      offer(tree, queue, edge, edge.getTarget(), edge.getSource());
+    }
+    relax(tree, queue);
+  }
+
+  private void offer(SourceTree<T> tree, PriorityQueue<QueueEntry<T>> queue, RepastEdge<T> edge,
+      T from, T to) {
+    Label<T> fromLabel = tree.labels.get(from);
+    if (fromLabel == null) {
+      return;
+    }
+    double distance = fromLabel.distance + edge.getWeight();
+    Label<T> toLabel = tree.labels.get(to);
+    if (toLabel == null) {
+      tree.labels.put(to, new Label<T>(distance, edge));
+      queue.add(new QueueEntry<T>(to, distance));
+    } else if (distance < toLabel.distance) {
+      toLabel.distance = distance;
+      toLabel.edge = edge;
+      queue.add(new QueueEntry<T>(to, distance));
+    }
+  }
+
+  // recalculates the part of the tree reached through the edge, if any
+  private void edgeRemoved(SourceTree<T> tree, RepastEdge<T> edge) {
+    T node = null;
+    Label<T> label = tree.labels.get(edge.getTarget());
+    if (label != null && label.edge == edge) {
+      node = edge.getTarget();
+    } else {
+      label = tree.labels.get(edge.getSource());
+      if (label != null && label.edge == edge) {
+        node = edge.getSource();
+      }
+    }
+    if (node != null) {
+      recalculate(tree, subtree(tree, node), null);
+    }
+  }
+
+  // gets the nodes in the tree whose paths pass through the specified node,
+  // including that node.
+  private Set<T> subtree(SourceTree<T> tree, T root) {
+    Map<T, List<T>> children = new HashMap<T, List<T>>();
+    for (Map.Entry<T, Label<T>> entry : tree.labels.entrySet()) {
+      RepastEdge<T> edge = entry.getValue().edge;
+      if (edge != null) {
+        T parent = other(edge, entry.getKey());
+        List<T> list = children.get(parent);
+        if (list == null) {
+          list = new ArrayList<T>();
+          children.put(parent, list);
+        }
+        list.add(entry.getKey());
+      }
+    }
+
+    Set<T> nodes = new HashSet<T>();
+    List<T> stack = new ArrayList<T>();
+    stack.add(root);
+    nodes.add(root);
+    while (!stack.isEmpty()) {
+      List<T> list = children.get(stack.remove(stack.size() - 1));
+      if (list != null) {
+        for (T child : list) {
+          if (nodes.add(child)) {
+            stack.add(child);
+          }
+        }
+      }
+    }
+    return nodes;
+  }
+
+  // removes the specified nodes from the tree and finds their paths again
+  // from the rest of the tree. The removed node, if any, is no longer in the
+  // network.
+  private void recalculate(SourceTree<T> tree, Set<T> nodes, T removed) {
+    for (T node : nodes) {
+      tree.labels.remove(node);
+    }
+    PriorityQueue<QueueEntry<T>> queue = new PriorityQueue<QueueEntry<T>>();
+    for (T node : nodes) {
+      if (node.equals(removed)) {
+        continue;
+      }
+      for (RepastEdge<T> edge : net.getInEdges(node)) {
+        T from = other(edge, node);
+        if (!nodes.contains(from)) {
+          offer(tree, queue, edge, from, node);
+        }
+      }
+    }
+    relax(tree, queue);
+  }
+}
@@ -387,7 +387,7 @@ public abstract class AbstractGrid<T, U> extends DefaultProjection<T> implements
   }
 
   protected void removeAll() {
-    for (T t : agentLocationMap.keySet()) {
+    for (T t : new ArrayList<T>(agentLocationMap.keySet())) {
       remove(t);
     }
   }
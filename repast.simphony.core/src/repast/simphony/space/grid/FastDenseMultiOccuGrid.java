@@ -0,0 +1,525 @@
+/*CopyrightHere*/
+package repast.simphony.space.grid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import repast.simphony.random.RandomHelper;
+
+/**
+ * Multi-occupancy n-dimensional grid whose cells are stored in flat primitive
+ * arrays rather than in a map of lists. Each cell is an index into an array of
+ * cell heads, and the objects in a cell are linked together through parallel
+ * slot arrays, so that adding, moving and querying objects does not allocate
+ * per cell collections. This trades a fixed amount of memory per cell for
+ * speed and so is best suited to grids that are densely populated.
+ * <p>
+ *
+ * In addition to the usual Grid methods, this provides methods that put the
+ * objects in a cell or in a Moore neighborhood into a caller supplied
+ * collection.
+ */
+public class FastDenseMultiOccuGrid<T> extends AbstractGrid<T, FastDenseMultiOccuGrid.CellStore> {
+
+  private static final Iterable<Object> EMPTY_ITERABLE = new ArrayList<Object>();
+
+  /**
+   * Storage for the objects in the grid's cells. Cells are identified by their
+   * index in the flattened grid. The objects in each cell are kept in a
+   * circular singly linked list of slots. The cell's entry in the cell array
+   * points to the last slot in that list, so that both the first slot and the
+   * end of the list can be reached in constant time.
+   */
+  public static final class CellStore {
+
+    private static final int NONE = -1;
+
+    private final int[] strides;
+    private final int[] offsets;
+    private final int[] last;
+    private final int[] counts;
+    // the number of times each cell has been modified, so that iterators over
+    // a cell can detect that it changed
+    private final int[] mods;
+
+    private Object[] objs = new Object[16];
+    private int[] next = new int[16];
+    private int free = NONE;
+    private int used = 0;
+
+    CellStore(GridDimensions dims) {
+      int n = dims.size();
+      strides = new int[n];
+      offsets = new int[n];
+      int cells = 1;
+      for (int i = n - 1; i >= 0; i--) {
+        strides[i] = cells;
+        offsets[i] = dims.getOrigin(i);
+        cells *= dims.getDimension(i);
+      }
+      last = new int[cells];
+      Arrays.fill(last, NONE);
+      counts = new int[cells];
+      mods = new int[cells];
+    }
+
+    /**
+     * Gets the index of the cell at the specified coordinates.
+     *
+     * @param coords
+     *          the coordinates of the cell
+     * @return the index of the cell at the specified coordinates.
+     */
+    public int index(int[] coords) {
+      int index = 0;
+      for (int i = 0; i < strides.length; i++) {
+        index += (coords[i] + offsets[i]) * strides[i];
+      }
+      return index;
+    }
+
+    /**
+     * Gets the number of objects in the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @return the number of objects in the specified cell.
+     */
+    public int size(int cell) {
+      return counts[cell];
+    }
+
+    /**
+     * Gets the number of times the specified cell has been modified.
+     *
+     * @param cell
+     *          the index of the cell
+     * @return the number of times the specified cell has been modified.
+     */
+    public int modCount(int cell) {
+      return mods[cell];
+    }
+
+    /**
+     * Gets the slot of the first object in the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @return the slot of the first object in the cell or -1 if the cell is
+     *         empty.
+     */
+    public int first(int cell) {
+      int tail = last[cell];
+      return tail == NONE ? NONE : next[tail];
+    }
+
+    /**
+     * Gets the slot following the specified slot in the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @param slot
+     *          a slot in that cell
+     * @return the following slot or -1 if the slot is the last in the cell.
+     */
+    public int next(int cell, int slot) {
+      return slot == last[cell] ? NONE : next[slot];
+    }
+
+    /**
+     * Gets the object in the specified slot.
+     *
+     * @param slot
+     *          the slot
+     * @return the object in the specified slot.
+     */
+    public Object get(int slot) {
+      return objs[slot];
+    }
+
+    /**
+     * Gets the nth object in the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @param n
+     *          the position of the object in the cell
+     * @return the nth object in the specified cell.
+     */
+    public Object get(int cell, int n) {
+      int slot = first(cell);
+      for (int i = 0; i < n; i++) {
+        slot = next[slot];
+      }
+      return objs[slot];
+    }
+
+    /**
+     * Adds the specified object to the end of the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @param obj
+     *          the object to add
+     */
+    public void add(int cell, Object obj) {
+      int slot = allocate();
+      objs[slot] = obj;
+      int tail = last[cell];
+      if (tail == NONE) {
+        next[slot] = slot;
+      } else {
+        next[slot] = next[tail];
+        next[tail] = slot;
+      }
+      last[cell] = slot;
+      counts[cell]++;
+      mods[cell]++;
+    }
+
+    /**
+     * Removes the specified object from the specified cell.
+     *
+     * @param cell
+     *          the index of the cell
+     * @param obj
+     *          the object to remove
+     * @return true if the object was found and removed, otherwise false.
+     */
+    public boolean remove(int cell, Object obj) {
+      int tail = last[cell];
+      if (tail == NONE)
+        return false;
+      int prev = tail;
+      int slot = next[tail];
+      while (true) {
+        if (objs[slot] == obj || objs[slot].equals(obj)) {
+          if (prev == slot) {
+            last[cell] = NONE;
+          } else {
+            next[prev] = next[slot];
+            if (slot == tail)
+              last[cell] = prev;
+          }
+          counts[cell]--;
+          mods[cell]++;
+          release(slot);
+          return true;
+        }
+        if (slot == tail)
+          return false;
+        prev = slot;
+        slot = next[slot];
+      }
+    }
+
+    private int allocate() {
+      if (free != NONE) {
+        int slot = free;
+        free = next[slot];
+        return slot;
+      }
+      if (used == objs.length) {
+        int capacity = objs.length * 2;
+        objs = Arrays.copyOf(objs, capacity);
+        next = Arrays.copyOf(next, capacity);
+      }
+      return used++;
+    }
+
+    private void release(int slot) {
+      objs[slot] = null;
+      next[slot] = free;
+      free = slot;
+    }
+  }
+
+  /**
+   * Iterates over the objects in a single cell. The iterator is fail-fast: if
+   * an object is added to or removed from the cell during iteration, next()
+   * throws a ConcurrentModificationException.
+   */
+  private static final class CellIterator<V> implements Iterator<V> {
+
+    private final CellStore store;
+    private final int cell;
+    private final int expectedMods;
+    private int slot;
+
+    CellIterator(CellStore store, int cell) {
+      this.store = store;
+      this.cell = cell;
+      this.expectedMods = store.modCount(cell);
+      this.slot = store.first(cell);
+    }
+
+    public boolean hasNext() {
+      return slot != CellStore.NONE;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V next() {
+      if (store.modCount(cell) != expectedMods)
+        throw new ConcurrentModificationException();
+      if (slot == CellStore.NONE)
+        throw new NoSuchElementException();
+      V obj = (V) store.get(slot);
+      slot = store.next(cell, slot);
+      return obj;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException("Remove is not supported");
+    }
+  }
+
+  /**
+   * An accessor for this grid class.
+   */
+  public static final class FastDenseMultiAccessor<V> implements CellAccessor<V, CellStore> {
+
+    @SuppressWarnings("unchecked")
+    public V get(CellStore store, GridPoint location) {
+      int cell = store.index(location.point);
+      int slot = store.first(cell);
+      return slot == CellStore.NONE ? null : (V) store.get(slot);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Iterable<V> getAll(CellStore store, GridPoint location) {
+      return getAll(store, store.index(location.point));
+    }
+
+    @SuppressWarnings("unchecked")
+    Iterable<V> getAll(final CellStore store, final int cell) {
+      if (store.size(cell) == 0)
+        return (Iterable<V>) EMPTY_ITERABLE;
+      return new Iterable<V>() {
+        public Iterator<V> iterator() {
+          return new CellIterator<V>(store, cell);
+        }
+      };
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getRandom(CellStore store, GridPoint location) {
+      return (V) getRandom(store, store.index(location.point));
+    }
+
+    Object getRandom(CellStore store, int cell) {
+      int count = store.size(cell);
+      if (count == 0)
+        return null;
+      return store.get(cell, RandomHelper.nextIntFromTo(0, count - 1));
+    }
+
+    public boolean put(V obj, CellStore store, GridPoint location) {
+      store.add(store.index(location.point), obj);
+      return true;
+    }
+
+    public void remove(V obj, CellStore store, GridPoint location) {
+      store.remove(store.index(location.point), obj);
+    }
+
+    public boolean allowsMultiOccupancy() {
+      return true;
+    }
+  }
+
+  /**
+   * Constructs this space with the specified name, adder, translator and
+   * size. The size is the size of the space meaning [3, 3] is a 3x3 space.
+   *
+   * @param name
+   *          the name of the space
+   * @param size
+   *          the dimensions of the space
+   */
+  public FastDenseMultiOccuGrid(String name, GridAdder<T> adder, GridPointTranslator translator,
+      int... size) {
+    super(name, adder, translator, new FastDenseMultiAccessor<T>(), size);
+  }
+
+  /**
+   * Constructs this space with the specified name, adder, translator, size
+   * and origin. The size is the size of the space meaning [3, 3] is a 3x3
+   * space. The origin is the offset on the space where the [0,0] grid point
+   * is.
+   *
+   * @param name
+   *          the name of the space
+   * @param size
+   *          the dimensions of the space
+   * @param origin
+   *          the origin of the space
+   */
+  public FastDenseMultiOccuGrid(String name, GridAdder<T> adder, GridPointTranslator translator,
+      int[] size, int[] origin) {
+    super(name, adder, translator, new FastDenseMultiAccessor<T>(), size, origin);
+  }
+
+  /**
+   * Constructs this space with the specified name and size. The size is the
+   * size of the space meaning [3, 3] is a 3x3 space. This uses by default a
+   * {@link SimpleGridAdder} and {@link StrictBorders}.
+   *
+   * @param name
+   *          the name of the space
+   * @param size
+   *          the dimensions of the space
+   */
+  public FastDenseMultiOccuGrid(String name, int... size) {
+    super(name, new SimpleGridAdder<T>(), new StrictBorders(), new FastDenseMultiAccessor<T>(),
+        size);
+  }
+
+  @Override
+  protected CellStore createLocationStorage() {
+    return new CellStore(dimensions);
+  }
+
+  private FastDenseMultiAccessor<T> denseAccessor() {
+    return (FastDenseMultiAccessor<T>) accessor;
+  }
+
+  /**
+   * Gets the object at the specified location.
+   *
+   * @param location
+   * @return the object at the specified location.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public T getObjectAt(int... location) {
+    int[] loc = getTransformedLocation(location);
+    int slot = locationStorage.first(locationStorage.index(loc));
+    return slot == CellStore.NONE ? null : (T) locationStorage.get(slot);
+  }
+
+  /**
+   * Gets all the objects at the specified location.
+   *
+   * @param location
+   * @return the objects at the specified location.
+   */
+  @Override
+  public Iterable<T> getObjectsAt(int... location) {
+    int[] loc = getTransformedLocation(location);
+    return denseAccessor().getAll(locationStorage, locationStorage.index(loc));
+  }
+
+  /**
+   * Gets a random object from among those at the specified location.
+   *
+   * @param location
+   * @return a random object at the specified location.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public T getRandomObjectAt(int... location) {
+    int[] loc = getTransformedLocation(location);
+    return (T) denseAccessor().getRandom(locationStorage, locationStorage.index(loc));
+  }
+
+  /**
+   * Gets the number of objects at the specified location.
+   *
+   * @param location
+   * @return the number of objects at the specified location.
+   */
+  public int getObjectCountAt(int... location) {
+    int[] loc = getTransformedLocation(location);
+    return locationStorage.size(locationStorage.index(loc));
+  }
+
+  /**
+   * Adds the objects at the specified location to the specified collection.
+   *
+   * @param result
+   *          the collection to add the objects to
+   * @param location
+   *          the location
+   * @return the number of objects added to the collection.
+   */
+  public int getObjectsAt(Collection<? super T> result, int... location) {
+    int[] loc = getTransformedLocation(location);
+    return addCell(result, locationStorage.index(loc));
+  }
+
+  @SuppressWarnings("unchecked")
+  private int addCell(Collection<? super T> result, int cell) {
+    CellStore store = locationStorage;
+    int count = 0;
+    for (int slot = store.first(cell); slot != CellStore.NONE; slot = store.next(cell, slot)) {
+      result.add((T) store.get(slot));
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Adds the objects in the Moore neighborhood of the specified point to the
+   * specified collection. The neighborhood extends the specified number of
+   * cells in each direction along each dimension and includes the cell at the
+   * point itself. If the grid is periodic the neighborhood wraps around the
+   * borders, and each cell is visited at most once even when the neighborhood
+   * is larger than the grid. Otherwise, the neighborhood is clipped to the
+   * grid's borders.
+   *
+   * @param result
+   *          the collection to add the objects to
+   * @param point
+   *          the center of the neighborhood
+   * @param extent
+   *          the extent of the neighborhood along each dimension
+   * @return the number of objects added to the collection.
+   */
+  public int getMooreNeighborhood(Collection<? super T> result, GridPoint point, int... extent) {
+    if (extent.length != dimensions.size()) {
+      throw new IllegalArgumentException(
+          "Extent must have the same number of dimensions as the grid");
+    }
+    return addMoore(result, point.point, extent, isPeriodic(), 0, 0);
+  }
+
+  private int addMoore(Collection<? super T> result, int[] center, int[] extent,
+      boolean periodic, int dim, int base) {
+    int size = dimensions.getDimension(dim);
+    int offset = dimensions.getOrigin(dim);
+    int stride = locationStorage.strides[dim];
+    // coordinates are translated into [0, size) before computing the cell
+    int c = center[dim] + offset;
+    int min = c - extent[dim];
+    int max = c + extent[dim];
+    if (periodic) {
+      if (max - min + 1 >= size) {
+        min = 0;
+        max = size - 1;
+        periodic = false;
+      }
+    } else {
+      min = Math.max(min, 0);
+      max = Math.min(max, size - 1);
+    }
+
+    boolean lastDim = dim == dimensions.size() - 1;
+    int count = 0;
+    for (int i = min; i <= max; i++) {
+      int coord = i;
+      if (periodic) {
+        coord = i % size;
+        if (coord < 0)
+          coord += size;
+      }
+      int cell = base + coord * stride;
+      count += lastDim ? addCell(result, cell) : addMoore(result, center, extent,
+          isPeriodic(), dim + 1, cell);
+    }
+    return count;
+  }
+}
@@ -16,6 +16,7 @@ public class GridBuilderParameters<T> {
 	protected int[] dims;
 	protected int[] origin;
 	protected boolean isMulti;
+	protected boolean isDense;
 
 	/**
 	 * Creates parameters with the specified border rule, adder, multi occupancy and dimensions.
@@ -60,6 +61,27 @@ public class GridBuilderParameters<T> {
 		this.trans = borderRule;
 	}
 
+	/**
+	 * Creates parameters with the specified border rule, adder, multi occupancy, dense storage,
+	 * dimensions and origin.
+	 *
+	 * @param borderRule the rule used to determine border behavior
+	 * @param adder the adder used to add objects to the grid when those objects are added to
+	 * the context for which the grid is a projection
+	 * @param multi whether or not each cell in the grid is multi-occupancy
+	 * @param dense whether or not the grid's cells are stored in dense arrays
+	 * @param dims the dimensions of the grid
+	 * @param origin the origin of the grid
+	 *
+	 * @see GridAdder
+   * @see GridPointTranslator
+	 */
+	public GridBuilderParameters(GridPointTranslator borderRule, GridAdder<T> adder, boolean multi,
+	                             boolean dense, int[] dims, int[] origin) {
+		this(borderRule, adder, multi, dims, origin);
+		isDense = dense;
+	}
+
 	/**
 	 * Gets the grid point translator used to calculate points when moving by displacement. This
 	 * can be used to set the translator so that the new point is the result of a bounce off a boundary.
@@ -104,6 +126,17 @@ public class GridBuilderParameters<T> {
 		return isMulti;
 	}
 
+	/**
+	 * Gets whether or not the grid's cells should be stored in dense arrays rather than in a map.
+	 * Dense storage uses memory for every cell in the grid, but is faster for grids that are
+	 * densely populated. This currently only applies to multi-occupancy grids.
+	 *
+	 * @return true if the grid's cells should be stored in dense arrays.
+	 */
+	public boolean isDense() {
+		return isDense;
+	}
+
 	/**
 	 * Returns GridBuilderParameters suitable for creating a single occupancy 1 dimensional grid.
 	 *
@@ -267,4 +300,21 @@ public class GridBuilderParameters<T> {
 	public static <T> GridBuilderParameters<T> multiOccupancyNDTorus(GridAdder<T> adder, int... dimensions) {
 		return new GridBuilderParameters<T>(new WrapAroundBorders(), adder, true, dimensions);
 	}
+
+	/**
+	 * Returns GridBuilderParameters suitable for creating a multi occupancy n-dimensional grid
+	 * whose cells are stored in dense arrays. This is faster than the default map based storage
+	 * when most of the grid's cells are occupied.
+	 *
+	 * @param adder the adder used to add objects to the grid when those objects are added to
+	 * the context for which the grid is a projection
+	 * @param borderRule the rule used to determine border behavior
+	 * @param dimensions the dimensions of the grid
+	 * @return GridBuilderParameters suitable for creating a dense multi occupancy n-dimensional grid.
+	 */
+	public static <T> GridBuilderParameters<T> denseMultiOccupancyND(GridAdder<T> adder,
+	                                                          GridPointTranslator borderRule, int... dimensions) {
+		return new GridBuilderParameters<T>(borderRule, adder, true, true, dimensions,
+				new int[dimensions.length]);
+	}
 }
@@ -1,10 +1,17 @@
 package repast.simphony.util.bytecode;
 
 import javassist.*;
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+import simphony.util.messages.MessageCenter;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * @author Nick Collier
@@ -12,6 +19,8 @@ import java.util.Map;
  */
 public class ByteCodeUtilities {
 
+  private static MessageCenter msg = MessageCenter.getMessageCenter(ByteCodeUtilities.class);
+
   static {
     ClassPool.getDefault().appendClassPath(new LoaderClassPath(ByteCodeUtilities.class.getClassLoader()));
   }
@@ -22,6 +31,62 @@ public class ByteCodeUtilities {
   private Map<String, DataSource> sourceCache = new HashMap<String, DataSource>();
   // map of template for creating objects from primitive types.
   private Map<Class, String> templateMap = new HashMap<Class, String>();
+  // map of template for unboxing primitive types from objects.
+  private Map<Class, String> unboxMap = new HashMap<Class, String>();
+  // method invoker cache so we can reuse them, kept with the declaring class
+  // so that the model's classes and their class loader can be unloaded
+  private ClassValue<Map<Method, MethodInvoker>> invokerCache = new ClassValue<Map<Method, MethodInvoker>>() {
+    protected Map<Method, MethodInvoker> computeValue(Class<?> type) {
+      return new HashMap<Method, MethodInvoker>();
+    }
+  };
+  // field accessor cache so we can reuse them, keyed by the field's declaring class
+  private ClassValue<Map<Field, FieldAccessor>> accessorCache = new ClassValue<Map<Field, FieldAccessor>>() {
+    protected Map<Field, FieldAccessor> computeValue(Class<?> type) {
+      return new HashMap<Field, FieldAccessor>();
+    }
+  };
+  // a class pool for each class loader whose classes invokers are generated for
+  private Map<ClassLoader, ClassPool> pools = new WeakHashMap<ClassLoader, ClassPool>();
+
+  /**
+   * MethodInvoker used when an invoker cannot be generated, for example when
+   * the method is not public.
+   */
+  private static class FastMethodInvoker implements MethodInvoker {
+
+    private FastMethod method;
+
+    public FastMethodInvoker(Method method) {
+      this.method = FastClass.create(method.getDeclaringClass()).getMethod(method);
+    }
+
+    public Object invoke(Object target, Object[] args) throws InvocationTargetException {
+      return method.invoke(target, args);
+    }
+  }
+
+  /**
+   * FieldAccessor used when an accessor cannot be generated, for example when
+   * the field is private.
+   */
+  private static class ReflectiveFieldAccessor implements FieldAccessor {
+
+    private Field field;
+
+    public ReflectiveFieldAccessor(Field field) {
+      this.field = field;
+      field.setAccessible(true);
+    }
+
+    public Object get(Object target) throws IllegalAccessException {
+      return field.get(target);
+    }
+
+    public void set(Object target, Object value) throws IllegalAccessException {
+      field.set(target, value);
+    }
+  }
 
   private static ByteCodeUtilities instance = new ByteCodeUtilities();
 
@@ -33,6 +98,16 @@ public class ByteCodeUtilities {
     templateMap.put(short.class, "new Short($body$)");
     templateMap.put(byte.class, "new Byte($body$)");
     templateMap.put(boolean.class, "Boolean.valueOf($body$)");
+    templateMap.put(char.class, "new Character($body$)");
+
+    unboxMap.put(int.class, "((Integer)$body$).intValue()");
+    unboxMap.put(double.class, "((Double)$body$).doubleValue()");
+    unboxMap.put(float.class, "((Float)$body$).floatValue()");
+    unboxMap.put(long.class, "((Long)$body$).longValue()");
+    unboxMap.put(short.class, "((Short)$body$).shortValue()");
+    unboxMap.put(byte.class, "((Byte)$body$).byteValue()");
+    unboxMap.put(char.class, "((Character)$body$).charValue()");
+    unboxMap.put(boolean.class, "((Boolean)$body$).booleanValue()");
   }
 
   /**
@@ -97,6 +172,197 @@ public class ByteCodeUtilities {
 
     return source;
   }
+
+  /**
+   * Gets a MethodInvoker that will call the specified method. Where possible, the
+   * invoker is generated byte code that calls the method directly. Otherwise,
+   * for example if the method or its declaring class is not public, the
+   * returned invoker falls back to a cglib FastMethod. Invokers are cached
+   * and reused for the same method for as long as its declaring class is loaded.
+   *
+   * @param method the method to create the invoker for
+   * @return a MethodInvoker that will call the specified method.
+   */
+  public synchronized MethodInvoker getMethodInvoker(Method method) {
+    Class<?> objType = method.getDeclaringClass();
+    Map<Method, MethodInvoker> invokers = invokerCache.get(objType);
+    MethodInvoker invoker = invokers.get(method);
+    if (invoker == null) {
+      if (Modifier.isPublic(method.getModifiers()) && isPublic(objType)) {
+        try {
+          invoker = createMethodInvoker(method);
+        } catch (Exception ex) {
+          msg.debug("Unable to generate invoker for '" + objType.getName() + "." +
+                  method.getName() + "', using FastMethod instead", ex);
+        }
+      }
+      if (invoker == null) invoker = new FastMethodInvoker(method);
+      invokers.put(method, invoker);
+    }
+    return invoker;
+  }
+
+  /**
+   * Gets a FieldAccessor for the specified field. Where possible, the accessor
+   * is generated byte code, defined in the package of the field's declaring class,
+   * that reads and writes the field directly. Otherwise, for example if the field
+   * is private or static, the returned accessor makes the field accessible once and
+   * uses reflection. Accessors are cached and reused for the same field for as long
+   * as its declaring class is loaded.
+   *
+   * @param field the field to create the accessor for
+   * @return a FieldAccessor for the specified field.
+   */
+  public synchronized FieldAccessor getFieldAccessor(Field field) {
+    Class<?> objType = field.getDeclaringClass();
+    Map<Field, FieldAccessor> accessors = accessorCache.get(objType);
+    FieldAccessor accessor = accessors.get(field);
+    if (accessor == null) {
+      int modifiers = field.getModifiers();
+      if (!Modifier.isPrivate(modifiers) && !Modifier.isStatic(modifiers)
+              && !Modifier.isFinal(modifiers) && isVisible(objType, objType)
+              && isVisible(field.getType(), objType)) {
+        try {
+          accessor = createFieldAccessor(field);
+        } catch (Exception ex) {
+          msg.debug("Unable to generate accessor for '" + objType.getName() + "." +
+                  field.getName() + "', using reflection instead", ex);
+        }
+      }
+      if (accessor == null) accessor = new ReflectiveFieldAccessor(field);
+      accessors.put(field, accessor);
+    }
+    return accessor;
+  }
+
+  private boolean isPublic(Class<?> clazz) {
+    for (Class<?> c = clazz; c != null; c = c.getDeclaringClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) return false;
+    }
+    return true;
+  }
+
+  // whether the type can be named by code in the package of the specified class
+  private boolean isVisible(Class<?> type, Class<?> from) {
+    while (type.isArray()) type = type.getComponentType();
+    if (type.isPrimitive()) return true;
+    for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+      if (Modifier.isPrivate(c.getModifiers())) return false;
+      if (!Modifier.isPublic(c.getModifiers()) && !getPackageName(c).equals(getPackageName(from)))
+        return false;
+    }
+    return true;
+  }
+
+  private String getPackageName(Class<?> clazz) {
+    String name = clazz.getName();
+    int index = name.lastIndexOf('.');
+    return index == -1 ? "" : name.substring(0, index);
+  }
+
+  // gets the name of the type as it would appear in source code
+  private String getSourceName(Class<?> type) {
+    if (type.isArray()) return getSourceName(type.getComponentType()) + "[]";
+    return type.getName();
+  }
+
+  // gets the class pool that finds the classes of the specified loader. The pool
+  // only refers weakly to the loader, and is dropped together with it.
+  private ClassPool getClassPool(ClassLoader loader) {
+    ClassPool pool = pools.get(loader);
+    if (pool == null) {
+      pool = new ClassPool(ClassPool.getDefault());
+      pool.appendClassPath(new LoaderClassPath(loader));
+      pools.put(loader, pool);
+    }
+    return pool;
+  }
+
+  private MethodInvoker createMethodInvoker(Method method) throws NotFoundException,
+          CannotCompileException, IllegalAccessException, InstantiationException {
+    Class<?> objType = method.getDeclaringClass();
+    ClassLoader loader = objType.getClassLoader();
+    if (loader == null) loader = this.getClass().getClassLoader();
+
+    ClassPool pool = getClassPool(loader);
+
+    CtClass clazz = pool.makeClass("repast.simphony.util.bytecode.__MethodInvoker" + counter++);
+    clazz.addInterface(pool.get("repast.simphony.util.bytecode.MethodInvoker"));
+
+    StringBuilder callStr = new StringBuilder();
+    if (Modifier.isStatic(method.getModifiers())) {
+      callStr.append(getSourceName(objType));
+    } else {
+      callStr.append("((");
+      callStr.append(getSourceName(objType));
+      callStr.append(")$1)");
+    }
+    callStr.append(".");
+    callStr.append(method.getName());
+    callStr.append("(");
+    Class<?>[] paramTypes = method.getParameterTypes();
+    for (int i = 0; i < paramTypes.length; i++) {
+      if (i > 0) callStr.append(", ");
+      String arg = "$2[" + i + "]";
+      String template = unboxMap.get(paramTypes[i]);
+      if (template == null) callStr.append("((" + getSourceName(paramTypes[i]) + ")" + arg + ")");
+      else callStr.append(template.replace("$body$", arg));
+    }
+    callStr.append(")");
+
+    StringBuilder methodStr = new StringBuilder("public Object invoke(Object target, Object[] args) " +
+            "throws java.lang.reflect.InvocationTargetException { try { ");
+    Class<?> retType = method.getReturnType();
+    if (retType.equals(void.class)) {
+      methodStr.append(callStr);
+      methodStr.append("; return null;");
+    } else {
+      String template = templateMap.get(retType);
+      if (template == null) template = "$body$";
+      methodStr.append("return ");
+      methodStr.append(template.replace("$body$", callStr));
+      methodStr.append(";");
+    }
+    methodStr.append(" } catch (Throwable ex) { throw new java.lang.reflect.InvocationTargetException(ex); } }");
+
+    CtMethod ctMethod = CtMethod.make(methodStr.toString(), clazz);
+    clazz.addMethod(ctMethod);
+    MethodInvoker invoker = (MethodInvoker) clazz.toClass(loader, objType.getProtectionDomain()).newInstance();
+    clazz.detach();
+    return invoker;
+  }
+
+  private FieldAccessor createFieldAccessor(Field field) throws NotFoundException,
+          CannotCompileException, IllegalAccessException, InstantiationException {
+    Class<?> objType = field.getDeclaringClass();
+    ClassLoader loader = objType.getClassLoader();
+    if (loader == null) loader = this.getClass().getClassLoader();
+
+    ClassPool pool = getClassPool(loader);
+
+    // defined in the same package so that package private and protected
+    // fields can be accessed
+    String packageName = getPackageName(objType);
+    String name = "__FieldAccessor" + counter++;
+    CtClass clazz = pool.makeClass(packageName.length() == 0 ? name : packageName + "." + name);
+    clazz.addInterface(pool.get("repast.simphony.util.bytecode.FieldAccessor"));
+
+    Class<?> fieldType = field.getType();
+    String fieldStr = "((" + getSourceName(objType) + ")$1)." + field.getName();
+    String template = templateMap.get(fieldType);
+    if (template == null) template = "$body$";
+    clazz.addMethod(CtMethod.make("public Object get(Object target) { return " +
+            template.replace("$body$", fieldStr) + "; }", clazz));
+
+    template = unboxMap.get(fieldType);
+    if (template == null) template = "((" + getSourceName(fieldType) + ")$body$)";
+    clazz.addMethod(CtMethod.make("public void set(Object target, Object value) { " + fieldStr +
+            " = " + template.replace("$body$", "$2") + "; }", clazz));
+
+    FieldAccessor accessor = (FieldAccessor) clazz.toClass(loader, objType.getProtectionDomain()).newInstance();
+    clazz.detach();
+    return accessor;
+  }
 }
 
 /*
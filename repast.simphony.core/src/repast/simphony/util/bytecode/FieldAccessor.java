@@ -0,0 +1,27 @@
+package repast.simphony.util.bytecode;
+
+/**
+ * Gets and sets a particular field of a target object.
+ *
+ * @see ByteCodeUtilities#getFieldAccessor(java.lang.reflect.Field)
+ */
+public interface FieldAccessor {
+
+  /**
+   * Gets the value of the field in the specified target.
+   *
+   * @param target the object whose field to get
+   * @return the value of the field, boxed if it is a primitive.
+   * @throws IllegalAccessException if the field cannot be accessed
+   */
+  Object get(Object target) throws IllegalAccessException;
+
+  /**
+   * Sets the value of the field in the specified target.
+   *
+   * @param target the object whose field to set
+   * @param value  the new value of the field, boxed if the field is a primitive
+   * @throws IllegalAccessException if the field cannot be accessed
+   */
+  void set(Object target, Object value) throws IllegalAccessException;
+}
@@ -0,0 +1,23 @@
+package repast.simphony.util.bytecode;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes a particular method on a target object.
+ *
+ * @see ByteCodeUtilities#getMethodInvoker(java.lang.reflect.Method)
+ */
+public interface MethodInvoker {
+
+  /**
+   * Invokes the method on the specified target with the specified arguments.
+   * The target is ignored for static methods.
+   *
+   * @param target the object on which to invoke the method
+   * @param args   the arguments to pass to the method
+   * @return the value returned by the method, boxed if it is a primitive, or
+   *         null if the method is void.
+   * @throws InvocationTargetException if the invoked method throws an exception
+   */
+  Object invoke(Object target, Object[] args) throws InvocationTargetException;
+}
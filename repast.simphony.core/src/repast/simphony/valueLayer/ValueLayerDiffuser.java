@@ -1,5 +1,9 @@
 package repast.simphony.valueLayer;
 
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.engine.schedule.ParallelActionExecutor;
+import repast.simphony.space.Dimensions;
 import repast.simphony.space.continuous.WrapAroundBorders;
 
 /**
@@ -23,6 +27,15 @@ import repast.simphony.space.continuous.WrapAroundBorders;
  * instantaneous evaporation. So, going off the previous example, with a
  * diffusion constant of 1.0 and an evaporation rate of 0.0, [0, 10, 0] diffuses
  * to be [2.5, 0, 2.5].
+ * <p/>
+ * 
+ * When the value layer is a dense {@link GridValueLayer} whose origin is 0,
+ * the diffusion is computed directly on the layer's array, into a second
+ * array that is then swapped with it. Large layers are split into strips
+ * along the first dimension that are computed in parallel on the
+ * {@link ParallelActionExecutor#getPool() pool} used by the scheduler. The
+ * results are identical to those computed through the layer's get and set
+ * methods.
  * 
  * @author Jerry Vos
  */
@@ -38,6 +51,9 @@ public class ValueLayerDiffuser {
 
   private static final double OUT_OF_BOUNDS = 0.0;
 
+  // the minimum number of cells in a strip computed by a single task
+  private static final int MIN_STRIP_CELLS = 1 << 15;
+
   protected IGridValueLayer valueLayer;
 
   protected double maxValue = DEFAULT_MAX;
@@ -54,6 +70,44 @@ public class ValueLayerDiffuser {
 
   private transient WrapAroundBorders borders;
 
+  // the array the next dense diffusion is computed into
+  private transient double[] buffer;
+
+  /**
+   * Computes the diffusion of a strip of a dense layer's array.
+   */
+  private static class StripTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 8092402911380463925L;
+
+    private final ValueLayerDiffuser diffuser;
+    private final double[] src, dst;
+    private final int[] dims;
+    private final int start, end, threshold;
+
+    StripTask(ValueLayerDiffuser diffuser, double[] src, double[] dst, int[] dims, int start,
+        int end, int threshold) {
+      this.diffuser = diffuser;
+      this.src = src;
+      this.dst = dst;
+      this.dims = dims;
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= threshold) {
+        diffuser.computeStrip(src, dst, dims, start, end);
+      } else {
+        int mid = (start + end) >>> 1;
+        invokeAll(new StripTask(diffuser, src, dst, dims, start, mid, threshold), new StripTask(
+            diffuser, src, dst, dims, mid, end, threshold));
+      }
+    }
+  }
+
   /**
    * Constructs this with the default evaporation and diffusion constants.
    * Before this diffuser can be used, a value layer must be set through the
@@ -307,6 +361,158 @@ public class ValueLayerDiffuser {
     return constrainByMinMax((oldVal + delta * diffusionConst) * evaporationConst);
   }
 
+  // gets the dense layer's store if the diffusion can be computed directly on
+  // its array, otherwise null
+  private DenseValueLayerStore getDenseStore() {
+    if (getClass() != ValueLayerDiffuser.class || valueLayer == null
+        || valueLayer.getClass() != GridValueLayer.class)
+      return null;
+    GridValueLayer layer = (GridValueLayer) valueLayer;
+    if (!(layer.store instanceof DenseValueLayerStore))
+      return null;
+    for (int origin : layer.origin) {
+      if (origin != 0)
+        return null;
+    }
+    return (DenseValueLayerStore) layer.store;
+  }
+
+  // diffuses the store's array into the buffer and then swaps the two
+  private void diffuseDense(DenseValueLayerStore store) {
+    double[] src = store.array;
+    if (buffer == null || buffer.length != src.length) {
+      buffer = new double[src.length];
+    }
+    double[] dst = buffer;
+
+    Dimensions dimensions = valueLayer.getDimensions();
+    int[] dims = new int[3];
+    for (int i = 0; i < 3; i++) {
+      dims[i] = i < dimensions.size() ? (int) dimensions.getDimension(i) : 1;
+    }
+
+    int rows = dims[0];
+    int rowCells = src.length / Math.max(rows, 1);
+    int threshold = Math.max(1, MIN_STRIP_CELLS / Math.max(rowCells, 1));
+    if (rows <= threshold) {
+      computeStrip(src, dst, dims, 0, rows);
+    } else {
+      ParallelActionExecutor.getPool().invoke(
+          new StripTask(this, src, dst, dims, 0, rows, threshold));
+    }
+
+    store.array = dst;
+    buffer = src;
+  }
+
+  // the value at the specified index, or 0 if the index is out of bounds
+  private static double at(double[] src, int row, int col, int cols) {
+    return row < 0 || col < 0 || col >= cols ? OUT_OF_BOUNDS : src[row + col];
+  }
+
+  // the index of the neighboring coordinate, wrapped if this is toroidal or
+  // -1 if it is out of bounds
+  private int neighbor(int coord, int size) {
+    if (coord < 0)
+      return toroidal ? size - 1 : -1;
+    if (coord >= size)
+      return toroidal ? 0 : -1;
+    return coord;
+  }
+
+  // computes the new values for the cells whose first coordinate is in
+  // [start, end). The arithmetic here must match that in computeVals and
+  // compute3dVal exactly.
+  void computeStrip(double[] src, double[] dst, int[] dims, int start, int end) {
+    int size = valueLayer.getDimensions().size();
+    int width = dims[0];
+    if (size == 1) {
+      for (int x = start; x < end; x++) {
+        int xw = neighbor(x - 1, width);
+        int xe = neighbor(x + 1, width);
+        double sum = xw < 0 ? OUT_OF_BOUNDS : src[xw];
+        sum += xe < 0 ? OUT_OF_BOUNDS : src[xe];
+        double weightedAvg = sum / 2.0;
+        double oldVal = src[x];
+        double delta = weightedAvg - oldVal;
+        dst[x] = constrainByMinMax((oldVal + delta * diffusionConst) * evaporationConst);
+      }
+    } else if (size == 2) {
+      int height = dims[1];
+      for (int x = start; x < end; x++) {
+        int row = x * height;
+        int xw = neighbor(x - 1, width);
+        int xe = neighbor(x + 1, width);
+        int rowW = xw < 0 ? -1 : xw * height;
+        int rowE = xe < 0 ? -1 : xe * height;
+        for (int y = 0; y < height; y++) {
+          int yn = toroidal ? neighbor(y + 1, height) : y + 1;
+          int ys = toroidal ? neighbor(y - 1, height) : y - 1;
+
+          double uE = at(src, rowE, y, height);
+          double uN = at(src, row, yn, height);
+          double uW = at(src, rowW, y, height);
+          double uS = at(src, row, ys, height);
+
+          double uNE = at(src, rowE, yn, height);
+          double uNW = at(src, rowW, yn, height);
+          double uSW = at(src, rowW, ys, height);
+          double uSE = at(src, rowE, ys, height);
+
+          double weightedAvg = ((uE + uN + uW + uS) * 4 + (uNE + uNW + uSW + uSE)) / 20.0;
+
+          double oldVal = src[row + y];
+          double delta = weightedAvg - oldVal;
+          dst[row + y] = constrainByMinMax((oldVal + delta * diffusionConst) * evaporationConst);
+        }
+      }
+    } else {
+      int height = dims[1];
+      int depth = dims[2];
+      int plane = height * depth;
+      int[] xs = new int[3];
+      int[] ys = new int[3];
+      int[] zs = new int[3];
+      for (int x = start; x < end; x++) {
+        xs[0] = neighbor(x - 1, width);
+        xs[1] = x;
+        xs[2] = neighbor(x + 1, width);
+        for (int y = 0; y < height; y++) {
+          ys[0] = neighbor(y - 1, height);
+          ys[1] = y;
+          ys[2] = neighbor(y + 1, height);
+          for (int z = 0; z < depth; z++) {
+            zs[0] = neighbor(z - 1, depth);
+            zs[1] = z;
+            zs[2] = neighbor(z + 1, depth);
+
+            // summed in the same order as compute3dVal: z, then y, then x
+            double weightedSum = 0;
+            for (int k = 0; k < 3; k++) {
+              for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 3; i++) {
+                  int offsets = (i == 1 ? 0 : 1) + (j == 1 ? 0 : 1) + (k == 1 ? 0 : 1);
+                  if (offsets == 0)
+                    continue;
+                  double multiplier = offsets == 1 ? 4 : 1;
+                  double val = xs[i] < 0 || ys[j] < 0 || zs[k] < 0 ? OUT_OF_BOUNDS : src[xs[i]
+                      * plane + ys[j] * depth + zs[k]];
+                  weightedSum += multiplier * val;
+                }
+              }
+            }
+            // 6 direct neighbors weighted 4 and 20 diagonal ones weighted 1
+            double weightedAvg = weightedSum / 44;
+            double oldVal = src[x * plane + y * depth + z];
+            double delta = weightedAvg - oldVal;
+            dst[x * plane + y * depth + z] = constrainByMinMax((oldVal + delta * diffusionConst)
+                * evaporationConst);
+          }
+        }
+      }
+    }
+  }
+
   /**
    * Runs the diffusion with the current rates and values. Following the Swarm
    * class, it is roughly newValue = evap(ownValue + diffusionConstant * (nghAvg
@@ -316,9 +522,16 @@ public class ValueLayerDiffuser {
    * 
    * Values from the value layer are used to calculate diffusion. This value is
    * then written to a buffer. When this has been done for every cell in the
-   * grid, the buffer is copied to the value layer.
+   * grid, the buffer is copied to the value layer, or for a dense layer
+   * swapped with the layer's storage.
    */
   public void diffuse() {
+    DenseValueLayerStore store = getDenseStore();
+    if (store != null) {
+      diffuseDense(store);
+      return;
+    }
+
     computeVals();
     int size = valueLayer.getDimensions().size();
 
@@ -336,9 +549,9 @@ public class ValueLayerDiffuser {
       }
     } else {
       double[][][] newVals = (double[][][]) computedVals;
-      for (int x = 0; x < newVals[0].length; x++) {
-        for (int y = 0; y < newVals[0][0].length; y++) {
-          for (int z = 0; z < newVals.length; z++) {
+      for (int x = 0; x < newVals.length; x++) {
+        for (int y = 0; y < newVals[0].length; y++) {
+          for (int z = 0; z < newVals[0][0].length; z++) {
             valueLayer.set(newVals[x][y][z], x, y, z);
           }
         }
@@ -391,6 +604,8 @@ public class ValueLayerDiffuser {
   }
 
   public void setValueLayer(IGridValueLayer valueLayer) {
+    buffer = null;
+    borders = null;
     if (valueLayer.getDimensions().size() > 3) {
       throw new RuntimeException("Value layer diffuser only works for 1d, 2d or 3d value layers.");
     }
@@ -0,0 +1,184 @@
+package repast.simphony.context;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import repast.simphony.context.ContextEvent.EventType;
+import repast.simphony.engine.environment.RunState;
+import repast.simphony.random.RandomHelper;
+
+/**
+ * Tests for IndexedContext and the bulk context events.
+ */
+public class IndexedContextTest extends TestCase {
+
+  private static class Recorder implements ContextListener<Object> {
+    List<ContextEvent<Object>> events = new ArrayList<ContextEvent<Object>>();
+
+    public void eventOccured(ContextEvent<Object> ev) {
+      events.add(ev);
+    }
+  }
+
+  private static class BatchRecorder extends Recorder implements BatchContextListener<Object> {
+  }
+
+  public void setUp() {
+    RunState.init(null, null, null);
+    RandomHelper.setSeed(1);
+  }
+
+  private Set<Object> toSet(Iterable<?> iter) {
+    Set<Object> set = new HashSet<Object>();
+    for (Object obj : iter) {
+      set.add(obj);
+    }
+    return set;
+  }
+
+  public void testMatchesSet() {
+    IndexedContext<Object> context = new IndexedContext<Object>("context");
+    Set<Object> expected = new HashSet<Object>();
+    Random random = new Random(11);
+    for (int i = 0; i < 20000; i++) {
+      // Integers and Strings, so the agents are in two class lists
+      Object obj = random.nextBoolean() ? (Object) random.nextInt(500) : String.valueOf(random
+          .nextInt(500));
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(obj), context.remove(obj));
+      } else {
+        assertEquals(expected.add(obj), context.add(obj));
+      }
+      assertEquals(expected.size(), context.size());
+    }
+
+    assertEquals(expected, toSet(context));
+    for (int i = 0; i < 500; i++) {
+      assertEquals(expected.contains(i), context.contains(i));
+      assertEquals(expected.contains(String.valueOf(i)), context.contains(String.valueOf(i)));
+    }
+
+    Set<Object> ints = new HashSet<Object>();
+    for (Object obj : expected) {
+      if (obj instanceof Integer) ints.add(obj);
+    }
+    assertEquals(ints, toSet(context.getObjects(Integer.class)));
+    assertEquals(ints.size(), context.getObjects(Integer.class).size());
+    assertEquals(expected.size(), context.getObjects(Object.class).size());
+    assertTrue(expected.contains(context.getRandomObject()));
+  }
+
+  public void testIteratorRemove() {
+    IndexedContext<Object> context = new IndexedContext<Object>("context");
+    for (int i = 0; i < 100; i++) {
+      context.add(i);
+    }
+    Recorder recorder = new Recorder();
+    context.addContextListener(recorder);
+
+    Set<Object> seen = new HashSet<Object>();
+    for (Iterator<Object> iter = context.iterator(); iter.hasNext();) {
+      Integer i = (Integer) iter.next();
+      assertTrue(seen.add(i));
+      if (i % 2 == 0) iter.remove();
+    }
+    assertEquals(100, seen.size());
+    assertEquals(50, context.size());
+    assertEquals(50, recorder.events.size());
+    for (Object obj : context) {
+      assertEquals(1, ((Integer) obj) % 2);
+    }
+
+    for (Iterator<Object> iter = context.getObjects(Integer.class).iterator(); iter.hasNext();) {
+      iter.next();
+      iter.remove();
+    }
+    assertEquals(0, context.size());
+    assertFalse(context.iterator().hasNext());
+  }
+
+  public void testBatchEvents() {
+    IndexedContext<Object> context = new IndexedContext<Object>("context");
+    Recorder recorder = new Recorder();
+    BatchRecorder batchRecorder = new BatchRecorder();
+    context.addContextListener(recorder);
+    context.addContextListener(batchRecorder);
+
+    List<Object> objs = new ArrayList<Object>();
+    for (int i = 0; i < 10; i++) {
+      objs.add(i);
+    }
+    context.add(3);
+    recorder.events.clear();
+    batchRecorder.events.clear();
+
+    assertTrue(context.addAll(objs));
+    assertEquals(10, context.size());
+    assertEquals(9, recorder.events.size());
+    for (ContextEvent<Object> ev : recorder.events) {
+      assertEquals(EventType.AGENT_ADDED, ev.getType());
+      assertFalse(ev.getTarget().equals(3));
+    }
+    assertEquals(1, batchRecorder.events.size());
+    ContextEvent<Object> ev = batchRecorder.events.get(0);
+    assertEquals(EventType.AGENTS_ADDED, ev.getType());
+    assertEquals(9, ev.getTargets().size());
+    assertFalse(ev.getTargets().contains(3));
+
+    recorder.events.clear();
+    batchRecorder.events.clear();
+    List<Object> toRemove = new ArrayList<Object>(objs.subList(0, 5));
+    toRemove.add(42);
+    assertTrue(context.removeAll(toRemove));
+    assertEquals(5, context.size());
+    assertEquals(5, recorder.events.size());
+    assertEquals(1, batchRecorder.events.size());
+    assertEquals(EventType.AGENTS_REMOVED, batchRecorder.events.get(0).getType());
+    assertEquals(toSet(objs.subList(0, 5)), toSet(batchRecorder.events.get(0).getTargets()));
+  }
+
+  public void testBatchEventsFromSubContext() {
+    DefaultContext<Object> parent = new DefaultContext<Object>("parent");
+    IndexedContext<Object> child = new IndexedContext<Object>("child");
+    parent.addSubContext(child);
+    Recorder recorder = new Recorder();
+    BatchRecorder batchRecorder = new BatchRecorder();
+    parent.addContextListener(recorder);
+    parent.addContextListener(batchRecorder);
+
+    List<Object> objs = new ArrayList<Object>();
+    for (int i = 0; i < 10; i++) {
+      objs.add(i);
+    }
+    child.addAll(objs);
+    assertEquals(10, parent.size());
+    assertEquals(10, recorder.events.size());
+    assertEquals(1, batchRecorder.events.size());
+    assertSame(child, batchRecorder.events.get(0).getContext());
+
+    recorder.events.clear();
+    parent.removeAll(objs);
+    assertEquals(0, parent.size());
+    assertEquals(0, child.size());
+    // each removal is reported by the child and then by the parent
+    assertEquals(20, recorder.events.size());
+  }
+
+  public void testNoListenerAdd() {
+    IndexedContext<Object> context = new IndexedContext<Object>("context");
+    List<Object> objs = new ArrayList<Object>();
+    for (int i = 0; i < 1000; i++) {
+      objs.add(new Object());
+    }
+    assertTrue(context.addAll(objs));
+    assertFalse(context.addAll(objs));
+    assertEquals(1000, context.size());
+    assertTrue(context.removeAll(objs.subList(0, 500)));
+    assertEquals(toSet(objs.subList(500, 1000)), toSet(context));
+  }
+}
@@ -0,0 +1,66 @@
+package repast.simphony.engine.schedule;
+
+import repast.simphony.random.RandomHelper;
+
+/**
+ * A benchmark comparing the binary heap ActionQueue with the
+ * BucketActionQueue. Each run schedules the specified number of actions
+ * repeating on integer ticks with random intervals and then executes the
+ * schedule for a number of ticks. Not a unit test.
+ * 
+ * Usage: ActionQueueBench [ticks] [sizes...]
+ */
+public class ActionQueueBench {
+
+  private static final int[] INTERVALS = { 1, 1, 1, 2, 5 };
+
+  private static class CountAction implements IAction {
+    long count;
+
+    public void execute() {
+      count++;
+    }
+  }
+
+  private static double run(DefaultScheduleFactory.QueueType type, int size, int ticks) {
+    RandomHelper.setSeed(1);
+    DefaultScheduleFactory factory = new DefaultScheduleFactory();
+    factory.setQueueType(type);
+    ISchedule schedule = factory.createSchedule();
+    CountAction action = new CountAction();
+    for (int i = 0; i < size; i++) {
+      int interval = INTERVALS[RandomHelper.nextIntFromTo(0, INTERVALS.length - 1)];
+      schedule.schedule(ScheduleParameters.createRepeating(1, interval, 0), action);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ticks; i++) {
+      schedule.execute();
+    }
+    long end = System.nanoTime();
+    if (action.count == 0) System.out.println("no actions executed");
+    return (end - start) / 1E9;
+  }
+
+  public static void main(String[] args) {
+    int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    int[] sizes = { 10000, 100000, 1000000, 10000000 };
+    if (args.length > 1) {
+      sizes = new int[args.length - 1];
+      for (int i = 1; i < args.length; i++) {
+        sizes[i - 1] = Integer.parseInt(args[i]);
+      }
+    }
+
+    // warm up
+    run(DefaultScheduleFactory.QueueType.HEAP, 10000, ticks);
+    run(DefaultScheduleFactory.QueueType.BUCKET, 10000, ticks);
+
+    for (int size : sizes) {
+      double heap = run(DefaultScheduleFactory.QueueType.HEAP, size, ticks);
+      double bucket = run(DefaultScheduleFactory.QueueType.BUCKET, size, ticks);
+      System.out.printf("actions: %d, ticks: %d, heap: %f s, bucket: %f s%n", size, ticks, heap,
+          bucket);
+    }
+  }
+}
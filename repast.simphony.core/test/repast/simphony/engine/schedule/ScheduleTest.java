@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -331,6 +332,87 @@ public class ScheduleTest extends TestCase {
     }
   }
 
+  public void testBucketQueue() {
+    ScheduleParameters params = ScheduleParameters.createOneTime(10);
+    DefaultAction action1 = new DefaultAction(params, new TestAction(schedule), 1);
+
+    ActionQueue queue = new BucketActionQueue();
+    queue.insert(action1);
+
+    params = ScheduleParameters.createOneTime(2);
+    DefaultAction action2 = new DefaultAction(params, new TestAction(schedule), 2);
+    queue.toss(action2);
+
+    params = ScheduleParameters.createOneTime(.01);
+    DefaultAction action3 = new DefaultAction(params, new TestAction(schedule), 3);
+    queue.insert(action3);
+
+    assertTrue(queue.peekMin().equals(action3));
+    assertTrue(queue.popMin().equals(action3));
+    assertTrue(queue.peekMin().equals(action2));
+    assertEquals(2, queue.size());
+
+    assertTrue(queue.voidAction(action2));
+    assertFalse(queue.voidAction(action2));
+    assertTrue(queue.peekMin().equals(action1));
+    assertEquals(1, queue.size());
+
+    queue.clear();
+    try {
+      // empty so should throw an exception
+      queue.peekMin();
+      assertTrue("Queue is empty so peekMin should throw exeception", false);
+    } catch (NoSuchElementException ex) {
+      assertTrue(true);
+    }
+
+    assertEquals(0, queue.size());
+    assertTrue(queue.isEmpty());
+
+    for (int i = 0; i < 10; i++) {
+      params = ScheduleParameters.createOneTime(i % 3);
+      DefaultAction action = new DefaultAction(params, new TestAction(schedule), i);
+      queue.toss(action);
+    }
+
+    assertEquals(10, queue.size());
+    ScheduleGroup group = new ScheduleGroup();
+    assertEquals(0.0, queue.popMinGroup(group));
+    assertEquals(4, group.size());
+    assertEquals(6, queue.size());
+    group.clear();
+    assertEquals(1.0, queue.popMinGroup(group));
+    assertEquals(3, group.size());
+    assertEquals(2.0, queue.peekMin().getNextTime());
+  }
+
+  public void testBucketQueueSchedule() {
+    DefaultScheduleFactory factory = new DefaultScheduleFactory();
+    factory.setQueueType(DefaultScheduleFactory.QueueType.BUCKET);
+    schedule = factory.createSchedule();
+
+    TestAction action1 = new TestAction(schedule);
+    TestAction action2 = new TestAction(schedule);
+    TestAction action3 = new TestAction(schedule);
+    schedule.schedule(ScheduleParameters.createRepeating(1, 2, 0), action1);
+    schedule.schedule(ScheduleParameters.createRepeating(1, 1, 1), action2);
+    ISchedulableAction removed = schedule.schedule(ScheduleParameters.createOneTime(2.5), action3);
+
+    schedule.execute();
+    assertEquals(1.0, schedule.getTickCount());
+    assertEquals(action2, sameTickOrderList.get(0));
+    assertEquals(action1, sameTickOrderList.get(1));
+
+    assertTrue(schedule.removeAction(removed));
+    schedule.execute();
+    assertEquals(2.0, schedule.getTickCount());
+    schedule.execute();
+    assertEquals(3.0, schedule.getTickCount());
+    assertEquals(0.0, action3.getExecutedAt());
+    assertEquals(3.0, action1.getExecutedAt());
+    assertEquals(3.0, action2.getExecutedAt());
+  }
+
   public void testBasicAt() {
     TestAction action1 = new TestAction(schedule);
     TestAction action2 = new TestAction(schedule);
@@ -1287,6 +1369,55 @@ public class ScheduleTest extends TestCase {
 
   }
 
+  static class CountingAction implements IAction {
+
+    AtomicInteger counter;
+    int countAtExecution = -1;
+
+    public CountingAction(AtomicInteger counter) {
+      this.counter = counter;
+    }
+
+    public void execute() {
+      countAtExecution = counter.getAndIncrement();
+    }
+  }
+
+  public void testParallelBatch() {
+    AtomicInteger counter = new AtomicInteger();
+    List<CountingAction> parallelActions = new ArrayList<CountingAction>();
+    ScheduleParameters params = ScheduleParameters.makeParallel(ScheduleParameters
+        .createRepeating(1, 1, 2));
+    assertTrue(params.isParallel());
+    for (int i = 0; i < 1000; i++) {
+      CountingAction action = new CountingAction(counter);
+      parallelActions.add(action);
+      schedule.schedule(params, action);
+    }
+
+    CountingAction first = new CountingAction(counter);
+    schedule.schedule(ScheduleParameters.createRepeating(1, 1, 3), first);
+    CountingAction after = new CountingAction(counter);
+    schedule.schedule(ScheduleParameters.createRepeating(1, 1, 1), after);
+
+    schedule.execute();
+    assertEquals(1.0, schedule.getTickCount());
+    assertEquals(0, first.countAtExecution);
+    // the batch must have completed before the lower priority action
+    assertEquals(1001, after.countAtExecution);
+    Set<Integer> counts = new HashSet<Integer>();
+    for (CountingAction action : parallelActions) {
+      counts.add(action.countAtExecution);
+    }
+    assertEquals(1000, counts.size());
+
+    // parallel actions are rescheduled like any others
+    schedule.execute();
+    assertEquals(2.0, schedule.getTickCount());
+    assertEquals(1002, first.countAtExecution);
+    assertEquals(2003, after.countAtExecution);
+  }
+
   static class RemoveTestObject {
 
     ISchedule schedule;
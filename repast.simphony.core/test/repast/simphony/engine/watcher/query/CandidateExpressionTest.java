@@ -0,0 +1,125 @@
+package repast.simphony.engine.watcher.query;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import repast.simphony.context.Context;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.context.space.graph.NetworkBuilder;
+import repast.simphony.context.space.grid.GridFactoryFinder;
+import repast.simphony.space.graph.Network;
+import repast.simphony.space.grid.Grid;
+import repast.simphony.space.grid.GridBuilderParameters;
+import repast.simphony.space.grid.SimpleGridAdder;
+import repast.simphony.space.grid.StrictBorders;
+import repast.simphony.space.grid.WrapAroundBorders;
+
+/**
+ * Tests the candidate watchers found by the query expressions.
+ */
+public class CandidateExpressionTest extends TestCase {
+
+	private Context<Object> context;
+	private List<Object> agents;
+
+	public void setUp() {
+		context = new DefaultContext<Object>();
+		agents = new ArrayList<Object>();
+		for (int i = 0; i < 400; i++) {
+			Object agent = new Object();
+			agents.add(agent);
+			context.add(agent);
+		}
+	}
+
+	private Grid<Object> createGrid(boolean periodic) {
+		Grid<Object> grid = GridFactoryFinder.createGridFactory(null).createGrid("grid", context,
+				GridBuilderParameters.multiOccupancy2D(new SimpleGridAdder<Object>(),
+						periodic ? new WrapAroundBorders() : new StrictBorders(), 20, 20));
+		for (int i = 0; i < agents.size(); i++) {
+			grid.moveTo(agents.get(i), i % 20, i / 20);
+		}
+		return grid;
+	}
+
+	// checks that every watcher for which the expression is true is a candidate
+	private Set<Object> assertCandidates(CandidateExpression exp, Object watchee) {
+		Set<Object> candidates = new HashSet<Object>();
+		assertTrue(exp.findCandidates(watchee, agents.size(), candidates));
+		int count = 0;
+		for (Object watcher : agents) {
+			if (exp.execute(watcher, watchee, null)) {
+				assertTrue(candidates.contains(watcher));
+				count++;
+			}
+		}
+		assertTrue(count > 0);
+		return candidates;
+	}
+
+	public void testGrid() {
+		createGrid(true);
+		Object corner = agents.get(0);
+		Object middle = agents.get(210);
+		assertEquals(9, assertCandidates(new WithinMooreBooleanExpression(1, context), corner).size());
+		assertEquals(9, assertCandidates(new WithinVNBooleanExpression(1, context), middle).size());
+		assertEquals(25, assertCandidates(new NamedWithinBooleanExpression(2, "grid", context), corner)
+				.size());
+		assertCandidates(new WithinBooleanExpression(2.5, context), middle);
+
+		// a neighborhood with more cells than there are watchers
+		assertFalse(new WithinMooreBooleanExpression(3, context).findCandidates(corner, 10,
+				new HashSet<Object>()));
+		// a neighborhood that covers the whole grid
+		assertEquals(400, assertCandidates(new WithinMooreBooleanExpression(15, context), middle)
+				.size());
+	}
+
+	public void testGridBorders() {
+		createGrid(false);
+		assertEquals(4, assertCandidates(new WithinMooreBooleanExpression(1, context),
+				agents.get(0)).size());
+		assertEquals(6, assertCandidates(new NamedWithinMooreBooleanExpression(1, "grid", context),
+				agents.get(1)).size());
+	}
+
+	public void testNetwork() {
+		Network<Object> net = new NetworkBuilder<Object>("network", context, true).buildNetwork();
+		Object watchee = agents.get(0);
+		net.addEdge(agents.get(1), watchee);
+		net.addEdge(agents.get(2), watchee);
+		net.addEdge(watchee, agents.get(3));
+
+		assertEquals(2, assertCandidates(new LinkedToBooleanExpression(context), watchee).size());
+		assertEquals(1, assertCandidates(new NamedLinkedFromBooleanExpression("network", context),
+				watchee).size());
+		assertEquals(3, assertCandidates(new LinkedBooleanExpression(context), watchee).size());
+
+		// path lengths in a network depend on the edge weights
+		assertFalse(new WithinBooleanExpression(1, context).findCandidates(watchee, agents.size(),
+				new HashSet<Object>()));
+		// but a grid only query isn't affected by a network
+		createGrid(true);
+		assertCandidates(new WithinMooreBooleanExpression(1, context), watchee);
+	}
+
+	public void testCompound() {
+		createGrid(true);
+		Object watchee = agents.get(0);
+		CandidateExpression moore = new WithinMooreBooleanExpression(1, context);
+		IBooleanExpression not = new NotBooleanExpression(new ColocatedBooleanExpression(context));
+
+		assertEquals(9, assertCandidates(new AndBooleanExpression(new DefaultBooleanExpression(),
+				moore), watchee).size());
+		assertFalse(new OrBooleanExpression(not, moore).findCandidates(watchee, agents.size(),
+				new HashSet<Object>()));
+		assertEquals(25, assertCandidates(
+				new OrBooleanExpression(moore, new WithinMooreBooleanExpression(2, context)), watchee)
+				.size());
+		assertEquals(9, assertCandidates(
+				new AndBooleanCondition(moore, new DefaultBooleanExpression()), watchee).size());
+	}
+}
@@ -0,0 +1,230 @@
+package repast.simphony.freezedry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.freezedry.datasource.BinaryDataSource;
+import repast.simphony.freezedry.datasource.DeltaDataSource;
+import repast.simphony.freezedry.freezedryers.DefaultFreezeDryer;
+import repast.simphony.freezedry.freezedryers.ValueLayerStoreFreezeDryer;
+import repast.simphony.valueLayer.DenseValueLayerStore;
+
+/**
+ * Tests for {@link IncrementalCheckpoint} and
+ * {@link repast.simphony.freezedry.datasource.DeltaDataSource}.
+ */
+public class IncrementalCheckpointTest extends TestCase {
+
+	public static class Agent {
+		int count;
+		String name;
+		List<String> tags = new ArrayList<String>();
+
+		public Agent() {
+		}
+
+		public Agent(int count, String name) {
+			this.count = count;
+			this.name = name;
+			tags.add(name);
+		}
+	}
+
+	public static class Field {
+		DenseValueLayerStore store;
+	}
+
+	/**
+	 * Counts the objects written to a binary data source.
+	 */
+	private static class CountingDataSource extends BinaryDataSource {
+		List<FreezeDryedObject> written = new ArrayList<FreezeDryedObject>();
+		List<File> archives = new ArrayList<File>();
+
+		CountingDataSource(String fileName) {
+			super(fileName, false);
+		}
+
+		public void write(FreezeDryedObject object) throws FreezeDryingException {
+			written.add(object);
+			super.write(object);
+		}
+
+		public void close() throws FreezeDryingException {
+			super.close();
+			archives.add(getArchive());
+		}
+
+		int count(Class<?> type) {
+			int count = 0;
+			for (FreezeDryedObject fdo : written) {
+				if (fdo.getType() == type) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private File dir;
+
+	public void setUp() throws Exception {
+		dir = File.createTempFile("incremental", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	public void tearDown() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private DeltaDataSource replay(List<File> archives) {
+		List<FreezeDryedDataSource> layers = new ArrayList<FreezeDryedDataSource>();
+		for (File archive : archives) {
+			layers.add(new BinaryDataSource(archive.getPath(), true));
+		}
+		return new DeltaDataSource(layers);
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testDeltas() throws Exception {
+		DefaultContext<Object> context = new DefaultContext<Object>("context");
+		Agent a = new Agent(1, "a");
+		Agent b = new Agent(2, "b");
+		Agent c = new Agent(3, "c");
+		context.add(a);
+		context.add(b);
+		context.add(c);
+
+		CountingDataSource dataSource = new CountingDataSource(new File(dir, "model").getPath());
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		registry.setDataSource(dataSource);
+		registry.setIncremental(true);
+
+		registry.freezeDry(context);
+		assertEquals(3, dataSource.count(Agent.class));
+		assertEquals(1, dataSource.count(DefaultContext.class));
+
+		// nothing changed
+		dataSource.written.clear();
+		registry.reset();
+		registry.freezeDry(context);
+		assertEquals(1, dataSource.written.size());
+		assertEquals(IncrementalCheckpoint.class, dataSource.written.get(0).getType());
+
+		// one agent changed, one removed
+		dataSource.written.clear();
+		registry.reset();
+		b.count = 20;
+		b.tags.add("changed");
+		context.remove(c);
+		registry.freezeDry(context);
+		assertEquals(1, dataSource.count(Agent.class));
+		assertEquals(1, dataSource.count(DefaultContext.class));
+		FreezeDryedObject manifest = dataSource.written.get(dataSource.written.size() - 1);
+		assertEquals(2, manifest.get(IncrementalCheckpoint.SEQUENCE_KEY));
+		assertEquals(Boolean.FALSE, manifest.get(IncrementalCheckpoint.BASE_KEY));
+		assertTrue(((String[]) manifest.get(IncrementalCheckpoint.REMOVED_KEY)).length > 0);
+
+		DeltaDataSource replay = replay(dataSource.archives);
+		registry = new FreezeDryedRegistry();
+		registry.setDataSource(replay);
+		DefaultContext<Object> copy = registry.rehydrate(DefaultContext.class, "context");
+		assertEquals(2, copy.size());
+		int total = 0;
+		for (Object o : copy) {
+			Agent agent = (Agent) o;
+			total += agent.count;
+			if (agent.count == 20) {
+				assertEquals("b", agent.name);
+				assertEquals(2, agent.tags.size());
+				assertEquals("changed", agent.tags.get(1));
+			} else {
+				assertEquals("a", agent.name);
+				assertEquals(1, agent.tags.size());
+			}
+		}
+		assertEquals(21, total);
+		assertEquals(2, ((List<FreezeDryedObject>) replay.read(Agent.class)).size());
+	}
+
+	public void testBaseInterval() throws Exception {
+		DefaultContext<Object> context = new DefaultContext<Object>("context");
+		context.add(new Agent(1, "a"));
+
+		CountingDataSource dataSource = new CountingDataSource(new File(dir, "model").getPath());
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		registry.setDataSource(dataSource);
+		registry.setIncremental(true);
+		registry.setBaseInterval(2);
+
+		for (int i = 0; i < 3; i++) {
+			dataSource.written.clear();
+			registry.reset();
+			registry.freezeDry(context);
+			assertEquals(i % 2 == 0 ? 1 : 0, dataSource.count(Agent.class));
+		}
+
+		// the layers before the last base are ignored
+		dataSource.archives.get(0).delete();
+		registry = new FreezeDryedRegistry();
+		registry.setDataSource(replay(dataSource.archives.subList(1, 3)));
+		DefaultContext<?> copy = registry.rehydrate(DefaultContext.class, "context");
+		assertEquals(1, copy.size());
+	}
+
+	public void testValueLayerTiles() throws Exception {
+		int size = ValueLayerStoreFreezeDryer.TILE_SIZE * 3 + 10;
+		Field field = new Field();
+		field.store = new DenseValueLayerStore(size);
+		for (int i = 0; i < size; i++) {
+			field.store.set(i, i % 7);
+		}
+
+		CountingDataSource dataSource = new CountingDataSource(new File(dir, "field").getPath());
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		registry.setDataSource(dataSource);
+		registry.setIncremental(true);
+		String key = registry.freezeDry(field);
+		assertEquals(4, dataSource.count(double[].class));
+
+		dataSource.written.clear();
+		registry.reset();
+		field.store.set(ValueLayerStoreFreezeDryer.TILE_SIZE + 5, -1);
+		assertEquals(key, registry.freezeDry(field));
+		assertEquals(1, dataSource.count(double[].class));
+		assertEquals(1, dataSource.count(DenseValueLayerStore.class));
+		assertEquals(0, dataSource.count(Field.class));
+
+		registry = new FreezeDryedRegistry();
+		registry.setDataSource(replay(dataSource.archives));
+		Field copy = registry.rehydrate(Field.class, key);
+		assertEquals(size, copy.store.size());
+		for (int i = 0; i < size; i++) {
+			assertEquals(field.store.get(i), copy.store.get(i));
+		}
+	}
+
+	public void testValueLayerArrayLayout() throws Exception {
+		DenseValueLayerStore store = new DenseValueLayerStore(5);
+		for (int i = 0; i < 5; i++) {
+			store.set(i, i * 1.5);
+		}
+		// the layout written before the store had its own dryer
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		FreezeDryedObject fdo = new DefaultFreezeDryer(registry).freezeDry("store", store);
+		assertNull(fdo.get(ValueLayerStoreFreezeDryer.SIZE_KEY));
+
+		DenseValueLayerStore copy = new ValueLayerStoreFreezeDryer(registry).rehydrate(fdo);
+		assertEquals(5, copy.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i * 1.5, copy.get(i));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package repast.simphony.freezedry.datasource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.freezedry.FieldLayout;
+import repast.simphony.freezedry.FreezeDryedObject;
+import repast.simphony.freezedry.FreezeDryedParentChild;
+import repast.simphony.freezedry.FreezeDryedRegistry;
+
+/**
+ * Tests for {@link BinaryDataSource} and {@link FieldLayout}.
+ */
+public class BinaryDataSourceTest extends TestCase {
+
+	public static class Agent {
+		static int instances;
+		final int fixed = 1;
+		transient int cached;
+
+		private int count;
+		double wealth;
+		String name;
+		boolean alive;
+		char code;
+		Agent friend;
+
+		public Agent() {
+		}
+
+		public Agent(int count, String name) {
+			this.count = count;
+			this.name = name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+	}
+
+	private File dir;
+
+	public void setUp() throws Exception {
+		dir = File.createTempFile("binary", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	public void tearDown() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	public void testLayout() throws Exception {
+		FieldLayout layout = FieldLayout.getLayout(Agent.class);
+		assertSame(layout, FieldLayout.getLayout(Agent.class));
+		List<String> names = new ArrayList<String>();
+		for (FieldLayout.Entry entry : layout.getEntries()) {
+			names.add(entry.getName());
+		}
+		assertEquals(Arrays.asList("count", "wealth", "name", "alive", "code", "friend"), names);
+
+		Agent agent = new Agent(3, "a");
+		FieldLayout.Entry count = layout.getEntries()[0];
+		FieldLayout.Entry wealth = layout.getEntries()[1];
+		assertEquals(3, count.get(agent));
+		count.set(agent, 5);
+		assertEquals(5, agent.getCount());
+		wealth.set(agent, 2.5);
+		assertEquals(2.5, wealth.get(agent));
+		assertTrue(count.isPrimitive());
+		assertFalse(layout.getEntries()[5].isPrimitive());
+		assertEquals(Agent.class.getName() + "_count", count.getQualifiedName());
+	}
+
+	public void testRoundTrip() throws Exception {
+		Agent agent = new Agent(7, "first \u00e9");
+		agent.wealth = 12.25;
+		agent.alive = true;
+		agent.code = 'x';
+		agent.friend = new Agent(8, "second");
+
+		BinaryDataSource writer = new BinaryDataSource(new File(dir, "model.zip").getPath());
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		registry.setDataSource(writer);
+		String key = registry.freezeDry(agent);
+		assertTrue(writer.getArchive().exists());
+
+		BinaryDataSource reader = new BinaryDataSource(writer.getArchive().getPath());
+		assertEquals(Arrays.<Class<?>> asList(Agent.class), reader.getClasses());
+		registry = new FreezeDryedRegistry();
+		registry.setDataSource(reader);
+		Agent copy = registry.rehydrate(Agent.class, key);
+		assertEquals(7, copy.getCount());
+		assertEquals("first \u00e9", copy.name);
+		assertEquals(12.25, copy.wealth);
+		assertTrue(copy.alive);
+		assertEquals('x', copy.code);
+		assertEquals(8, copy.friend.getCount());
+		assertEquals("second", copy.friend.name);
+		assertNull(copy.friend.friend);
+	}
+
+	public void testContext() throws Exception {
+		DefaultContext<Object> context = new DefaultContext<Object>("context");
+		context.setTypeID("type");
+		DefaultContext<Object> sub = new DefaultContext<Object>("sub");
+		context.addSubContext(sub);
+		for (int i = 0; i < 5; i++) {
+			context.add(new Agent(i, "agent" + i));
+		}
+
+		BinaryDataSource writer = new BinaryDataSource(new File(dir, "context").getPath(), false);
+		FreezeDryedRegistry registry = new FreezeDryedRegistry();
+		registry.setDataSource(writer);
+		registry.freezeDry(context);
+
+		registry = new FreezeDryedRegistry();
+		registry.setDataSource(new BinaryDataSource(writer.getArchive().getPath(), true));
+		DefaultContext<?> copy = registry.rehydrate(DefaultContext.class, "context");
+		assertEquals("type", copy.getTypeID());
+		assertEquals(5, copy.size());
+		int total = 0;
+		for (Object o : copy) {
+			total += ((Agent) o).getCount();
+		}
+		assertEquals(10, total);
+		assertNotNull(copy.findContext("sub"));
+	}
+
+	public void testBlocks() throws Exception {
+		BinaryDataSource writer = new BinaryDataSource(new File(dir, "blocks").getPath(), false);
+		writer.setBlockSize(3);
+		for (int i = 0; i < 20; i++) {
+			FreezeDryedObject fdo = new FreezeDryedObject("id" + i, i % 2 == 0 ? Agent.class
+					: String.class);
+			fdo.put("index", i);
+			fdo.put("values", new double[] { i, i + 0.5 });
+			fdo.put("names", new String[] { "n" + i, null });
+			fdo.put("bytes", new byte[] { (byte) i });
+			fdo.put("empty", null);
+			if (i % 5 == 0) {
+				fdo.addChild(new FreezeDryedParentChild(fdo.getType(), fdo.getId(), Agent.class,
+						"child" + i));
+			}
+			writer.write(fdo);
+		}
+		writer.close();
+
+		BinaryDataSource reader = new BinaryDataSource(writer.getArchive().getPath(), true);
+		int i = 0;
+		for (FreezeDryedObject fdo : reader.read(Agent.class)) {
+			assertEquals("id" + i, fdo.getId());
+			assertEquals(i, fdo.get("index"));
+			assertTrue(Arrays.equals(new double[] { i, i + 0.5 }, (double[]) fdo.get("values")));
+			assertTrue(Arrays.equals(new String[] { "n" + i, null }, (String[]) fdo.get("names")));
+			assertEquals(i, ((byte[]) fdo.get("bytes"))[0]);
+			assertTrue(fdo.keySet().contains("empty"));
+			assertEquals(i % 5 == 0, fdo.hasChildren());
+			if (i % 5 == 0) {
+				FreezeDryedParentChild child = fdo.getChildren().iterator().next();
+				assertEquals(Agent.class, child.getChildClass());
+				assertEquals("child" + i, child.getChildId());
+			}
+			i += 2;
+		}
+		assertEquals(20, i);
+		assertEquals(13, reader.read(String.class, "id13").get("index"));
+		assertNull(reader.read(Agent.class, "id13"));
+	}
+}
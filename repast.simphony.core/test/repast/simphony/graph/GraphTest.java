@@ -1487,6 +1487,89 @@ public class GraphTest extends TestCase {
 
   }
 
+  private void checkPathCache(Network<Integer> net, ShortestPathCache<Integer> cache,
+                              Random random) {
+    for (int i = 0; i < 6; i++) {
+      Integer source = ints.get(random.nextInt(ints.size()));
+      if (!context.contains(source)) continue;
+      ShortestPath<Integer> path = new ShortestPath<Integer>(net);
+      for (Integer target : net.getNodes()) {
+        double expected = path.getPathLength(source, target);
+        assertEquals(expected, cache.getPathLength(source, target));
+
+        List<RepastEdge<Integer>> edges = cache.getPath(source, target);
+        double length = 0;
+        Integer node = source;
+        for (RepastEdge<Integer> edge : edges) {
+          assertTrue(net.containsEdge(edge));
+          assertTrue(edge.getSource().equals(node)
+                  || (!net.isDirected() && edge.getTarget().equals(node)));
+          node = edge.getSource().equals(node) ? edge.getTarget() : edge.getSource();
+          length += edge.getWeight();
+        }
+        if (expected != Double.POSITIVE_INFINITY) {
+          assertEquals(target, node);
+          assertEquals(expected, length);
+        } else {
+          assertTrue(edges.isEmpty());
+        }
+      }
+      path.close();
+    }
+    assertTrue(cache.getCachedSourceCount() <= 5);
+  }
+
+  public void testShortestPathCache() {
+    for (String name : new String[]{"Network 1", "Network 2"}) {
+      setUp();
+      for (Integer i : ints) {
+        context.add(i);
+      }
+      Network<Integer> net = context.getProjection(Network.class, name);
+      Random random = new Random(5);
+      for (int i = 0; i < 60; i++) {
+        net.addEdge(ints.get(random.nextInt(30)), ints.get(random.nextInt(30)), random.nextInt(10));
+      }
+
+      ShortestPathCache<Integer> cache = new ShortestPathCache<Integer>(net, 5);
+      checkPathCache(net, cache, random);
+      for (int step = 0; step < 150; step++) {
+        int op = random.nextInt(10);
+        List<RepastEdge<Integer>> edges = new ArrayList<RepastEdge<Integer>>();
+        for (RepastEdge<Integer> edge : net.getEdges()) {
+          edges.add(edge);
+        }
+        if (op < 4 || edges.isEmpty()) {
+          Integer source = ints.get(random.nextInt(30));
+          Integer target = ints.get(random.nextInt(30));
+          if (context.contains(source) && context.contains(target)) {
+            net.addEdge(source, target, random.nextInt(10));
+          }
+        } else if (op < 7) {
+          net.removeEdge(edges.get(random.nextInt(edges.size())));
+        } else if (op < 9) {
+          cache.setEdgeWeight(edges.get(random.nextInt(edges.size())), random.nextInt(10));
+        } else {
+          Integer node = ints.get(random.nextInt(30));
+          if (context.contains(node)) {
+            context.remove(node);
+          } else {
+            context.add(node);
+          }
+        }
+        checkPathCache(net, cache, random);
+      }
+
+      cache.close();
+      net.addEdge(ints.get(1), ints.get(2));
+      try {
+        cache.getPathLength(ints.get(1), ints.get(2));
+        fail("closed cache should throw an exception");
+      } catch (IllegalStateException ex) {
+      }
+    }
+  }
+
   public static junit.framework.Test suite() {
     return new TestSuite(GraphTest.class);
   }
@@ -0,0 +1,133 @@
+package repast.simphony.random;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+import repast.simphony.engine.schedule.IAction;
+import repast.simphony.engine.schedule.ParallelActionExecutor;
+import cern.jet.random.Normal;
+
+/**
+ * Tests for {@link SplittableEngine} and {@link SplittableRandomRegistry}.
+ */
+public class SplittableRandomTest extends TestCase {
+
+	public void setUp() {
+		RandomHelper.setSplittable(true);
+		RandomHelper.init();
+	}
+
+	public void tearDown() {
+		RandomHelper.setSplittable(false);
+		ParallelActionExecutor.setPool(null);
+	}
+
+	public void testEngine() {
+		SplittableEngine engine = new SplittableEngine(42);
+		SplittableEngine other = new SplittableEngine(42);
+		for (int i = 0; i < 10000; i++) {
+			double d = engine.nextDouble();
+			assertTrue(d > 0 && d < 1);
+			assertEquals(d, other.nextDouble());
+		}
+
+		SplittableEngine child = engine.split();
+		assertTrue(child.nextLong() != engine.nextLong());
+		assertEquals(SplittableEngine.deriveSeed(42, 3), SplittableEngine.deriveSeed(42, 3));
+		assertTrue(SplittableEngine.deriveSeed(42, 3) != SplittableEngine.deriveSeed(42, 4));
+		assertTrue(SplittableEngine.deriveSeed(42, 3) != SplittableEngine.deriveSeed(43, 3));
+	}
+
+	public void testMode() {
+		assertTrue(RandomHelper.getSplittableRegistry() != null);
+		RandomHelper.setSeed(7);
+		double first = RandomHelper.nextDouble();
+		RandomHelper.setSeed(7);
+		assertEquals(first, RandomHelper.nextDouble());
+
+		RandomHelper.setSplittable(false);
+		assertNull(RandomHelper.getSplittableRegistry());
+		assertEquals(7, RandomHelper.getSeed());
+	}
+
+	private double[] runBatch(int threads) {
+		ParallelActionExecutor.setPool(new ForkJoinPool(threads));
+		RandomHelper.setSeed(1);
+		RandomHelper.createNormal(0, 1);
+		final double[] values = new double[1000];
+		List<IAction> actions = new ArrayList<IAction>();
+		for (int i = 0; i < values.length; i++) {
+			final int index = i;
+			actions.add(new IAction() {
+				public void execute() {
+					Normal normal = RandomHelper.getNormal();
+					values[index] = RandomHelper.nextDouble() + normal.nextDouble()
+							+ normal.nextDouble() + RandomHelper.nextIntFromTo(0, 100);
+				}
+			});
+		}
+		ParallelActionExecutor.execute(actions);
+		return values;
+	}
+
+	private double[] draw(int count) {
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = RandomHelper.nextDouble() + RandomHelper.getNormal().nextDouble();
+		}
+		return values;
+	}
+
+	public void testSerialReproducible() throws Exception {
+		RandomHelper.setSeed(5);
+		RandomHelper.createNormal(0, 1);
+		final double[][] other = new double[1][];
+		// the seed is set on this thread, the numbers drawn on another
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				other[0] = draw(100);
+			}
+		});
+		thread.start();
+		thread.join();
+
+		RandomHelper.setSeed(5);
+		RandomHelper.createNormal(0, 1);
+		assertTrue(Arrays.equals(other[0], draw(100)));
+	}
+
+	public void testParallelReproducible() {
+		double[] expected = runBatch(1);
+		assertTrue(expected[0] != expected[1]);
+		assertTrue(Arrays.equals(expected, runBatch(2)));
+		assertTrue(Arrays.equals(expected, runBatch(4)));
+		assertTrue(Arrays.equals(expected, runBatch(7)));
+	}
+
+	public void testBatchesDiffer() {
+		RandomHelper.setSeed(1);
+		SplittableRandomRegistry registry = RandomHelper.getSplittableRegistry();
+		long first = registry.createBatchSeed();
+		assertTrue(first != registry.createBatchSeed());
+
+		SplittableRandomRegistry.StreamBinding binding = registry.bind(first);
+		binding.select(0);
+		double inBatch = RandomHelper.nextDouble();
+		binding.select(0);
+		assertEquals(inBatch, RandomHelper.nextDouble());
+		registry.unbind(binding);
+		assertTrue(inBatch != RandomHelper.nextDouble());
+	}
+
+	public void testCreateStream() {
+		RandomHelper.setSeed(3);
+		SplittableRandomRegistry registry = RandomHelper.getSplittableRegistry();
+		SplittableEngine stream = registry.createStream(17);
+		RandomHelper.nextDouble();
+		assertEquals(stream.nextLong(), registry.createStream(17).nextLong());
+		assertTrue(registry.createStream(18).nextLong() != registry.createStream(17).nextLong());
+	}
+}
@@ -498,4 +498,78 @@ public class ContinuousTest extends TestCase {
 		assertEquals(2.0, point.getY());
 		assertEquals(2.0, point.getZ());
 	}
+
+	private Set<Integer> within(ContinuousSpace<Integer> space, Integer obj, double dist) {
+		Set<Integer> set = new HashSet<Integer>();
+		for (Integer i : new ContinuousWithin<Integer>(space, obj, dist).query()) {
+			assertTrue(set.add(i));
+		}
+		return set;
+	}
+
+	private Set<Integer> withinBruteForce(ContinuousSpace<Integer> space, Integer obj, double dist) {
+		Set<Integer> set = new HashSet<Integer>();
+		NdPoint origin = space.getLocation(obj);
+		for (Integer i : space.getObjects()) {
+			if (!i.equals(obj) && space.getDistance(space.getLocation(i), origin) <= dist) {
+				set.add(i);
+			}
+		}
+		return set;
+	}
+
+	public void testIndexedWithin() {
+		Context<Integer> context = new DefaultContext<Integer>();
+		for (int i = 0; i < 300; i++) {
+			context.add(i);
+		}
+		PointTranslator[] translators = { new WrapAroundBorders(), new BouncyBorders(),
+				new StickyBorders(), new StrictBorders(), new InfiniteBorders() };
+		double[] size = { 20, 13 };
+		double[][] origins = { { 0, 0 }, { 5, 3.5 } };
+		Random random = new Random(11);
+
+		for (PointTranslator translator : translators) {
+			for (double[] origin : origins) {
+				context.removeProjection("cs");
+				AbstractContinuousSpace<Integer, ?> space = (AbstractContinuousSpace<Integer, ?>) ContinuousSpaceFactoryFinder
+								.createContinuousSpaceFactory(null).createContinuousSpace("cs", context,
+												new SimpleCartesianAdder<Integer>(), translator, size, origin);
+				// infinite borders allow locations outside the space
+				double slop = translator instanceof InfiniteBorders ? 5 : 0;
+				space.setIndexBinSize(3);
+				assertTrue(space.isIndexed());
+
+				for (int round = 0; round < 3; round++) {
+					for (Integer i : context) {
+						double x = random.nextDouble() * (size[0] + 2 * slop) - origin[0] - slop;
+						double y = random.nextDouble() * (size[1] + 2 * slop) - origin[1] - slop;
+						space.moveTo(i, x, y);
+						if (!(translator instanceof StrictBorders)) {
+							space.moveByDisplacement(i, random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2);
+						}
+					}
+					if (round == 1) {
+						space.setIndexBinSize(2.2);
+					}
+					for (int i = 0; i < 300; i += 7) {
+						for (double dist : new double[] { 0.5, 3, 7.5, 30 }) {
+							assertEquals(withinBruteForce(space, i, dist), within(space, i, dist));
+						}
+					}
+				}
+
+				// remove some of the objects
+				for (int i = 0; i < 300; i += 5) {
+					context.remove(i);
+				}
+				for (int i = 1; i < 300; i += 5) {
+					assertEquals(withinBruteForce(space, i, 4), within(space, i, 4));
+				}
+				for (int i = 0; i < 300; i += 5) {
+					context.add(i);
+				}
+			}
+		}
+	}
 }
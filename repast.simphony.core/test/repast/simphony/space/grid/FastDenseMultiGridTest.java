@@ -0,0 +1,214 @@
+package repast.simphony.space.grid;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import repast.simphony.context.Context;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.context.space.grid.ContextFastMultiGrid;
+import repast.simphony.context.space.grid.GridFactoryFinder;
+import repast.simphony.engine.environment.RunState;
+
+/**
+ * Tests for the dense multi-occupancy grid.
+ */
+public class FastDenseMultiGridTest extends TestCase {
+
+  private Context<Integer> context;
+
+  public void setUp() {
+    context = new DefaultContext<Integer>();
+    for (int i = 0; i < 200; i++) {
+      context.add(new Integer(i));
+    }
+    RunState.init(null, null, null);
+  }
+
+  private Grid<Integer> createGrid(String name, GridBuilderParameters<Integer> params) {
+    return GridFactoryFinder.createGridFactory(null).createGrid(name, context, params);
+  }
+
+  private Set<Integer> toSet(Iterable<Integer> iter) {
+    Set<Integer> set = new HashSet<Integer>();
+    for (Integer i : iter) {
+      set.add(i);
+    }
+    return set;
+  }
+
+  public void testFactory() {
+    Grid<Integer> grid = createGrid("dense", GridBuilderParameters.denseMultiOccupancyND(
+        new SimpleGridAdder<Integer>(), new StrictBorders(), 10, 12));
+    assertTrue(grid instanceof ContextFastMultiGrid);
+    assertTrue(grid.getCellAccessor().allowsMultiOccupancy());
+
+    grid = createGrid("map", GridBuilderParameters.multiOccupancy2D(new SimpleGridAdder<Integer>(),
+        new StrictBorders(), 10, 12));
+    assertFalse(grid instanceof ContextFastMultiGrid);
+  }
+
+  public void testMatchesDefaultGrid() {
+    Grid<Integer> dense = createGrid("dense", new GridBuilderParameters<Integer>(
+        new WrapAroundBorders(), new SimpleGridAdder<Integer>(), true, true, new int[] { 7, 5, 4 },
+        new int[] { 3, 0, 1 }));
+    Grid<Integer> grid = createGrid("map", new GridBuilderParameters<Integer>(
+        new WrapAroundBorders(), new SimpleGridAdder<Integer>(), true, new int[] { 7, 5, 4 },
+        new int[] { 3, 0, 1 }));
+
+    Random random = new Random(31);
+    for (int round = 0; round < 5; round++) {
+      for (Integer i : context) {
+        int x = random.nextInt(20) - 10;
+        int y = random.nextInt(20) - 10;
+        int z = random.nextInt(20) - 10;
+        assertTrue(dense.moveTo(i, x, y, z));
+        assertTrue(grid.moveTo(i, x, y, z));
+        assertEquals(grid.getLocation(i), dense.getLocation(i));
+      }
+      if (round == 2) {
+        for (int i = 0; i < 200; i += 3) {
+          context.remove(new Integer(i));
+        }
+      }
+    }
+    assertEquals(grid.size(), dense.size());
+
+    int count = 0;
+    for (int x = -3; x < 4; x++) {
+      for (int y = 0; y < 5; y++) {
+        for (int z = -1; z < 3; z++) {
+          Set<Integer> expected = toSet(grid.getObjectsAt(x, y, z));
+          assertEquals(expected, toSet(dense.getObjectsAt(x, y, z)));
+          assertEquals(expected.size(),
+              ((FastDenseMultiOccuGrid<Integer>) dense).getObjectCountAt(x, y, z));
+          if (expected.isEmpty()) {
+            assertNull(dense.getObjectAt(x, y, z));
+            assertNull(dense.getRandomObjectAt(x, y, z));
+          } else {
+            assertTrue(expected.contains(dense.getObjectAt(x, y, z)));
+            assertTrue(expected.contains(dense.getRandomObjectAt(x, y, z)));
+          }
+          count += expected.size();
+        }
+      }
+    }
+    assertEquals(dense.size(), count);
+  }
+
+  public void testInsertionOrder() {
+    FastDenseMultiOccuGrid<Integer> grid = new FastDenseMultiOccuGrid<Integer>("grid", 3, 3);
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 6; i++) {
+      grid.getCellAccessor().put(i, grid.locationStorage, new GridPoint(1, 2));
+      expected.add(i);
+    }
+    grid.getCellAccessor().remove(0, grid.locationStorage, new GridPoint(1, 2));
+    grid.getCellAccessor().remove(5, grid.locationStorage, new GridPoint(1, 2));
+    grid.getCellAccessor().remove(3, grid.locationStorage, new GridPoint(1, 2));
+    expected.remove(new Integer(0));
+    expected.remove(new Integer(5));
+    expected.remove(new Integer(3));
+
+    List<Integer> found = new ArrayList<Integer>();
+    assertEquals(3, grid.getObjectsAt(found, 1, 2));
+    assertEquals(expected, found);
+    assertEquals(new Integer(1), grid.getObjectAt(1, 2));
+  }
+
+  public void testConcurrentModification() {
+    FastDenseMultiOccuGrid<Integer> grid = (FastDenseMultiOccuGrid<Integer>) createGrid("grid",
+        GridBuilderParameters.denseMultiOccupancyND(new SimpleGridAdder<Integer>(),
+            new StrictBorders(), 3, 3));
+    for (int i = 0; i < 5; i++) {
+      grid.moveTo(i, 1, 1);
+    }
+    grid.moveTo(5, 0, 0);
+
+    // moving an object in another cell doesn't affect the iteration
+    Iterator<Integer> iter = grid.getObjectsAt(1, 1).iterator();
+    assertEquals(new Integer(0), iter.next());
+    grid.moveTo(5, 2, 2);
+    assertEquals(new Integer(1), iter.next());
+
+    // removing an object frees its slot, which the next add reuses
+    grid.moveTo(2, 0, 1);
+    grid.moveTo(6, 1, 1);
+    try {
+      iter.next();
+      fail("the cell was modified during iteration");
+    } catch (ConcurrentModificationException ex) {
+    }
+
+    try {
+      for (Integer i : grid.getObjectsAt(1, 1)) {
+        context.remove(i);
+      }
+      fail("the cell was modified during iteration");
+    } catch (ConcurrentModificationException ex) {
+    }
+
+    Iterable<Integer> accessed = grid.getCellAccessor().getAll(grid.locationStorage,
+        new GridPoint(1, 1));
+    iter = accessed.iterator();
+    iter.next();
+    grid.moveTo(3, 2, 1);
+    try {
+      iter.next();
+      fail("the cell was modified during iteration");
+    } catch (ConcurrentModificationException ex) {
+    }
+  }
+
+  private Set<Integer> mooreBruteForce(Grid<Integer> grid, int[] center, int extent) {
+    Set<Integer> set = new HashSet<Integer>();
+    GridDimensions dims = grid.getDimensions();
+    for (Integer i : context) {
+      GridPoint pt = grid.getLocation(i);
+      boolean in = true;
+      for (int d = 0; d < dims.size(); d++) {
+        int diff = Math.abs(pt.getCoord(d) - center[d]);
+        if (grid.isPeriodic()) {
+          diff = Math.min(diff, dims.getDimension(d) - diff);
+        }
+        in &= diff <= extent;
+      }
+      if (in) set.add(i);
+    }
+    return set;
+  }
+
+  public void testMooreNeighborhood() {
+    int[][] dims = { { 12, 9 }, { 4, 3 } };
+    for (boolean periodic : new boolean[] { false, true }) {
+      for (int[] size : dims) {
+        context.removeProjection("grid");
+        GridPointTranslator trans = periodic ? new WrapAroundBorders() : new StrictBorders();
+        FastDenseMultiOccuGrid<Integer> grid = (FastDenseMultiOccuGrid<Integer>) createGrid("grid",
+            GridBuilderParameters.denseMultiOccupancyND(new SimpleGridAdder<Integer>(), trans, size));
+        Random random = new Random(7);
+        for (Integer i : context) {
+          grid.moveTo(i, random.nextInt(size[0]), random.nextInt(size[1]));
+        }
+
+        for (int x = 0; x < size[0]; x++) {
+          for (int y = 0; y < size[1]; y++) {
+            for (int extent = 0; extent < 3; extent++) {
+              List<Integer> found = new ArrayList<Integer>();
+              int count = grid.getMooreNeighborhood(found, new GridPoint(x, y), extent, extent);
+              assertEquals(found.size(), count);
+              assertEquals(count, new HashSet<Integer>(found).size());
+              assertEquals(mooreBruteForce(grid, new int[] { x, y }, extent),
+                  new HashSet<Integer>(found));
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -2,7 +2,14 @@ package repast.simphony.util.bytecode;
 
 import junit.framework.TestCase;
 
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import repast.simphony.freezedry.FieldLayout;
 
 /**
  * @author Nick Collier
@@ -28,6 +35,60 @@ public class ByteCodeTests extends TestCase {
     }
   }
 
+  public static class InvokeObject {
+
+    int count = 0;
+    String[] lastArgs;
+
+    public void step() {
+      count++;
+    }
+
+    public int add(int val, Integer other, double[] vals) {
+      count += val + other + vals.length;
+      return count;
+    }
+
+    public void setArgs(String[] args) {
+      lastArgs = args;
+    }
+
+    public static char getChar() {
+      return 'c';
+    }
+
+    public void fail() {
+      throw new IllegalStateException("fail");
+    }
+  }
+
+  /**
+   * Loads InvokeObject, and the test class that encloses it, itself rather than
+   * delegating to its parent, the way a model's classes are loaded.
+   */
+  static class ModelLoader extends URLClassLoader {
+
+    public ModelLoader() {
+      super(new URL[]{InvokeObject.class.getProtectionDomain().getCodeSource().getLocation()},
+              InvokeObject.class.getClassLoader());
+    }
+
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith(ByteCodeTests.class.getName())) return super.loadClass(name, resolve);
+      Class<?> clazz = findLoadedClass(name);
+      if (clazz == null) clazz = findClass(name);
+      return clazz;
+    }
+  }
+
+  static class PackageObject {
+    int count = 0;
+
+    public void step() {
+      count++;
+    }
+  }
+
 
   public void testDataSource() throws Exception {
     ByteCodeUtilities bcUtils = ByteCodeUtilities.getInstance();
@@ -59,5 +120,66 @@ public class ByteCodeTests extends TestCase {
     assertEquals("Hello", data);
   }
 
+  public void testMethodInvoker() throws Exception {
+    ByteCodeUtilities bcUtils = ByteCodeUtilities.getInstance();
+    InvokeObject obj = new InvokeObject();
+
+    Method method = InvokeObject.class.getMethod("step");
+    MethodInvoker invoker = bcUtils.getMethodInvoker(method);
+    assertSame(invoker, bcUtils.getMethodInvoker(method));
+    assertNull(invoker.invoke(obj, new Object[0]));
+    assertEquals(1, obj.count);
+
+    method = InvokeObject.class.getMethod("add", int.class, Integer.class, double[].class);
+    invoker = bcUtils.getMethodInvoker(method);
+    Object val = invoker.invoke(obj, new Object[]{2, 3, new double[4]});
+    assertEquals(Integer.valueOf(10), val);
+
+    method = InvokeObject.class.getMethod("setArgs", String[].class);
+    String[] args = {"a", "b"};
+    bcUtils.getMethodInvoker(method).invoke(obj, new Object[]{args});
+    assertSame(args, obj.lastArgs);
+
+    method = InvokeObject.class.getMethod("getChar");
+    assertEquals(Character.valueOf('c'), bcUtils.getMethodInvoker(method).invoke(null, new Object[0]));
+
+    method = InvokeObject.class.getMethod("fail");
+    try {
+      bcUtils.getMethodInvoker(method).invoke(obj, new Object[0]);
+      fail("invoke should throw an InvocationTargetException");
+    } catch (InvocationTargetException ex) {
+      assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+
+    // not public so falls back to FastMethod
+    PackageObject pObj = new PackageObject();
+    method = PackageObject.class.getMethod("step");
+    bcUtils.getMethodInvoker(method).invoke(pObj, new Object[0]);
+    assertEquals(1, pObj.count);
+  }
 
+  public void testLoaderNotRetained() throws Exception {
+    WeakReference<ClassLoader> ref = invokeInModelLoader();
+    for (int i = 0; i < 50 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertNull(ref.get());
+  }
+
+  private WeakReference<ClassLoader> invokeInModelLoader() throws Exception {
+    ClassLoader loader = new ModelLoader();
+    Class<?> clazz = loader.loadClass(InvokeObject.class.getName());
+    assertNotSame(InvokeObject.class, clazz);
+    Object obj = clazz.newInstance();
+    Method method = clazz.getMethod("add", int.class, Integer.class, double[].class);
+    Object val = ByteCodeUtilities.getInstance().getMethodInvoker(method).invoke(obj,
+            new Object[]{1, 2, new double[0]});
+    assertEquals(Integer.valueOf(3), val);
+
+    Field field = clazz.getDeclaredField("count");
+    assertEquals(3, ByteCodeUtilities.getInstance().getFieldAccessor(field).get(obj));
+    assertEquals(field, FieldLayout.getLayout(clazz).getEntries()[0].getField());
+    return new WeakReference<ClassLoader>(loader);
+  }
 }
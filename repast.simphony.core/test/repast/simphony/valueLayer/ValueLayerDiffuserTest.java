@@ -1,6 +1,9 @@
 package repast.simphony.valueLayer;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
+import repast.simphony.space.grid.WrapAroundBorders;
 import repast.simphony.valueLayer.GridValueLayer;
 import repast.simphony.valueLayer.ValueLayerDiffuser;
 
@@ -778,4 +781,83 @@ public class ValueLayerDiffuserTest extends TestCase {
 			}
 		}
 	}
+
+	// diffuses a dense layer and an identical layer through the subclass,
+	// which uses the get / set path, and checks that the results are the same
+	private void assertSameAsGeneric(boolean toroidal, int... dims) {
+		GridValueLayer dense = new GridValueLayer("dense", true, new WrapAroundBorders(), dims);
+		GridValueLayer generic = new GridValueLayer("generic", true, new WrapAroundBorders(), dims);
+		Random random = new Random(17);
+		DenseValueLayerStore store = (DenseValueLayerStore) dense.store;
+		for (int i = 0; i < store.array.length; i++) {
+			store.array[i] = random.nextDouble() * 100;
+			((DenseValueLayerStore) generic.store).array[i] = store.array[i];
+		}
+
+		ValueLayerDiffuser fast = new ValueLayerDiffuser(dense, .93, .71, toroidal);
+		ValueLayerDiffuser slow = new ValueLayerDiffuser(generic, .93, .71, toroidal) {};
+		fast.setMaxValue(80);
+		slow.setMaxValue(80);
+		fast.setMinValue(5);
+		slow.setMinValue(5);
+
+		for (int step = 0; step < 3; step++) {
+			fast.diffuse();
+			slow.diffuse();
+			double[] expected = ((DenseValueLayerStore) generic.store).array;
+			double[] found = ((DenseValueLayerStore) dense.store).array;
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(found[i]));
+			}
+		}
+	}
+
+	public void testDenseMatchesGeneric() {
+		for (boolean toroidal : new boolean[] { true, false }) {
+			assertSameAsGeneric(toroidal, 1);
+			assertSameAsGeneric(toroidal, 37);
+			assertSameAsGeneric(toroidal, 40000);
+			assertSameAsGeneric(toroidal, 1, 5);
+			assertSameAsGeneric(toroidal, 13, 7);
+			assertSameAsGeneric(toroidal, 300, 211);
+			assertSameAsGeneric(toroidal, 6, 6, 6);
+			assertSameAsGeneric(toroidal, 35, 35, 35);
+			assertSameAsGeneric(toroidal, 4, 3, 2);
+			assertSameAsGeneric(toroidal, 2, 9, 5);
+		}
+	}
+
+	// a sparse layer is not backed by a dense store, so it is diffused through
+	// get / set and copied back cell by cell
+	public void testNonCubic3DSparseMatchesDense() {
+		for (boolean toroidal : new boolean[] { true, false }) {
+			int[] dims = { 4, 3, 2 };
+			GridValueLayer dense = new GridValueLayer("dense", true, new WrapAroundBorders(), dims);
+			GridValueLayer sparse = new GridValueLayer("sparse", false, new WrapAroundBorders(), dims);
+			Random random = new Random(23);
+			for (int x = 0; x < dims[0]; x++) {
+				for (int y = 0; y < dims[1]; y++) {
+					for (int z = 0; z < dims[2]; z++) {
+						double val = random.nextDouble() * 100;
+						dense.set(val, x, y, z);
+						sparse.set(val, x, y, z);
+					}
+				}
+			}
+
+			ValueLayerDiffuser fast = new ValueLayerDiffuser(dense, .93, .71, toroidal);
+			ValueLayerDiffuser slow = new ValueLayerDiffuser(sparse, .93, .71, toroidal);
+			for (int step = 0; step < 3; step++) {
+				fast.diffuse();
+				slow.diffuse();
+				for (int x = 0; x < dims[0]; x++) {
+					for (int y = 0; y < dims[1]; y++) {
+						for (int z = 0; z < dims[2]; z++) {
+							assertEquals(dense.get(x, y, z), sparse.get(x, y, z), 0);
+						}
+					}
+				}
+			}
+		}
+	}
 }
@@ -327,6 +327,50 @@ public class WatcherTest extends TestCase {
     assertEquals(generator.getCounter(), 1);
   }
 
+  public void testScheduleCoalesced() throws NoSuchMethodException {
+    WatcherTrigger.getInstance().setCoalesceNotifications(true);
+    try {
+      final Generator generator = new Generator();
+      final Generator generator2 = new Generator();
+
+      MyWatcher watcher = new MyWatcher();
+      WatchParameters params = new WatchParameters(Generator.class.getName(), "counter", watcher,
+          clazz.getMethod("watchTrigger"));
+      params.setTriggerSchedule(WatcherTriggerSchedule.LATER, 1, 0);
+      WatcherTrigger.getInstance().addFieldSetWatch(params, schedule);
+
+      MyWatcher watcher2 = new MyWatcher();
+      params = new WatchParameters(Generator.class.getName(), "counter", watcher2, clazz.getMethod(
+          "watchTrigger", Generator.class, int.class));
+      params.setTriggerSchedule(WatcherTriggerSchedule.LATER, 1, 0);
+      WatcherTrigger.getInstance().addFieldSetWatch(params, schedule);
+
+      IAction action = new IAction() {
+        public void execute() {
+          generator2.run();
+          generator.run();
+          generator.run();
+          generator.run();
+        }
+      };
+
+      schedule.schedule(ScheduleParameters.createOneTime(0), action);
+      schedule.execute();
+      assertEquals(0.0, schedule.getTickCount());
+      assertEquals(-1, watcher.plainTriggerVal);
+      assertEquals(-1, watcher2.val);
+
+      // one notification per watchee, with the last value
+      schedule.execute();
+      assertEquals(1.0, schedule.getTickCount());
+      assertEquals(1, watcher.plainTriggerVal);
+      assertEquals(generator, watcher2.generator);
+      assertEquals(3, watcher2.val);
+    } finally {
+      WatcherTrigger.getInstance().setCoalesceNotifications(false);
+    }
+  }
+
   public void testDblFieldAnnotation() {
     WatchAnnotationReader reader = new WatchAnnotationReader();
     try {
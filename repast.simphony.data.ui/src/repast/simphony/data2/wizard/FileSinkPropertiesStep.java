@@ -58,6 +58,7 @@ public class FileSinkPropertiesStep extends PanelWizardStep{
   private JTextField fnameFld = new JTextField();
   private JButton browseBtn = new JButton("Browse");
   private JCheckBox timeChk = new JCheckBox("Insert Current Time into File Name");
+  private JCheckBox asyncChk = new JCheckBox("Write on a Background Thread");
   private JTextField delimiterFld = new JTextField();
   private JComboBox formatBox = new JComboBox(FormatType.values());
 
@@ -66,8 +67,8 @@ public class FileSinkPropertiesStep extends PanelWizardStep{
         "Please enter the file and format properties");
     this.setLayout(new BorderLayout());
     
-    FormLayout layout = new FormLayout("4dlu, left:pref, 3dlu, pref:grow, 3dlu, pref", "pref, 5dlu, pref, 3dlu, pref, 5dlu, pref, " +
-    		"5dlu, pref, 3dlu, pref");
+    FormLayout layout = new FormLayout("4dlu, left:pref, 3dlu, pref:grow, 3dlu, pref", "pref, 5dlu, pref, 3dlu, pref, 3dlu, pref, " +
+    		"5dlu, pref, 5dlu, pref, 3dlu, pref");
     PanelBuilder builder = new PanelBuilder(layout);
     
     CellConstraints cc = new CellConstraints();
@@ -77,13 +78,14 @@ public class FileSinkPropertiesStep extends PanelWizardStep{
     builder.add(browseBtn, cc.xy(6, 3));
     
     builder.add(timeChk, cc.xyw(2, 5, 5));
+    builder.add(asyncChk, cc.xyw(2, 7, 5));
     
-    builder.addSeparator("Format Properties", cc.xyw(1, 7, 6));
-    builder.addLabel("Delimiter:", cc.xy(2, 9));
-    builder.add(delimiterFld, cc.xyw(4, 9, 3));
+    builder.addSeparator("Format Properties", cc.xyw(1, 9, 6));
+    builder.addLabel("Delimiter:", cc.xy(2, 11));
+    builder.add(delimiterFld, cc.xyw(4, 11, 3));
     
-    builder.addLabel("Format Type:", cc.xy(2, 11));
-    builder.add(formatBox, cc.xyw(4, 11, 3));
+    builder.addLabel("Format Type:", cc.xy(2, 13));
+    builder.add(formatBox, cc.xyw(4, 13, 3));
    
     add(builder.getPanel(), BorderLayout.CENTER);
     addListeners();
@@ -128,6 +130,7 @@ public class FileSinkPropertiesStep extends PanelWizardStep{
     FileSinkDescriptor descriptor = model.getDescriptor();
     fnameFld.setText(descriptor.getFileName());
     timeChk.setSelected(descriptor.isAddTimeStamp());
+    asyncChk.setSelected(descriptor.isAsync());
     delimiterFld.setText(descriptor.getDelimiter());
     formatBox.setSelectedItem(descriptor.getFormat());
     checkComplete();
@@ -138,6 +141,7 @@ public class FileSinkPropertiesStep extends PanelWizardStep{
     FileSinkDescriptor descriptor = model.getDescriptor();
     descriptor.setFileName(fnameFld.getText().trim());
     descriptor.setAddTimeStamp(timeChk.isSelected());
+    descriptor.setAsync(asyncChk.isSelected());
     descriptor.setDelimiter(delimiterFld.getText());
     descriptor.setFormat((FormatType) formatBox.getSelectedItem());
   }
@@ -0,0 +1,496 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FileDataSink that formats and writes its rows on a background writer thread.
+ * The rows appended to this sink are copied into a bounded ring buffer and the
+ * writer thread takes them from the buffer in batches, formats them and writes
+ * them to the file. The simulation thread then only pays the cost of copying
+ * the keys and values.
+ * <p>
+ *
+ * When the buffer is full, the sink either blocks until the writer has made
+ * room or drops the row, according to its {@link Backpressure} policy. The
+ * number of dropped rows is available from {@link #getDroppedRowCount()}.
+ * <p>
+ *
+ * The values are formatted on the writer thread, so they should not be
+ * modified once they have been appended. The values produced by the data
+ * sources (numbers and strings) are immutable.
+ */
+public class AsyncFileDataSink extends FileDataSink {
+
+  /**
+   * What to do with a row when the buffer is full.
+   */
+  public enum Backpressure {
+    /**
+     * Wait for the writer thread to make room for the row.
+     */
+    BLOCK,
+
+    /**
+     * Discard the row and count it as dropped.
+     */
+    DROP
+  }
+
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+  public static final int DEFAULT_BATCH_SIZE = 64;
+
+  // a single row: its appended keys and values
+  private static class Row {
+    String[] keys = new String[8];
+    Object[] values = new Object[8];
+    int size;
+
+    void add(String key, Object value) {
+      if (size == keys.length) {
+        String[] newKeys = new String[size * 2];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        keys = newKeys;
+        Object[] newValues = new Object[size * 2];
+        System.arraycopy(values, 0, newValues, 0, size);
+        values = newValues;
+      }
+      keys[size] = key;
+      values[size] = value;
+      size++;
+    }
+
+    void clear() {
+      for (int i = 0; i < size; i++) {
+        values[i] = null;
+      }
+      size = 0;
+    }
+  }
+
+  private final Backpressure backpressure;
+  private final int batchSize;
+
+  // the ring buffer; rows are put at head + count and taken from head
+  private final Row[] ring;
+  private int head, count;
+
+  // rows are exchanged with the ring rather than copied, so the
+  // producer and the writer each own spare rows
+  private Row current = new Row();
+  private final Row[] batch;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition written = lock.newCondition();
+
+  // the number of rows put in the ring, the number written and the
+  // number written when the file was last flushed
+  private long published, writtenCount, flushedCount;
+  // when a flush is pending, the writer flushes once it has written
+  // flushTarget rows
+  private boolean flushPending;
+  private long flushTarget;
+  private long dropped;
+
+  private boolean rowOpen;
+  private boolean stopping;
+  // whether the writer thread has exited, set with the lock held
+  private boolean writerDone;
+  private Thread writerThread;
+  private BufferedWriter writer;
+  private volatile Throwable error;
+
+  /**
+   * Creates an AsyncFileDataSink with the default buffer and batch size that
+   * blocks when its buffer is full.
+   *
+   * @param name
+   *          the name of the sink
+   * @param file
+   *          the file to write to
+   * @param formatter
+   *          the formatter used to format the rows
+   */
+  public AsyncFileDataSink(String name, File file, Formatter formatter) {
+    this(name, file, formatter, DEFAULT_BUFFER_SIZE, DEFAULT_BATCH_SIZE, Backpressure.BLOCK);
+  }
+
+  /**
+   * Creates an AsyncFileDataSink.
+   *
+   * @param name
+   *          the name of the sink
+   * @param file
+   *          the file to write to
+   * @param formatter
+   *          the formatter used to format the rows
+   * @param bufferSize
+   *          the maximum number of rows waiting to be written
+   * @param batchSize
+   *          the maximum number of rows the writer thread takes from the
+   *          buffer at a time
+   * @param backpressure
+   *          what to do with a row when the buffer is full
+   */
+  public AsyncFileDataSink(String name, File file, Formatter formatter, int bufferSize,
+      int batchSize, Backpressure backpressure) {
+    super(name, file, formatter);
+    if (bufferSize < 1)
+      throw new IllegalArgumentException("Buffer size must be at least 1");
+    if (batchSize < 1)
+      throw new IllegalArgumentException("Batch size must be at least 1");
+    this.backpressure = backpressure;
+    this.batchSize = Math.min(batchSize, bufferSize);
+    ring = new Row[bufferSize];
+    for (int i = 0; i < bufferSize; i++) {
+      ring[i] = new Row();
+    }
+    batch = new Row[this.batchSize];
+    for (int i = 0; i < this.batchSize; i++) {
+      batch[i] = new Row();
+    }
+  }
+
+  /**
+   * Gets the backpressure policy of this sink.
+   *
+   * @return the backpressure policy of this sink.
+   */
+  public Backpressure getBackpressure() {
+    return backpressure;
+  }
+
+  /**
+   * Gets the maximum number of rows waiting to be written.
+   *
+   * @return the maximum number of rows waiting to be written.
+   */
+  public int getBufferSize() {
+    return ring.length;
+  }
+
+  /**
+   * Gets the maximum number of rows the writer thread takes from the buffer at
+   * a time.
+   *
+   * @return the maximum number of rows written in a batch.
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Gets the number of rows that were dropped because the buffer was full.
+   * This is always 0 when the backpressure policy is BLOCK.
+   *
+   * @return the number of dropped rows.
+   */
+  public long getDroppedRowCount() {
+    lock.lock();
+    try {
+      return dropped;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.FileDataSink#open(java.util.List)
+   */
+  @Override
+  public void open(List<String> sourceIds) {
+    File file = getFile();
+    try {
+      File parentFile = file.getCanonicalFile().getParentFile();
+      if (parentFile != null && !parentFile.exists()) parentFile.mkdirs();
+
+      writer = new BufferedWriter(new FileWriter(file));
+      String header = getFormatter().getHeader();
+      if (header.length() > 0) {
+        writer.write(header);
+        writer.newLine();
+      }
+    } catch (IOException ex) {
+      throw new DataException("Error opening FileDataSink.", ex);
+    }
+
+    writerThread = new Thread(new Runnable() {
+      public void run() {
+        writeRows();
+      }
+    }, "FileDataSink writer: " + getName());
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  // the writer thread's loop, waking up any thread waiting on it when it
+  // exits, however it exits
+  private void writeRows() {
+    try {
+      writeBatches();
+    } catch (Throwable ex) {
+      if (error == null)
+        error = ex;
+    } finally {
+      lock.lock();
+      try {
+        writerDone = true;
+        notFull.signalAll();
+        written.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private void writeBatches() {
+    Formatter formatter = getFormatter();
+    while (true) {
+      int n = 0;
+      boolean flush = false;
+      long flushed = 0;
+      lock.lock();
+      try {
+        while (count == 0 && !stopping && !flushDue()) {
+          notEmpty.awaitUninterruptibly();
+        }
+        if (count == 0 && stopping && !flushPending)
+          return;
+
+        // swap the rows out of the ring for our spares
+        n = Math.min(count, batchSize);
+        for (int i = 0; i < n; i++) {
+          Row row = ring[head];
+          ring[head] = batch[i];
+          batch[i] = row;
+          head = (head + 1) % ring.length;
+        }
+        count -= n;
+        if (n > 0)
+          notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+
+      if (error == null) {
+        try {
+          for (int i = 0; i < n; i++) {
+            Row row = batch[i];
+            formatter.clear();
+            for (int j = 0; j < row.size; j++) {
+              formatter.addData(row.keys[j], row.values[j]);
+            }
+            writer.write(formatter.formatData());
+            writer.newLine();
+          }
+        } catch (Throwable ex) {
+          // the remaining rows are discarded and the error is
+          // rethrown to the producer
+          error = ex;
+        }
+      }
+      for (int i = 0; i < n; i++) {
+        batch[i].clear();
+      }
+
+      lock.lock();
+      try {
+        writtenCount += n;
+        flush = flushDue();
+        flushed = writtenCount;
+      } finally {
+        lock.unlock();
+      }
+
+      if (flush) {
+        if (error == null) {
+          try {
+            writer.flush();
+          } catch (Throwable ex) {
+            error = ex;
+          }
+        }
+        lock.lock();
+        try {
+          flushedCount = flushed;
+          if (flushTarget <= flushed)
+            flushPending = false;
+          written.signalAll();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  // whether the writer should flush now, called with the lock held
+  private boolean flushDue() {
+    return flushPending && writtenCount >= flushTarget;
+  }
+
+  private void checkError() {
+    Throwable ex = error;
+    if (ex != null) {
+      throw new DataException("Error writing to FileDataSink '" + getFile().getName() + "'", ex);
+    }
+  }
+
+  // whether the writer thread can still take rows, called with the lock held
+  private boolean writerRunning() {
+    return !writerDone && error == null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowStarted()
+   */
+  @Override
+  public void rowStarted() {
+    current.clear();
+    rowOpen = true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#append(java.lang.String,
+   * java.lang.Object)
+   */
+  @Override
+  public void append(String key, Object value) {
+    current.add(key, value);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowEnded()
+   */
+  @Override
+  public void rowEnded() {
+    checkError();
+    if (!rowOpen)
+      return;
+    rowOpen = false;
+    lock.lock();
+    try {
+      if (count == ring.length) {
+        if (backpressure == Backpressure.DROP || stopping) {
+          dropped++;
+          current.clear();
+          return;
+        }
+        while (count == ring.length && writerRunning()) {
+          notFull.awaitUninterruptibly();
+        }
+        if (count == ring.length) {
+          // the writer failed while we were waiting
+          current.clear();
+          checkError();
+          return;
+        }
+      }
+      int tail = (head + count) % ring.length;
+      Row row = ring[tail];
+      ring[tail] = current;
+      current = row;
+      count++;
+      published++;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Asks the writer thread to flush the file once it has written the rows
+   * ended so far. This does not wait for the rows to be written.
+   */
+  @Override
+  public void recordEnded() {
+    checkError();
+    lock.lock();
+    try {
+      if (published > flushTarget) {
+        flushTarget = published;
+        flushPending = true;
+        notEmpty.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // requests a flush of all the published rows and waits for it
+  private void drain() {
+    lock.lock();
+    try {
+      long target = published;
+      flushTarget = target;
+      flushPending = true;
+      notEmpty.signal();
+      while ((flushPending || flushedCount < target) && !writerDone) {
+        written.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until the rows ended so far are written and flushed to the file.
+   */
+  @Override
+  public synchronized void flush() {
+    if (writerThread != null && !stopping) {
+      drain();
+      checkError();
+    }
+  }
+
+  /**
+   * Writes any remaining rows, stops the writer thread and closes the file.
+   */
+  @Override
+  public synchronized void close() {
+    if (writerThread == null || stopping)
+      return;
+    drain();
+    lock.lock();
+    try {
+      stopping = true;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+    boolean interrupted = false;
+    while (writerThread.isAlive()) {
+      try {
+        writerThread.join();
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+
+    try {
+      writer.close();
+    } catch (IOException ex) {
+    }
+    checkError();
+  }
+}
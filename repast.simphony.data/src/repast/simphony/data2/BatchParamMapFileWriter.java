@@ -79,8 +79,9 @@ public class BatchParamMapFileWriter implements DataSink {
       }
     }
 
-    formatter = formatType == FormatType.TABULAR ? new TabularFormatter(sources, delimiter)
-        : new LineFormatter(sources, delimiter);
+    // the parameter map is always text, and tabular for columnar sinks
+    formatter = formatType == FormatType.LINE ? new LineFormatter(sources, delimiter)
+        : new TabularFormatter(sources, delimiter);
 
     try {
       String file = fnFormatter.getFilename("batch_param_map");
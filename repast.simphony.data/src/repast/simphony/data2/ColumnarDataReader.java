@@ -0,0 +1,296 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import repast.simphony.data2.ColumnarDataSink.ColumnType;
+
+/**
+ * Reads the files written by a {@link ColumnarDataSink} one chunk at a time.
+ * After {@link #nextChunk()} returns true, the values of each column in the
+ * chunk are available as a primitive array of the column's type, or a String
+ * array for string columns. A column whose type was taken from its first
+ * value may be widened to DOUBLE from one chunk on, so the type of a column
+ * should be checked for each chunk.
+ *
+ * <pre>
+ * ColumnarDataReader reader = new ColumnarDataReader(file);
+ * int tick = reader.getColumnIndex(&quot;tick&quot;);
+ * while (reader.nextChunk()) {
+ *   double[] ticks = (double[]) reader.getColumn(tick);
+ *   for (int i = 0; i &lt; reader.getRowCount(); i++) {
+ *     ...
+ *   }
+ * }
+ * reader.close();
+ * </pre>
+ */
+public class ColumnarDataReader implements Closeable {
+
+  private DataInputStream in;
+  private List<String> names = new ArrayList<String>();
+  private List<ColumnType> types = new ArrayList<ColumnType>();
+  private short version;
+  private Object[] values;
+  private BitSet[] nulls;
+  private int rows;
+  private boolean done = false;
+
+  private Inflater inflater = new Inflater();
+  private byte[] stored = new byte[8192];
+
+  /**
+   * Creates a ColumnarDataReader that reads the specified file.
+   *
+   * @param file
+   *          the file to read
+   *
+   * @throws IOException
+   *           if there is an error opening the file or the file was not
+   *           written by a ColumnarDataSink.
+   */
+  public ColumnarDataReader(File file) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+    try {
+      if (in.readInt() != ColumnarDataSink.MAGIC)
+        throw new IOException("'" + file.getName() + "' is not a columnar data file");
+      version = in.readShort();
+      if (version != ColumnarDataSink.VERSION && version != ColumnarDataSink.VERSION_1)
+        throw new IOException("Unsupported columnar data file version: " + version);
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        names.add(in.readUTF());
+        types.add(ColumnType.values()[in.readByte()]);
+      }
+    } catch (IOException ex) {
+      close();
+      throw ex;
+    }
+    values = new Object[names.size()];
+    nulls = new BitSet[names.size()];
+  }
+
+  /**
+   * Gets the names of the columns in column order.
+   *
+   * @return the names of the columns.
+   */
+  public List<String> getColumnNames() {
+    return Collections.unmodifiableList(names);
+  }
+
+  /**
+   * Gets the index of the named column.
+   *
+   * @param name
+   *          the name of the column
+   *
+   * @return the index of the named column, or -1 if there is no such column.
+   */
+  public int getColumnIndex(String name) {
+    return names.indexOf(name);
+  }
+
+  /**
+   * Gets the type of the specified column in the current chunk, or in the
+   * file's header before the first chunk is read.
+   *
+   * @param column
+   *          the index of the column
+   *
+   * @return the type of the specified column.
+   */
+  public ColumnType getColumnType(int column) {
+    return types.get(column);
+  }
+
+  /**
+   * Reads the next chunk.
+   *
+   * @return true if a chunk was read, false if there are no more chunks.
+   *
+   * @throws IOException
+   *           if there is an error reading the chunk.
+   */
+  public boolean nextChunk() throws IOException {
+    if (done)
+      return false;
+    try {
+      rows = in.readInt();
+    } catch (EOFException ex) {
+      // the sink was not closed
+      rows = 0;
+    }
+    if (rows == 0) {
+      done = true;
+      return false;
+    }
+
+    for (int i = 0; i < values.length; i++) {
+      DataInputStream block = new DataInputStream(new ByteArrayInputStream(readBlock(i)));
+      byte[] bits = new byte[block.readInt()];
+      block.readFully(bits);
+      nulls[i] = BitSet.valueOf(bits);
+      values[i] = readValues(block, types.get(i), rows);
+    }
+    return true;
+  }
+
+  private byte[] readBlock(int column) throws IOException {
+    byte codec = in.readByte();
+    if (version != ColumnarDataSink.VERSION_1)
+      types.set(column, ColumnType.values()[in.readByte()]);
+    int width = types.get(column).width;
+    int length = in.readInt();
+    int storedLength = in.readInt();
+    byte[] data = new byte[length];
+    if (codec == ColumnarDataSink.CODEC_NONE) {
+      in.readFully(data);
+    } else if (codec == ColumnarDataSink.CODEC_DEFLATE) {
+      if (stored.length < storedLength)
+        stored = new byte[storedLength];
+      in.readFully(stored, 0, storedLength);
+      inflater.reset();
+      inflater.setInput(stored, 0, storedLength);
+      try {
+        int n = 0;
+        while (n < length && !inflater.finished()) {
+          n += inflater.inflate(data, n, length - n);
+        }
+      } catch (DataFormatException ex) {
+        throw new IOException("Corrupt column block", ex);
+      }
+      if (width > 1) {
+        // rejoin the byte planes
+        int start = 4 + (((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16)
+            | ((data[2] & 0xff) << 8) | (data[3] & 0xff));
+        byte[] joined = new byte[length];
+        System.arraycopy(data, 0, joined, 0, start);
+        for (int b = 0; b < width; b++) {
+          int src = start + b * rows;
+          for (int i = 0, dst = start + b; i < rows; i++, dst += width) {
+            joined[dst] = data[src + i];
+          }
+        }
+        data = joined;
+      }
+    } else {
+      throw new IOException("Unknown column codec: " + codec);
+    }
+    return data;
+  }
+
+  private Object readValues(DataInputStream block, ColumnType type, int rows) throws IOException {
+    switch (type) {
+    case BOOLEAN: {
+      boolean[] vals = new boolean[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readBoolean();
+      return vals;
+    }
+    case BYTE: {
+      byte[] vals = new byte[rows];
+      block.readFully(vals);
+      return vals;
+    }
+    case SHORT: {
+      short[] vals = new short[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readShort();
+      return vals;
+    }
+    case INT: {
+      int[] vals = new int[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readInt();
+      return vals;
+    }
+    case LONG: {
+      long[] vals = new long[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readLong();
+      return vals;
+    }
+    case FLOAT: {
+      float[] vals = new float[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readFloat();
+      return vals;
+    }
+    case DOUBLE: {
+      double[] vals = new double[rows];
+      for (int i = 0; i < rows; i++) vals[i] = block.readDouble();
+      return vals;
+    }
+    default: {
+      String[] vals = new String[rows];
+      byte[] bytes = new byte[64];
+      for (int i = 0; i < rows; i++) {
+        int length = block.readInt();
+        if (bytes.length < length)
+          bytes = new byte[length];
+        block.readFully(bytes, 0, length);
+        vals[i] = new String(bytes, 0, length, ColumnarDataSink.UTF8);
+      }
+      return vals;
+    }
+    }
+  }
+
+  /**
+   * Gets the number of rows in the current chunk.
+   *
+   * @return the number of rows in the current chunk.
+   */
+  public int getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Gets the values of the specified column in the current chunk. This is a
+   * boolean[], byte[], short[], int[], long[], float[], double[] or String[]
+   * according to the column's type. The values of null entries are 0, false
+   * or the empty string.
+   *
+   * @param column
+   *          the index of the column
+   *
+   * @return the values of the specified column in the current chunk.
+   */
+  public Object getColumn(int column) {
+    return values[column];
+  }
+
+  /**
+   * Gets whether the specified value in the current chunk is null.
+   *
+   * @param column
+   *          the index of the column
+   * @param row
+   *          the row within the current chunk
+   *
+   * @return true if the value is null, otherwise false.
+   */
+  public boolean isNull(int column, int row) {
+    return nulls[column].get(row);
+  }
+
+  /**
+   * Closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    in.close();
+  }
+}
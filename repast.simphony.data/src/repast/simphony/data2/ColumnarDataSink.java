@@ -0,0 +1,603 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * DataSink that writes data to a file in a binary columnar format. The rows
+ * are buffered into typed columns and written as chunks of up to a fixed
+ * number of rows. Within a chunk each column is written as a block of
+ * primitive values, so numbers are never converted to strings, and each
+ * column's block can be compressed independently. Files in this format can be
+ * read with {@link ColumnarDataReader}.
+ * <p>
+ *
+ * The file starts with a header that gives the name and the type of each
+ * column. The type of a column is derived from the data type of its
+ * DataSource. Object and Number typed sources take their type from the first
+ * value recorded for them, with integral values stored as LONG. If such a
+ * column later gets a value that isn't integral, or too large for a long, the
+ * column is widened to DOUBLE from the chunk that holds that value on.
+ * Writing a value that a column typed from its source's integral data type
+ * cannot hold exactly is an error. A chunk then consists of its number of
+ * rows followed by a block for each column in header order. A block starts
+ * with a codec byte, either {@link #CODEC_NONE} or {@link #CODEC_DEFLATE},
+ * the type of the column in the chunk, and the uncompressed and stored
+ * lengths of its contents. The contents are a bitmap of the rows
+ * whose value was null and then the values in row order. Before deflating,
+ * fixed width values wider than a byte are split into byte planes: the first
+ * byte of every value, then the second, and so on. A chunk with 0 rows marks
+ * the end of the file.
+ *
+ * @see ColumnarDataReader
+ */
+public class ColumnarDataSink extends FileDataSink {
+
+  /**
+   * The type of a column's values.
+   */
+  public enum ColumnType {
+    BOOLEAN(1), BYTE(1), SHORT(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8), STRING(0);
+
+    // the number of bytes a value takes, 0 if variable
+    final int width;
+
+    private ColumnType(int width) {
+      this.width = width;
+    }
+
+    /**
+     * Gets the ColumnType used to store values of the specified type.
+     *
+     * @param type
+     *          the type of the values
+     *
+     * @return the ColumnType used to store values of the specified type, or
+     *         null if the type is Object or Number, in which case the column
+     *         takes its type from its first value.
+     */
+    public static ColumnType forClass(Class<?> type) {
+      if (type == Object.class || type == Number.class)
+        return null;
+      if (type == double.class || type == Double.class)
+        return DOUBLE;
+      if (type == float.class || type == Float.class)
+        return FLOAT;
+      if (type == long.class || type == Long.class)
+        return LONG;
+      if (type == int.class || type == Integer.class)
+        return INT;
+      if (type == short.class || type == Short.class)
+        return SHORT;
+      if (type == byte.class || type == Byte.class)
+        return BYTE;
+      if (type == boolean.class || type == Boolean.class)
+        return BOOLEAN;
+      if (type == AtomicInteger.class || type == AtomicLong.class)
+        return LONG;
+      // stored as strings so that no digits are lost
+      if (type == BigInteger.class || type == BigDecimal.class)
+        return STRING;
+      if (Number.class.isAssignableFrom(type))
+        return DOUBLE;
+      return STRING;
+    }
+
+    boolean isIntegral() {
+      return this == BYTE || this == SHORT || this == INT || this == LONG;
+    }
+
+    // whether the value is integral and within the range of a long
+    static boolean isExactLong(Number val) {
+      if (val instanceof Long || val instanceof Integer || val instanceof Short
+          || val instanceof Byte || val instanceof AtomicInteger || val instanceof AtomicLong)
+        return true;
+      if (val instanceof BigInteger)
+        return ((BigInteger) val).bitLength() < 64;
+      if (val instanceof BigDecimal) {
+        BigDecimal dec = ((BigDecimal) val).stripTrailingZeros();
+        // checks the number of integral digits first, so that a large exponent
+        // isn't expanded
+        return dec.scale() <= 0 && dec.precision() - dec.scale() <= 19
+            && dec.toBigInteger().bitLength() < 64;
+      }
+      return false;
+    }
+
+    // whether the integral value can be stored in a column of this type
+    boolean fits(long val) {
+      switch (this) {
+      case BYTE:
+        return val == (byte) val;
+      case SHORT:
+        return val == (short) val;
+      case INT:
+        return val == (int) val;
+      default:
+        return true;
+      }
+    }
+  }
+
+  public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+  static final int MAGIC = 0x52534344;
+  static final short VERSION = 2;
+  // the version whose blocks don't give the column's type
+  static final short VERSION_1 = 1;
+
+  public static final byte CODEC_NONE = 0;
+  public static final byte CODEC_DEFLATE = 1;
+
+  static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final byte[] EMPTY = new byte[0];
+
+  // a column of buffered values. Integral values are held as longs and
+  // floating point values as doubles until they are written.
+  private static class Column {
+    final String id;
+    final int index;
+    final boolean compress;
+    ColumnType type;
+    // whether the type was taken from the first value rather than the source
+    boolean inferred;
+    final BitSet nulls = new BitSet();
+    boolean[] booleans;
+    long[] longs;
+    double[] doubles;
+    String[] strings;
+
+    Column(String id, int index, ColumnType type, boolean compress) {
+      this.id = id;
+      this.index = index;
+      this.compress = compress;
+      this.type = type;
+    }
+
+    void allocate(int size) {
+      if (type == ColumnType.BOOLEAN)
+        booleans = new boolean[size];
+      else if (type == ColumnType.STRING)
+        strings = new String[size];
+      else if (type.isIntegral())
+        longs = new long[size];
+      else
+        doubles = new double[size];
+    }
+
+    void setNull(int row) {
+      nulls.set(row);
+      if (type == null)
+        return;
+      if (booleans != null)
+        booleans[row] = false;
+      else if (strings != null)
+        strings[row] = null;
+      else if (longs != null)
+        longs[row] = 0;
+      else
+        doubles[row] = 0;
+    }
+
+    void set(int row, Object val, int size) {
+      if (val == null) {
+        setNull(row);
+        return;
+      }
+
+      if (type == null) {
+        type = ColumnType.forClass(val.getClass());
+        // later values of an untyped source may be larger than the first
+        if (type.isIntegral())
+          type = ColumnType.LONG;
+        inferred = true;
+        allocate(size);
+      }
+
+      try {
+        switch (type) {
+        case BOOLEAN:
+          booleans[row] = (Boolean) val;
+          break;
+        case STRING:
+          strings[row] = val.toString();
+          break;
+        case FLOAT:
+        case DOUBLE:
+          doubles[row] = ((Number) val).doubleValue();
+          break;
+        default:
+          Number num = (Number) val;
+          if (ColumnType.isExactLong(num) && type.fits(num.longValue())) {
+            longs[row] = num.longValue();
+          } else if (inferred) {
+            widen(size);
+            doubles[row] = num.doubleValue();
+          } else {
+            throw new DataException("Value '" + val + "' cannot be written to " + type
+                + " column '" + id + "' without loss");
+          }
+        }
+      } catch (ClassCastException ex) {
+        throw new DataException("Value '" + val + "' cannot be written to " + type
+            + " column '" + id + "'", ex);
+      }
+    }
+
+    // changes an integral column to DOUBLE, converting the values buffered so
+    // far
+    void widen(int size) {
+      doubles = new double[size];
+      for (int i = 0; i < size; i++) {
+        doubles[i] = longs[i];
+      }
+      longs = null;
+      type = ColumnType.DOUBLE;
+    }
+
+    // writes the column's contents to the buffer, returning a larger buffer
+    // if it is too small
+    ByteBuffer write(ByteBuffer buf, int rows) {
+      byte[] bits = nulls.toByteArray();
+      int size = 4 + bits.length + rows * type.width;
+      byte[][] encoded = null;
+      if (type == ColumnType.STRING) {
+        encoded = new byte[rows][];
+        for (int i = 0; i < rows; i++) {
+          encoded[i] = strings[i] == null ? EMPTY : strings[i].getBytes(UTF8);
+          size += 4 + encoded[i].length;
+          strings[i] = null;
+        }
+      }
+      if (buf.capacity() < size)
+        buf = ByteBuffer.allocate(Math.max(size, buf.capacity() * 2));
+
+      buf.clear();
+      buf.putInt(bits.length);
+      buf.put(bits);
+      switch (type) {
+      case BOOLEAN:
+        for (int i = 0; i < rows; i++) buf.put((byte) (booleans[i] ? 1 : 0));
+        break;
+      case BYTE:
+        for (int i = 0; i < rows; i++) buf.put((byte) longs[i]);
+        break;
+      case SHORT:
+        for (int i = 0; i < rows; i++) buf.putShort((short) longs[i]);
+        break;
+      case INT:
+        for (int i = 0; i < rows; i++) buf.putInt((int) longs[i]);
+        break;
+      case LONG:
+        for (int i = 0; i < rows; i++) buf.putLong(longs[i]);
+        break;
+      case FLOAT:
+        for (int i = 0; i < rows; i++) buf.putFloat((float) doubles[i]);
+        break;
+      case DOUBLE:
+        for (int i = 0; i < rows; i++) buf.putDouble(doubles[i]);
+        break;
+      case STRING:
+        for (int i = 0; i < rows; i++) {
+          buf.putInt(encoded[i].length);
+          buf.put(encoded[i]);
+        }
+        break;
+      }
+      buf.flip();
+      nulls.clear();
+      return buf;
+    }
+  }
+
+  private int chunkSize;
+  private List<Column> columns = new ArrayList<Column>();
+  private Map<String, Column> columnMap = new HashMap<String, Column>();
+  private boolean[] appended;
+
+  private DataOutputStream out;
+  private boolean headerWritten = false;
+  private boolean closed = false;
+  private int rows = 0;
+  private long rowsWritten = 0;
+
+  private ByteBuffer block = ByteBuffer.allocate(8192);
+  private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+  private byte[] compressed = new byte[8192];
+  private byte[] planes = new byte[0];
+
+  /**
+   * Creates a ColumnarDataSink that writes a column for each of the specified
+   * sources, compressing all the columns.
+   *
+   * @param name
+   *          the name of the sink
+   * @param file
+   *          the file to write to
+   * @param sources
+   *          the sources of the columns, in column order
+   */
+  public ColumnarDataSink(String name, File file, Collection<? extends DataSource> sources) {
+    this(name, file, sources, DEFAULT_CHUNK_SIZE, null);
+  }
+
+  /**
+   * Creates a ColumnarDataSink that writes a column for each of the specified
+   * sources.
+   *
+   * @param name
+   *          the name of the sink
+   * @param file
+   *          the file to write to
+   * @param sources
+   *          the sources of the columns, in column order
+   * @param chunkSize
+   *          the maximum number of rows in a chunk
+   * @param uncompressed
+   *          the ids of the sources whose columns should not be compressed.
+   *          If this is null all the columns are compressed.
+   */
+  public ColumnarDataSink(String name, File file, Collection<? extends DataSource> sources,
+      int chunkSize, Set<String> uncompressed) {
+    super(name, file, null);
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be at least 1");
+    this.chunkSize = chunkSize;
+    for (DataSource source : sources) {
+      String id = source.getId();
+      Column column = new Column(id, columns.size(), ColumnType.forClass(source.getDataType()),
+          uncompressed == null || !uncompressed.contains(id));
+      if (column.type != null)
+        column.allocate(chunkSize);
+      columns.add(column);
+      columnMap.put(id, column);
+    }
+    appended = new boolean[columns.size()];
+  }
+
+  /**
+   * Returns null, as the data isn't formatted as text.
+   *
+   * @return null
+   */
+  @Override
+  public Formatter getFormatter() {
+    return null;
+  }
+
+  /**
+   * Gets the format type for this ColumnarDataSink.
+   *
+   * @return {@link FormatType#COLUMNAR}
+   */
+  @Override
+  public FormatType getFormat() {
+    return FormatType.COLUMNAR;
+  }
+
+  /**
+   * Gets the maximum number of rows in a chunk.
+   *
+   * @return the maximum number of rows in a chunk.
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Gets the number of rows written to the file so far.
+   *
+   * @return the number of rows written to the file so far.
+   */
+  public long getRowsWritten() {
+    return rowsWritten;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#open(java.util.List)
+   */
+  @Override
+  public void open(List<String> sourceIds) {
+    File file = getFile();
+    try {
+      File parentFile = file.getCanonicalFile().getParentFile();
+      if (parentFile != null && !parentFile.exists()) parentFile.mkdirs();
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+    } catch (IOException ex) {
+      throw new DataException("Error opening ColumnarDataSink.", ex);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowStarted()
+   */
+  @Override
+  public void rowStarted() {
+    for (int i = 0; i < appended.length; i++) {
+      appended[i] = false;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#append(java.lang.String,
+   * java.lang.Object)
+   */
+  @Override
+  public void append(String key, Object value) {
+    Column column = columnMap.get(key);
+    if (column != null) {
+      column.set(rows, value, chunkSize);
+      appended[column.index] = true;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowEnded()
+   */
+  @Override
+  public void rowEnded() {
+    for (int i = 0; i < appended.length; i++) {
+      if (!appended[i])
+        columns.get(i).setNull(rows);
+    }
+    rows++;
+    if (rows == chunkSize) {
+      try {
+        writeChunk();
+      } catch (IOException ex) {
+        throw new DataException("Error writing to ColumnarDataSink '" + getFile().getName()
+            + "'", ex);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#recordEnded()
+   */
+  @Override
+  public void recordEnded() {
+  }
+
+  private void writeHeader() throws IOException {
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeInt(columns.size());
+    for (Column column : columns) {
+      if (column.type == null) {
+        // only nulls so far
+        column.type = ColumnType.STRING;
+        column.allocate(chunkSize);
+      }
+      out.writeUTF(column.id);
+      out.writeByte(column.type.ordinal());
+    }
+    headerWritten = true;
+  }
+
+  private void writeChunk() throws IOException {
+    if (!headerWritten)
+      writeHeader();
+    if (rows == 0)
+      return;
+
+    out.writeInt(rows);
+    for (Column column : columns) {
+      block = column.write(block, rows);
+      int size = block.limit();
+      if (column.compress) {
+        byte[] data = block.array();
+        int width = column.type.width;
+        if (width > 1) {
+          // store the values as byte planes, grouping the bytes of the same
+          // significance, which compresses much better
+          if (planes.length < size)
+            planes = new byte[size];
+          int start = 4 + block.getInt(0);
+          System.arraycopy(data, 0, planes, 0, start);
+          for (int b = 0; b < width; b++) {
+            int dst = start + b * rows;
+            for (int i = 0, src = start + b; i < rows; i++, src += width) {
+              planes[dst + i] = data[src];
+            }
+          }
+          data = planes;
+        }
+        deflater.reset();
+        deflater.setInput(data, 0, size);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+          if (length == compressed.length) {
+            byte[] tmp = new byte[compressed.length * 2];
+            System.arraycopy(compressed, 0, tmp, 0, length);
+            compressed = tmp;
+          }
+          length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        out.writeByte(CODEC_DEFLATE);
+        out.writeByte(column.type.ordinal());
+        out.writeInt(size);
+        out.writeInt(length);
+        out.write(compressed, 0, length);
+      } else {
+        out.writeByte(CODEC_NONE);
+        out.writeByte(column.type.ordinal());
+        out.writeInt(size);
+        out.writeInt(size);
+        out.write(block.array(), 0, size);
+      }
+    }
+    rowsWritten += rows;
+    rows = 0;
+  }
+
+  /**
+   * Writes the buffered rows as a chunk and flushes the file.
+   */
+  @Override
+  public synchronized void flush() {
+    if (!closed && out != null) {
+      try {
+        writeChunk();
+        out.flush();
+      } catch (IOException ex) {
+        throw new DataException("Error while flushing ColumnarDataSink.", ex);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#close()
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed && out != null) {
+      try {
+        writeChunk();
+        out.writeInt(0);
+        out.flush();
+      } catch (IOException ex) {
+        throw new DataException("Error closing ColumnarDataSink.", ex);
+      } finally {
+        closed = true;
+        deflater.end();
+        try {
+          out.close();
+        } catch (IOException ex) {
+        }
+      }
+    }
+  }
+}
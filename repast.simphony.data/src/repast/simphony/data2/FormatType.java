@@ -4,7 +4,8 @@
 package repast.simphony.data2;
 
 /**
- * Enum specifying textual DataSink format type.
+ * Enum specifying DataSink format type. All the types but COLUMNAR are
+ * textual, and only file sinks can be COLUMNAR.
  * 
  * @author Nick Collier
  */
@@ -20,6 +21,15 @@ public enum FormatType {
     public String toString() {
       return "Line";
     }
+  },
+  
+  /**
+   * The binary format written by the {@link ColumnarDataSink}.
+   */
+  COLUMNAR() {
+    public String toString() {
+      return "Columnar (Binary)";
+    }
   }
 
 }
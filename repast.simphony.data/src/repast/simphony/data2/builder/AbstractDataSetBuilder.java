@@ -51,6 +51,16 @@ public class AbstractDataSetBuilder {
     sinkBuilders.add(builder);
   }
 
+  /**
+   * Adds a ColumnarDataSink for this DataSet. The data retrieved from the
+   * defined data sources will be written to the defined DataSink.
+   * 
+   * @param builder
+   */
+  public void addColumnarDataSinkBuilder(ColumnarDataSinkBuilder builder) {
+    sinkBuilders.add(builder);
+  }
+
   /**
    * Defines a ConsoleDataSink for this DataSet. The data retrieved from the
    * defined data sources will be written to the defined DataSink.
@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package repast.simphony.data2.builder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import repast.simphony.data2.ColumnarDataSink;
+import repast.simphony.data2.DataSink;
+import repast.simphony.data2.DataSource;
+import repast.simphony.data2.util.DataUtilities;
+
+/**
+ * SinkBuilder that can build ColumnarDataSinks.
+ */
+public class ColumnarDataSinkBuilder implements SinkBuilder {
+
+  private String name;
+  private FileNameFormatter fnameFormatter;
+  private int chunkSize = ColumnarDataSink.DEFAULT_CHUNK_SIZE;
+  // linked to preserve order
+  private Set<String> sourceIds = new LinkedHashSet<String>();
+  private Set<String> uncompressed = new HashSet<String>();
+
+  public ColumnarDataSinkBuilder(String name, FileNameFormatter fnameFormatter) {
+    this.name = name;
+    this.fnameFormatter = fnameFormatter;
+  }
+
+  /**
+   * Adds the specified source id to the list of those to
+   * write to the file.
+   *
+   * @param sourceId
+   */
+  public void addSource(String sourceId) {
+    sourceIds.add(sourceId);
+  }
+
+  /**
+   * Sets the maximum number of rows the created sinks buffer before writing
+   * them as a chunk.
+   *
+   * @param chunkSize
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets whether the column for the specified source id is compressed. By
+   * default all the columns are compressed.
+   *
+   * @param sourceId
+   * @param compress
+   */
+  public void setCompressed(String sourceId, boolean compress) {
+    if (compress)
+      uncompressed.remove(sourceId);
+    else
+      uncompressed.add(sourceId);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.builder.SinkBuilder#create()
+   */
+  @Override
+  public DataSink create(Collection<? extends DataSource> sources) {
+    String filename = fnameFormatter.getFilename();
+    DataUtilities.renameFileIfExists(filename);
+
+    List<DataSource> selectedSources = new ArrayList<DataSource>();
+    for (String id : sourceIds) {
+      for (DataSource source : sources) {
+        if (source.getId().equals(id)) {
+          selectedSources.add(source);
+          break;
+        }
+      }
+    }
+
+    // if no selected sources, assume that means use them all.
+    if (selectedSources.size() == 0) {
+      selectedSources.addAll(sources);
+    }
+
+    return new ColumnarDataSink(name, new File(filename), selectedSources, chunkSize,
+        uncompressed);
+  }
+}
@@ -80,6 +80,14 @@ public interface DataSetBuilder<T extends DataSource> {
    */
   void addFileDataSinkBuilder(FileDataSinkBuilder builder);
   
+  /**
+   * Adds a ColumnarDataSink for this DataSet. The data retrieved from the
+   * defined data sources will be written to the defined DataSink.
+   * 
+   * @param builder the ColumnarDataSinkBuilder to add
+   */
+  void addColumnarDataSinkBuilder(ColumnarDataSinkBuilder builder);
+  
   /**
    * Defines a ConsoleDataSink for this DataSet. The data retrieved from the
    * defined data sources will be written to the defined DataSink.
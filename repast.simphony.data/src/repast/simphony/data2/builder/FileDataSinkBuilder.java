@@ -10,6 +10,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import repast.simphony.data2.AsyncFileDataSink;
+import repast.simphony.data2.ColumnarDataSink;
 import repast.simphony.data2.DataSink;
 import repast.simphony.data2.DataSource;
 import repast.simphony.data2.FileDataSink;
@@ -32,6 +34,10 @@ public class FileDataSinkBuilder implements SinkBuilder {
   private FileNameFormatter fnameFormatter;
   // linked to preserve order
   private Set<String> sourceIds = new LinkedHashSet<String>();
+  private boolean async = false;
+  private int bufferSize = AsyncFileDataSink.DEFAULT_BUFFER_SIZE;
+  private int batchSize = AsyncFileDataSink.DEFAULT_BATCH_SIZE;
+  private AsyncFileDataSink.Backpressure backpressure = AsyncFileDataSink.Backpressure.BLOCK;
 
   public FileDataSinkBuilder(String name, FileNameFormatter fnameFormatter, String delimiter, FormatType formatType) {
     this.type = formatType;
@@ -50,6 +56,37 @@ public class FileDataSinkBuilder implements SinkBuilder {
     sourceIds.add(sourceId);
   }
   
+  /**
+   * Sets whether the created sinks write on a background thread. See
+   * {@link AsyncFileDataSink}.
+   * Columnar sinks are always written on the calling thread.
+   * 
+   * @param async
+   */
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+  
+  /**
+   * Makes the created sinks write on a background thread with the specified
+   * buffer size, batch size and backpressure policy. See
+   * {@link AsyncFileDataSink}.
+   * Columnar sinks are always written on the calling thread.
+   * 
+   * @param bufferSize
+   *          the maximum number of rows waiting to be written
+   * @param batchSize
+   *          the maximum number of rows written in a batch
+   * @param backpressure
+   *          what to do with a row when the buffer is full
+   */
+  public void setAsync(int bufferSize, int batchSize, AsyncFileDataSink.Backpressure backpressure) {
+    this.async = true;
+    this.bufferSize = bufferSize;
+    this.batchSize = batchSize;
+    this.backpressure = backpressure;
+  }
+  
   /*
    * (non-Javadoc)
    * 
@@ -75,8 +112,14 @@ public class FileDataSinkBuilder implements SinkBuilder {
       selectedSources.addAll(sources);
     }
     
+    if (type == FormatType.COLUMNAR)
+      return new ColumnarDataSink(name, new File(filename), selectedSources);
+    
     Formatter formatter = type == FormatType.TABULAR ? new TabularFormatter(selectedSources, delimiter)
         : new LineFormatter(selectedSources, delimiter);
+    if (async)
+      return new AsyncFileDataSink(name, new File(filename), formatter, bufferSize, batchSize,
+          backpressure);
     return new FileDataSink(name, new File(filename), formatter);
   }
 }
@@ -3,6 +3,7 @@
  */
 package repast.simphony.data2.builder;
 
+import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -17,8 +18,23 @@ public class FileNameFormatter {
 
   private String filename;
   private boolean formatFile = false;
+  private boolean resolved = false;
 
   private static DateFormat format = new SimpleDateFormat("yyyy.MMM.dd.HH_mm_ss");
+  private static File outputDirectory = null;
+
+  /**
+   * Sets the directory that relative file names are resolved against. By
+   * default they are resolved against the working directory. Batch instances
+   * that run in the same JVM, each with its own class loader and so its own
+   * copy of this class, use this to keep their output apart.
+   * 
+   * @param dir
+   *          the directory, or null to use the working directory
+   */
+  public static void setOutputDirectory(File dir) {
+    outputDirectory = dir;
+  }
 
   public FileNameFormatter(String file, boolean addTimeStamp) {
     filename = file;
@@ -36,6 +52,13 @@ public class FileNameFormatter {
       formatFile = false;
       formatFilename();
     }
+    if (!resolved) {
+      resolved = true;
+      if (outputDirectory != null && !filename.trim().startsWith("~")
+          && !new File(filename).isAbsolute()) {
+        filename = new File(outputDirectory, filename).getPath();
+      }
+    }
     return filename;
   }
   
@@ -93,6 +93,7 @@ public class FileSinkComponentControllerAction extends DefaultControllerAction i
       FileNameFormatter fnFormatter = new FileNameFormatter(descriptor.getFileName(), descriptor.isAddTimeStamp());
       FileDataSinkBuilder sinkBuilder = new FileDataSinkBuilder(descriptor.getName(), fnFormatter, descriptor.getDelimiter(),
           descriptor.getFormat());
+      sinkBuilder.setAsync(descriptor.isAsync());
       
       // if the file sink doesn't have the batch run data source
       // and we are in batch mode, then add the batch run data source.
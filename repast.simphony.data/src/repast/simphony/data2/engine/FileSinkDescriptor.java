@@ -12,6 +12,7 @@ public class FileSinkDescriptor extends AbstractTextSinkDescriptor {
 
   private String fileName = "ModelOutput.txt";
   private boolean addTimeStamp = true;
+  private boolean async = false;
 
   /**
    * Creates a {@link FileSinkDescriptor}
@@ -57,4 +58,25 @@ public class FileSinkDescriptor extends AbstractTextSinkDescriptor {
       scs.fireScenarioChanged(this, "timestamp");
     }
   }
+
+  /**
+   * @return whether the sink writes on a background thread
+   */
+  public boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * Sets whether the sink formats and writes its rows on a background thread.
+   * See {@link repast.simphony.data2.AsyncFileDataSink}.
+   * 
+   * @param async
+   *          whether the sink writes on a background thread
+   */
+  public void setAsync(boolean async) {
+    if (async != this.async) {
+      this.async = async;
+      scs.fireScenarioChanged(this, "async");
+    }
+  }
 }
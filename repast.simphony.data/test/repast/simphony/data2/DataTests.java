@@ -1,6 +1,7 @@
 package repast.simphony.data2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -8,7 +9,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -21,6 +25,8 @@ import org.junit.Test;
 
 import repast.simphony.context.Context;
 import repast.simphony.context.DefaultContext;
+import repast.simphony.data2.builder.FileDataSinkBuilder;
+import repast.simphony.data2.builder.FileNameFormatter;
 import repast.simphony.data2.engine.DataInitActionCreator;
 import repast.simphony.data2.engine.DataSetComponentControllerAction;
 import repast.simphony.data2.engine.DataSetDescriptor;
@@ -417,6 +423,276 @@ public class DataTests {
     }
   }
 
+  private List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new FileReader(file));
+    try {
+      String line = null;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+
+  @Test
+  public void testAsyncFileSink() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource("double", ObjectB.class, "getDouble"));
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/async_file_sink_test.txt");
+    AsyncFileDataSink sink = new AsyncFileDataSink("fs1", file,
+        new TabularFormatter(sources, ","), 16, 4, AsyncFileDataSink.Backpressure.BLOCK);
+    sink.open(new ArrayList<String>());
+    for (int i = 0; i < 1000; i++) {
+      sink.rowStarted();
+      sink.append("int", i);
+      sink.append("double", i + 0.5);
+      sink.rowEnded();
+      if (i == 499) {
+        sink.flush();
+        assertEquals(501, readLines(file).size());
+      }
+    }
+    sink.recordEnded();
+    sink.close();
+    assertEquals(0, sink.getDroppedRowCount());
+
+    List<String> lines = readLines(file);
+    assertEquals(1001, lines.size());
+    assertEquals("\"double\",\"int\"", lines.get(0));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals((i + 0.5) + "," + i, lines.get(i + 1));
+    }
+  }
+
+  @Test
+  public void testAsyncFileSinkDrop() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/async_file_sink_drop_test.txt");
+    AsyncFileDataSink sink = new AsyncFileDataSink("fs1", file,
+        new TabularFormatter(sources, ","), 2, 1, AsyncFileDataSink.Backpressure.DROP);
+    sink.open(new ArrayList<String>());
+    for (int i = 0; i < 10000; i++) {
+      sink.rowStarted();
+      sink.append("int", i);
+      sink.rowEnded();
+    }
+    sink.close();
+
+    // every row is either written, in order, or dropped
+    List<String> lines = readLines(file);
+    assertEquals(10000, lines.size() - 1 + sink.getDroppedRowCount());
+    int last = -1;
+    for (int i = 1; i < lines.size(); i++) {
+      int val = Integer.parseInt(lines.get(i));
+      assertTrue(val > last);
+      last = val;
+    }
+  }
+
+  @Test
+  public void testAsyncFileSinkFormatError() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/async_file_sink_error_test.txt");
+    AsyncFileDataSink sink = new AsyncFileDataSink("fs1", file, new TabularFormatter(sources, ",") {
+      public String formatData() {
+        throw new IllegalStateException("format");
+      }
+    }, 2, 1, AsyncFileDataSink.Backpressure.BLOCK);
+    sink.open(new ArrayList<String>());
+    // the writer fails on the first row, so a full buffer must not block
+    // and the error must reach the producer
+    try {
+      for (int i = 0; i < 1000; i++) {
+        sink.rowStarted();
+        sink.append("int", i);
+        sink.rowEnded();
+      }
+      sink.flush();
+      fail("the formatter's error should be rethrown");
+    } catch (DataException ex) {
+      assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+    try {
+      sink.close();
+      fail("the formatter's error should be rethrown");
+    } catch (DataException ex) {
+      assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void testColumnarSink() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource("double", ObjectB.class, "getDouble"));
+    sources.add(new MethodDataSource("object", ObjectB.class, "object"));
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/columnar_sink_test.bin");
+    Set<String> uncompressed = new HashSet<String>();
+    uncompressed.add("int");
+    ColumnarDataSink sink = new ColumnarDataSink("cs1", file, sources, 4, uncompressed);
+    sink.open(new ArrayList<String>());
+    for (int i = 0; i < 10; i++) {
+      sink.rowStarted();
+      sink.append("int", i);
+      if (i != 5)
+        sink.append("object", "s" + i);
+      sink.append("double", i * 1.5);
+      sink.rowEnded();
+    }
+    sink.close();
+    assertEquals(10, sink.getRowsWritten());
+
+    ColumnarDataReader reader = new ColumnarDataReader(file);
+    assertEquals("[double, object, int]", reader.getColumnNames().toString());
+    assertEquals(ColumnarDataSink.ColumnType.DOUBLE, reader.getColumnType(0));
+    assertEquals(ColumnarDataSink.ColumnType.STRING, reader.getColumnType(1));
+    assertEquals(ColumnarDataSink.ColumnType.INT, reader.getColumnType(2));
+
+    int row = 0;
+    int[] chunkSizes = { 4, 4, 2 };
+    int chunk = 0;
+    while (reader.nextChunk()) {
+      assertEquals(chunkSizes[chunk++], reader.getRowCount());
+      double[] doubles = (double[]) reader.getColumn(0);
+      String[] strings = (String[]) reader.getColumn(1);
+      int[] ints = (int[]) reader.getColumn(reader.getColumnIndex("int"));
+      for (int i = 0; i < reader.getRowCount(); i++, row++) {
+        assertEquals(row * 1.5, doubles[i], 0);
+        assertEquals(row, ints[i]);
+        assertEquals(row == 5, reader.isNull(1, i));
+        if (row != 5)
+          assertEquals("s" + row, strings[i]);
+      }
+    }
+    reader.close();
+    assertEquals(3, chunk);
+    assertEquals(10, row);
+  }
+
+  // a source whose data type is Object
+  private NonAggregateDataSource untypedSource(final String id) {
+    return new NonAggregateDataSource() {
+      public String getId() {
+        return id;
+      }
+
+      public Class<?> getDataType() {
+        return Object.class;
+      }
+
+      public Class<?> getSourceType() {
+        return Object.class;
+      }
+
+      public Object get(Object obj) {
+        return obj;
+      }
+    };
+  }
+
+  @Test
+  public void testColumnarSinkFromBuilder() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(untypedSource("long"));
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    String filename = "./test_output/columnar_builder_test.bin";
+    FileDataSinkBuilder builder = new FileDataSinkBuilder("cs2", new FileNameFormatter(filename,
+        false), ",", FormatType.COLUMNAR);
+    DataSink sink = builder.create(sources);
+    assertTrue(sink instanceof ColumnarDataSink);
+    // registered with the other file sinks
+    assertTrue(sink instanceof FileDataSink);
+    assertEquals(FormatType.COLUMNAR, ((FileDataSink) sink).getFormat());
+
+    // larger than a double can hold exactly
+    long big = (1L << 53) + 1;
+    Object[] vals = { Integer.valueOf(1), Long.valueOf(big), Long.valueOf(-big) };
+    sink.open(new ArrayList<String>());
+    for (int i = 0; i < vals.length; i++) {
+      sink.rowStarted();
+      sink.append("long", vals[i]);
+      sink.append("int", i);
+      sink.rowEnded();
+    }
+
+    sink.rowStarted();
+    try {
+      sink.append("int", Long.valueOf(big));
+      fail("a long that does not fit should not be written to an int column");
+    } catch (DataException ex) {
+    }
+    sink.close();
+
+    ColumnarDataReader reader = new ColumnarDataReader(new File(filename));
+    assertEquals(ColumnarDataSink.ColumnType.LONG, reader.getColumnType(0));
+    assertEquals(ColumnarDataSink.ColumnType.INT, reader.getColumnType(1));
+    assertTrue(reader.nextChunk());
+    long[] longs = (long[]) reader.getColumn(0);
+    assertEquals(1L, longs[0]);
+    assertEquals(big, longs[1]);
+    assertEquals(-big, longs[2]);
+    reader.close();
+  }
+
+  @Test
+  public void testColumnarSinkNumbers() throws IOException {
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(untypedSource("number"));
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/columnar_numbers_test.bin");
+    ColumnarDataSink sink = new ColumnarDataSink("cs3", file, sources, 2, null);
+    sink.open(new ArrayList<String>());
+    Object[] numbers = { 1, 2L, 3, new BigDecimal("0.5"), 7.25, new BigDecimal("4.00") };
+    Object[] ints = { 0, new BigDecimal("4.00"), BigInteger.valueOf(5), (short) 6, (byte) 7, 8L };
+    for (int i = 0; i < numbers.length; i++) {
+      sink.rowStarted();
+      sink.append("number", numbers[i]);
+      sink.append("int", ints[i]);
+      sink.rowEnded();
+    }
+
+    // non integral values can't be written to a column typed from its source
+    sink.rowStarted();
+    Object[] rejected = { new BigDecimal("0.5"), 1.0, 2.0f, BigInteger.ONE.shiftLeft(40) };
+    for (Object val : rejected) {
+      try {
+        sink.append("int", val);
+        fail("'" + val + "' should not be written to an int column");
+      } catch (DataException ex) {
+      }
+    }
+    sink.close();
+
+    // the untyped column is widened from the chunk with the first decimal on
+    ColumnarDataReader reader = new ColumnarDataReader(file);
+    assertTrue(reader.nextChunk());
+    assertEquals(ColumnarDataSink.ColumnType.LONG, reader.getColumnType(0));
+    assertTrue(Arrays.equals(new long[] { 1, 2 }, (long[]) reader.getColumn(0)));
+    assertTrue(Arrays.equals(new int[] { 0, 4 }, (int[]) reader.getColumn(1)));
+    assertTrue(reader.nextChunk());
+    assertEquals(ColumnarDataSink.ColumnType.DOUBLE, reader.getColumnType(0));
+    assertTrue(Arrays.equals(new double[] { 3, 0.5 }, (double[]) reader.getColumn(0)));
+    assertTrue(Arrays.equals(new int[] { 5, 6 }, (int[]) reader.getColumn(1)));
+    assertTrue(reader.nextChunk());
+    assertEquals(ColumnarDataSink.ColumnType.DOUBLE, reader.getColumnType(0));
+    assertTrue(Arrays.equals(new double[] { 7.25, 4 }, (double[]) reader.getColumn(0)));
+    assertTrue(Arrays.equals(new int[] { 7, 8 }, (int[]) reader.getColumn(1)));
+    assertFalse(reader.nextChunk());
+    reader.close();
+  }
+
   private RunState createRunState(int runNum, RunState runState) {
     if (runState == null) {
       runState = RunState.init(new RunInfo("test", runNum, 1), new DefaultScheduleRegistry(),
@@ -21,10 +21,16 @@ public interface BatchConstants {
   String VM_ARGS = "vm.arguments";
 
   String INSTANCE_COUNT_PN = "instance.count";
+
+  String OPTIMIZER_CLASS_PN = "optimizer.class";
+  String OPTIMIZER_RUN_RESULT_PRODUCER_PN = "optimizer.run.result.producer";
+  String OPTIMIZER_SEED_PN = "optimizer.seed";
+  String OPTIMIZER_MAX_RUNS_PN = "optimizer.max.runs";
   
   String INSTANCE_DIR_PREFIX = "instance_";
   String DONE_FILE_NAME = "DONE";
   String STATUS_OUTPUT_FILE = "status_output.properties";
+  String OPTIMIZER_OUTPUT_FILE = "optimizer_output.csv";
   
   String PARAM_MAP_SUFFIX = "batch_param_map";
   String LOCAL_RUN_PROPS_FILE = "local_batch_run.properties";
@@ -5,8 +5,17 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -22,12 +31,30 @@ import repast.simphony.batch.ssh.OutputPattern;
 import repast.simphony.batch.ssh.StatusException;
 import simphony.util.messages.MessageCenter;
 
+/**
+ * Combines the output of the instances in a working directory. Each output file
+ * is merged in run order by streaming the instances' files, and the output
+ * files are combined in parallel. The combined output can optionally be gzip
+ * compressed.
+ * <p>
+ *
+ * In incremental mode, the output of each instance is merged as soon as the
+ * instance has created its DONE file, while the other instances are still
+ * running. The instances that are done are merged into partial files, which
+ * are merged into the final output once the working directory's DONE file
+ * exists.
+ */
 public class ClusterOutputCombiner {
 
 	private static MessageCenter msg = MessageCenter
 			.getMessageCenter(ClusterOutputCombiner.class);
 
+	private static final String PARTIAL_DIR = ".partial";
+
 	private String workingDir, outputDir, configFile;
+	private String scenarioDir = "./scenario.rs";
+	private boolean compress = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
 
 	public ClusterOutputCombiner(String workingDir, String outputDir)
 			throws FileNotFoundException, IOException {
@@ -39,15 +66,45 @@ public class ClusterOutputCombiner {
 		this.workingDir = workingDir;
 		this.outputDir = outputDir;
 		this.configFile = configProps;
-		Properties props = new Properties();
 		File in = new File("MessageCenter.log4j.properties");
-		props.load(new FileInputStream(in));
-		PropertyConfigurator.configure(props);
+		if (in.exists()) {
+			Properties props = new Properties();
+			props.load(new FileInputStream(in));
+			PropertyConfigurator.configure(props);
+		}
+	}
+
+	/**
+	 * Sets the scenario directory whose file sinks name the output files. This
+	 * defaults to ./scenario.rs.
+	 *
+	 * @param scenarioDir
+	 */
+	public void setScenarioDirectory(String scenarioDir) {
+		this.scenarioDir = scenarioDir;
+	}
+
+	/**
+	 * Sets whether or not the concatenated output is gzip compressed.
+	 *
+	 * @param compress
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Sets the number of output files that are merged at once.
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
 	}
 
 	private List<OutputPattern> createPatterns() throws IOException,
 			XMLStreamException {
-		List<FinderOutput> fsFound = new BaseOutputNamesFinder().find("./scenario.rs");
+		List<FinderOutput> fsFound = new BaseOutputNamesFinder().find(scenarioDir);
 		List<OutputPattern> patterns = new ArrayList<>();
 		for (FinderOutput fs : fsFound) {
 			DefaultOutputPatternCreator creator = new DefaultOutputPatternCreator(fs.getFileName(), fs.hasTimestamp());
@@ -69,9 +126,7 @@ public class ClusterOutputCombiner {
 			List<MatchedFiles> files = findOutput(workingDir);
 			new File(outputDir).mkdirs();
 			msg.info("Aggregating output into " + outputDir);
-			for (MatchedFiles file : files) {
-				file.aggregateOutput(outputDir);
-			}
+			MatchedFiles.aggregateOutput(files, outputDir, compress, threads);
 
 		} catch (StatusException e) {
 			e.printStackTrace();
@@ -83,6 +138,105 @@ public class ClusterOutputCombiner {
 		}
 	}
 
+	/**
+	 * Combines the output incrementally, merging the output of each instance
+	 * once it's done, until the working directory's DONE file exists.
+	 *
+	 * @param pollInterval
+	 *          the time in milliseconds to wait between checks for instances
+	 *          that are done
+	 */
+	public void runIncrementally(long pollInterval) {
+		File partialDir = new File(outputDir, PARTIAL_DIR);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			List<OutputPattern> patterns = createPatterns();
+			partialDir.mkdirs();
+			// the partial output of each pattern, keyed by the pattern's path
+			Map<String, MatchedFiles> partials = new LinkedHashMap<>();
+			Set<String> merged = new TreeSet<>();
+			int partialCount = 0;
+			boolean done = false;
+			while (!done) {
+				done = new File(workingDir, BatchConstants.DONE_FILE_NAME).exists();
+				List<File> ready = new ArrayList<>();
+				for (File dir : new File(workingDir).listFiles()) {
+					if (dir.getName().contains(BatchConstants.INSTANCE_DIR_PREFIX)
+							&& !merged.contains(dir.getName())
+							&& (done || new File(dir, BatchConstants.DONE_FILE_NAME).exists())) {
+						ready.add(dir);
+					}
+				}
+
+				if (ready.isEmpty()) {
+					if (!done)
+						Thread.sleep(pollInterval);
+					continue;
+				}
+
+				LocalOutputFinder finder = new LocalOutputFinder();
+				finder.addPatterns(patterns);
+				List<Future<Void>> futures = new ArrayList<>();
+				for (final MatchedFiles match : finder.run(ready)) {
+					if (match.isEmpty())
+						continue;
+					OutputPattern pattern = match.getPattern();
+					MatchedFiles partial = partials.get(pattern.getPath());
+					if (partial == null) {
+						partial = new MatchedFiles(pattern);
+						partials.put(pattern.getPath(), partial);
+					}
+
+					if (pattern.isConcatenate()) {
+						final File file = new File(partialDir, partialCount++ + "_"
+								+ new File(pattern.getPath()).getName());
+						partial.addFile(file);
+						futures.add(executor.submit(new Callable<Void>() {
+							@Override
+							public Void call() throws IOException {
+								match.merge(file, false);
+								return null;
+							}
+						}));
+					} else {
+						partial.addAllFiles(match.getFiles());
+					}
+				}
+				waitFor(futures);
+
+				for (File dir : ready) {
+					merged.add(dir.getName());
+				}
+				msg.info(String.format("Merged output of %d instance(s)", merged.size()));
+			}
+
+			msg.info("Aggregating output into " + outputDir);
+			MatchedFiles.aggregateOutput(partials.values(), outputDir, compress, threads);
+			for (File file : partialDir.listFiles()) {
+				file.delete();
+			}
+			partialDir.delete();
+
+		} catch (StatusException | IOException | XMLStreamException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void waitFor(List<Future<Void>> futures) throws IOException, InterruptedException {
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				throw ex.getCause() instanceof IOException ? (IOException) ex.getCause()
+						: new IOException(ex.getCause());
+			}
+		}
+	}
+
 	public List<MatchedFiles> findOutput(String directory)
 			throws StatusException, IOException, XMLStreamException {
 		List<OutputPattern> filePatterns = createPatterns();
@@ -96,13 +250,38 @@ public class ClusterOutputCombiner {
 	}
 
 	/**
+	 * Combines the output in the working directory, args[0], into the output
+	 * directory, args[1]. The optional arguments are:
+	 * <ul>
+	 * <li>-compress - gzip the concatenated output</li>
+	 * <li>-incremental - merge each instance's output once it is done, until
+	 * the working directory's DONE file exists</li>
+	 * <li>-threads N - merge N output files at once</li>
+	 * </ul>
+	 *
 	 * @param args
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
 	public static void main(String[] args) throws FileNotFoundException,
 			IOException {
-		new ClusterOutputCombiner(args[0], args[1]).run();
+		ClusterOutputCombiner combiner = new ClusterOutputCombiner(args[0], args[1]);
+		boolean incremental = false;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].equals("-compress")) {
+				combiner.setCompress(true);
+			} else if (args[i].equals("-incremental")) {
+				incremental = true;
+			} else if (args[i].equals("-threads") && i + 1 < args.length) {
+				combiner.setThreads(Integer.parseInt(args[++i]));
+			}
+		}
+
+		if (incremental) {
+			combiner.runIncrementally(5000);
+		} else {
+			combiner.run();
+		}
 	}
 
 }
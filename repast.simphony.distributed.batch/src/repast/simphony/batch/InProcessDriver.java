@@ -0,0 +1,229 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.PropertyConfigurator;
+
+import simphony.util.messages.MessageCenter;
+
+/**
+ * Starts X number of simphony batch instances in the JVM that this is run in.
+ * This reads the same properties file as the {@link LocalDriver}, but rather
+ * than starting a JVM for each instance, it runs each instance on its own
+ * thread, loaded by its own {@link BatchClassLoader}. The instances therefore
+ * don't share any simphony static state, and the JVM start up and JIT warm-up
+ * are paid once for the whole batch run.
+ * <p>
+ *
+ * The batch parameter combinations are put in a queue that the instances take
+ * their runs from, so an instance that finishes its runs quickly takes more of
+ * them. Each instance writes its output to its own instance directory in the
+ * working directory, as with the LocalDriver, so the output can be combined in
+ * the same way. Relative paths that the model reads are resolved against the
+ * directory this is run in, so no links to the model's data directory are
+ * needed.
+ * <p>
+ *
+ * Model classes must not share state through anything loaded by the parent
+ * class loader, such as system properties or the JDK classes' static state.
+ */
+public class InProcessDriver {
+
+  private static MessageCenter msg = MessageCenter.getMessageCenter(InProcessDriver.class);
+
+  private static class Instance implements Callable<String> {
+
+    int id;
+    File wd;
+    File batchParamFile, scenario;
+    Queue<String> lines;
+    Properties logProps;
+    String producerClass;
+    BlockingQueue<Map.Entry<Integer, Double>> results;
+
+    public Instance(int id, File wd, File batchParamFile, File scenario, Queue<String> lines,
+        Properties logProps, String producerClass,
+        BlockingQueue<Map.Entry<Integer, Double>> results) {
+      this.id = id;
+      this.wd = wd;
+      this.batchParamFile = batchParamFile;
+      this.scenario = scenario;
+      this.lines = lines;
+      this.logProps = logProps;
+      this.producerClass = producerClass;
+      this.results = results;
+    }
+
+    public String call() throws Exception {
+      BatchClassLoader loader = new BatchClassLoader(InProcessDriver.class.getClassLoader());
+      Thread thread = Thread.currentThread();
+      ClassLoader contextLoader = thread.getContextClassLoader();
+      // threads created by the instance, e.g. the schedule's, inherit this
+      thread.setContextClassLoader(loader);
+      try {
+        Class<?> clazz = loader.loadClass(InProcessInstance.class.getName());
+        Object instance = clazz.getConstructor(String.class, File.class, Properties.class)
+            .newInstance(String.valueOf(id), wd, logProps);
+        return (String) clazz.getMethod("run", File.class, File.class, Queue.class,
+            String.class, BlockingQueue.class).invoke(instance, batchParamFile, scenario, lines,
+            producerClass, results);
+      } catch (InvocationTargetException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof Exception)
+          throw (Exception) cause;
+        throw (Error) cause;
+      } finally {
+        thread.setContextClassLoader(contextLoader);
+      }
+    }
+  }
+
+  private List<Instance> instances = new ArrayList<Instance>();
+  protected List<Future<String>> futures = new ArrayList<Future<String>>();
+  protected Properties logProps;
+  protected Properties props;
+
+  /**
+   * Loads the MessageCenter log4j properties from the current directory and
+   * the batch properties from the specified file.
+   *
+   * @param propsFile
+   *          the batch properties file
+   * @throws IOException
+   */
+  protected void loadProperties(String propsFile) throws IOException {
+    logProps = new Properties();
+    File in = new File("./MessageCenter.log4j.properties");
+    logProps.load(new FileInputStream(in));
+    PropertyConfigurator.configure(logProps);
+
+    props = new Properties();
+    props.load(new FileReader(propsFile));
+  }
+
+  /**
+   * Starts the instances, each in the instance directory of the working
+   * directory.
+   *
+   * @param executor
+   *          the executor to run the instances with
+   * @param lines
+   *          the queue of parameter lines that the instances share
+   * @param producerClass
+   *          the name of the RunResultProducer class, or null
+   * @param results
+   *          the queue that the instances put the run values in, or null
+   * @throws IOException
+   */
+  protected void startInstances(ExecutorService executor, Queue<String> lines,
+      String producerClass, BlockingQueue<Map.Entry<Integer, Double>> results)
+      throws IOException {
+    File wd = new File(props.getProperty(BatchConstants.WORKING_DIRECTORY_PN));
+    int instanceCount = getInstanceCount();
+    File batchParamFile = getBatchParamFile();
+    File scenario = new File(props.getProperty(BatchConstants.SCENARIO_DIRECTORY_PN))
+        .getCanonicalFile();
+
+    for (int i = 0; i < instanceCount; i++) {
+      int id = i + 1;
+      File subwd = new File(wd, BatchConstants.INSTANCE_DIR_PREFIX + id).getCanonicalFile();
+      subwd.mkdirs();
+      new File(subwd, BatchConstants.DONE_FILE_NAME).delete();
+      Instance instance = new Instance(id, subwd, batchParamFile, scenario, lines, logProps,
+          producerClass, results);
+      instances.add(instance);
+      futures.add(executor.submit(instance));
+    }
+  }
+
+  protected int getInstanceCount() {
+    return Integer.parseInt(props.getProperty(BatchConstants.INSTANCE_COUNT_PN, "1"));
+  }
+
+  protected File getBatchParamFile() throws IOException {
+    return new File(props.getProperty(BatchConstants.BATCH_PARAM_FILE_PN)).getCanonicalFile();
+  }
+
+  /**
+   * Waits for the instances to finish and gets their status.
+   *
+   * @return the status of each instance, keyed by the instance id.
+   */
+  protected Properties waitForInstances() {
+    Properties status = new Properties();
+    for (int i = 0; i < futures.size(); i++) {
+      String id = String.valueOf(instances.get(i).id);
+      try {
+        status.put(id, futures.get(i).get());
+      } catch (ExecutionException ex) {
+        ex.getCause().printStackTrace();
+        msg.error("", ex);
+        status.put(id, RunningStatus.FAILURE.toString());
+      } catch (InterruptedException ex) {
+        ex.printStackTrace();
+        msg.error("", ex);
+        status.put(id, RunningStatus.FAILURE.toString());
+      }
+    }
+    return status;
+  }
+
+  public void run(String propsFile) throws IOException {
+    loadProperties(propsFile);
+    File wd = new File(props.getProperty(BatchConstants.WORKING_DIRECTORY_PN));
+
+    File input = null;
+    if (props.getProperty(BatchConstants.UNROLLED_BATCH_PARAM_FILE_PN, "").length() > 0) {
+      // unrolled input already exists so use that.
+      input = new File(props.getProperty(BatchConstants.UNROLLED_BATCH_PARAM_FILE_PN));
+    } else {
+      input = LocalDriver.unrollXMLParamsIntoFile(wd, getBatchParamFile());
+    }
+    Queue<String> lines = new ConcurrentLinkedQueue<String>(
+        LocalDriver.createParameterStrings(input));
+
+    File file = new File("./" + BatchConstants.DONE_FILE_NAME);
+    file.delete();
+
+    ExecutorService executor = Executors.newFixedThreadPool(getInstanceCount());
+    Properties status = new Properties();
+    try {
+      startInstances(executor, lines, null, null);
+      status = waitForInstances();
+    } finally {
+      executor.shutdown();
+      status.store(new FileOutputStream(BatchConstants.STATUS_OUTPUT_FILE), "");
+      file.createNewFile();
+    }
+  }
+
+  // args[0] is properties file path
+  public static void main(String[] args) {
+    InProcessDriver driver = new InProcessDriver();
+    try {
+      driver.run(args[0]);
+    } catch (IOException e) {
+      msg.error("", e);
+    }
+  }
+}
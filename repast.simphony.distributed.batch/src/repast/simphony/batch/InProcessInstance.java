@@ -0,0 +1,251 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.PropertyConfigurator;
+
+import repast.simphony.batch.parameter.ParameterLineParser;
+import repast.simphony.context.Context;
+import repast.simphony.data2.builder.FileNameFormatter;
+import repast.simphony.engine.controller.NullAbstractControllerAction;
+import repast.simphony.engine.environment.ControllerRegistry;
+import repast.simphony.engine.environment.RunState;
+import repast.simphony.parameter.Parameters;
+import repast.simphony.parameter.RunResultProducer;
+import repast.simphony.scenario.ScenarioLoadException;
+import simphony.util.messages.MessageCenter;
+import simphony.util.messages.MessageEvent;
+import simphony.util.messages.MessageEventListener;
+
+/**
+ * Runs a single instance of a simphony model in an {@link InProcessDriver}
+ * batch run. Each InProcessInstance is loaded by its own
+ * {@link BatchClassLoader} and so has its own copy of the simphony classes and
+ * of their static state: the RunState, the RunEnvironment, the schedule, the
+ * random streams and so on. Only JDK types are passed between an instance and
+ * the driver.
+ * <p>
+ *
+ * Like the {@link InstanceRunner}, the instance runs the model for each
+ * parameter line that it takes from the queue, writes any warnings or errors
+ * to a WARN or FAILURE file in its output directory, and stops if there is an
+ * error. Files written by the data sinks are put in the output directory, and
+ * a DONE file is created there when the instance finishes.
+ */
+public class InProcessInstance {
+
+  private static MessageCenter msg = MessageCenter.getMessageCenter(InProcessInstance.class);
+
+  private String id;
+  private File outputDir;
+  // set by the message listener, which may be called on the schedule's threads
+  private volatile RunningStatus status = RunningStatus.OK;
+  private double runValue;
+
+  /**
+   * Creates an InProcessInstance.
+   *
+   * @param id
+   *          the instance id
+   * @param outputDir
+   *          the directory for the instance's output
+   * @param logProps
+   *          the log4j properties, or null. See
+   *          {@link #resolveLogFiles(Properties, File, String)}.
+   */
+  public InProcessInstance(String id, File outputDir, Properties logProps) {
+    this.id = id;
+    this.outputDir = outputDir;
+    if (logProps != null)
+      PropertyConfigurator.configure(resolveLogFiles(logProps, outputDir, id));
+    FileNameFormatter.setOutputDirectory(outputDir);
+
+    MessageCenter.addMessageListener(new MessageEventListener() {
+      public void messageReceived(MessageEvent evt) {
+        Level level = evt.getLevel();
+        if (level == Level.ERROR || level == Level.WARN || level == Level.FATAL) {
+          if (level == Level.WARN && status == RunningStatus.OK)
+            status = RunningStatus.WARN;
+          else if (level != Level.WARN)
+            status = RunningStatus.FAILURE;
+          writeMessage(evt);
+        }
+      }
+    });
+  }
+
+  /**
+   * Gets a copy of the log4j properties in which each instance has its own log
+   * files. Each instance has its own copy of log4j, so instances that wrote to
+   * the same file would overwrite each other's output. Relative file names are
+   * resolved against the instance's output directory, as they are against the
+   * working directory of a {@link LocalDriver} instance, and the instance id
+   * is added to absolute ones.
+   *
+   * @param logProps
+   *          the log4j properties
+   * @param outputDir
+   *          the instance's output directory
+   * @param id
+   *          the instance id
+   *
+   * @return the instance's log4j properties.
+   */
+  static Properties resolveLogFiles(Properties logProps, File outputDir, String id) {
+    Properties props = new Properties();
+    props.putAll(logProps);
+    for (String name : logProps.stringPropertyNames()) {
+      if (name.startsWith("log4j.appender.") && name.endsWith(".File")) {
+        File file = new File(logProps.getProperty(name).trim());
+        if (file.isAbsolute())
+          file = new File(file.getParentFile(), id + "_" + file.getName());
+        else
+          file = new File(outputDir, file.getPath());
+        props.setProperty(name, file.getPath());
+      }
+    }
+    return props;
+  }
+
+  private void writeMessage(MessageEvent evt) {
+    File file = new File(outputDir, status.toString() + "_" + id);
+    PrintWriter writer = null;
+    try {
+      writer = new PrintWriter(new FileWriter(file, file.exists()));
+      writer.append(evt.getMessage().toString());
+      writer.append("\n");
+      if (evt.getThrowable() != null) {
+        evt.getThrowable().printStackTrace(writer);
+      }
+    } catch (IOException ex) {
+      if (evt.getThrowable() != null) {
+        evt.getThrowable().printStackTrace();
+      }
+      ex.printStackTrace();
+    } finally {
+      if (writer != null)
+        writer.close();
+    }
+  }
+
+  /**
+   * Runs the model for each of the parameter lines taken from the queue,
+   * until the queue is empty or a run fails. The queue is shared with the
+   * other instances.
+   *
+   * @param batchParamFile
+   *          the batch parameter xml file
+   * @param scenario
+   *          the scenario directory
+   * @param lines
+   *          the parameter lines, in the format read by the
+   *          {@link ParameterLineParser}
+   *
+   * @return the name of the instance's {@link RunningStatus}.
+   */
+  public String run(File batchParamFile, File scenario, Queue<String> lines) {
+    return run(batchParamFile, scenario, lines, null, null);
+  }
+
+  /**
+   * Runs the model for each of the parameter lines taken from the queue, and
+   * puts the value that the {@link RunResultProducer} produces for each run in
+   * the results queue, keyed by the run number. If the lines queue is a
+   * BlockingQueue, this waits for lines until it takes an empty one, otherwise
+   * it stops when the queue is empty. It also stops if a run fails, in which
+   * case the run's value is NaN.
+   *
+   * @param batchParamFile
+   *          the batch parameter xml file
+   * @param scenario
+   *          the scenario directory
+   * @param lines
+   *          the parameter lines, in the format read by the
+   *          {@link ParameterLineParser}
+   * @param producerClass
+   *          the name of the RunResultProducer class, or null
+   * @param results
+   *          the queue for the run values, or null
+   *
+   * @return the name of the instance's {@link RunningStatus}.
+   */
+  public String run(File batchParamFile, File scenario, Queue<String> lines,
+      String producerClass, BlockingQueue<Map.Entry<Integer, Double>> results) {
+    try {
+      ParameterLineParser lineParser = new ParameterLineParser(batchParamFile.toURI());
+      OneRunBatchRunner runner = new OneRunBatchRunner(scenario);
+      if (producerClass != null) {
+        addResultProducerAction(runner.getControllerRegistry(), producerClass);
+      }
+      runner.batchInit();
+
+      String line = null;
+      while (status != RunningStatus.FAILURE && (line = nextLine(lines)) != null) {
+        Parameters params = lineParser.parse(line);
+        int runNum = (Integer) params.getValue(BatchConstants.BATCH_RUN_PARAM_NAME);
+        runValue = Double.NaN;
+        try {
+          runner.run(runNum, params);
+        } finally {
+          if (results != null) {
+            double value = status == RunningStatus.FAILURE ? Double.NaN : runValue;
+            results.put(new AbstractMap.SimpleEntry<Integer, Double>(runNum, value));
+          }
+        }
+      }
+
+      runner.batchCleanup();
+    } catch (IOException ex) {
+      msg.error("Error while reading the batch parameters", ex);
+    } catch (ScenarioLoadException ex) {
+      msg.error("Error while loading the scenario", ex);
+    } catch (ReflectiveOperationException ex) {
+      msg.error("Error while creating the run result producer", ex);
+    } catch (InterruptedException ex) {
+      msg.error("Interrupted while waiting for parameters", ex);
+    } catch (RuntimeException ex) {
+      msg.error("Error while running model", ex);
+    }
+
+    // marks this instance's output as complete
+    try {
+      new File(outputDir, BatchConstants.DONE_FILE_NAME).createNewFile();
+    } catch (IOException ex) {
+      msg.error("Error while creating the instance done file", ex);
+    }
+    return status.name();
+  }
+
+  private String nextLine(Queue<String> lines) throws InterruptedException {
+    if (lines instanceof BlockingQueue) {
+      String line = ((BlockingQueue<String>) lines).take();
+      return line.length() == 0 ? null : line;
+    }
+    return lines.poll();
+  }
+
+  private void addResultProducerAction(ControllerRegistry registry, String producerClass)
+      throws ReflectiveOperationException {
+    // loaded by this instance's class loader, as is the model
+    Class<?> clazz = Class.forName(producerClass, true, getClass().getClassLoader());
+    final RunResultProducer producer = (RunResultProducer) clazz.newInstance();
+    registry.addAction(registry.getMasterContextId(), null, new NullAbstractControllerAction() {
+      @Override
+      public void runCleanup(RunState runState, Context context) {
+        runValue = producer.getRunValue(runState);
+      }
+    });
+  }
+}
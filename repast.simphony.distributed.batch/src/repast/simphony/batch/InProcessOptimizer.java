@@ -0,0 +1,239 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import repast.simphony.batch.parameter.ParametersToInput;
+import repast.simphony.parameter.ParameterConstants;
+import repast.simphony.parameter.Parameters;
+import repast.simphony.parameter.optimizer.BatchOptimizer;
+import repast.simphony.parameter.optimizer.CMAESBatchOptimizer;
+import repast.simphony.parameter.optimizer.ParameterSpace;
+import repast.simphony.parameter.xml.XMLSweeperProducer;
+import simphony.util.messages.MessageCenter;
+
+/**
+ * Searches the batch parameter space with a {@link BatchOptimizer}, running
+ * the points of each batch that the optimizer proposes in parallel on
+ * {@link InProcessDriver} instances. The optimizer searches the space of the
+ * batch parameter file's optimizable parameters, i.e. its number and list
+ * parameters, and maximizes the values that the
+ * {@link repast.simphony.parameter.RunResultProducer} produces. Each point is
+ * run once for each of the batch parameter file's runs, with the random seed,
+ * if it's a parameter, incremented for each of those runs, and the point's
+ * value is the mean of their values.
+ * <p>
+ *
+ * This reads the same properties as the InProcessDriver, and also:
+ * <ul>
+ * <li>optimizer.run.result.producer - the name of the RunResultProducer class.
+ * This is required.</li>
+ * <li>optimizer.class - the name of the BatchOptimizer class. This defaults to
+ * the {@link CMAESBatchOptimizer}.</li>
+ * <li>optimizer.seed - the seed for the optimizer's random numbers. This
+ * defaults to 1.</li>
+ * <li>optimizer.max.runs - the maximum number of runs, or 0 for no maximum.
+ * This defaults to 0.</li>
+ * </ul>
+ * The value of each point is written to optimizer_output.csv in the working
+ * directory.
+ */
+public class InProcessOptimizer extends InProcessDriver {
+
+  private static MessageCenter msg = MessageCenter.getMessageCenter(InProcessOptimizer.class);
+
+  private static final String SEED = ParameterConstants.DEFAULT_RANDOM_SEED_USAGE_NAME;
+
+  @Override
+  public void run(String propsFile) throws IOException {
+    loadProperties(propsFile);
+    File wd = new File(props.getProperty(BatchConstants.WORKING_DIRECTORY_PN));
+    wd.mkdirs();
+
+    String producerClass = props.getProperty(BatchConstants.OPTIMIZER_RUN_RESULT_PRODUCER_PN);
+    if (producerClass == null) {
+      msg.error("", new IllegalArgumentException("Missing property "
+          + BatchConstants.OPTIMIZER_RUN_RESULT_PRODUCER_PN));
+      return;
+    }
+    String optimizerClass = props.getProperty(BatchConstants.OPTIMIZER_CLASS_PN,
+        CMAESBatchOptimizer.class.getName());
+    int seed = Integer.parseInt(props.getProperty(BatchConstants.OPTIMIZER_SEED_PN, "1"));
+    int maxRuns = Integer.parseInt(props.getProperty(BatchConstants.OPTIMIZER_MAX_RUNS_PN, "0"));
+
+    BatchOptimizer optimizer = null;
+    try {
+      optimizer = (BatchOptimizer) Class.forName(optimizerClass).newInstance();
+    } catch (ReflectiveOperationException ex) {
+      msg.error("Error while creating the optimizer", ex);
+      return;
+    }
+
+    XMLSweeperProducer producer = new XMLSweeperProducer(getBatchParamFile().toURI().toURL());
+    Parameters params = producer.getParameters();
+    List<String> paramNames = new ArrayList<String>();
+    for (String pName : params.getSchema().parameterNames()) {
+      paramNames.add(pName);
+    }
+    ParameterSpace space = new ParameterSpace(producer.getParameterSweeper(), params);
+    optimizer.init(space.getDimensions(), seed);
+
+    File file = new File("./" + BatchConstants.DONE_FILE_NAME);
+    file.delete();
+
+    BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+    BlockingQueue<Map.Entry<Integer, Double>> results =
+        new LinkedBlockingQueue<Map.Entry<Integer, Double>>();
+    ExecutorService executor = Executors.newFixedThreadPool(getInstanceCount());
+    BufferedWriter writer = new BufferedWriter(new FileWriter(new File(wd,
+        BatchConstants.OPTIMIZER_OUTPUT_FILE)));
+    Properties status = new Properties();
+    try {
+      startInstances(executor, lines, producerClass, results);
+      writeHeader(writer, space);
+
+      int replicates = Math.max(space.getReplicates(), 1);
+      boolean hasSeed = params.getSchema().contains(SEED);
+      int baseSeed = hasSeed ? ((Number) params.getValue(SEED)).intValue() : 0;
+      int runs = 0;
+      int batch = 0;
+      while (!optimizer.isFinished()) {
+        double[][] points = optimizer.propose();
+        if (maxRuns > 0 && runs + points.length * replicates > maxRuns)
+          break;
+
+        for (int i = 0; i < points.length; i++) {
+          space.setPoint(points[i]);
+          for (int r = 0; r < replicates; r++) {
+            if (hasSeed)
+              params.setValue(SEED, baseSeed + r);
+            // run numbers are 1 based
+            lines.put(ParametersToInput.formatLine(runs + i * replicates + r + 1, paramNames,
+                params));
+          }
+        }
+
+        double[] values = collectValues(results, points.length, replicates, runs);
+        if (values == null) {
+          msg.error("", new IllegalStateException("All of the instances have stopped"));
+          break;
+        }
+        optimizer.evaluated(points, values);
+        runs += points.length * replicates;
+        batch++;
+        writeValues(writer, space, batch, points, values);
+      }
+
+      double[] best = optimizer.getBestPoint();
+      if (best != null) {
+        space.setPoint(best);
+        if (hasSeed)
+          params.setValue(SEED, baseSeed);
+        msg.info("Best value " + optimizer.getBestValue() + " at "
+            + ParametersToInput.formatLine(0, paramNames, params));
+      }
+    } catch (InterruptedException ex) {
+      msg.error("", ex);
+    } finally {
+      // an empty line stops an instance
+      for (int i = 0; i < getInstanceCount(); i++) {
+        lines.add("");
+      }
+      status = waitForInstances();
+      executor.shutdown();
+      writer.close();
+      status.store(new FileOutputStream(BatchConstants.STATUS_OUTPUT_FILE), "");
+      file.createNewFile();
+    }
+  }
+
+  // the mean value of the replicates of each point. Runs that failed aren't
+  // counted and a point whose runs all failed gets negative infinity.
+  private double[] collectValues(BlockingQueue<Map.Entry<Integer, Double>> results, int count,
+      int replicates, int firstRun) throws InterruptedException {
+    double[] sums = new double[count];
+    int[] counts = new int[count];
+    int remaining = count * replicates;
+    while (remaining > 0) {
+      Map.Entry<Integer, Double> result = results.poll(1, TimeUnit.SECONDS);
+      if (result == null) {
+        if (allDone())
+          return null;
+      } else {
+        remaining--;
+        int index = (result.getKey() - firstRun - 1) / replicates;
+        double value = result.getValue();
+        if (!Double.isNaN(value)) {
+          sums[index] += value;
+          counts[index]++;
+        }
+      }
+    }
+
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = counts[i] == 0 ? Double.NEGATIVE_INFINITY : sums[i] / counts[i];
+    }
+    return values;
+  }
+
+  private boolean allDone() {
+    for (Future<String> future : futures) {
+      if (!future.isDone())
+        return false;
+    }
+    return true;
+  }
+
+  private void writeHeader(BufferedWriter writer, ParameterSpace space) throws IOException {
+    writer.write("batch");
+    for (int i = 0; i < space.getDimensions(); i++) {
+      writer.write(",\"");
+      writer.write(space.getParameterName(i));
+      writer.write("\"");
+    }
+    writer.write(",value\n");
+  }
+
+  private void writeValues(BufferedWriter writer, ParameterSpace space, int batch,
+      double[][] points, double[] values) throws IOException {
+    for (int i = 0; i < points.length; i++) {
+      Parameters params = space.setPoint(points[i]);
+      writer.write(String.valueOf(batch));
+      for (int j = 0; j < space.getDimensions(); j++) {
+        writer.write(",");
+        writer.write(params.getValueAsString(space.getParameterName(j)));
+      }
+      writer.write(",");
+      writer.write(String.valueOf(values[i]));
+      writer.write("\n");
+    }
+    writer.flush();
+  }
+
+  // args[0] is properties file path
+  public static void main(String[] args) {
+    InProcessOptimizer optimizer = new InProcessOptimizer();
+    try {
+      optimizer.run(args[0]);
+    } catch (IOException e) {
+      msg.error("", e);
+    }
+  }
+}
@@ -217,6 +217,13 @@ public class InstanceRunner {
       runner.run();
     } catch (Throwable ex) {
       msg.error("Error while running model", ex);
+    } finally {
+      // marks this instance's output as complete
+      try {
+        new File(BatchConstants.DONE_FILE_NAME).createNewFile();
+      } catch (IOException ex) {
+        msg.error("Error while creating the instance done file", ex);
+      }
     }
   }
 }
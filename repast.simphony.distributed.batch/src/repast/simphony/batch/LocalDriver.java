@@ -74,7 +74,7 @@ public class LocalDriver {
   private List<Future<Void>> futures;
   private List<Instance> instances = new ArrayList<Instance>();
 
-  private File unrollXMLParamsIntoFile(File workingDir, File batchParamFile) throws IOException {
+  static File unrollXMLParamsIntoFile(File workingDir, File batchParamFile) throws IOException {
     ParametersToInput toInput;
     try {
       toInput = new ParametersToInput(batchParamFile);
@@ -141,6 +141,7 @@ public class LocalDriver {
         int id = i + 1;
         File subwd = new File(wd, BatchConstants.INSTANCE_DIR_PREFIX + id).getCanonicalFile();
         subwd.mkdirs();
+        new File(subwd, BatchConstants.DONE_FILE_NAME).delete();
         if (mkSymLink && SystemUtils.IS_OS_WINDOWS_XP) {
           // windows xp doesn't allow sim links so we copy the data
           FileUtils.copyDirs(new File(subwd.getParentFile(), "data"), new File(subwd, "data"));
@@ -262,7 +263,7 @@ public class LocalDriver {
     return list;
   }
 
-  private List<String> createParameterStrings(File input) throws IOException {
+  static List<String> createParameterStrings(File input) throws IOException {
     List<String> list = new ArrayList<String>();
     try (BufferedReader reader = new BufferedReader(new FileReader(input))) {
       String line = null;
@@ -85,6 +85,15 @@ public class OneRunBatchRunner implements RunListener {
 
   }
 
+  /**
+   * Gets the controller registry of the loaded scenario.
+   * 
+   * @return the controller registry of the loaded scenario.
+   */
+  public ControllerRegistry getControllerRegistry() {
+    return controller.getControllerRegistry();
+  }
+
   public void batchInit() {
     controller.batchInitialize();
   }
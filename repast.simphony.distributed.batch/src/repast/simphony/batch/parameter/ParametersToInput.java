@@ -66,21 +66,8 @@ public class ParametersToInput {
       next = null;
       if (!sweeper.atEnd()) {
         sweeper.next(params);
-        StringBuilder buf = new StringBuilder(String.valueOf(batchRun));
-        buf.append("\t");
-
-        boolean addComma = false;
-        for (String pName : paramNames) {
-          if (addComma)
-            buf.append(",");
-          buf.append(pName);
-          buf.append("\t");
-          buf.append(params.getValueAsString(pName));
-          addComma = true;
-        }
-
+        next = formatLine(batchRun, paramNames, params);
         batchRun++;
-        next = buf.toString();
       }
     }
 
@@ -103,6 +90,34 @@ public class ParametersToInput {
     }
   }
 
+  /**
+   * Formats the specified parameters as a batch parameter combination in
+   * "line" format.
+   * 
+   * @param batchRun
+   *          the batch run number
+   * @param paramNames
+   *          the names of the parameters to include
+   * @param params
+   *          the parameters
+   * @return the parameters in "line" format.
+   */
+  public static String formatLine(int batchRun, Iterable<String> paramNames, Parameters params) {
+    StringBuilder buf = new StringBuilder(String.valueOf(batchRun));
+    buf.append("\t");
+
+    boolean addComma = false;
+    for (String pName : paramNames) {
+      if (addComma)
+        buf.append(",");
+      buf.append(pName);
+      buf.append("\t");
+      buf.append(params.getValueAsString(pName));
+      addComma = true;
+    }
+    return buf.toString();
+  }
+
   /**
    * Gets an iterator over the formatted input. Each element returned
    * by the iterator is a batch parameter combination in "line" format.
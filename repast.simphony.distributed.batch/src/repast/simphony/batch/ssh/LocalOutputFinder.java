@@ -71,4 +71,21 @@ public class LocalOutputFinder extends OutputFinder {
 
     return findOutputFiles(instances);
   }
+
+  /**
+   * Finds the output in the specified instance directories.
+   * 
+   * @param instanceDirectories
+   *          the instance directories to search
+   * @return the output that matches each of the patterns.
+   * @throws StatusException
+   */
+  public List<MatchedFiles> run(List<File> instanceDirectories) throws StatusException {
+    List<String> instances = new ArrayList<String>();
+    for (File dir : instanceDirectories) {
+      instances.add(dir.getAbsolutePath());
+    }
+
+    return findOutputFiles(instances);
+  }
 }
@@ -3,11 +3,7 @@
  */
 package repast.simphony.batch.ssh;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -20,6 +16,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A collection of files that match some specified file pattern.
@@ -100,18 +101,6 @@ public class MatchedFiles {
     this.files.addAll(files);
   }
 
-  private void process(BufferedWriter out, File file, boolean skip) throws IOException {
-    try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-      String line = null;
-      if (skip)
-        reader.readLine();
-      while ((line = reader.readLine()) != null) {
-        out.write(line);
-        out.write("\n");
-      }
-    }
-  }
-  
   private void renamePath(Path path) throws IOException {
     if (path.toFile().exists()) {
       // rename the output directory appending the current time stamp.
@@ -153,24 +142,100 @@ public class MatchedFiles {
    * @param outputDir
    */
   public void aggregateOutput(String outputDir) throws IOException {
+    aggregateOutput(outputDir, false);
+  }
+
+  /**
+   * Aggregates all the files into this MatchedFiles output file written to the
+   * specified directory. Files that are concatenated are merged in run order,
+   * if they have a run column, and are optionally compressed, in which case
+   * the output file name has a ".gz" suffix.
+   * 
+   * @param outputDir
+   * @param compress
+   *          whether or not to gzip concatenated output
+   */
+  public void aggregateOutput(String outputDir, boolean compress) throws IOException {
     if (pattern.isConcatenate()) {
-      File f = new File(outputDir, pattern.getPath());
+      File f = new File(outputDir, pattern.getPath()
+          + (compress ? RunOrderedMerger.GZIP_SUFFIX : ""));
       renamePath(f.toPath());
       if (!f.getParentFile().exists()) {
         f.getParentFile().mkdirs();
       }
-
-      try (BufferedWriter out = new BufferedWriter(new FileWriter(f))) {
-        boolean skip = false;
-        for (File file : files) {
-          process(out, file, skip);
-          skip = pattern.isHeader();
-        }
-      }
+      merge(f, compress);
     } else {
       // copy all the files to the output path
       copyFiles(outputDir);
 
     }
   }
+
+  /**
+   * Merges all the files into the specified file, in run order if they have a
+   * run column.
+   * 
+   * @param file
+   *          the file to write
+   * @param compress
+   *          whether or not to gzip the file
+   * @throws IOException
+   */
+  public void merge(File file, boolean compress) throws IOException {
+    new RunOrderedMerger(pattern.isHeader()).merge(files, file, compress);
+  }
+
+  /**
+   * Aggregates the output of each of the MatchedFiles into the specified
+   * directory, aggregating the MatchedFiles in parallel.
+   * 
+   * @param matches
+   *          the MatchedFiles to aggregate
+   * @param outputDir
+   *          the directory to aggregate into
+   * @param compress
+   *          whether or not to gzip concatenated output
+   * @param threads
+   *          the number of MatchedFiles to aggregate at once
+   * @throws IOException
+   */
+  public static void aggregateOutput(Collection<MatchedFiles> matches, final String outputDir,
+      final boolean compress, int threads) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+        Math.min(threads, matches.size())));
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (final MatchedFiles match : matches) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            match.aggregateOutput(outputDir, compress);
+            return null;
+          }
+        }));
+      }
+      waitFor(futures);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  static void waitFor(List<Future<Void>> futures) throws IOException {
+    IOException exception = null;
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        if (exception == null) {
+          exception = ex.getCause() instanceof IOException ? (IOException) ex.getCause()
+              : new IOException(ex.getCause());
+        }
+      } catch (InterruptedException ex) {
+        if (exception == null)
+          exception = new IOException(ex);
+      }
+    }
+    if (exception != null)
+      throw exception;
+  }
 }
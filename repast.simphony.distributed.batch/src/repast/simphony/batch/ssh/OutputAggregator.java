@@ -3,11 +3,7 @@
  */
 package repast.simphony.batch.ssh;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -17,7 +13,8 @@ import java.util.List;
 import repast.simphony.batch.BatchConstants;
 
 /**
- * Aggregates the separate instance batch param map and output files.
+ * Aggregates the separate instance batch param map and output files, merging
+ * each in run order.
  * 
  * @author Nick Collier
  */
@@ -83,46 +80,19 @@ public class OutputAggregator {
         throw new IOException("Error while aggregating output");
       String pfname = makePFName(fname);
 
-      BufferedWriter fout = null;
-      BufferedWriter pfout = null;
-
-      try {
-        fout = new BufferedWriter(new FileWriter(aggOutputDirectory + "/" + fname));
-        pfout = new BufferedWriter(new FileWriter(aggOutputDirectory + "/" + pfname));
-        boolean fskip = false, pfskip = false;
-        for (File file : output) {
-          if (file.getName().contains(BatchConstants.PARAM_MAP_SUFFIX)) {
-            process(pfout, file, pfskip);
-            pfskip = true;
-          } else {
-            process(fout, file, fskip);
-            fskip = true;
-          }
+      List<File> files = new ArrayList<File>();
+      List<File> pfiles = new ArrayList<File>();
+      for (File file : output) {
+        if (file.getName().contains(BatchConstants.PARAM_MAP_SUFFIX)) {
+          pfiles.add(file);
+        } else {
+          files.add(file);
         }
-
-      } finally {
-        if (fout != null)
-          fout.close();
-        if (pfout != null)
-          pfout.close();
       }
-    }
-  }
 
-  private void process(BufferedWriter out, File file, boolean skip) throws IOException {
-    BufferedReader reader = null;
-    try {
-      reader = new BufferedReader(new FileReader(file));
-      String line = null;
-      if (skip)
-        reader.readLine();
-      while ((line = reader.readLine()) != null) {
-        out.write(line);
-        out.write("\n");
-      }
-    } finally {
-      if (reader != null)
-        reader.close();
+      RunOrderedMerger merger = new RunOrderedMerger(true);
+      merger.merge(files, new File(aggOutputDirectory, fname), false);
+      merger.merge(pfiles, new File(aggOutputDirectory, pfname), false);
     }
   }
 }
@@ -0,0 +1,204 @@
+/**
+ *
+ */
+package repast.simphony.batch.ssh;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import repast.simphony.data2.BatchRunDataSource;
+
+/**
+ * Merges instance output files into a single file, streaming them rather than
+ * reading them into memory. If the files have a header whose first column is
+ * the batch run number, as the file sink and batch parameter map output does,
+ * the lines are merged in run number order. Each instance writes its runs in
+ * increasing run order, so this is a k-way merge that holds only one line from
+ * each file in memory at a time. Otherwise, the files are concatenated in
+ * order.
+ * <p>
+ *
+ * Files whose name ends in ".gz" are read as gzip files, and the output can be
+ * written as a gzip file.
+ */
+public class RunOrderedMerger {
+
+  static final String GZIP_SUFFIX = ".gz";
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private static class Source implements Comparable<Source> {
+
+    BufferedReader reader;
+    int index;
+    String line;
+    long run;
+
+    public Source(BufferedReader reader, int index) {
+      this.reader = reader;
+      this.index = index;
+    }
+
+    // reads the next line, returning false if there are no more lines.
+    boolean next() throws IOException {
+      line = reader.readLine();
+      if (line == null)
+        return false;
+      // lines without a run number stay with the run before them
+      run = parseRun(line, run);
+      return true;
+    }
+
+    @Override
+    public int compareTo(Source other) {
+      if (run != other.run)
+        return run < other.run ? -1 : 1;
+      return index < other.index ? -1 : index == other.index ? 0 : 1;
+    }
+  }
+
+  private boolean header;
+
+  /**
+   * Creates a RunOrderedMerger.
+   *
+   * @param header
+   *          whether or not the files have a header line. If so, only the
+   *          first file's header is written to the output.
+   */
+  public RunOrderedMerger(boolean header) {
+    this.header = header;
+  }
+
+  // the leading integer of the line, ignoring a leading quote, or the
+  // default if the line doesn't start with one.
+  static long parseRun(String line, long defaultRun) {
+    int i = 0;
+    int length = line.length();
+    if (i < length && line.charAt(i) == '"')
+      i++;
+    int start = i;
+    long run = 0;
+    while (i < length) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9')
+        break;
+      run = run * 10 + (c - '0');
+      i++;
+    }
+    return i == start ? defaultRun : run;
+  }
+
+  private static boolean isRunColumn(String header) {
+    String id = BatchRunDataSource.ID;
+    int start = header.startsWith("\"") ? 1 : 0;
+    if (!header.startsWith(id, start))
+      return false;
+    int end = start + id.length();
+    if (start == 1) {
+      if (!header.startsWith("\"", end))
+        return false;
+      end++;
+    }
+    // the run is the first column, not just a column whose name starts with
+    // run
+    return end == header.length() || !Character.isLetterOrDigit(header.charAt(end));
+  }
+
+  static BufferedReader openReader(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    if (file.getName().endsWith(GZIP_SUFFIX))
+      in = new GZIPInputStream(in, BUFFER_SIZE);
+    return new BufferedReader(new InputStreamReader(in), BUFFER_SIZE);
+  }
+
+  static BufferedWriter openWriter(File file, boolean compress) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    if (compress)
+      out = new GZIPOutputStream(out, BUFFER_SIZE);
+    return new BufferedWriter(new OutputStreamWriter(out), BUFFER_SIZE);
+  }
+
+  /**
+   * Merges the specified files into the output file.
+   *
+   * @param files
+   *          the files to merge
+   * @param output
+   *          the file to write the merged output to
+   * @param compress
+   *          whether or not to write the output as a gzip file
+   * @throws IOException
+   */
+  public void merge(List<File> files, File output, boolean compress) throws IOException {
+    List<Source> sources = new ArrayList<>();
+    try (BufferedWriter out = openWriter(output, compress)) {
+      boolean ordered = header;
+      boolean headerWritten = false;
+      for (File file : files) {
+        Source source = new Source(openReader(file), sources.size());
+        sources.add(source);
+        if (header) {
+          String line = source.reader.readLine();
+          if (line != null && !headerWritten) {
+            out.write(line);
+            out.write("\n");
+            headerWritten = true;
+            ordered = isRunColumn(line);
+          }
+        }
+      }
+
+      if (ordered) {
+        merge(sources, out);
+      } else {
+        for (Source source : sources) {
+          while (source.next()) {
+            out.write(source.line);
+            out.write("\n");
+          }
+        }
+      }
+    } finally {
+      for (Source source : sources) {
+        source.reader.close();
+      }
+    }
+  }
+
+  private void merge(List<Source> sources, BufferedWriter out) throws IOException {
+    PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(sources.size(), 1));
+    for (Source source : sources) {
+      if (source.next())
+        queue.add(source);
+    }
+
+    while (!queue.isEmpty()) {
+      Source source = queue.poll();
+      long run = source.run;
+      // write the whole run from this source before going back to the
+      // queue, as a run's lines are together in its file.
+      boolean more = true;
+      while (more && source.run == run) {
+        out.write(source.line);
+        out.write("\n");
+        more = source.next();
+      }
+      if (more)
+        queue.add(source);
+    }
+  }
+}
@@ -192,9 +192,8 @@ public class SessionsDriver {
 
     try {
       logger.info("Aggregating output into " + config.getOutputDir());
-      for (MatchedFiles file : matches.values()) {
-        file.aggregateOutput(config.getOutputDir());
-      }
+      MatchedFiles.aggregateOutput(matches.values(), config.getOutputDir(), false, Runtime
+          .getRuntime().availableProcessors());
     } catch (IOException ex) {
       throw new SessionException("Error while aggregating output", ex);
     } 
@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the incremental mode of the {@link ClusterOutputCombiner}.
+ */
+public class ClusterOutputCombinerTest {
+
+  private static final String OUTPUT = "ModelOutput.2012.Aug.21.11_58_43.txt";
+  private static final String HEADER = "\"run\",\"tick\",\"Human Count\",\"Zombie Count\"";
+
+  private File dir = new File("./test_out/combiner");
+  private File workingDir = new File(dir, "working");
+  private File outputDir = new File(dir, "output");
+
+  @Before
+  public void setUp() {
+    delete(dir);
+    workingDir.mkdirs();
+  }
+
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private File instance(int id, int... runs) throws IOException {
+    File instanceDir = new File(workingDir, BatchConstants.INSTANCE_DIR_PREFIX + id);
+    instanceDir.mkdirs();
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(new File(instanceDir, OUTPUT)))) {
+      writer.write(HEADER + "\n");
+      for (int run : runs) {
+        writer.write(run + ",0.0,200,5\n");
+        writer.write(run + ",1.0,199,6\n");
+      }
+    }
+    return instanceDir;
+  }
+
+  private void done(File dir) throws IOException {
+    new File(dir, BatchConstants.DONE_FILE_NAME).createNewFile();
+  }
+
+  // the combined output is named after the scenario's file sink, with the
+  // current time
+  private File find(File dir, String prefix) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.startsWith(prefix + "ModelOutput.") && !name.contains("batch_param_map"))
+          return file;
+      }
+    }
+    return null;
+  }
+
+  // waits for the output file to exist, failing after 10 seconds
+  private void waitFor(File dir, String prefix) throws InterruptedException {
+    for (int i = 0; i < 1000 && find(dir, prefix) == null; i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(prefix + "ModelOutput should exist in " + dir, find(dir, prefix) != null);
+  }
+
+  @Test
+  public void testIncremental() throws Exception {
+    File one = instance(1, 1, 3, 4);
+    File two = instance(2, 2, 5);
+    done(one);
+
+    final ClusterOutputCombiner combiner = new ClusterOutputCombiner(workingDir.getPath(),
+        "./test_data/test_config_with_patterns2.properties", outputDir.getPath());
+    combiner.setScenarioDirectory("./test_data/test_scenario.rs");
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        combiner.runIncrementally(10);
+      }
+    });
+    thread.start();
+
+    // instance 1 is merged while instance 2 is still running
+    File partialDir = new File(outputDir, ".partial");
+    waitFor(partialDir, "0_");
+    assertEquals(null, find(outputDir, ""));
+    assertTrue(thread.isAlive());
+
+    done(two);
+    waitFor(partialDir, "1_");
+    assertTrue(thread.isAlive());
+
+    done(workingDir);
+    thread.join(10000);
+    assertFalse(thread.isAlive());
+    assertFalse(partialDir.exists());
+
+    assertEquals(Arrays.asList(HEADER, "1,0.0,200,5", "1,1.0,199,6", "2,0.0,200,5",
+        "2,1.0,199,6", "3,0.0,200,5", "3,1.0,199,6", "4,0.0,200,5", "4,1.0,199,6",
+        "5,0.0,200,5", "5,1.0,199,6"), Files.readAllLines(find(outputDir, "").toPath(),
+        Charset.forName("UTF-8")));
+    delete(dir);
+  }
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InProcessInstance}.
+ */
+public class InProcessInstanceTest {
+
+  private File dir = new File("./test_out/in_process").getAbsoluteFile();
+
+  @Before
+  public void setUp() {
+    delete(dir);
+    dir.mkdirs();
+  }
+
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  // creates an instance as the InProcessDriver does, in its own class loader
+  private Object createInstance(String id, Properties logProps) throws Exception {
+    BatchClassLoader loader = new BatchClassLoader(getClass().getClassLoader());
+    Thread thread = Thread.currentThread();
+    ClassLoader contextLoader = thread.getContextClassLoader();
+    // log4j loads the appenders with the context class loader
+    thread.setContextClassLoader(loader);
+    try {
+      Class<?> clazz = loader.loadClass(InProcessInstance.class.getName());
+      File outputDir = new File(dir, BatchConstants.INSTANCE_DIR_PREFIX + id);
+      outputDir.mkdirs();
+      return clazz.getConstructor(String.class, File.class, Properties.class).newInstance(id,
+          outputDir, logProps);
+    } finally {
+      thread.setContextClassLoader(contextLoader);
+    }
+  }
+
+  // reports a warning through the instance's own MessageCenter
+  private void warn(Object instance, String message) throws Exception {
+    Class<?> clazz = instance.getClass().getClassLoader()
+        .loadClass("simphony.util.messages.MessageCenter");
+    Object center = clazz.getMethod("getMessageCenter", Class.class).invoke(null,
+        instance.getClass());
+    clazz.getMethod("warn", Object.class, Object[].class).invoke(center, message,
+        new Object[0]);
+  }
+
+  private String getFilename(Object instance, String file) throws Exception {
+    Class<?> clazz = instance.getClass().getClassLoader()
+        .loadClass("repast.simphony.data2.builder.FileNameFormatter");
+    Object formatter = clazz.getConstructor(String.class, boolean.class).newInstance(file, false);
+    return (String) clazz.getMethod("getFilename").invoke(formatter);
+  }
+
+  private String read(File file) throws IOException {
+    return new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")).trim();
+  }
+
+  @Test
+  public void testIsolatedInstances() throws Exception {
+    Properties logProps = new Properties();
+    logProps.setProperty("log4j.logger.MessageCenter.INTERNAL.repast", "warn, R");
+    logProps.setProperty("log4j.appender.R", "org.apache.log4j.FileAppender");
+    logProps.setProperty("log4j.appender.R.File", "instance.log");
+    logProps.setProperty("log4j.appender.R.layout", "org.apache.log4j.PatternLayout");
+    logProps.setProperty("log4j.appender.R.layout.ConversionPattern", "%m%n");
+
+    Object one = createInstance("1", logProps);
+    Object two = createInstance("2", logProps);
+    assertNotSame(one.getClass(), two.getClass());
+
+    File dir1 = new File(dir, BatchConstants.INSTANCE_DIR_PREFIX + "1");
+    File dir2 = new File(dir, BatchConstants.INSTANCE_DIR_PREFIX + "2");
+    assertEquals(new File(dir1, "out.txt").getPath(), getFilename(one, "out.txt"));
+    assertEquals(new File(dir2, "out.txt").getPath(), getFilename(two, "out.txt"));
+
+    warn(one, "from one");
+    warn(two, "from two");
+    assertEquals("from one", read(new File(dir1, "instance.log")));
+    assertEquals("from two", read(new File(dir2, "instance.log")));
+    assertFalse(new File("instance.log").exists());
+
+    // each instance only hears its own messages
+    assertTrue(read(new File(dir1, RunningStatus.WARN + "_1")).startsWith("from one"));
+    assertTrue(read(new File(dir2, RunningStatus.WARN + "_2")).startsWith("from two"));
+    assertFalse(new File(dir1, RunningStatus.WARN + "_2").exists());
+    assertFalse(new File(dir2, RunningStatus.WARN + "_1").exists());
+  }
+
+  @Test
+  public void testResolveLogFiles() {
+    File absolute = new File(dir, "debug.log");
+    Properties logProps = new Properties();
+    logProps.setProperty("log4j.appender.R.File", "debug.log ");
+    logProps.setProperty("log4j.appender.A.File", absolute.getPath());
+    logProps.setProperty("log4j.appender.R.MaxFileSize", "100KB");
+
+    File outputDir = new File(dir, "instance_3");
+    Properties props = InProcessInstance.resolveLogFiles(logProps, outputDir, "3");
+    assertEquals(new File(outputDir, "debug.log").getPath(),
+        props.getProperty("log4j.appender.R.File"));
+    assertEquals(new File(dir, "3_debug.log").getPath(),
+        props.getProperty("log4j.appender.A.File"));
+    assertEquals("100KB", props.getProperty("log4j.appender.R.MaxFileSize"));
+    // the properties passed in are left unchanged
+    assertEquals("debug.log ", logProps.getProperty("log4j.appender.R.File"));
+  }
+}
@@ -0,0 +1,158 @@
+/**
+ *
+ */
+package repast.simphony.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import repast.simphony.batch.ssh.RunOrderedMerger;
+
+/**
+ * Tests for {@link RunOrderedMerger}.
+ */
+public class RunOrderedMergerTest {
+
+  private File dir = new File("./test_out/merger");
+
+  @Before
+  public void setUp() {
+    dir.mkdirs();
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+  }
+
+  private File write(String name, String... lines) throws IOException {
+    File file = new File(dir, name);
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+      for (String line : lines) {
+        writer.write(line);
+        writer.write("\n");
+      }
+    }
+    return file;
+  }
+
+  private List<String> read(BufferedReader reader) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try {
+      String line = null;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+
+  private List<File> createInput() throws IOException {
+    List<File> files = new ArrayList<>();
+    files.add(write("out_1.txt", "\"run\",\"tick\",\"count\"", "1,1.0,10", "1,2.0,11", "4,1.0,40",
+        "6,1.0,60"));
+    files.add(write("out_2.txt", "\"run\",\"tick\",\"count\"", "2,1.0,20", "2,2.0,21", "3,1.0,30",
+        "5,1.0,50", "5,2.0,51"));
+    files.add(write("out_3.txt", "\"run\",\"tick\",\"count\""));
+    return files;
+  }
+
+  private static final String[] EXPECTED = { "\"run\",\"tick\",\"count\"", "1,1.0,10",
+      "1,2.0,11", "2,1.0,20", "2,2.0,21", "3,1.0,30", "4,1.0,40", "5,1.0,50", "5,2.0,51",
+      "6,1.0,60" };
+
+  @Test
+  public void testRunOrder() throws IOException {
+    File output = new File(dir, "merged.txt");
+    new RunOrderedMerger(true).merge(createInput(), output, false);
+    assertEquals(Arrays.asList(EXPECTED), read(new BufferedReader(new FileReader(output))));
+  }
+
+  @Test
+  public void testCompressed() throws IOException {
+    File output = new File(dir, "merged.txt.gz");
+    new RunOrderedMerger(true).merge(createInput(), output, true);
+    assertEquals(Arrays.asList(EXPECTED), read(new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(new FileInputStream(output))))));
+
+    // merging compressed partial output
+    File partial = new File(dir, "partial.txt");
+    List<File> files = new ArrayList<>();
+    files.add(write("out_4.txt", "\"run\",\"tick\",\"count\"", "0,1.0,0", "7,1.0,70"));
+    files.add(output);
+    new RunOrderedMerger(true).merge(files, partial, false);
+    List<String> lines = read(new BufferedReader(new FileReader(partial)));
+    assertEquals(EXPECTED.length + 2, lines.size());
+    assertEquals("0,1.0,0", lines.get(1));
+    assertEquals("1,1.0,10", lines.get(2));
+    assertEquals("7,1.0,70", lines.get(lines.size() - 1));
+  }
+
+  @Test
+  public void testNoRunColumn() throws IOException {
+    List<File> files = new ArrayList<>();
+    files.add(write("a.txt", "tick,count", "2,20", "1,10"));
+    files.add(write("b.txt", "tick,count", "0,0"));
+    File output = new File(dir, "merged.txt");
+    new RunOrderedMerger(true).merge(files, output, false);
+    assertEquals(Arrays.asList("tick,count", "2,20", "1,10", "0,0"),
+        read(new BufferedReader(new FileReader(output))));
+
+    new RunOrderedMerger(false).merge(files, output, false);
+    assertEquals(Arrays.asList("tick,count", "2,20", "1,10", "tick,count", "0,0"),
+        read(new BufferedReader(new FileReader(output))));
+  }
+
+  @Test
+  public void testInstanceOutput() throws IOException {
+    List<File> files = new ArrayList<>();
+    for (File instance : new File("./test_data/for_testing_simphony_model").listFiles()) {
+      for (File file : instance.listFiles()) {
+        if (file.getName().startsWith("ModelOutput.")
+            && !file.getName().contains(BatchConstants.PARAM_MAP_SUFFIX)) {
+          files.add(file);
+        }
+      }
+    }
+    assertTrue(files.size() > 1);
+
+    List<String> expected = new ArrayList<>();
+    for (File file : files) {
+      List<String> lines = read(new BufferedReader(new FileReader(file)));
+      expected.addAll(lines.subList(1, lines.size()));
+    }
+
+    File output = new File(dir, "ModelOutput.txt");
+    new RunOrderedMerger(true).merge(files, output, false);
+    List<String> lines = read(new BufferedReader(new FileReader(output)));
+    lines = lines.subList(1, lines.size());
+    long last = 0;
+    for (String line : lines) {
+      long run = Long.parseLong(line.substring(0, line.indexOf(',')));
+      assertTrue(run >= last);
+      last = run;
+    }
+
+    Collections.sort(expected);
+    List<String> actual = new ArrayList<>(lines);
+    Collections.sort(actual);
+    assertEquals(expected, actual);
+  }
+}
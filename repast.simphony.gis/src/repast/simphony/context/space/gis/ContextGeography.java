@@ -1,13 +1,21 @@
 package repast.simphony.context.space.gis;
 
+import java.util.Collection;
+
+import repast.simphony.context.BatchContextListener;
 import repast.simphony.context.Context;
 import repast.simphony.context.ContextEvent;
-import repast.simphony.context.ContextListener;
 import repast.simphony.space.gis.DefaultGeography;
 import repast.simphony.space.projection.ProjectionEvent;
 
+/**
+ * A Geography that is a projection of a Context. Objects that are removed from
+ * the context in bulk are removed from the geography's spatial index in bulk.
+ * Objects that are added in bulk are located by the geography's GISAdder, and
+ * can then be located in bulk with {@link #moveAll(java.util.Map)}.
+ */
 public class ContextGeography<T> extends DefaultGeography<T> implements
-		ContextListener<T> {
+		BatchContextListener<T> {
 
 	public ContextGeography(String name) {
 		super(name);
@@ -35,6 +43,12 @@ public class ContextGeography<T> extends DefaultGeography<T> implements
 			addFromContext(evt.getTarget());
 		} else if (type == ContextEvent.REMOVED) {
 			remove(evt.getTarget());
+		} else if (type == ContextEvent.EventType.AGENTS_ADDED) {
+			for (T object : evt.getTargets()) {
+				addFromContext(object);
+			}
+		} else if (type == ContextEvent.EventType.AGENTS_REMOVED) {
+			removeAll(evt.getTargets());
 		} else if (type == ContextEvent.EventType.PROJECTION_ADDED
 				&& evt.getProjection().equals(this)) {
 			addFromContext(evt.getContext());
@@ -45,8 +59,6 @@ public class ContextGeography<T> extends DefaultGeography<T> implements
 	}
 
   void removeAll(Context<T> context) {
-    for (T object : context) {
-      remove(object);
-    }
+    removeAll((Collection<T>) context);
   }
 }
@@ -0,0 +1,123 @@
+package repast.simphony.query.space.gis;
+
+import javax.measure.unit.SI;
+import javax.measure.unit.Unit;
+
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+
+/**
+ * Approximates distances in meters near a location by treating degrees of
+ * longitude and latitude as fixed lengths, i.e. with a local equirectangular
+ * projection centered on the location's latitude. The lengths are those of the
+ * WGS84 ellipsoid at that latitude. The error is small for
+ * distances that are small relative to the earth, and grows with the distance
+ * and the latitude. In a CRS whose units are meters, the metric is exact.
+ */
+class EquirectangularMetric {
+
+  // WGS84 semi-major axis and squared eccentricity
+  private static final double A = 6378137.0;
+  private static final double E2 = 0.00669437999014;
+
+  // the minimum cos(latitude), so that the poles don't divide by 0
+  private static final double MIN_COS = 1E-9;
+
+  private double kx, ky;
+
+  private EquirectangularMetric(double kx, double ky) {
+    this.kx = kx;
+    this.ky = ky;
+  }
+
+  /**
+   * Creates a metric for distances near the specified location.
+   * 
+   * @param crs
+   *          the location's CRS
+   * @param units
+   *          the units of the CRS's first axis
+   * @param location
+   *          the location
+   * @return a metric for distances near the location, or null if the CRS is
+   *         neither in meters nor geographic.
+   */
+  static EquirectangularMetric create(CoordinateReferenceSystem crs, Unit units,
+      Geometry location) {
+    if (units.equals(SI.METER))
+      return new EquirectangularMetric(1, 1);
+    if (!(crs instanceof GeographicCRS))
+      return null;
+
+    Point centroid = location.getCentroid();
+    boolean latFirst = CRS.getAxisOrder(crs) == CRS.AxisOrder.NORTH_EAST;
+    double lat = Math.toRadians(latFirst ? centroid.getX() : centroid.getY());
+    // the meridian and prime vertical radii of curvature at the latitude
+    double sin = Math.sin(lat);
+    double w = Math.sqrt(1 - E2 * sin * sin);
+    double latMeters = Math.toRadians(A * (1 - E2) / (w * w * w));
+    double lonMeters = Math.toRadians(A / w) * Math.max(Math.cos(lat), MIN_COS);
+    return latFirst ? new EquirectangularMetric(latMeters, lonMeters)
+        : new EquirectangularMetric(lonMeters, latMeters);
+  }
+
+  /**
+   * Gets the envelope that contains everything within the specified distance
+   * of the specified envelope.
+   * 
+   * @param envelope
+   *          the envelope in the CRS's units
+   * @param distance
+   *          the distance in meters
+   * @return the expanded envelope in the CRS's units.
+   */
+  Envelope expand(Envelope envelope, double distance) {
+    Envelope expanded = new Envelope(envelope);
+    expanded.expandBy(distance / kx, distance / ky);
+    return expanded;
+  }
+
+  /**
+   * Converts the specified geometry into meters.
+   * 
+   * @param geom
+   *          the geometry in the CRS's units
+   * @return the geometry in meters.
+   */
+  Geometry toMeters(Geometry geom) {
+    if (kx == 1 && ky == 1)
+      return geom;
+    return AffineTransformation.scaleInstance(kx, ky).transform(geom);
+  }
+
+  /**
+   * Gets whether or not the specified geometry is within the specified
+   * distance of the source.
+   * 
+   * @param source
+   *          the source geometry in meters, as returned by
+   *          {@link #toMeters(Geometry)}
+   * @param geom
+   *          the geometry to test in the CRS's units
+   * @param distance
+   *          the distance in meters
+   * @return true if the geometry is within the distance of the source,
+   *         otherwise false.
+   */
+  boolean isWithinDistance(Geometry source, Geometry geom, double distance) {
+    if (source instanceof Point && geom instanceof Point) {
+      Point p1 = (Point) source;
+      Point p2 = (Point) geom;
+      double dx = p1.getX() - p2.getX() * kx;
+      double dy = p1.getY() - p2.getY() * ky;
+      return dx * dx + dy * dy <= distance * distance;
+    }
+    return source.isWithinDistance(toMeters(geom), distance);
+  }
+}
@@ -1,19 +1,29 @@
 package repast.simphony.query.space.gis;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
 
+import org.apache.commons.collections15.Predicate;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.operation.DefaultCoordinateOperationFactory;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.TransformException;
 
 import repast.simphony.query.Query;
+import repast.simphony.query.QueryUtils;
 import repast.simphony.space.gis.Geography;
 import repast.simphony.space.gis.UTMFinder;
+import repast.simphony.util.collections.FilteredIterator;
 import simphony.util.messages.MessageCenter;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -21,18 +31,34 @@ import com.vividsolutions.jts.geom.Geometry;
  * another item or a geometry.  The distance is either calculated from the
  * center of a point, or from the buffer zone which is created around the line
  * or polygon feature, see {@link com.vividsolutions.jts.geom.Geometry} .buffer() 
+ * <p>
+ * 
+ * An approximate query skips the buffer and the transforms to and from UTM.
+ * It finds the candidates with an envelope prefilter and then compares their
+ * distance from the source in meters, approximated with a local
+ * equirectangular projection. This is much faster, and accurate to within
+ * about half a percent for distances of up to a hundred kilometers away from
+ * the poles. In a geography whose units are meters, the approximate query is
+ * exact. {@link #queryAll(Geography, double, Iterable, boolean)} answers the
+ * query for many source objects in one pass.
  *
  * @author Nick Collier
  * @author Eric Tatara
  */
 public class GeographyWithin<T> implements Query<T> {
 
-  private static DefaultCoordinateOperationFactory cFactory = new DefaultCoordinateOperationFactory();
   private static final MessageCenter center = MessageCenter.getMessageCenter(GeographyWithin.class);
 
   private IntersectsQuery query;
   private Object sourceObject;
 
+  // the approximate query
+  private Geography geography;
+  private EquirectangularMetric metric;
+  private Geometry source;
+  private Envelope envelope;
+  private double distance;
+
 
   /**
    * Creates GeographyWithinQuery that returns items in a specified geography
@@ -88,6 +114,59 @@ public class GeographyWithin<T> implements Query<T> {
     init(geography, distance, location);
   }
 
+  /**
+   * Creates GeographyWithinQuery that returns items in a specified geography
+   * that are within the specified distance from the source object.
+   *
+   * @param geography the containing geography
+   * @param distance the distance in METERS
+   * @param sourceObject the object whose neighbors we want
+   * @param approximate whether or not to approximate the distance rather
+   *        than create a buffer in the UTM zone of the source object
+   */
+  public GeographyWithin(Geography geography, double distance, Object sourceObject,
+      boolean approximate) {
+    this.sourceObject = sourceObject;
+    Geometry geom = geography.getGeometry(sourceObject);
+    if (approximate && geom != null) {
+      initApproximate(geography, distance, geom);
+    } else {
+      init(geography, distance, geom);
+    }
+  }
+
+  /**
+   * Creates GeographyWithinQuery that returns items in a specified geography
+   * that are within the specified distance from the specified location.
+   *
+   * @param geography the containing geography
+   * @param distance the distance in METERS
+   * @param location the source location whose surrounding neighbors we want
+   * @param approximate whether or not to approximate the distance rather
+   *        than create a buffer in the UTM zone of the location
+   */
+  public GeographyWithin(Geography geography, double distance, Geometry location,
+      boolean approximate) {
+    if (approximate && location != null) {
+      initApproximate(geography, distance, location);
+    } else {
+      init(geography, distance, location);
+    }
+  }
+
+  private void initApproximate(Geography geography, double distance, Geometry geom) {
+    metric = EquirectangularMetric.create(geography.getCRS(), geography.getUnits(0), geom);
+    if (metric == null) {
+      // neither meters nor lon, lat so use the buffer
+      init(geography, distance, geom);
+      return;
+    }
+    this.geography = geography;
+    this.distance = distance;
+    source = metric.toMeters(geom);
+    envelope = metric.expand(geom.getEnvelopeInternal(), distance);
+  }
+
   private void init(Geography geography, double distance, Geometry geom) {
     // don't convert if we are already in a meter based crs
     boolean convert = !geography.getUnits(0).equals(SI.METER);
@@ -101,14 +180,14 @@ public class GeographyWithin<T> implements Query<T> {
       // convert p to UTM
       if (convert) {
         utm = UTMFinder.getUTMFor(geom, crs);
-        tempGeom = JTS.transform(geom, cFactory.createOperation(crs, utm).getMathTransform());
+        tempGeom = JTS.transform(geom, UTMFinder.getTransform(crs, utm));
       }
 
       buffer = tempGeom.buffer(distance);
 
       // convert buffer back to geography's crs.
       if (convert) {
-        buffer = JTS.transform(buffer, cFactory.createOperation(utm, crs).getMathTransform());
+        buffer = JTS.transform(buffer, UTMFinder.getTransform(utm, crs));
       }
     } catch (FactoryException e) {
       center.error("Error during crs transform", e);
@@ -126,7 +205,9 @@ public class GeographyWithin<T> implements Query<T> {
    * @return an iterable over the objects that are the result of the query.
    */
   public Iterable<T> query() {
-    return query.query();
+    if (metric == null) return query.query();
+    Iterable<T> potential = geography.queryInexact(envelope);
+    return new FilteredIterator<T>(potential.iterator(), new WithinPredicate());
   }
 
   /**
@@ -139,6 +220,99 @@ public class GeographyWithin<T> implements Query<T> {
    *         and are in the passed in iterable.
    */
   public Iterable<T> query(Iterable<T> set) {
-    return query.query(set);
+    if (metric == null) return query.query(set);
+    return new FilteredIterator<T>(query().iterator(), QueryUtils.createContains(set));
+  }
+
+  private class WithinPredicate implements Predicate<T> {
+
+    public boolean evaluate(T o) {
+      if (o.equals(sourceObject)) return false;
+      Geometry other = geography.getGeometry(o);
+      return other != null && metric.isWithinDistance(source, other, distance);
+    }
+  }
+
+  /**
+   * Finds the objects that are within the specified distance of each of the
+   * specified source objects. This is equivalent to a GeographyWithin query
+   * for each source object, but the work is shared between the sources. When
+   * the distance isn't approximated, each object's geometry is transformed
+   * into a UTM zone at most once, however many sources it's near, and the
+   * distance is measured exactly in that zone rather than against a buffer.
+   *
+   * @param geography the containing geography
+   * @param distance the distance in METERS
+   * @param sources the objects whose neighbors we want
+   * @param approximate whether or not to approximate the distance
+   * @return a map of each source object to the objects within the distance
+   *         of it, in the iteration order of the sources.
+   */
+  public static <T> Map<T, List<T>> queryAll(Geography<T> geography, double distance,
+      Iterable<? extends T> sources, boolean approximate) {
+    Map<T, List<T>> results = new LinkedHashMap<T, List<T>>();
+    CoordinateReferenceSystem crs = geography.getCRS();
+    Unit units = geography.getUnits(0);
+    // the geometries transformed into each UTM zone
+    Map<Short, Map<T, Geometry>> zones = new HashMap<Short, Map<T, Geometry>>();
+
+    try {
+      for (T sourceObject : sources) {
+        List<T> within = new ArrayList<T>();
+        results.put(sourceObject, within);
+        Geometry geom = geography.getGeometry(sourceObject);
+        if (geom == null) continue;
+
+        EquirectangularMetric metric = approximate || units.equals(SI.METER) ?
+            EquirectangularMetric.create(crs, units, geom) : null;
+        if (metric != null) {
+          Geometry source = metric.toMeters(geom);
+          for (T o : geography.queryInexact(metric.expand(geom.getEnvelopeInternal(), distance))) {
+            if (o.equals(sourceObject)) continue;
+            Geometry other = geography.getGeometry(o);
+            if (other != null && metric.isWithinDistance(source, other, distance)) within.add(o);
+          }
+        } else {
+          short zone = UTMFinder.getZoneFor(geom, crs);
+          CoordinateReferenceSystem utm = UTMFinder.getUTMfor(zone);
+          MathTransform toUTM = UTMFinder.getTransform(crs, utm);
+          Map<T, Geometry> projected = zones.get(zone);
+          if (projected == null) {
+            projected = new HashMap<T, Geometry>();
+            zones.put(zone, projected);
+          }
+
+          Geometry source = project(sourceObject, geom, toUTM, projected);
+          Envelope utmEnvelope = new Envelope(source.getEnvelopeInternal());
+          utmEnvelope.expandBy(distance);
+          // densify the envelope's edges, as they curve in the geography's crs
+          Envelope envelope = JTS.transform(utmEnvelope, null,
+              UTMFinder.getTransform(utm, crs), 8);
+          for (T o : geography.queryInexact(envelope)) {
+            if (o.equals(sourceObject)) continue;
+            Geometry other = geography.getGeometry(o);
+            if (other != null
+                && source.isWithinDistance(project(o, other, toUTM, projected), distance)) {
+              within.add(o);
+            }
+          }
+        }
+      }
+    } catch (FactoryException e) {
+      center.error("Error during crs transform", e);
+    } catch (TransformException e) {
+      center.error("Error during crs transform", e);
+    }
+    return results;
+  }
+
+  private static <T> Geometry project(T object, Geometry geom, MathTransform transform,
+      Map<T, Geometry> projected) throws TransformException {
+    Geometry result = projected.get(object);
+    if (result == null) {
+      result = JTS.transform(geom, transform);
+      projected.put(object, result);
+    }
+    return result;
   }
 }
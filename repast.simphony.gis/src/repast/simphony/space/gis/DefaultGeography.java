@@ -8,6 +8,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,8 +38,6 @@ import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.index.ItemVisitor;
-import com.vividsolutions.jts.index.SpatialIndex;
-import com.vividsolutions.jts.index.quadtree.Quadtree;
 
 import repast.simphony.query.space.projection.Within;
 import repast.simphony.space.projection.DefaultProjection;
@@ -69,7 +68,7 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
 
   private Map<T, GeomData> geomMap = new HashMap<T, GeomData>();
 
-  private SpatialIndex index = new Quadtree();
+  private GeographyIndex<T> index = new STRtreeGeographyIndex<T>();
 
   private CoordinateReferenceSystem crs;
 
@@ -168,20 +167,90 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    *          the location to move the object to
    */
   public void move(T object, Geometry geom) {
-    Layer<T> layer = layerMap.get(layerNameFor(object));
-    if (layer == null)
-      layer = createLayer(object);
-
+    Layer<T> layer = layerFor(object);
     if (geom == null) {
-      layer.getAgentSet().remove(object);
-      GeomData data = geomMap.remove(object);
-      
-      if (data != null){
+      GeomData data = clearLocation(layer, object);
+      if (data != null) {
         index.remove(data.envelope, object);
       }
       return;
     }
 
+    Envelope oldEnvelope = setLocation(layer, object, geom);
+    if (oldEnvelope != null) {
+      index.remove(oldEnvelope, object);
+    }
+    index.insert(geomMap.get(object).envelope, object);
+
+    this.fireProjectionEvent(new ProjectionEvent(this, object, Type.OBJECT_MOVED));
+  }
+
+  /**
+   * Moves each of the specified objects to its specified location. This is
+   * equivalent to calling {@link #move(Object, Geometry)} for each object, but
+   * updates the spatial index in bulk, and so is much faster for large numbers
+   * of objects, e.g. the features of a shapefile. Only the objects that had no
+   * location are passed to the index's bulk insert. The objects that already
+   * had one are moving agents, and are reinserted one at a time, as move does.
+   * The objects' OBJECT_MOVED events are fired once they have all been moved,
+   * in the iteration order of the map.
+   * 
+   * @param locations
+   *          the objects to move and the locations to move them to
+   */
+  public void moveAll(Map<? extends T, ? extends Geometry> locations) {
+    Map<T, Envelope> removed = new HashMap<T, Envelope>();
+    Map<T, Envelope> added = new HashMap<T, Envelope>();
+    Map<T, Envelope> moved = new LinkedHashMap<T, Envelope>();
+    for (Map.Entry<? extends T, ? extends Geometry> entry : locations.entrySet()) {
+      T object = entry.getKey();
+      Layer<T> layer = layerFor(object);
+      if (entry.getValue() == null) {
+        GeomData data = clearLocation(layer, object);
+        if (data != null) {
+          removed.put(object, data.envelope);
+        }
+      } else {
+        Envelope oldEnvelope = setLocation(layer, object, entry.getValue());
+        Envelope envelope = geomMap.get(object).envelope;
+        if (oldEnvelope != null) {
+          removed.put(object, oldEnvelope);
+        } else {
+          added.put(object, envelope);
+        }
+        moved.put(object, envelope);
+      }
+    }
+
+    index.removeAll(removed);
+    index.insertAll(added);
+    for (Map.Entry<T, Envelope> entry : moved.entrySet()) {
+      if (!added.containsKey(entry.getKey())) {
+        index.insert(entry.getValue(), entry.getKey());
+      }
+    }
+    for (T object : moved.keySet()) {
+      this.fireProjectionEvent(new ProjectionEvent(this, object, Type.OBJECT_MOVED));
+    }
+  }
+
+  private Layer<T> layerFor(T object) {
+    Layer<T> layer = layerMap.get(layerNameFor(object));
+    if (layer == null)
+      layer = createLayer(object);
+    return layer;
+  }
+
+  // removes the object's location, but not its index entry, returning the
+  // removed location or null if it didn't have one.
+  private GeomData clearLocation(Layer<T> layer, T object) {
+    layer.getAgentSet().remove(object);
+    return geomMap.remove(object);
+  }
+
+  // sets the object's location, but not its index entry, returning the
+  // envelope of its previous location or null if it didn't have one.
+  private Envelope setLocation(Layer<T> layer, T object, Geometry geom) {
     if (layer.getGeomType() == null) {
       layer.setGeomType(geom.getClass());
     } else if (!layer.getGeomType().isAssignableFrom(geom.getClass())) {
@@ -189,9 +258,10 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
           "Geometry type must match for layer"));
     }
 
+    Envelope oldEnvelope = null;
     GeomData geomData = geomMap.get(object);
     if (geomData != null) {
-      index.remove(geomData.envelope, object);
+      oldEnvelope = geomData.envelope;
     } else {
       geomData = new GeomData();
       geomMap.put(object, geomData);
@@ -201,13 +271,39 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
     geomData.envelope = new Envelope(geom.getEnvelopeInternal());
     geomData.geom = geom;
 
-    index.insert(geomData.envelope, object);
-
     addedObjects.remove(object);
     if (!layer.getAgentSet().contains(object))
       layer.getAgentSet().add(object);
+    return oldEnvelope;
+  }
 
-    this.fireProjectionEvent(new ProjectionEvent(this, object, Type.OBJECT_MOVED));
+  /**
+   * Gets the spatial index that this geography uses to find the objects in an
+   * envelope.
+   * 
+   * @return the spatial index that this geography uses.
+   */
+  public GeographyIndex<T> getIndex() {
+    return index;
+  }
+
+  /**
+   * Sets the spatial index that this geography uses to find the objects in an
+   * envelope. The objects that are currently located in this geography are
+   * inserted into the new index. By default, a DefaultGeography uses an
+   * {@link STRtreeGeographyIndex}. A {@link QuadtreeGeographyIndex} may be
+   * faster when all the objects move frequently.
+   * 
+   * @param index
+   *          the new spatial index
+   */
+  public void setIndex(GeographyIndex<T> index) {
+    Map<T, Envelope> objects = new HashMap<T, Envelope>();
+    for (Entry<T, GeomData> entry : geomMap.entrySet()) {
+      objects.put(entry.getKey(), entry.getValue().envelope);
+    }
+    index.insertAll(objects);
+    this.index = index;
   }
 
   /**
@@ -362,15 +458,25 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
     }
     try {
       MathTransform transform = CRS.findMathTransform(this.crs, crs);
+      // transform everything before updating so that a failed transform
+      // leaves the locations and the index as they were
+      Map<T, Geometry> geoms = new HashMap<T, Geometry>();
+      for (Entry<T, GeomData> entry : geomMap.entrySet()) {
+        geoms.put(entry.getKey(), JTS.transform(entry.getValue().geom, transform));
+      }
+
+      Map<T, Envelope> removed = new HashMap<T, Envelope>();
+      Map<T, Envelope> added = new HashMap<T, Envelope>();
       for (Entry<T, GeomData> entry : geomMap.entrySet()) {
         GeomData gd = entry.getValue();
         T key = entry.getKey();
-        index.remove(gd.envelope, key);
-        gd.geom = JTS.transform(gd.geom, transform);
-        Envelope envelope = new Envelope(gd.geom.getEnvelopeInternal());
-        index.insert(envelope, key);
-        gd.envelope = envelope;
+        removed.put(key, gd.envelope);
+        gd.geom = geoms.get(key);
+        gd.envelope = new Envelope(gd.geom.getEnvelopeInternal());
+        added.put(key, gd.envelope);
       }
+      index.removeAll(removed);
+      index.insertAll(added);
       this.crs = crs;
     } catch (FactoryException e) {
       msg.error("Error setting CRS", e);
@@ -525,6 +631,31 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
     fireProjectionEvent(new ProjectionEvent(this, object, ProjectionEvent.Type.OBJECT_REMOVED));
   }
 
+  /**
+   * Removes all the specified objects from this geography, updating the
+   * spatial index in bulk.
+   * 
+   * @param objects
+   *          the objects to remove
+   */
+  protected void removeAll(Collection<? extends T> objects) {
+    Map<T, Envelope> removed = new HashMap<T, Envelope>();
+    for (T object : objects) {
+      GeomData gd = geomMap.remove(object);
+      if (gd != null) {
+        removed.put(object, gd.envelope);
+        Layer<T> layer = layerMap.get(layerNameFor(object));
+        layer.getAgentSet().remove(object);
+      } else {
+        addedObjects.remove(object);
+      }
+    }
+    index.removeAll(removed);
+    for (T object : objects) {
+      fireProjectionEvent(new ProjectionEvent(this, object, ProjectionEvent.Type.OBJECT_REMOVED));
+    }
+  }
+
   /**
    * Gets the current GISAdder that determines how objects are added to the
    * geometry when added to the containing context.
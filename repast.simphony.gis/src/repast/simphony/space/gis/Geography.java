@@ -4,6 +4,7 @@
 package repast.simphony.space.gis;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 import javax.measure.unit.Unit;
@@ -44,6 +45,16 @@ public interface Geography<T> extends Projection<T>{
    */
   void move(T object, Geometry geom);
 
+  /**
+   * Moves each of the specified objects to its specified location, as if
+   * by calling {@link #move(Object, Geometry)} for each object. Implementations
+   * may update their spatial index in bulk, so this should be preferred when
+   * locating many objects at once, e.g. when loading a layer.
+   *
+   * @param locations the objects to move and the locations to move them to
+   */
+  void moveAll(Map<? extends T, ? extends Geometry> locations);
+
   /**
    * Gets the layer for the specified type.
    *
@@ -0,0 +1,75 @@
+package repast.simphony.space.gis;
+
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.ItemVisitor;
+
+/**
+ * A spatial index of the objects in a {@link DefaultGeography}, keyed by the
+ * envelopes of their geometries.
+ * 
+ * @param <T>
+ *          the type of object in the index
+ */
+public interface GeographyIndex<T> {
+
+  /**
+   * Inserts an object with the specified envelope.
+   * 
+   * @param envelope
+   *          the object's envelope
+   * @param object
+   *          the object to insert
+   */
+  void insert(Envelope envelope, T object);
+
+  /**
+   * Inserts all the specified objects, none of which are already in the
+   * index. The index may bulk load these, as they are typically the objects
+   * of a layer loaded all at once.
+   * 
+   * @param objects
+   *          the objects to insert and their envelopes
+   */
+  void insertAll(Map<T, Envelope> objects);
+
+  /**
+   * Removes the object with the specified envelope.
+   * 
+   * @param envelope
+   *          the envelope the object was inserted with
+   * @param object
+   *          the object to remove
+   * @return true if the object was removed, otherwise false.
+   */
+  boolean remove(Envelope envelope, T object);
+
+  /**
+   * Removes all the specified objects.
+   * 
+   * @param objects
+   *          the objects to remove and the envelopes they were inserted with
+   */
+  void removeAll(Map<T, Envelope> objects);
+
+  /**
+   * Visits the objects whose envelopes MAY intersect the specified envelope.
+   * 
+   * @param envelope
+   *          the envelope to query for
+   * @param visitor
+   *          the visitor to visit the objects with
+   */
+  void query(Envelope envelope, ItemVisitor visitor);
+
+  /**
+   * Gets the objects whose envelopes MAY intersect the specified envelope.
+   * 
+   * @param envelope
+   *          the envelope to query for
+   * @return the objects whose envelopes MAY intersect the specified envelope.
+   */
+  List<T> query(Envelope envelope);
+}
@@ -0,0 +1,49 @@
+package repast.simphony.space.gis;
+
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.ItemVisitor;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+
+/**
+ * A GeographyIndex that keeps all its objects in a JTS Quadtree. The quadtree
+ * is updated one object at a time, which suits objects that move.
+ * 
+ * @param <T>
+ *          the type of object in the index
+ */
+public class QuadtreeGeographyIndex<T> implements GeographyIndex<T> {
+
+  private Quadtree tree = new Quadtree();
+
+  public void insert(Envelope envelope, T object) {
+    tree.insert(envelope, object);
+  }
+
+  public void insertAll(Map<T, Envelope> objects) {
+    for (Map.Entry<T, Envelope> entry : objects.entrySet()) {
+      tree.insert(entry.getValue(), entry.getKey());
+    }
+  }
+
+  public boolean remove(Envelope envelope, T object) {
+    return tree.remove(envelope, object);
+  }
+
+  public void removeAll(Map<T, Envelope> objects) {
+    for (Map.Entry<T, Envelope> entry : objects.entrySet()) {
+      tree.remove(entry.getValue(), entry.getKey());
+    }
+  }
+
+  public void query(Envelope envelope, ItemVisitor visitor) {
+    tree.query(envelope, visitor);
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<T> query(Envelope envelope) {
+    return tree.query(envelope);
+  }
+}
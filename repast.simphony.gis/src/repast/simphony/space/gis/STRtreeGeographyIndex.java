@@ -0,0 +1,146 @@
+package repast.simphony.space.gis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.ItemVisitor;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * A GeographyIndex that bulk loads large sets of objects into a packed
+ * STRtree, and keeps the other objects in a Quadtree. Static layers, e.g. the
+ * features of a shapefile, are typically added all at once and then not
+ * moved, and so are queried from the STRtree, while agents that move are
+ * updated in the Quadtree. An object in the STRtree that moves is removed from
+ * it and, from then on, kept in the Quadtree. {@link DefaultGeography#moveAll}
+ * only bulk loads the objects that had no location, so moving many agents at
+ * once doesn't put them in the STRtree.
+ * <p>
+ * 
+ * An STRtree can't be added to once it's built, so each bulk load rebuilds
+ * the STRtree with the objects that are already in it and the new objects.
+ * The STRtree is also rebuilt when a large part of it is removed at once.
+ * 
+ * @param <T>
+ *          the type of object in the index
+ */
+public class STRtreeGeographyIndex<T> implements GeographyIndex<T> {
+
+  /**
+   * The default minimum number of objects that are bulk loaded into the
+   * STRtree.
+   */
+  public static final int DEFAULT_BULK_LOAD_SIZE = 1024;
+
+  private static final int NODE_CAPACITY = 10;
+
+  private int bulkLoadSize;
+  private STRtree staticTree;
+  private Map<T, Envelope> staticObjects = new HashMap<T, Envelope>();
+  private Quadtree dynamicTree = new Quadtree();
+
+  /**
+   * Creates an STRtreeGeographyIndex that bulk loads sets of at least
+   * {@link #DEFAULT_BULK_LOAD_SIZE} objects into its STRtree.
+   */
+  public STRtreeGeographyIndex() {
+    this(DEFAULT_BULK_LOAD_SIZE);
+  }
+
+  /**
+   * Creates an STRtreeGeographyIndex that bulk loads sets of at least the
+   * specified number of objects into its STRtree. Smaller sets are inserted
+   * into the Quadtree.
+   * 
+   * @param bulkLoadSize
+   *          the minimum number of objects that are bulk loaded
+   */
+  public STRtreeGeographyIndex(int bulkLoadSize) {
+    this.bulkLoadSize = bulkLoadSize;
+  }
+
+  private void build() {
+    if (staticObjects.isEmpty()) {
+      staticTree = null;
+      return;
+    }
+    staticTree = new STRtree(NODE_CAPACITY);
+    for (Map.Entry<T, Envelope> entry : staticObjects.entrySet()) {
+      staticTree.insert(entry.getValue(), entry.getKey());
+    }
+    staticTree.build();
+  }
+
+  public void insert(Envelope envelope, T object) {
+    dynamicTree.insert(envelope, object);
+  }
+
+  public void insertAll(Map<T, Envelope> objects) {
+    if (objects.size() < bulkLoadSize) {
+      for (Map.Entry<T, Envelope> entry : objects.entrySet()) {
+        dynamicTree.insert(entry.getValue(), entry.getKey());
+      }
+    } else {
+      staticObjects.putAll(objects);
+      build();
+    }
+  }
+
+  public boolean remove(Envelope envelope, T object) {
+    Envelope staticEnvelope = staticObjects.remove(object);
+    if (staticEnvelope != null) {
+      staticTree.remove(staticEnvelope, object);
+      return true;
+    }
+    return dynamicTree.remove(envelope, object);
+  }
+
+  public void removeAll(Map<T, Envelope> objects) {
+    int staticCount = 0;
+    for (T object : objects.keySet()) {
+      if (staticObjects.containsKey(object))
+        staticCount++;
+    }
+
+    if (staticCount > 0 && staticCount >= staticObjects.size() / 4) {
+      // cheaper to rebuild than to remove from the tree one at a time
+      for (Map.Entry<T, Envelope> entry : objects.entrySet()) {
+        if (staticObjects.remove(entry.getKey()) == null)
+          dynamicTree.remove(entry.getValue(), entry.getKey());
+      }
+      build();
+    } else {
+      for (Map.Entry<T, Envelope> entry : objects.entrySet()) {
+        remove(entry.getValue(), entry.getKey());
+      }
+    }
+  }
+
+  public void query(Envelope envelope, ItemVisitor visitor) {
+    if (staticTree != null)
+      staticTree.query(envelope, visitor);
+    dynamicTree.query(envelope, visitor);
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<T> query(Envelope envelope) {
+    if (staticTree == null)
+      return dynamicTree.query(envelope);
+    List<T> list = new ArrayList<T>(staticTree.query(envelope));
+    list.addAll(dynamicTree.query(envelope));
+    return list;
+  }
+
+  /**
+   * Gets the number of objects in the STRtree.
+   * 
+   * @return the number of objects in the STRtree.
+   */
+  public int getStaticSize() {
+    return staticObjects.size();
+  }
+}
@@ -12,6 +12,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -158,10 +159,43 @@ public class ShapefileLoader<T> {
   /**
    * Creates all the agents for the shapefile features,
    * setting each agent's properteis to the value of a
-   * feature's relevant attributes.
+   * feature's relevant attributes. The agents are added to the
+   * context with a single addAll, and then located in the geography
+   * with a single moveAll, so that the geography can bulk load its
+   * spatial index.
    */
   public void load() {
-    while (hasNext()) next();
+    List<T> agents = new ArrayList<T>();
+    Map<T, Geometry> locations = new LinkedHashMap<T, Geometry>();
+    while (hasNext()) {
+      T obj = null;
+      try {
+        obj = (T) agentClass.newInstance();
+      } catch (InstantiationException e) {
+        msg.error("Error creating agent instance from class", e);
+        break;
+      } catch (IllegalAccessException e) {
+        msg.error("Error creating agent instance from class", e);
+        break;
+      }
+
+      try {
+        SimpleFeature feature = featureIterator.next();
+        obj = fillAgent(feature, obj);
+        if (!context.contains(obj)) agents.add(obj);
+        if (geography != null) locations.put(obj,
+            JTS.transform(((Geometry)feature.getDefaultGeometry()), transform));
+      } catch (IllegalAccessException e) {
+        msg.error("Error setting agent property from feature attribute", e);
+      } catch (InvocationTargetException e) {
+        msg.error("Error setting agent property from feature attribute", e);
+      } catch (TransformException e) {
+        msg.error("Error transforming feature geometry to geography's CRS", e);
+      }
+    }
+
+    context.addAll(agents);
+    if (geography != null) geography.moveAll(locations);
   }
 
   /**
@@ -1,7 +1,10 @@
 package repast.simphony.space.gis;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.ReferencingFactoryFinder;
@@ -19,17 +22,20 @@ import org.opengis.referencing.crs.ProjectedCRS;
 import org.opengis.referencing.cs.CartesianCS;
 import org.opengis.referencing.operation.Conversion;
 import org.opengis.referencing.operation.CoordinateOperation;
-import org.opengis.referencing.operation.CoordinateOperationFactory;
+import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.MathTransformFactory;
 import org.opengis.referencing.operation.OperationMethod;
 import org.opengis.referencing.operation.TransformException;
 
 import simphony.util.messages.MessageCenter;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
- * Finds the UTM CRS appropriate to a specified lon, lat location.
+ * Finds the UTM CRS appropriate to a specified lon, lat location. The UTM
+ * CRSs and the transforms between them and other CRSs are cached, as
+ * creating them is expensive relative to transforming a geometry.
  *
  * @author Michelle Kelherer
  */
@@ -40,6 +46,12 @@ public class UTMFinder {
   private static DefaultCoordinateOperationFactory cFactory = new DefaultCoordinateOperationFactory();
   private static CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
 
+  private static Map<Short, CoordinateReferenceSystem> utmCache =
+      new ConcurrentHashMap<Short, CoordinateReferenceSystem>();
+  // keyed by the (source, target) list
+  private static Map<List<CoordinateReferenceSystem>, MathTransform> transformCache =
+      new ConcurrentHashMap<List<CoordinateReferenceSystem>, MathTransform>();
+
   /**
    * Determine the zone for the given lat/lon
    *
@@ -68,10 +80,23 @@ public class UTMFinder {
    * @return the appropriate UTM.
    */
   public static CoordinateReferenceSystem getUTMFor(Geometry geom, CoordinateReferenceSystem crs) {
+    return getUTMfor(getZoneFor(geom, crs));
+  }
+
+  /**
+   * Gets the UTM zone for the specified geometry in the specified
+   * CoordinateReferenceSystem. The zone will be for the coordinate that is
+   * returned by geom.getCoordinate().
+   *
+   * @param geom the geometry
+   * @param crs the geometry's coordinate reference system
+   * @return the UTM zone for the specified geometry.
+   */
+  public static short getZoneFor(Geometry geom, CoordinateReferenceSystem crs) {
+    Coordinate coord = geom.getCoordinate();
     try {
       if (!crs.equals(wgs84)) {
-        CoordinateOperation op = cFactory.createOperation(crs, wgs84);
-        geom = JTS.transform(geom, op.getMathTransform());
+        coord = JTS.transform(coord, new Coordinate(), getTransform(crs, wgs84));
       }
     } catch (FactoryException e) {
       center.error("Error during crs conversion", e);
@@ -79,7 +104,28 @@ public class UTMFinder {
       center.error("Error during geometry transform", e);
     }
     // default wgs84 (lon, lat)
-    return getUTMfor(geom.getCoordinate().y, geom.getCoordinate().x);
+    return determineZone(coord.y, coord.x);
+  }
+
+  /**
+   * Gets the transform from the source CRS to the target CRS. The transform
+   * is created once for each pair of CRSs and then cached.
+   *
+   * @param source the source CRS
+   * @param target the target CRS
+   * @return the transform from the source CRS to the target CRS.
+   * @throws FactoryException if the transform can't be created
+   */
+  public static MathTransform getTransform(CoordinateReferenceSystem source,
+      CoordinateReferenceSystem target) throws FactoryException {
+    List<CoordinateReferenceSystem> key = Arrays.asList(source, target);
+    MathTransform transform = transformCache.get(key);
+    if (transform == null) {
+      CoordinateOperation op = cFactory.createOperation(source, target);
+      transform = op.getMathTransform();
+      transformCache.put(key, transform);
+    }
+    return transform;
   }
 
   /**
@@ -94,7 +140,23 @@ public class UTMFinder {
   }
 
 
+  /**
+   * Gets the UTM CRS for the specified zone. Negative zones are in the
+   * southern hemisphere.
+   *
+   * @param zone the zone
+   * @return the UTM CRS for the specified zone.
+   */
   public static CoordinateReferenceSystem getUTMfor(short zone) {
+    CoordinateReferenceSystem utm = utmCache.get(zone);
+    if (utm == null) {
+      utm = createUTM(zone);
+      if (utm != null) utmCache.put(zone, utm);
+    }
+    return utm;
+  }
+
+  private static CoordinateReferenceSystem createUTM(short zone) {
     GeographicCRS geoCRS = DefaultGeographicCRS.WGS84;
     MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
     CRSFactory crsFactory = ReferencingFactoryFinder.getCRSFactory(null);
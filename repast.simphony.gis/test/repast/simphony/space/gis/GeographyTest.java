@@ -29,8 +29,13 @@ import repast.simphony.space.projection.ProjectionEvent;
 import repast.simphony.space.projection.ProjectionListener;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class GeographyTest extends TestCase {
@@ -374,6 +379,39 @@ public class GeographyTest extends TestCase {
     assertEquals(0, expected.size());
   }
 
+  public void testApproximateWithinDistance() {
+    GeometryFactory fac = new GeometryFactory();
+    Shed billings = new Shed("Billings");
+    geography.move(billings, fac.createPoint(new Coordinate(-108.5333, 45.8)));
+    Shed kalispell = new Shed("Kalispell");
+    geography.move(kalispell, fac.createPoint(new Coordinate(-114.26667, 48.3)));
+    Shed bozeman = new Shed("bozeman");
+    geography.move(bozeman, fac.createPoint(new Coordinate(-111.15, 45.78333)));
+
+    // ~203K from billings to bozeman
+    GeographyWithin within = new GeographyWithin(geography, 220 * 1000, billings, true);
+    assertEquals(new HashSet<Object>(Arrays.asList(bozeman)), toSet(within.query()));
+    within = new GeographyWithin(geography, 190 * 1000, billings, true);
+    assertEquals(0, toSet(within.query()).size());
+
+    within = new GeographyWithin(geography, 1000, geography.getGeometry(billings), true);
+    assertEquals(new HashSet<Object>(Arrays.asList(billings)), toSet(within.query()));
+
+    List<Object> sources = Arrays.<Object>asList(billings, kalispell, bozeman);
+    for (boolean approximate : new boolean[] { true, false }) {
+      Map<Object, List<Object>> results = GeographyWithin.queryAll(geography, 220 * 1000,
+          sources, approximate);
+      assertEquals(sources, new ArrayList<Object>(results.keySet()));
+      assertEquals(Arrays.asList(bozeman), results.get(billings));
+      assertEquals(0, results.get(kalispell).size());
+      assertEquals(Arrays.asList(billings), results.get(bozeman));
+
+      results = GeographyWithin.queryAll(geography, 520 * 1000, sources, approximate);
+      assertEquals(new HashSet<Object>(Arrays.asList(billings, bozeman)),
+          toSet(results.get(kalispell)));
+    }
+  }
+
   public void testIntersectsQuery() {
     GeometryFactory fac = new GeometryFactory();
     int i = 0;
@@ -574,4 +612,102 @@ public class GeographyTest extends TestCase {
     assertEquals(car, listener.movedObj);
     assertEquals(geography, listener.proj);
   }
+
+  private Set<Object> toSet(Iterable<?> iter) {
+    Set<Object> set = new HashSet<Object>();
+    for (Object obj : iter) {
+      set.add(obj);
+    }
+    return set;
+  }
+
+  public void testMoveAll() {
+    DefaultGeography<Object> geog = (DefaultGeography<Object>) geography;
+    STRtreeGeographyIndex<Object> index = new STRtreeGeographyIndex<Object>(5);
+    geog.setIndex(index);
+    PListener listener = new PListener();
+    geography.addProjectionListener(listener);
+
+    GeometryFactory fac = new GeometryFactory();
+    Map<Object, Geometry> locations = new LinkedHashMap<Object, Geometry>();
+    for (int i = 0; i < 10; i++) {
+      locations.put(houses[i], fac.createPoint(new Coordinate(i, i)));
+    }
+    geography.move(cars[0], fac.createPoint(new Coordinate(2.5, 2.5)));
+    geography.moveAll(locations);
+    assertEquals(houses[9], listener.movedObj);
+    assertEquals(10, index.getStaticSize());
+    assertEquals(11, geog.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(locations.get(houses[i]), geography.getGeometry(houses[i]));
+    }
+
+    Envelope envelope = new Envelope(1.5, 4.5, 1.5, 4.5);
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[2], houses[3], houses[4], cars[0])),
+        toSet(geography.getObjectsWithin(envelope)));
+
+    // moving a bulk loaded object takes it out of the STRtree
+    geography.move(houses[3], fac.createPoint(new Coordinate(20, 20)));
+    assertEquals(9, index.getStaticSize());
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[2], houses[4], cars[0])),
+        toSet(geography.getObjectsWithin(envelope)));
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[3])),
+        toSet(geography.getObjectsWithin(new Envelope(19, 21, 19, 21))));
+
+    // relocating bulk loaded objects in bulk takes them out of the STRtree,
+    // rather than loading them into it again as static objects
+    locations.clear();
+    for (int i = 5; i < 10; i++) {
+      locations.put(houses[i], fac.createPoint(new Coordinate(i + 0.5, i + 0.5)));
+    }
+    geography.moveAll(locations);
+    assertEquals(houses[9], listener.movedObj);
+    assertEquals(4, index.getStaticSize());
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[5], houses[6])),
+        toSet(geography.getObjectsWithin(new Envelope(5, 7, 5, 7))));
+
+    // the same results with a quadtree
+    geog.setIndex(new QuadtreeGeographyIndex<Object>());
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[2], houses[4], cars[0])),
+        toSet(geography.getObjectsWithin(envelope)));
+
+    locations.clear();
+    locations.put(houses[2], null);
+    geography.moveAll(locations);
+    assertNull(geography.getGeometry(houses[2]));
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[4], cars[0])),
+        toSet(geography.getObjectsWithin(envelope)));
+  }
+
+  public void testBulkRemove() {
+    DefaultGeography<Object> geog = (DefaultGeography<Object>) geography;
+    STRtreeGeographyIndex<Object> index = new STRtreeGeographyIndex<Object>(5);
+    geog.setIndex(index);
+    GeometryFactory fac = new GeometryFactory();
+    Map<Object, Geometry> locations = new LinkedHashMap<Object, Geometry>();
+    for (int i = 0; i < 10; i++) {
+      locations.put(houses[i], fac.createPoint(new Coordinate(i, i)));
+      locations.put(cars[i], fac.createPoint(new Coordinate(i, -i)));
+    }
+    geography.moveAll(locations);
+    assertEquals(20, index.getStaticSize());
+
+    PListener listener = new PListener();
+    geography.addProjectionListener(listener);
+    List<Object> removed = new ArrayList<Object>(Arrays.asList(houses).subList(0, 8));
+    town.removeAll(removed);
+    assertEquals(houses[7], listener.removedObj);
+    assertEquals(12, geog.size());
+    assertEquals(12, index.getStaticSize());
+    assertEquals(new HashSet<Object>(Arrays.asList(houses[8], houses[9], cars[0])),
+        toSet(geography.getObjectsWithin(new Envelope(-1, 10, -0.5, 10))));
+
+    List<Object> added = new ArrayList<Object>();
+    for (int i = 0; i < 3; i++) {
+      added.add(new House("New" + i, "Main St", "Anytown", "Anystate"));
+    }
+    town.addAll(added);
+    assertEquals(added.get(2), listener.addedObj);
+    assertEquals(2, geography.getLayer(House.class).getAgentSet().size());
+  }
 }
@@ -6,7 +6,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 
-import repast.simphony.random.RandomHelper;
 import repast.simphony.util.SimUtilities;
 
 public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<E> {
@@ -16,6 +15,14 @@ public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<
 	 */
 	private static final long serialVersionUID = 1132438687545680786L;
 
+	// set when this agentset holds all the agents of a type, so that spatial
+	// queries over it can look in the observer's grid instead of scanning it
+	private transient Class<?> allOfType;
+	private transient AbstractObserver allOfTypeObserver;
+	private transient long allOfTypeVersion;
+	private transient int allOfTypeModCount;
+	private transient Object allOfTypeExcluded;
+
 	public AbstractAgentSet(){
 		super();
 	}
@@ -24,6 +31,44 @@ public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<
 		super(c);
 	}
 	
+	/**
+	 * Marks this agentset as holding all the observer's agents of the type,
+	 * except for the excluded agent if that is not null.
+	 */
+	void markAllOfType(Class<?> type, AbstractObserver observer, Object excluded) {
+		allOfType = type;
+		allOfTypeObserver = observer;
+		allOfTypeVersion = observer.getAgentVersion(type);
+		allOfTypeModCount = modCount;
+		allOfTypeExcluded = excluded;
+	}
+
+	/**
+	 * Gets the type of agent this agentset holds all of, or null if it was not
+	 * marked or the agentset or the observer's agents have changed since.
+	 */
+	Class<?> getAllOfType(Observer observer) {
+		if (allOfType == null || allOfTypeObserver != observer || modCount != allOfTypeModCount
+				|| allOfTypeObserver.getAgentVersion(allOfType) != allOfTypeVersion) {
+			return null;
+		}
+		return allOfType;
+	}
+
+	/**
+	 * Gets the agent left out of this marked agentset, or null.
+	 */
+	Object getAllOfTypeExcluded() {
+		return allOfTypeExcluded;
+	}
+
+	@Override
+	public E set(int index, E element) {
+		// set doesn't count as a modification
+		allOfType = null;
+		return super.set(index, element);
+	}
+
 	/**
 	 * Ask agentset to execute commands in random order.
 	 * @param cl
@@ -31,10 +76,20 @@ public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<
 	public void askAgentSet(Closure cl){
 		cl.setResolveStrategy(Closure.DELEGATE_FIRST);
 		ArrayList<ReLogoAgent> temp = new ArrayList<ReLogoAgent>(this);
-		SimUtilities.shuffle(temp, RandomHelper.getUniform());
+		SimUtilities.shuffle(temp, ConcurrentAsk.getUniform());
 		for (ReLogoAgent o : temp){
 			cl.setDelegate(o);
 			cl.call(o);
 		}
 	}
+
+	/**
+	 * Ask agentset to execute commands in random order on several threads.
+	 * @param cl
+	 * @param bufferedWrites whether turtles' writes to patch variables are staged until the end of the ask
+	 * @see ConcurrentAsk
+	 */
+	public void askAgentSetConcurrent(Closure cl, boolean bufferedWrites){
+		ConcurrentAsk.ask(this, cl, bufferedWrites);
+	}
 }
@@ -14,16 +14,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import repast.simphony.context.BatchContextListener;
 import repast.simphony.context.Context;
+import repast.simphony.context.ContextEvent;
 import repast.simphony.relogo.factories.LinkFactory;
 import repast.simphony.relogo.factories.PatchFactory;
 import repast.simphony.relogo.factories.RLWorldDimensions;
 import repast.simphony.relogo.factories.TurtleFactory;
 import repast.simphony.space.continuous.ContinuousSpace;
-import repast.simphony.space.continuous.NdPoint;
 import repast.simphony.space.graph.Network;
 import repast.simphony.space.grid.Grid;
-import repast.simphony.space.grid.GridPoint;
 import repast.simphony.space.projection.ProjectionEvent;
 import repast.simphony.statecharts.StateChartScheduler;
 import repast.simphony.ui.probe.ProbeID;
@@ -43,7 +43,63 @@ public abstract class AbstractObserver implements Observer {
 	}
 
 	public void setContext(Context context) {
+		if (this.context != null) {
+			this.context.removeContextListener(agentListener);
+		}
 		this.context = context;
+		if (context != null) {
+			context.addContextListener(agentListener);
+		}
+	}
+
+	// bumped when turtles or patches are added or removed, see
+	// AbstractAgentSet.getAllOfType
+	private long turtleVersion, patchVersion;
+
+	private final BatchContextListener agentListener = new BatchContextListener() {
+		public void eventOccured(ContextEvent ev) {
+			switch (ev.getType()) {
+			case AGENT_ADDED:
+			case AGENT_REMOVED:
+				agentChanged(ev.getTarget());
+				break;
+			case AGENTS_ADDED:
+			case AGENTS_REMOVED:
+				for (Object o : ev.getTargets()) {
+					agentChanged(o);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+	};
+
+	private void agentChanged(Object o) {
+		ConcurrentAsk.checkNotConcurrent("Adding or removing agents");
+		if (o instanceof Turtle) {
+			turtleVersion++;
+		} else if (o instanceof Patch) {
+			patchVersion++;
+		}
+	}
+
+	/**
+	 * Gets a count that changes whenever agents of the type are added to or
+	 * removed from the observer's context.
+	 * 
+	 * @param type
+	 *            a turtle or patch type
+	 * @return the count, or -1 if the type is neither a turtle nor a patch type
+	 */
+	long getAgentVersion(Class<?> type) {
+		if (Turtle.class.isAssignableFrom(type)) {
+			return turtleVersion;
+		}
+		if (Patch.class.isAssignableFrom(type)) {
+			return patchVersion;
+		}
+		return -1;
 	}
 
 	RLWorldDimensions rLWorldDimensions;
@@ -60,6 +116,9 @@ public abstract class AbstractObserver implements Observer {
 
 	Map<String, DenseDoubleMatrix2D> patchesVarsMap = new ConcurrentHashMap<String, DenseDoubleMatrix2D>();
 	Set<DiffusiblePatchVariable> dpvs = new HashSet<DiffusiblePatchVariable>();
+	// the matrices that patch variables are diffused into before the result is
+	// copied back, reused by the next diffusion. They're never handed out.
+	Map<String, PatchVariableMatrix> diffusionBuffers = new ConcurrentHashMap<String, PatchVariableMatrix>();
 	
 	private Set<DiffusiblePatchVariable> getPatchVars(){
 		return dpvs;
@@ -73,7 +132,7 @@ public abstract class AbstractObserver implements Observer {
 		dpvs.add(var);
 		int xdim = this.worldWidth();
 		int ydim = this.worldHeight();
-		DenseDoubleMatrix2D ddm = new DenseDoubleMatrix2D(ydim, xdim);
+		DenseDoubleMatrix2D ddm = new PatchVariableMatrix(ydim, xdim);
 		for (int x = 0; x < xdim; x++) {
 			for (int y = 0; y < ydim; y++) {
 				ddm.setQuick(y, x, var.getDefaultValue());
@@ -119,6 +178,44 @@ public abstract class AbstractObserver implements Observer {
 		this.lf = lf;
 	}
 
+	/**
+	 * Executes a set of commands for an agentset in random order, on several
+	 * threads. The commands must not move, create or remove agents.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(AgentSet<? extends ReLogoAgent> a, Closure askBlock) {
+		askConcurrent(a, false, askBlock);
+	}
+
+	/**
+	 * Executes a set of commands for an agentset in random order, on several
+	 * threads. The commands must not move, create or remove agents. With
+	 * buffered writes, turtles' assignments to patch variables are made after
+	 * the commands have been executed for all the agents. An exception thrown
+	 * by the commands, including the IllegalStateException thrown when they
+	 * move, create or remove agents, is rethrown.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param bufferedWrites
+	 *            whether to stage turtles' writes to patch variables
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(AgentSet<? extends ReLogoAgent> a, boolean bufferedWrites,
+			Closure askBlock) {
+		for (ReLogoAgent r : a) {
+			r.setMyself(this);
+		}
+		a.askAgentSetConcurrent(askBlock, bufferedWrites);
+	}
+
 	/**
 	 * Executes a set of commands for an agentset in random order.
 	 * 
@@ -301,27 +398,7 @@ public abstract class AbstractObserver implements Observer {
 	 *         that collection a turtles are
 	 */
 	public AgentSet<Turtle> turtlesOn(Collection a) {
-
-		if (a == null || a.isEmpty()) {
-			return new AgentSet();
-		}
-
-		Set total = new HashSet();
-		if (a.iterator().next() instanceof Turtle) {
-			for (Object t : a) {
-				NdPoint location = ((Turtle) t).getTurtleLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(
-						Utility.ndPointToGridPoint(location), this);
-				total.addAll(temp);
-			}
-		} else {
-			for (Object p : a) {
-				GridPoint location = ((Patch) p).getGridLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(location, this);
-				total.addAll(temp);
-			}
-		}
-		return new AgentSet(total);
+		return Utility.turtlesOnU(a, this);
 	}
 
 	/**
@@ -883,13 +960,27 @@ public abstract class AbstractObserver implements Observer {
 //		int possibleNumberOfNeighbors = isMoore ? 8 : 4;
 		// String neighborsString = isMoore ? "neighbors" : "neighbors4"
 		DenseDoubleMatrix2D ddm = getPatchVarMatrix(patchVariable);
-		DenseDoubleMatrix2D ddm2 = new DenseDoubleMatrix2D(ddm.rows(),
-				ddm.columns());
 		Grid grid = getGrid();
 		if (grid != null){
 			boolean isPeriodic = grid.isPeriodic();
-			JavaUtility.diffuse(ddm, ddm2, number, isMoore, isPeriodic);
-			setPatchVarMatrix(patchVariable, ddm2);
+			if (ddm instanceof PatchVariableMatrix && ((PatchVariableMatrix) ddm).isContiguous()) {
+				// diffuse into the scratch matrix and copy the result back, so the
+				// matrix that getPatchVarMatrix returns is updated in place and a
+				// caller holding it never sees it reused as a buffer
+				PatchVariableMatrix src = (PatchVariableMatrix) ddm;
+				PatchVariableMatrix dst = diffusionBuffers.get(patchVariable);
+				if (dst == null || dst.rows() != src.rows() || dst.columns() != src.columns()) {
+					dst = new PatchVariableMatrix(src.rows(), src.columns());
+				}
+				JavaUtility.diffuseElements(src, dst, number, isMoore, isPeriodic);
+				System.arraycopy(dst.getElements(), 0, src.getElements(), 0, src.size());
+				diffusionBuffers.put(patchVariable, dst);
+			} else {
+				DenseDoubleMatrix2D ddm2 = new DenseDoubleMatrix2D(ddm.rows(),
+						ddm.columns());
+				JavaUtility.diffuse(ddm, ddm2, number, isMoore, isPeriodic);
+				setPatchVarMatrix(patchVariable, ddm2);
+			}
 		}
 	}
 
@@ -4,15 +4,11 @@ import groovy.lang.Closure;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.collections15.Predicate;
 import org.apache.commons.collections15.PredicateUtils;
 
-import repast.simphony.query.QueryUtils;
-import repast.simphony.query.space.continuous.ContinuousWithin;
 import repast.simphony.query.space.grid.MooreQuery;
 import repast.simphony.query.space.grid.VNQuery;
 import repast.simphony.relogo.factories.PatchFactory;
@@ -486,7 +482,8 @@ public abstract class AbstractPatch implements Patch {
 	}
 
 	/**
-	 * Returns an agentset within a distance of the caller.
+	 * Returns an agentset within a distance of the caller. The caller itself is
+	 * not included.
 	 * 
 	 * @param a
 	 *            a collection of agents
@@ -495,15 +492,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @return agentset subset of collection a within a distance num of the caller
 	 */
 	public AgentSet inRadius(Collection a, Number num) {
-		ContinuousWithin cwq = new ContinuousWithin(getMyObserver().getSpace(),
-				this, num.doubleValue());
-		Predicate pr = QueryUtils.createContains(cwq.query());
-		FilteredIterator result = new FilteredIterator(a.iterator(), pr);
-		List temp = new ArrayList();
-		while (result.hasNext()) {
-			temp.add(result.next());
-		}
-		return new AgentSet(temp);
+		return Utility.inRadiusU(a, getMyObserver().getSpace().getLocation(this), num, this,
+				getMyObserver());
 	}
 
 	/**
@@ -514,7 +504,7 @@ public abstract class AbstractPatch implements Patch {
 	 * @return agentset a minus the caller
 	 */
 	public AgentSet other(Collection a) {
-		return Utility.removePatchFromCollection(a, (Patch) this);
+		return Utility.otherU(a, this, getMyObserver());
 	}
 
 	/**
@@ -589,28 +579,7 @@ public abstract class AbstractPatch implements Patch {
 	 *         that collection a turtles are
 	 */
 	public AgentSet<Turtle> turtlesOn(Collection a) {
-
-		if (a == null || a.isEmpty()) {
-			return new AgentSet();
-		}
-
-		Set total = new HashSet();
-		if (a.iterator().next() instanceof Turtle) {
-			for (Object t : a) {
-				NdPoint location = ((Turtle) t).getTurtleLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(
-						Utility.ndPointToGridPoint(location), getMyObserver());
-				total.addAll(temp);
-			}
-		} else {
-			for (Object p : a) {
-				GridPoint location = ((Patch) p).getGridLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(location,
-						getMyObserver());
-				total.addAll(temp);
-			}
-		}
-		return new AgentSet(total);
+		return Utility.turtlesOnU(a, getMyObserver());
 	}
 
 	/**
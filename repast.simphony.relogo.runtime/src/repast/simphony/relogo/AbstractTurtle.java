@@ -503,7 +503,10 @@ public abstract class AbstractTurtle implements Turtle {
 	 *          a number in range [0,140)
 	 */
 	public void setPcolor(Number color) {
-		patchHere().setPcolor(color.doubleValue());
+		Patch p = patchHere();
+		if (!ConcurrentAsk.stageWrite(p, "pcolor", color.doubleValue())) {
+			p.setPcolor(color.doubleValue());
+		}
 	}
 
 	/**
@@ -889,6 +892,7 @@ public abstract class AbstractTurtle implements Turtle {
 	}
 
 	public void mv(Number nNumber) {
+		ConcurrentAsk.checkNotConcurrent("Moving turtles");
 		double number = nNumber.doubleValue();
 		if (!moved) {
 			this.moved = true;
@@ -962,6 +966,7 @@ public abstract class AbstractTurtle implements Turtle {
 	public void setxy(Number nX, Number nY) {
 		double x = nX.doubleValue();
 		double y = nY.doubleValue();
+		ConcurrentAsk.checkNotConcurrent("Moving turtles");
 
 		if (!moved) {
 			this.moved = true;
@@ -1299,27 +1304,7 @@ public abstract class AbstractTurtle implements Turtle {
 	 *         patches that collection a turtles are
 	 */
 	public AgentSet<Turtle> turtlesOn(Collection a) {
-
-		if (a == null || a.isEmpty()) {
-			return new AgentSet();
-		}
-
-		Set total = new HashSet();
-		if (a.iterator().next() instanceof Turtle) {
-			for (Object t : a) {
-				NdPoint location = ((Turtle) t).getTurtleLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(location),
-						getMyObserver());
-				total.addAll(temp);
-			}
-		} else {
-			for (Object p : a) {
-				GridPoint location = ((Patch) p).getGridLocation();
-				AgentSet temp = Utility.getTurtlesOnGridPoint(location, getMyObserver());
-				total.addAll(temp);
-			}
-		}
-		return new AgentSet(total);
+		return Utility.turtlesOnU(a, getMyObserver());
 	}
 
 	/**
@@ -1492,16 +1477,7 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @return agentset subset of collection a within a distance num of the caller
 	 */
 	public AgentSet inRadius(Collection a, Number num) {
-
-		ContinuousSpace space = getMyObserver().getSpace();
-		double distSq = num.doubleValue() * num.doubleValue();
-		AgentSet list = new AgentSet();
-		for (Object o : a) {
-			if (space.getDistanceSq(getTurtleLocation(), space.getLocation(o)) <= distSq) {
-				list.add(o);
-			}
-		}
-		return list;
+		return Utility.inRadiusU(a, getTurtleLocation(), num, getMyObserver());
 	}
 
 	/**
@@ -1522,26 +1498,21 @@ public abstract class AbstractTurtle implements Turtle {
 		if (angle.doubleValue() >= 360) {
 			return inRadius(a, num);
 		}
-		ContinuousSpace space = getMyObserver().getSpace();
-		double distSq = num.doubleValue() * num.doubleValue();
 		AgentSet list = new AgentSet();
-		for (Object o : a) {
-			if (space.getDistanceSq(getTurtleLocation(), space.getLocation(o)) <= distSq) {
-				if (o instanceof Turtle) {
-					double candidateHeading = towards((Turtle) o);
-					if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
-							.doubleValue() / 2) {
-						list.add(o);
-					}
+		for (Object o : inRadius(a, num)) {
+			if (o instanceof Turtle) {
+				double candidateHeading = towards((Turtle) o);
+				if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
+						.doubleValue() / 2) {
+					list.add(o);
 				}
-				if (o instanceof Patch) {
-					double candidateHeading = towards((Patch) o);
-					if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
-							.doubleValue() / 2) {
-						list.add(o);
-					}
+			}
+			if (o instanceof Patch) {
+				double candidateHeading = towards((Patch) o);
+				if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
+						.doubleValue() / 2) {
+					list.add(o);
 				}
-
 			}
 		}
 		return list;
@@ -1555,7 +1526,7 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @return agentset a minus the caller
 	 */
 	public AgentSet other(Collection a) {
-		return Utility.removeTurtleFromCollection(a, (Turtle) this);
+		return Utility.otherU(a, this, getMyObserver());
 	}
 
 	public static int getWhoCounter() {
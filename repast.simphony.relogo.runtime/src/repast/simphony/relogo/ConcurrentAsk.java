@@ -0,0 +1,270 @@
+package repast.simphony.relogo;
+
+import groovy.lang.Closure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import repast.simphony.engine.schedule.ParallelActionExecutor;
+import repast.simphony.random.RandomHelper;
+import repast.simphony.random.SplittableRandomRegistry;
+import repast.simphony.random.SplittableRandomRegistry.StreamBinding;
+import repast.simphony.util.SimUtilities;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Executes the commands of an ask for the agents of an agentset on the
+ * {@link ParallelActionExecutor#getPool() pool} used by the scheduler.
+ * <p>
+ *
+ * The agentset is shuffled, as for a sequential ask, and split into a fixed
+ * number of ranges. Each range gets its own copy of the closure and its own
+ * random stream, seeded from the default stream, which the ReLogo random
+ * primitives (random, randomFloat, oneOf, nOf, etc.) use while the range is
+ * executed. If the default random registry is a
+ * {@link SplittableRandomRegistry}, the RandomHelper distributions used in the
+ * commands also draw from a stream of the range. The result of an ask therefore
+ * depends on the default stream's seed and not on the number of threads.
+ * <p>
+ *
+ * The commands may read anything and change the variables of the agent they
+ * are executed for, but they must not move, create or remove agents. With
+ * buffered writes, a turtle's assignments to the variables of its patch
+ * (pcolor or a patch variable) are staged and made after all the agents have
+ * executed the commands, in the shuffled order of the agents that made them, so
+ * that turtles on the same patch do not conflict. Until then, reads of those
+ * variables see their values from before the ask.
+ *
+ * @see AbstractObserver#askConcurrent(AgentSet, boolean, Closure)
+ */
+public final class ConcurrentAsk {
+
+	// the number of ranges an agentset is split into, fixed so that the result
+	// doesn't depend on the number of threads
+	private static final int RANGES = 64;
+
+	private static final ThreadLocal<Range> current = new ThreadLocal<Range>();
+
+	private ConcurrentAsk() {
+	}
+
+	private static class Write {
+		final Object target;
+		final String property;
+		final Object value;
+
+		Write(Object target, String property, Object value) {
+			this.target = target;
+			this.property = property;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Executes the closure for a range of the agents.
+	 */
+	private static class Range extends RecursiveAction {
+
+		private static final long serialVersionUID = -5327046640946457581L;
+
+		private final List<? extends ReLogoAgent> agents;
+		private final int start, end;
+		private final Closure cl;
+		private final RandomEngine generator;
+		private final Uniform uniform;
+		private final List<Write> writes;
+		// null unless the default random registry is splittable
+		private SplittableRandomRegistry streams;
+		private long batchSeed;
+		private int key;
+
+		Range(List<? extends ReLogoAgent> agents, int start, int end, Closure cl, int seed,
+				boolean buffered) {
+			this.agents = agents;
+			this.start = start;
+			this.end = end;
+			this.cl = cl;
+			generator = new MersenneTwister(seed);
+			uniform = new Uniform(generator);
+			writes = buffered ? new ArrayList<Write>() : null;
+		}
+
+		@Override
+		protected void compute() {
+			Closure copy = (Closure) cl.clone();
+			copy.setResolveStrategy(Closure.DELEGATE_FIRST);
+			current.set(this);
+			StreamBinding binding = null;
+			if (streams != null) {
+				binding = streams.bind(batchSeed);
+				binding.select(key);
+			}
+			try {
+				for (int i = start; i < end; i++) {
+					ReLogoAgent agent = agents.get(i);
+					copy.setDelegate(agent);
+					copy.call(agent);
+				}
+			} finally {
+				if (binding != null) {
+					streams.unbind(binding);
+				}
+				current.remove();
+			}
+		}
+	}
+
+	private static class Ranges extends RecursiveAction {
+
+		private static final long serialVersionUID = 2741906337412345011L;
+
+		private final Range[] ranges;
+
+		Ranges(Range[] ranges) {
+			this.ranges = ranges;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(ranges);
+		}
+	}
+
+	/**
+	 * Executes the closure for each of the agents, in random order, on several
+	 * threads. This returns when the closure has been executed for all the
+	 * agents and any buffered writes have been made. An exception thrown by the
+	 * closure is rethrown by this method. A concurrent ask made from within the
+	 * closure is executed sequentially.
+	 *
+	 * @param agents
+	 *            the agents
+	 * @param cl
+	 *            the commands
+	 * @param bufferedWrites
+	 *            whether to stage turtles' writes to patch variables until
+	 *            the closure has been executed for all the agents
+	 */
+	public static void ask(Collection<? extends ReLogoAgent> agents, Closure cl,
+			boolean bufferedWrites) {
+		List<ReLogoAgent> temp = new ArrayList<ReLogoAgent>(agents);
+		Range range = current.get();
+		if (range != null) {
+			SimUtilities.shuffle(temp, range.uniform);
+			cl.setResolveStrategy(Closure.DELEGATE_FIRST);
+			for (ReLogoAgent o : temp) {
+				cl.setDelegate(o);
+				cl.call(o);
+			}
+			return;
+		}
+
+		int size = temp.size();
+		if (size == 0) {
+			return;
+		}
+		SimUtilities.shuffle(temp, RandomHelper.getUniform());
+		int count = Math.min(RANGES, size);
+		Range[] ranges = new Range[count];
+		for (int i = 0; i < count; i++) {
+			int seed = RandomHelper.getUniform().nextIntFromTo(Integer.MIN_VALUE, Integer.MAX_VALUE);
+			ranges[i] = new Range(temp, (int) ((long) size * i / count), (int) ((long) size
+					* (i + 1) / count), cl, seed, bufferedWrites);
+		}
+		SplittableRandomRegistry streams = RandomHelper.getSplittableRegistry();
+		if (streams != null) {
+			long batchSeed = streams.createBatchSeed();
+			for (int i = 0; i < count; i++) {
+				ranges[i].streams = streams;
+				ranges[i].batchSeed = batchSeed;
+				ranges[i].key = i;
+			}
+		}
+
+		try {
+			ParallelActionExecutor.getPool().invoke(new Ranges(ranges));
+		} finally {
+			if (bufferedWrites) {
+				for (Range r : ranges) {
+					for (Write write : r.writes) {
+						InvokerHelper.setProperty(write.target, write.property, write.value);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stages the write of a patch variable, if the current thread is executing
+	 * a concurrent ask with buffered writes.
+	 *
+	 * @param patch
+	 *            the patch
+	 * @param property
+	 *            the name of the patch variable
+	 * @param value
+	 *            the value
+	 * @return true if the write was staged, false if it should be made now.
+	 */
+	public static boolean stageWrite(Object patch, String property, Object value) {
+		Range range = current.get();
+		if (range == null || range.writes == null) {
+			return false;
+		}
+		range.writes.add(new Write(patch, property, value));
+		return true;
+	}
+
+	/**
+	 * Gets whether the current thread is executing a concurrent ask.
+	 *
+	 * @return true if the current thread is executing a concurrent ask.
+	 */
+	public static boolean isConcurrent() {
+		return current.get() != null;
+	}
+
+	/**
+	 * Throws an IllegalStateException if the current thread is executing a
+	 * concurrent ask.
+	 *
+	 * @param operation
+	 *            the name of the operation, for the exception's message
+	 */
+	public static void checkNotConcurrent(String operation) {
+		if (current.get() != null) {
+			throw new IllegalStateException(operation
+					+ " cannot be used in the commands of a concurrent ask");
+		}
+	}
+
+	/**
+	 * Gets the uniform distribution for the current thread. This is the
+	 * current range's distribution when executing a concurrent ask, and the
+	 * default uniform distribution otherwise.
+	 *
+	 * @return the uniform distribution for the current thread.
+	 */
+	public static Uniform getUniform() {
+		Range range = current.get();
+		return range == null ? RandomHelper.getUniform() : range.uniform;
+	}
+
+	/**
+	 * Gets the random number generator of the current range when executing a
+	 * concurrent ask.
+	 *
+	 * @return the current range's generator, or null if the current thread is
+	 *         not executing a concurrent ask.
+	 */
+	public static RandomEngine getGenerator() {
+		Range range = current.get();
+		return range == null ? null : range.generator;
+	}
+}
@@ -4,12 +4,14 @@ import groovy.lang.Closure;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.RecursiveAction;
 
 import cern.colt.function.Double9Function;
 import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 
+import repast.simphony.engine.schedule.ParallelActionExecutor;
 import repast.simphony.space.continuous.ContinuousSpace;
 import repast.simphony.space.continuous.NdPoint;
 
@@ -57,6 +59,154 @@ public class JavaUtility {
 		}
 	}
 	
+	/**
+	 * Diffuses a patch variable's matrix into a second matrix of the same size,
+	 * giving the same results as
+	 * {@link #diffuse(DoubleMatrix2D, DoubleMatrix2D, double, boolean, boolean)}
+	 * but working directly on the matrices' arrays. Large matrices are split
+	 * into strips of rows that are diffused in parallel on the
+	 * {@link ParallelActionExecutor#getPool() pool} used by the scheduler.
+	 * Both matrices must be contiguous.
+	 * 
+	 * @param src
+	 * @param dst
+	 * @param diffusionCoeff
+	 * @param isMoore
+	 * @param isPeriodic
+	 */
+	public static void diffuseElements(PatchVariableMatrix src, PatchVariableMatrix dst,
+			double diffusionCoeff, boolean isMoore, boolean isPeriodic){
+		int rows = src.rows();
+		int columns = src.columns();
+		double[] s = src.getElements();
+		double[] d = dst.getElements();
+		int threshold = Math.max(1, MIN_STRIP_CELLS / Math.max(columns, 1));
+		if (rows <= threshold) {
+			diffuseRows(s, d, rows, columns, diffusionCoeff, isMoore, isPeriodic, 0, rows);
+		}
+		else {
+			ParallelActionExecutor.getPool().invoke(
+					new DiffuseStrip(s, d, rows, columns, diffusionCoeff, isMoore, isPeriodic, 0, rows,
+							threshold));
+		}
+		if (!isPeriodic) {
+			if (isMoore) {
+				edgeDiffuseMoore(src, dst, diffusionCoeff);
+			}
+			else {
+				edgeDiffuseVN(src, dst, diffusionCoeff);
+			}
+		}
+	}
+	
+	// the minimum number of cells in a strip of rows diffused by a single task
+	private static final int MIN_STRIP_CELLS = 1 << 15;
+	
+	/**
+	 * Diffuses a strip of rows of a matrix's array.
+	 */
+	private static class DiffuseStrip extends RecursiveAction {
+		
+		private static final long serialVersionUID = -4210913564829316523L;
+		
+		private final double[] src, dst;
+		private final int rows, columns, start, end, threshold;
+		private final double diffusionCoeff;
+		private final boolean isMoore, isPeriodic;
+		
+		DiffuseStrip(double[] src, double[] dst, int rows, int columns, double diffusionCoeff,
+				boolean isMoore, boolean isPeriodic, int start, int end, int threshold) {
+			this.src = src;
+			this.dst = dst;
+			this.rows = rows;
+			this.columns = columns;
+			this.diffusionCoeff = diffusionCoeff;
+			this.isMoore = isMoore;
+			this.isPeriodic = isPeriodic;
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+		}
+		
+		@Override
+		protected void compute() {
+			if (end - start <= threshold) {
+				diffuseRows(src, dst, rows, columns, diffusionCoeff, isMoore, isPeriodic, start, end);
+			}
+			else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new DiffuseStrip(src, dst, rows, columns, diffusionCoeff, isMoore,
+						isPeriodic, start, mid, threshold), new DiffuseStrip(src, dst, rows, columns,
+						diffusionCoeff, isMoore, isPeriodic, mid, end, threshold));
+			}
+		}
+	}
+	
+	/**
+	 * Diffuses the rows from start to end. The sums are taken in the same order
+	 * as in DiffuseBody and Diffuse4Body so the results are identical. If the
+	 * world isn't periodic, the edge cells are left to edgeDiffuse.
+	 */
+	private static void diffuseRows(double[] s, double[] d, int rows, int columns,
+			double diffusionCoeff, boolean isMoore, boolean isPeriodic, int start, int end){
+		for (int r = start; r < end; r++) {
+			if (!isPeriodic && (r == 0 || r == rows - 1)) {
+				continue;
+			}
+			int up = (r == 0 ? rows - 1 : r - 1) * columns;
+			int row = r * columns;
+			int down = (r == rows - 1 ? 0 : r + 1) * columns;
+			if (isPeriodic) {
+				// the first and last columns wrap
+				diffuseCell(s, d, up, row, down, 0, columns - 1, Math.min(1, columns - 1),
+						diffusionCoeff, isMoore);
+				if (columns > 1) {
+					diffuseCell(s, d, up, row, down, columns - 1, columns - 2, 0, diffusionCoeff,
+							isMoore);
+				}
+			}
+			if (isMoore) {
+				diffuseRowMoore(s, d, up, row, down, columns, diffusionCoeff);
+			}
+			else {
+				diffuseRowVN(s, d, up, row, down, columns, diffusionCoeff);
+			}
+		}
+	}
+	
+	private static void diffuseCell(double[] s, double[] d, int up, int row, int down, int c,
+			int left, int right, double diffusionCoeff, boolean isMoore){
+		if (isMoore) {
+			d[row + c] = s[row + c] * (1 - diffusionCoeff)
+					+ (s[up + left] + s[up + c] + s[up + right] + s[row + left] + s[row + right]
+							+ s[down + left] + s[down + c] + s[down + right]) * diffusionCoeff / 8.0;
+		}
+		else {
+			d[row + c] = s[row + c] * (1 - diffusionCoeff)
+					+ (s[up + c] + s[row + left] + s[row + right] + s[down + c]) * diffusionCoeff / 4.0;
+		}
+	}
+	
+	// the columns other than the first and last
+	private static void diffuseRowMoore(double[] s, double[] d, int up, int row, int down,
+			int columns, double diffusionCoeff){
+		double keep = 1 - diffusionCoeff;
+		for (int c = 1; c < columns - 1; c++) {
+			d[row + c] = s[row + c] * keep
+					+ (s[up + c - 1] + s[up + c] + s[up + c + 1] + s[row + c - 1] + s[row + c + 1]
+							+ s[down + c - 1] + s[down + c] + s[down + c + 1]) * diffusionCoeff / 8.0;
+		}
+	}
+	
+	private static void diffuseRowVN(double[] s, double[] d, int up, int row, int down,
+			int columns, double diffusionCoeff){
+		double keep = 1 - diffusionCoeff;
+		for (int c = 1; c < columns - 1; c++) {
+			d[row + c] = s[row + c] * keep
+					+ (s[up + c] + s[row + c - 1] + s[row + c + 1] + s[down + c]) * diffusionCoeff / 4.0;
+		}
+	}
+	
 	/**
 	 * Periodic diffuse
 	 * @param ddm
@@ -123,6 +273,10 @@ public class JavaUtility {
 	
 	private static void diffuseNPMoore(DoubleMatrix2D ddm, DoubleMatrix2D ddm2, double diffusionCoeff){
 		ddm.zAssign8Neighbors(ddm2, new DiffuseBody(diffusionCoeff));
+		edgeDiffuseMoore(ddm, ddm2, diffusionCoeff);
+	}
+	
+	private static void edgeDiffuseMoore(DoubleMatrix2D ddm, DoubleMatrix2D ddm2, double diffusionCoeff){
 		// Non-periodic Moore Neighbors
 		int[][] firstRowNeighbors = {{0,-1},{0,1},{1,-1},{1,0},{1,1}};
 		int[][] lastRowNeighbors = {{0,-1},{0,1},{-1,-1},{-1,0},{-1,1}};
@@ -137,6 +291,10 @@ public class JavaUtility {
 	
 	private static void diffuseNPVN(DoubleMatrix2D ddm, DoubleMatrix2D ddm2, double diffusionCoeff){
 		ddm.zAssign8Neighbors(ddm2, new Diffuse4Body(diffusionCoeff));
+		edgeDiffuseVN(ddm, ddm2, diffusionCoeff);
+	}
+	
+	private static void edgeDiffuseVN(DoubleMatrix2D ddm, DoubleMatrix2D ddm2, double diffusionCoeff){
 		// Non-periodic VN Neighbors
 		int[][] firstRowNeighbors = {{0,-1},{0,1},{1,0}};
 		int[][] lastRowNeighbors = {{0,-1},{0,1},{-1,0}};
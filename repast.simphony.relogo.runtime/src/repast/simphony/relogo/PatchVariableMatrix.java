@@ -0,0 +1,32 @@
+package repast.simphony.relogo;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * The matrix holding the values of a diffusible patch variable. This gives the
+ * diffusion code access to the matrix's array.
+ */
+public class PatchVariableMatrix extends DenseDoubleMatrix2D {
+
+	private static final long serialVersionUID = 3205563851830276424L;
+
+	public PatchVariableMatrix(int rows, int columns) {
+		super(rows, columns);
+	}
+
+	/**
+	 * Gets whether the matrix's values are stored row by row from the start of
+	 * its array, i.e. whether this is not a view of another matrix.
+	 */
+	boolean isContiguous() {
+		return rowZero == 0 && columnZero == 0 && columnStride == 1 && rowStride == columns;
+	}
+
+	/**
+	 * Gets the array holding the matrix's values. The value at row r and column
+	 * c is at index r * columns() + c if the matrix is contiguous.
+	 */
+	double[] getElements() {
+		return elements;
+	}
+}
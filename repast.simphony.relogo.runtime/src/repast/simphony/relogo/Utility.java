@@ -14,6 +14,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,6 +38,7 @@ import repast.simphony.engine.environment.RunState;
 import repast.simphony.query.PropertyEquals;
 import repast.simphony.query.Query;
 import repast.simphony.random.RandomHelper;
+import repast.simphony.relogo.factories.RLWorldDimensions;
 import repast.simphony.space.SpatialException;
 import repast.simphony.space.SpatialMath;
 import repast.simphony.space.continuous.ContinuousSpace;
@@ -47,6 +49,11 @@ import repast.simphony.space.grid.GridPoint;
 import repast.simphony.ui.RSApplication;
 import repast.simphony.util.SimUtilities;
 import repast.simphony.util.collections.FilteredIterator;
+import cern.jet.random.Exponential;
+import cern.jet.random.Gamma;
+import cern.jet.random.Normal;
+import cern.jet.random.Poisson;
+import cern.jet.random.engine.RandomEngine;
 
 /**
  * ReLogo Utility class.
@@ -70,8 +77,8 @@ public class Utility {
 	public static double randomFloat(Number num) {
 		if (num.doubleValue() == 0)
 			return 0.0;
-		return (num.doubleValue() > 0) ? RandomHelper.nextDoubleFromTo(0,
-				num.doubleValue()) : RandomHelper.nextDoubleFromTo(
+		return (num.doubleValue() > 0) ? ConcurrentAsk.getUniform().nextDoubleFromTo(0,
+				num.doubleValue()) : ConcurrentAsk.getUniform().nextDoubleFromTo(
 				num.doubleValue(), 0);
 	}
 
@@ -86,8 +93,8 @@ public class Utility {
 	public static int random(Number num) {
 		if (num.doubleValue() == 0)
 			return 0;
-		return (num.doubleValue() > 0) ? RandomHelper.nextIntFromTo(0,
-				num.intValue() - 1) : RandomHelper.nextIntFromTo(
+		return (num.doubleValue() > 0) ? ConcurrentAsk.getUniform().nextIntFromTo(0,
+				num.intValue() - 1) : ConcurrentAsk.getUniform().nextIntFromTo(
 				num.intValue() + 1, 0);
 	}
 
@@ -160,13 +167,13 @@ public class Utility {
 	}
 
 	public static double randomXcorU(Observer observer) {
-		return RandomHelper.nextDoubleFromTo(((double) observer
+		return ConcurrentAsk.getUniform().nextDoubleFromTo(((double) observer
 				.getRLDimensions().getMinPxcor()) - 0.5, ((double) observer
 				.getRLDimensions().getMaxPxcor()) + 0.5);
 	}
 
 	public static double randomYcorU(Observer observer) {
-		return RandomHelper.nextDoubleFromTo(((double) observer
+		return ConcurrentAsk.getUniform().nextDoubleFromTo(((double) observer
 				.getRLDimensions().getMinPycor()) - 0.5, ((double) observer
 				.getRLDimensions().getMaxPycor()) + 0.5);
 	}
@@ -180,7 +187,7 @@ public class Utility {
 	 * @return random x coordinate for patches
 	 */
 	public static int randomPxcorU(Observer observer) {
-		return RandomHelper.nextIntFromTo(observer.getRLDimensions()
+		return ConcurrentAsk.getUniform().nextIntFromTo(observer.getRLDimensions()
 				.getMinPxcor(), observer.getRLDimensions().getMaxPxcor());
 	}
 
@@ -193,7 +200,7 @@ public class Utility {
 	 * @return random y coordinate for patches
 	 */
 	public static int randomPycorU(Observer observer) {
-		return RandomHelper.nextIntFromTo(observer.getRLDimensions()
+		return ConcurrentAsk.getUniform().nextIntFromTo(observer.getRLDimensions()
 				.getMinPycor(), observer.getRLDimensions().getMaxPycor());
 	}
 
@@ -925,7 +932,7 @@ public class Utility {
 	 */
 	public static <E> ArrayList<E> shuffle(List<E> a) {
 		ArrayList<E> result = new ArrayList<E>(a);
-		SimUtilities.shuffle(result, RandomHelper.getUniform());
+		SimUtilities.shuffle(result, ConcurrentAsk.getUniform());
 		return result;
 	}
 
@@ -1129,7 +1136,7 @@ public class Utility {
 	 * @return number to seed the random number generator
 	 */
 	public static int newSeed() {
-		return RandomHelper.getUniform().nextIntFromTo(Integer.MIN_VALUE,
+		return ConcurrentAsk.getUniform().nextIntFromTo(Integer.MIN_VALUE,
 				Integer.MAX_VALUE);
 	}
 
@@ -1155,6 +1162,10 @@ public class Utility {
 	 *         mean)
 	 */
 	public static double randomExponential(Number mean) {
+		RandomEngine generator = ConcurrentAsk.getGenerator();
+		if (generator != null) {
+			return new Exponential(mean.doubleValue(), generator).nextDouble();
+		}
 		return RandomHelper.createExponential(mean.doubleValue()).nextDouble();
 	}
 
@@ -1169,6 +1180,10 @@ public class Utility {
 	 *         alpha and lambda)
 	 */
 	public static double randomGamma(Number alpha, Number lambda) {
+		RandomEngine generator = ConcurrentAsk.getGenerator();
+		if (generator != null) {
+			return new Gamma(alpha.doubleValue(), lambda.doubleValue(), generator).nextDouble();
+		}
 		return RandomHelper.createGamma(alpha.doubleValue(), lambda.doubleValue()).nextDouble();
 	}
 
@@ -1183,6 +1198,10 @@ public class Utility {
 	 *         and standard deviation standardDeviation)
 	 */
 	public static double randomNormal(Number mean, Number standardDeviation) {
+		RandomEngine generator = ConcurrentAsk.getGenerator();
+		if (generator != null) {
+			return new Normal(mean.doubleValue(), standardDeviation.doubleValue(), generator).nextDouble();
+		}
 		return RandomHelper.createNormal(mean.doubleValue(), standardDeviation.doubleValue()).nextDouble();
 	}
 
@@ -1194,6 +1213,10 @@ public class Utility {
 	 * @return random integer (poisson distributed with mean mean)
 	 */
 	public static int randomPoisson(Number mean) {
+		RandomEngine generator = ConcurrentAsk.getGenerator();
+		if (generator != null) {
+			return new Poisson(mean.doubleValue(), generator).nextInt();
+		}
 		return RandomHelper.createPoisson(mean.doubleValue()).nextInt();
 	}
 
@@ -1467,9 +1490,213 @@ public class Utility {
 		for (Object e : tpc.getObjects(E)) {
 			a.add(e);
 		}
+		if (observer instanceof AbstractObserver
+				&& ((AbstractObserver) observer).getAgentVersion(E) != -1) {
+			a.markAllOfType(E, (AbstractObserver) observer, null);
+		}
 		return a;
 	}
 
+	/**
+	 * Gets the type of turtle or patch that a collection holds all of, or null
+	 * if the collection is not an unmodified agentset of all the observer's
+	 * turtles or patches of a type.
+	 */
+	private static Class allOfType(Collection a, Observer observer) {
+		if (a instanceof AbstractAgentSet) {
+			return ((AbstractAgentSet) a).getAllOfType(observer);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the patch coordinates, in one dimension, that hold the points within
+	 * a distance of a coordinate.
+	 * 
+	 * @return the coordinates, or null if these are all the world's coordinates
+	 */
+	private static int[] patchCoordsWithin(double coord, double distance, int min, int max,
+			boolean periodic) {
+		int lo = (int) Math.round(coord - distance);
+		int hi = (int) Math.round(coord + distance);
+		int dim = max - min + 1;
+		if (periodic) {
+			if (hi - lo + 1 >= dim) {
+				return null;
+			}
+		} else {
+			lo = Math.max(lo, min);
+			hi = Math.min(hi, max);
+			if (lo == min && hi == max) {
+				return null;
+			}
+		}
+		int[] coords = new int[Math.max(0, hi - lo + 1)];
+		for (int i = 0; i < coords.length; i++) {
+			coords[i] = lo + i;
+			if (periodic) {
+				coords[i] = ((coords[i] - min) % dim + dim) % dim + min;
+			}
+		}
+		return coords;
+	}
+
+	/**
+	 * Returns the agents in a collection that are within a distance of a
+	 * location. When the collection is an agentset of all the turtles or all the
+	 * patches of a type (e.g. turtles(), patches() or a breed's agentset), only
+	 * the agents on the patches around the location are looked at. Otherwise
+	 * the whole collection is scanned.
+	 * 
+	 * @param a
+	 *            a collection of agents
+	 * @param location
+	 *            a location in the observer's space
+	 * @param num
+	 *            a distance
+	 * @param observer
+	 *            the observer
+	 * @return agentset subset of collection a within a distance num of the
+	 *         location
+	 */
+	public static AgentSet inRadiusU(Collection a, NdPoint location, Number num,
+			Observer observer) {
+		return inRadiusU(a, location, num, null, observer);
+	}
+
+	/**
+	 * Returns the agents in a collection, other than an excluded agent, that are
+	 * within a distance of a location. See
+	 * {@link #inRadiusU(Collection, NdPoint, Number, Observer)}.
+	 * 
+	 * @param a
+	 *            a collection of agents
+	 * @param location
+	 *            a location in the observer's space
+	 * @param num
+	 *            a distance
+	 * @param excluded
+	 *            an agent that is never returned, or null
+	 * @param observer
+	 *            the observer
+	 * @return agentset subset of collection a, minus the excluded agent, within
+	 *         a distance num of the location
+	 */
+	public static AgentSet inRadiusU(Collection a, NdPoint location, Number num,
+			Object excluded, Observer observer) {
+		ContinuousSpace space = observer.getSpace();
+		double distance = num.doubleValue();
+		double distSq = distance * distance;
+		AgentSet list = new AgentSet();
+
+		Class type = allOfType(a, observer);
+		int[] xs = null, ys = null;
+		if (type != null) {
+			RLWorldDimensions dims = observer.getRLDimensions();
+			boolean periodic = observer.getGrid().isPeriodic();
+			xs = patchCoordsWithin(location.getX(), distance, dims.getMinPxcor(),
+					dims.getMaxPxcor(), periodic);
+			ys = patchCoordsWithin(location.getY(), distance, dims.getMinPycor(),
+					dims.getMaxPycor(), periodic);
+		}
+		// the grid is only worth looking in when it has fewer cells to look at
+		// than there are agents to scan
+		if (xs == null || ys == null || (long) xs.length * ys.length >= a.size()) {
+			for (Object o : a) {
+				if (o != excluded && space.getDistanceSq(location, space.getLocation(o)) <= distSq) {
+					list.add(o);
+				}
+			}
+			return list;
+		}
+
+		Object other = ((AbstractAgentSet) a).getAllOfTypeExcluded();
+		Grid grid = observer.getGrid();
+		for (int x : xs) {
+			for (int y : ys) {
+				for (Object o : grid.getObjectsAt(x, y)) {
+					if (type.isInstance(o) && o != other && o != excluded
+							&& space.getDistanceSq(location, space.getLocation(o)) <= distSq) {
+						list.add(o);
+					}
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns an agentset of turtles on the patches in a collection or on the
+	 * patches that a collection of turtles are. Each patch is only looked at
+	 * once, however many of the agents in the collection are on it.
+	 * 
+	 * @param a
+	 *            a collection
+	 * @param observer
+	 *            the observer
+	 * @return agentset of turtles on the patches in collection a or on the
+	 *         patches that collection a turtles are
+	 */
+	public static AgentSet<Turtle> turtlesOnU(Collection a, Observer observer) {
+		if (a == null || a.isEmpty()) {
+			return new AgentSet();
+		}
+		Class type = allOfType(a, observer);
+		if (type == Patch.class
+				&& ((AbstractAgentSet) a).getAllOfTypeExcluded() == null) {
+			// every turtle is on a patch
+			return turtlesU(observer);
+		}
+
+		Set<GridPoint> locations = new LinkedHashSet<GridPoint>();
+		for (Object o : a) {
+			if (o instanceof Turtle) {
+				locations.add(ndPointToGridPoint(((Turtle) o).getTurtleLocation()));
+			} else {
+				locations.add(((Patch) o).getGridLocation());
+			}
+		}
+		Grid grid = observer.getGrid();
+		AgentSet<Turtle> turtles = new AgentSet<Turtle>();
+		for (GridPoint location : locations) {
+			for (Object o : grid.getObjectsAt(location.toIntArray(null))) {
+				if (o instanceof Turtle) {
+					turtles.add((Turtle) o);
+				}
+			}
+		}
+		return turtles;
+	}
+
+	/**
+	 * Returns an agentset of the agents in a collection other than the agent.
+	 * The collection is left unchanged.
+	 * 
+	 * @param a
+	 *            a collection
+	 * @param agent
+	 *            the agent to leave out
+	 * @param observer
+	 *            the observer
+	 * @return agentset a minus the agent
+	 */
+	public static AgentSet otherU(Collection a, Object agent, Observer observer) {
+		Class type = allOfType(a, observer);
+		AgentSet b = new AgentSet();
+		for (Object o : a) {
+			if (!agent.equals(o)) {
+				b.add(o);
+			}
+		}
+		if (type != null) {
+			Object excluded = ((AbstractAgentSet) a).getAllOfTypeExcluded();
+			if (excluded == null || excluded == agent) {
+				b.markAllOfType(type, (AbstractObserver) observer, agent);
+			}
+		}
+		return b;
+	}
+
 	public static ArrayList getWayPoints(Observer observer) {
 		Context tpc = observer.getContext();
 		ArrayList a = new ArrayList();
@@ -1512,7 +1739,7 @@ public class Utility {
 			System.err.println("minOneOf expects a collection of ReLogoAgents.");
 			return null;
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1562,7 +1789,7 @@ public class Utility {
 			System.err.println("minNOf expects a collection of ReLogoAgents.");
 			return new AgentSet();
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1612,7 +1839,7 @@ public class Utility {
 			System.err.println("maxOneOf expects a collection of ReLogoAgents.");
 			return null;
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1662,7 +1889,7 @@ public class Utility {
 			System.err.println("maxNOf expects a collection of ReLogoAgents.");
 			return new AgentSet();
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1914,7 +2141,7 @@ public class Utility {
 			return a;
 		}
 		AgentSet<E> b = new AgentSet<E>(a);
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		b.subList(number, size).clear();
 		return b;
 	}
@@ -1938,7 +2165,7 @@ public class Utility {
 		for (int i = 0; i < number; i++) {
 			indices.add(i);
 		}
-		SimUtilities.shuffle(indices, RandomHelper.getUniform());
+		SimUtilities.shuffle(indices, ConcurrentAsk.getUniform());
 		indices.subList(number, size).clear();
 		Collections.sort(indices);
 		ArrayList<E> result = new ArrayList<E>();
@@ -2008,7 +2235,7 @@ public class Utility {
 		if (c.size() == 0) {
 			return null;
 		}
-		int index = RandomHelper.nextIntFromTo(0, c.size() - 1);
+		int index = ConcurrentAsk.getUniform().nextIntFromTo(0, c.size() - 1);
 		return new ArrayList<X>(c).get(index);
 	}
 
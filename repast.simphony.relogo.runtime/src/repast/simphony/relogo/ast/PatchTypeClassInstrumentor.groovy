@@ -2,19 +2,30 @@ package repast.simphony.relogo.ast
 
 import java.util.List;
 
+import org.codehaus.groovy.ast.ClassHelper
 import org.codehaus.groovy.ast.ClassNode;
 import org.codehaus.groovy.ast.FieldNode;
 import org.codehaus.groovy.ast.MethodNode 
 import org.codehaus.groovy.ast.VariableScope 
 import org.codehaus.groovy.ast.builder.AstBuilder 
 import org.codehaus.groovy.ast.expr.ArgumentListExpression 
+import org.codehaus.groovy.ast.expr.BooleanExpression
+import org.codehaus.groovy.ast.expr.ConstantExpression
+import org.codehaus.groovy.ast.expr.DeclarationExpression
+import org.codehaus.groovy.ast.expr.Expression
 import org.codehaus.groovy.ast.expr.MethodCallExpression 
+import org.codehaus.groovy.ast.expr.NotExpression
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression
 import org.codehaus.groovy.ast.expr.VariableExpression 
 import org.codehaus.groovy.ast.stmt.BlockStatement 
+import org.codehaus.groovy.ast.stmt.EmptyStatement
 import org.codehaus.groovy.ast.stmt.ExpressionStatement 
+import org.codehaus.groovy.ast.stmt.IfStatement
 import org.codehaus.groovy.ast.stmt.ReturnStatement;
 import org.codehaus.groovy.ast.stmt.Statement 
 import org.codehaus.groovy.runtime.MetaClassHelper 
+import org.codehaus.groovy.syntax.Token
+import org.codehaus.groovy.syntax.Types
 import org.objectweb.asm.Opcodes 
 
 class PatchTypeClassInstrumentor {
@@ -98,19 +109,43 @@ class PatchTypeClassInstrumentor {
 	
 	private BlockStatement createTurtleVarSetterCode(String fieldName){
 		
-		ExpressionStatement es = new ExpressionStatement(
-			new MethodCallExpression(
+		VariableExpression patchExpr = new VariableExpression('patch', ClassHelper.make('repast.simphony.relogo.Patch'))
+		
+		ExpressionStatement es1 = new ExpressionStatement(
+			new DeclarationExpression(
+				patchExpr,
+				new Token(Types.EQUALS, "=", -1, -1),
 				new MethodCallExpression(
 					new VariableExpression("this"),
 					'patchHere',
 					new ArgumentListExpression()
-					),
-				'set' + MetaClassHelper.capitalize(fieldName),
-				new ArgumentListExpression(new VariableExpression('value'))
+					)
+				)
 			)
+		
+		// staged when the turtle is in a concurrent ask with buffered writes
+		IfStatement is = new IfStatement(
+			new BooleanExpression(
+				new NotExpression(
+					new StaticMethodCallExpression(
+						ClassHelper.make('repast.simphony.relogo.ConcurrentAsk'),
+						'stageWrite',
+						new ArgumentListExpression([patchExpr, new ConstantExpression(fieldName),
+							new VariableExpression('value')] as Expression[])
+						)
+					)
+				),
+			new ExpressionStatement(
+				new MethodCallExpression(
+					patchExpr,
+					'set' + MetaClassHelper.capitalize(fieldName),
+					new ArgumentListExpression(new VariableExpression('value'))
+				)
+			),
+			EmptyStatement.INSTANCE
 		)
 		
-		return new BlockStatement([es] as Statement[], new VariableScope())
+		return new BlockStatement([es1, is] as Statement[], new VariableScope())
 	}
 	
 
@@ -0,0 +1,105 @@
+package repast.simphony.relogo
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+import repast.simphony.context.DefaultContext
+import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
+
+/**
+ * Tests for {@link AbstractObserver#askConcurrent(AgentSet, boolean, groovy.lang.Closure)}.
+ */
+public class ConcurrentAskTest extends GroovyTestCase{
+
+	Observer observer
+
+	protected void setUp() throws Exception {
+		def wf = new ReLogoWorldFactory(new DefaultContext("root"), "default",
+				new RLWorldDimensions(-8, 8, -8, 8), new TurtleFactory(BaseTurtle),
+				new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+		observer = new ObserverFactory("default", BaseObserver, wf).createObserver()
+		observer.crt(200)
+	}
+
+	public void testUnbuffered(){
+		def seen = new ConcurrentHashMap()
+		observer.turtles().each{ it.setxy(it.getWho() % 17 - 8, it.getWho().intdiv(17) - 8) }
+		observer.askConcurrent(observer.turtles()){
+			setHeading(getWho() + 1)
+			setPcolor(getWho() % 100)
+			seen.put(getWho(), getPcolor())
+		}
+		assertEquals(200, seen.size())
+		observer.turtles().each{
+			assertEquals((it.getWho() + 1) % 360, it.getHeading(), 0)
+			// writes to the patch are made at once
+			assertEquals(it.getWho() % 100, seen.get(it.getWho()), 0)
+			assertEquals(it.getWho() % 100, it.getPcolor(), 0)
+		}
+	}
+
+	public void testBuffered(){
+		// all the turtles are on the same patch
+		def patch = observer.turtles().first().patchHere()
+		double before = patch.getPcolor()
+		def seen = Collections.synchronizedList(new ArrayList())
+		observer.askConcurrent(observer.turtles(), true){
+			seen.add(getPcolor())
+			setPcolor(getWho() % 100 + 1)
+		}
+		assertEquals(200, seen.size())
+		seen.each{ assertEquals(before, it, 0) }
+		assertTrue(patch.getPcolor() >= 1 && patch.getPcolor() <= 100)
+	}
+
+	public void testClosureExceptionRethrown(){
+		def target = observer.turtles().first()
+		try {
+			observer.askConcurrent(observer.turtles()){ t ->
+				if (t.is(target)) throw new IllegalArgumentException("target")
+			}
+			fail("the closure's exception should be rethrown")
+		} catch (IllegalArgumentException ex) {
+			assertTrue(ex.getMessage().contains("target"))
+		}
+	}
+
+	public void testMoveRejected(){
+		try {
+			observer.askConcurrent(observer.turtles()){
+				fd(1)
+			}
+			fail("moving a turtle in a concurrent ask should be rejected")
+		} catch (IllegalStateException ex) {
+		}
+		assertFalse(ConcurrentAsk.isConcurrent())
+
+		// the observer can still ask after a failed concurrent ask
+		def count = new AtomicInteger()
+		observer.askConcurrent(observer.turtles()){ count.incrementAndGet() }
+		assertEquals(200, count.get())
+	}
+
+	public void testNested(){
+		def obs = observer
+		def count = new AtomicInteger()
+		def patches = observer.patches().findAll{ it.getPxcor() == 0 } as AgentSet
+		obs.askConcurrent(observer.turtles()){
+			obs.askConcurrent(patches){ count.incrementAndGet() }
+		}
+		assertEquals(200 * patches.size(), count.get())
+
+		try {
+			obs.askConcurrent(observer.turtles()){ t ->
+				obs.askConcurrent(patches){ t.fd(1) }
+			}
+			fail("moving a turtle in a nested concurrent ask should be rejected")
+		} catch (IllegalStateException ex) {
+		}
+	}
+}
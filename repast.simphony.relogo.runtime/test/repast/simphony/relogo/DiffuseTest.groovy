@@ -6,7 +6,13 @@ package repast.simphony.relogo
 import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix2D
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import repast.simphony.context.DefaultContext
 import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
 import static repast.simphony.relogo.Utility.*
 import static repast.simphony.relogo.UtilityG.*
 import static java.lang.Math.*
@@ -384,6 +390,71 @@ public class DiffuseTest extends GroovyTestCase{
 		  DoubleMatrix2D expected = new DenseDoubleMatrix2D(sde)
 		  assertEquals(expected,JavaUtility.bufferMatrix1(ddm))
 	  }
+
+	/**
+	 * Diffuses a random matrix of the specified size both through Colt and on
+	 * the matrix's array, which must give exactly the same values.
+	 */
+	private void checkDiffuseElements(int rows, int columns){
+		def random = new Random(rows * 31 + columns)
+		PatchVariableMatrix src = new PatchVariableMatrix(rows, columns)
+		for (int r = 0; r < rows; r++){
+			for (int c = 0; c < columns; c++){
+				src.setQuick(r, c, random.nextDouble() * 10)
+			}
+		}
+		[true, false].each{ isMoore ->
+			[true, false].each{ isPeriodic ->
+				DoubleMatrix2D expected = new DenseDoubleMatrix2D(rows, columns)
+				JavaUtility.diffuse(src, expected, 0.3, isMoore, isPeriodic)
+				PatchVariableMatrix dst = new PatchVariableMatrix(rows, columns)
+				JavaUtility.diffuseElements(src, dst, 0.3, isMoore, isPeriodic)
+				for (int r = 0; r < rows; r++){
+					for (int c = 0; c < columns; c++){
+						assertEquals("${rows}x${columns} moore: $isMoore periodic: $isPeriodic at $r, $c",
+								expected.getQuick(r, c), dst.getQuick(r, c), 0)
+					}
+				}
+			}
+		}
+	}
+
+	public void testDiffuseElements(){
+		checkDiffuseElements(3, 3)
+		checkDiffuseElements(5, 8)
+		checkDiffuseElements(8, 5)
+		checkDiffuseElements(2, 2)
+	}
+
+	public void testDiffuseElementsSingleRowOrColumn(){
+		checkDiffuseElements(1, 7)
+		checkDiffuseElements(7, 1)
+	}
+
+	public void testDiffuseElementsInStrips(){
+		// larger than a single strip, so that the strips are diffused in parallel
+		checkDiffuseElements(300, 257)
+	}
+
+	public void testObserverDiffuseInPlace(){
+		def wf = new ReLogoWorldFactory(new DefaultContext("root"), "default",
+				new RLWorldDimensions(-8, 8, -8, 8), new TurtleFactory(BaseTurtle),
+				new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+		def observer = new ObserverFactory("default", BaseObserver, wf).createObserver()
+		observer.createPatchVar(new DiffusiblePatchVariable("v", 0))
+		DenseDoubleMatrix2D held = observer.getPatchVarMatrix("v")
+		held.setQuick(3, 4, 100)
+		DoubleMatrix2D expected = held.copy()
+		for (int i = 0; i < 3; i++){
+			DoubleMatrix2D next = new DenseDoubleMatrix2D(expected.rows(), expected.columns())
+			JavaUtility.diffuse(expected, next, 0.5, true, true)
+			expected = next
+			observer.diffuse("v", 0.5)
+			// the matrix is updated in place, not swapped with a buffer
+			assertSame(held, observer.getPatchVarMatrix("v"))
+			assertEquals(expected, held)
+		}
+	}
 	
 	
 }
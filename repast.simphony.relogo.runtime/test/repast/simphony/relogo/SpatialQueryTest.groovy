@@ -0,0 +1,104 @@
+package repast.simphony.relogo
+
+import repast.simphony.context.DefaultContext
+import repast.simphony.query.space.continuous.ContinuousWithin
+import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
+import repast.simphony.relogo.factories.RLWorldDimensions.WorldType
+
+/**
+ * Checks that inRadius, inCone and turtlesOn give the same agents when they
+ * look in the patch grid as when they scan the whole collection.
+ */
+public class SpatialQueryTest extends GroovyTestCase{
+
+	Observer observer
+
+	private void createWorld(WorldType worldType){
+		def wf = new ReLogoWorldFactory(new DefaultContext("root"), "default",
+				new RLWorldDimensions(-8, 8, -8, 8, worldType), new TurtleFactory(BaseTurtle),
+				new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+		observer = new ObserverFactory("default", BaseObserver, wf).createObserver()
+		def random = new Random(7)
+		observer.crt(60).each{
+			it.setxy(random.nextDouble() * 16 - 8, random.nextDouble() * 16 - 8)
+			it.setHeading(random.nextDouble() * 360)
+		}
+	}
+
+	// what inRadius returned before it looked in the grid
+	private Set scanInRadius(Turtle t, Collection a, double r){
+		def space = observer.getSpace()
+		a.findAll{
+			space.getDistance(t.getTurtleLocation(), space.getLocation(it)) <= r
+		} as Set
+	}
+
+	private Set scanInRadius(Patch p, Collection a, double r){
+		def within = new ContinuousWithin(observer.getSpace(), p, r).query() as Set
+		a.findAll{ within.contains(it) } as Set
+	}
+
+	private void checkInRadius(){
+		[0.5, 1, 2.5, 4].each{ r ->
+			observer.turtles().each{ t ->
+				assertEquals(scanInRadius(t, observer.turtles(), r), t.inRadius(observer.turtles(), r) as Set)
+				assertEquals(scanInRadius(t, observer.patches(), r), t.inRadius(observer.patches(), r) as Set)
+				def others = scanInRadius(t, observer.turtles(), r)
+				others.remove(t)
+				assertEquals(others, t.inRadius(t.other(observer.turtles()), r) as Set)
+			}
+			observer.patches().each{ p ->
+				def result = p.inRadius(observer.patches(), r) as Set
+				assertFalse(result.contains(p))
+				assertEquals(scanInRadius(p, observer.patches(), r), result)
+				assertEquals(result, p.inRadius(new ArrayList(observer.patches()), r) as Set)
+				assertEquals(scanInRadius(p, observer.turtles(), r), p.inRadius(observer.turtles(), r) as Set)
+			}
+		}
+	}
+
+	public void testInRadiusWrapped(){
+		createWorld(WorldType.WRAP)
+		checkInRadius()
+	}
+
+	public void testInRadiusBounded(){
+		createWorld(WorldType.STICKY)
+		checkInRadius()
+	}
+
+	public void testInCone(){
+		createWorld(WorldType.WRAP)
+		[1, 3].each{ r ->
+			[60, 180].each{ angle ->
+				observer.turtles().each{ t ->
+					def expected = scanInRadius(t, observer.turtles(), r).findAll{
+						Math.abs(Utility.subtractHeadings(t.getHeading(), t.towards(it))) < angle / 2
+					} as Set
+					assertEquals(expected, t.inCone(observer.turtles(), r, angle) as Set)
+				}
+			}
+		}
+	}
+
+	public void testTurtlesOn(){
+		createWorld(WorldType.WRAP)
+		def some = observer.patches().findAll{ it.getPxcor() < 0 }
+		def expected = observer.turtles().findAll{
+			some.contains(observer.patch(it.getXcor(), it.getYcor()))
+		} as Set
+		assertEquals(expected, observer.turtles().first().turtlesOn(some) as Set)
+		assertEquals(observer.turtles() as Set, observer.patches().first().turtlesOn(observer.patches()) as Set)
+
+		def t = observer.turtles().first()
+		def onSame = observer.turtles().findAll{
+			observer.patch(it.getXcor(), it.getYcor()) == observer.patch(t.getXcor(), t.getYcor())
+		} as Set
+		assertEquals(onSame, t.turtlesOn([t]) as Set)
+	}
+}
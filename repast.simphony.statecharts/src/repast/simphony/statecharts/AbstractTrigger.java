@@ -14,6 +14,13 @@ public abstract class AbstractTrigger<T> implements Trigger {
 		return false;
 	}
 
+	/**
+	 * Called when the trigger's transition is deactivated. This does nothing by
+	 * default.
+	 */
+	protected void deactivate() {
+	}
+
 	protected void setAgent(T agent) {
 		this.agent = agent;
 	}
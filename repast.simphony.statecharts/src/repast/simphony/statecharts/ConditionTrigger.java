@@ -5,6 +5,20 @@ import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.parameter.Parameters;
 import simphony.util.messages.MessageCenter;
 
+/**
+ * A trigger that fires when its condition is true. By default, the condition
+ * is polled every polling time while the trigger's transition is active.
+ * <p>
+ * If the condition's condition method has a
+ * {@link repast.simphony.engine.watcher.WatchedFields} annotation that names
+ * the agent class and the agent fields that the condition depends on, the
+ * trigger doesn't poll while the condition is false. Instead, it's woken when
+ * one of those fields is set on its agent, and the condition is checked at the
+ * next polling time. While the condition is true, the trigger polls as usual.
+ * The fields are watched through the watcher instrumentation, and if they
+ * haven't been instrumented, the trigger polls. The condition must only depend
+ * on the declared fields for this to be equivalent to polling.
+ */
 public class ConditionTrigger<T> extends AbstractTrigger<T> {
 
 	private double pollingTime, nextPollingTime;
@@ -12,6 +26,18 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 	private ConditionTriggerCondition<T> condition;
 	private Parameters params;
 
+	// the fields that the condition depends on, or null if it doesn't declare
+	// them
+	private ConditionTriggerIndex.Fields watchedFields;
+	// whether the trigger is in the ConditionTriggerIndex, and whether it's
+	// waiting to be woken rather than polling
+	private boolean watching, sleeping;
+	// the time to check the condition once woken
+	private double wakeTime = Double.POSITIVE_INFINITY;
+	// the last time the condition was checked and the result
+	private double conditionTime = Double.NaN;
+	private boolean conditionResult;
+
 	protected Parameters getParams() {
 		if (params == null) {
 			RunEnvironment re = RunEnvironment.getInstance();
@@ -27,6 +53,8 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 		this.pollingTime = pollingTime;
 		nextPollingTime = pollingTime;
 		this.condition = condition;
+		watchedFields = ConditionTriggerIndex.INSTANCE.getFields(condition
+				.getClass());
 	}
 
 	public ConditionTrigger(ConditionTriggerCondition<T> condition) {
@@ -46,14 +74,68 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 		nextPollingTime = interval;
 	}
 
-	public void initialize() {
+	public synchronized void initialize() {
 		pollingTime = nextPollingTime;
 		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 		initializedTickCount = schedule.getTickCount();
+		if (watchedFields != null) {
+			if (!watching) {
+				watching = ConditionTriggerIndex.INSTANCE.add(this, getAgent(),
+						watchedFields);
+			}
+			// poll while the condition is true, as the guard or the choice
+			// between transitions may still change
+			sleeping = watching && !isConditionTrueNow(initializedTickCount);
+			wakeTime = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	@Override
+	protected synchronized void deactivate() {
+		if (watching) {
+			ConditionTriggerIndex.INSTANCE.remove(this, getAgent(), watchedFields);
+			watching = false;
+		}
+		sleeping = false;
+	}
+
+	// the condition at the specified time, using the result of the last check
+	// if it was at that time
+	private boolean isConditionTrueNow(double now) {
+		if (Double.compare(conditionTime, now) == 0)
+			return conditionResult;
+		return isTriggerConditionTrue();
+	}
+
+	/**
+	 * Called when one of the fields that the condition depends on is set on
+	 * the agent. This schedules the statechart to resolve at the next polling
+	 * time, if it's not already scheduled to.
+	 */
+	synchronized void watchedFieldSet() {
+		if (!sleeping)
+			return;
+		double now = RunEnvironment.getInstance().getCurrentSchedule()
+				.getTickCount();
+		StateChartScheduler scheduler = StateChartScheduler.INSTANCE;
+		if (wakeTime != Double.POSITIVE_INFINITY
+				&& (wakeTime > now || !scheduler.isResolveStarted(now)))
+			return;
+
+		double polls = Math.max(1,
+				Math.ceil((now - initializedTickCount) / pollingTime));
+		double time = Math.max(initializedTickCount + polls * pollingTime, now);
+		// the statecharts that resolve now may already have been resolved
+		if (time == now && scheduler.isResolveStarted(now))
+			time += pollingTime;
+		wakeTime = time;
+		transition.getStateChart().scheduleResolveTime(time);
 	}
 
 	@Override
 	public double getNextTime() {
+		if (sleeping)
+			return wakeTime;
 		return initializedTickCount + pollingTime;
 	}
 
@@ -73,6 +155,11 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 					"Error encountered when calling condition: " + condition
 							+ " in " + this, e);
 		}
+		if (watchedFields != null) {
+			conditionTime = RunEnvironment.getInstance().getCurrentSchedule()
+					.getTickCount();
+			conditionResult = result;
+		}
 		return result;
 	}
 
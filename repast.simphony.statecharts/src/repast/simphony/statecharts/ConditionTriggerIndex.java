@@ -0,0 +1,183 @@
+package repast.simphony.statecharts;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import repast.simphony.engine.watcher.WatchedFields;
+import repast.simphony.engine.watcher.WatcheeListener;
+import repast.simphony.engine.watcher.WatcherTrigger;
+import simphony.util.messages.MessageCenter;
+
+/**
+ * Indexes the active condition triggers whose conditions declare the agent
+ * fields they depend on with a {@link WatchedFields} annotation, so that
+ * setting one of those fields wakes only the triggers of that agent. The
+ * fields are watched through the watcher instrumentation, with one
+ * {@link WatcheeListener} per field.
+ */
+enum ConditionTriggerIndex {
+
+	INSTANCE;
+
+	private static final MessageCenter msg = MessageCenter
+			.getMessageCenter(ConditionTriggerIndex.class);
+
+	/**
+	 * The fields that a condition depends on.
+	 */
+	static class Fields {
+		final String className;
+		final String[] fieldNames;
+
+		Fields(String className, String[] fieldNames) {
+			this.className = className;
+			this.fieldNames = fieldNames;
+		}
+	}
+
+	// marks conditions that don't declare any fields in the cache
+	private static final Fields NONE = new Fields(null, new String[0]);
+
+	/**
+	 * Wakes the triggers of the agent whose field was set.
+	 */
+	private class FieldListener implements WatcheeListener {
+
+		// agent and the active triggers that depend on this field of the agent
+		private Map<Object, List<ConditionTrigger<?>>> triggers = new IdentityHashMap<Object, List<ConditionTrigger<?>>>();
+
+		@Override
+		public void fieldSet(Object watchee, Object value) {
+			List<ConditionTrigger<?>> toWake;
+			synchronized (ConditionTriggerIndex.this) {
+				List<ConditionTrigger<?>> list = triggers.get(watchee);
+				if (list == null)
+					return;
+				toWake = new ArrayList<ConditionTrigger<?>>(list);
+			}
+			// woken outside the lock as waking schedules a resolve
+			for (int i = 0, n = toWake.size(); i < n; i++) {
+				toWake.get(i).watchedFieldSet();
+			}
+		}
+	}
+
+	private Map<Class<?>, Fields> fieldsCache = new ConcurrentHashMap<Class<?>, Fields>();
+
+	// the WatcherTrigger that the listeners were added to
+	private WatcherTrigger watcherTrigger;
+	// key is the class name and field name
+	private Map<String, FieldListener> listeners = new HashMap<String, FieldListener>();
+	private Set<String> uninstrumented = new HashSet<String>();
+
+	/**
+	 * Gets the fields that the condition method of the specified condition
+	 * class declares with a WatchedFields annotation.
+	 *
+	 * @param conditionClass
+	 * @return the fields, or null if the condition doesn't declare any.
+	 */
+	Fields getFields(Class<?> conditionClass) {
+		Fields fields = fieldsCache.get(conditionClass);
+		if (fields == null) {
+			fields = NONE;
+			for (Method method : conditionClass.getMethods()) {
+				WatchedFields wf = method.getAnnotation(WatchedFields.class);
+				if (wf != null && method.getName().equals("condition")
+						&& method.getParameterTypes().length == 3) {
+					String[] names = wf.watcheeFieldNames().split(",");
+					for (int i = 0; i < names.length; i++) {
+						names[i] = names[i].trim();
+					}
+					fields = new Fields(wf.watcheeClassName(), names);
+					break;
+				}
+			}
+			fieldsCache.put(conditionClass, fields);
+		}
+		return fields == NONE ? null : fields;
+	}
+
+	/**
+	 * Adds the specified trigger so that it's woken when any of the fields is
+	 * set on the agent.
+	 *
+	 * @return true if the trigger was added, or false if the fields can't be
+	 *         watched, in which case the trigger should poll.
+	 */
+	synchronized boolean add(ConditionTrigger<?> trigger, Object agent,
+			Fields fields) {
+		WatcherTrigger wt = WatcherTrigger.getInstance();
+		if (wt == null)
+			return false;
+		if (wt != watcherTrigger) {
+			// the listeners were added to a previous instance
+			listeners.clear();
+			watcherTrigger = wt;
+		}
+
+		FieldListener[] fieldListeners = new FieldListener[fields.fieldNames.length];
+		for (int i = 0; i < fieldListeners.length; i++) {
+			String key = fields.className + "." + fields.fieldNames[i];
+			FieldListener listener = listeners.get(key);
+			if (listener == null) {
+				listener = new FieldListener();
+				if (!wt.addWatcheeListener(fields.className, fields.fieldNames[i],
+						listener)) {
+					if (uninstrumented.add(fields.className)) {
+						msg.warn("Class '" + fields.className
+								+ "' has not been prepared for watching, condition triggers will poll");
+					}
+					return false;
+				}
+				listeners.put(key, listener);
+			}
+			fieldListeners[i] = listener;
+		}
+
+		for (FieldListener listener : fieldListeners) {
+			List<ConditionTrigger<?>> list = listener.triggers.get(agent);
+			if (list == null) {
+				list = new ArrayList<ConditionTrigger<?>>(1);
+				listener.triggers.put(agent, list);
+			}
+			list.add(trigger);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a trigger added with add.
+	 */
+	synchronized void remove(ConditionTrigger<?> trigger, Object agent,
+			Fields fields) {
+		for (String fieldName : fields.fieldNames) {
+			FieldListener listener = listeners.get(fields.className + "."
+					+ fieldName);
+			if (listener != null) {
+				List<ConditionTrigger<?>> list = listener.triggers.get(agent);
+				if (list != null) {
+					list.remove(trigger);
+					if (list.isEmpty())
+						listener.triggers.remove(agent);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all the triggers. The listeners stay registered for the next run.
+	 */
+	synchronized void clear() {
+		for (FieldListener listener : listeners.values()) {
+			listener.triggers.clear();
+		}
+	}
+}
@@ -2,7 +2,6 @@ package repast.simphony.statecharts;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -109,7 +108,8 @@ public class DefaultStateChart<T> implements StateChart<T> {
 
 	private void partitionQueueConsuming(List<Transition<T>> transitions,
 			List<Transition<T>> queueConsuming, List<Transition<T>> nonQueueConsuming) {
-		for (Transition<T> t : transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Transition<T> t = transitions.get(i);
 			if (t.isTriggerQueueConsuming())
 				queueConsuming.add(t);
 			else
@@ -333,9 +333,13 @@ public class DefaultStateChart<T> implements StateChart<T> {
 			// if trigger's next time is after now,
 			Trigger tr = t.getTrigger();
 			double nextTime = tr.getNextTime();
-			if (Double.compare(nextTime, now) > 0) {
+			if (Double.compare(nextTime, now) > 0
+					&& nextTime != Double.POSITIVE_INFINITY) {
 				removeResolveTime(nextTime);
 			}
+			if (tr instanceof AbstractTrigger) {
+				((AbstractTrigger<?>) tr).deactivate();
+			}
 		}
 		transitions.removeAll(candidateTransitions);
 	}
@@ -449,48 +453,101 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		stateInit(statesToEnter);
 	}
 
-	// private List<Transition>
-
-	private List<Transition<T>> getTriggeredTransitions(
-			List<Transition<T>> transitions) {
-		List<Transition<T>> triggeredTransitions = new ArrayList<Transition<T>>();
-		for (Transition<T> t : transitions) {
+	/**
+	 * The lists that resolve partitions and collects transitions into. These
+	 * are reused between calls, one set for each thread, so that resolving a
+	 * statechart doesn't allocate.
+	 */
+	private static class ResolveLists<U> {
+		final List<Transition<U>> queueConsumingSelf = new ArrayList<Transition<U>>();
+		final List<Transition<U>> nonQueueConsumingSelf = new ArrayList<Transition<U>>();
+		final List<Transition<U>> queueConsumingRegular = new ArrayList<Transition<U>>();
+		final List<Transition<U>> nonQueueConsumingRegular = new ArrayList<Transition<U>>();
+		final List<Transition<U>> triggered = new ArrayList<Transition<U>>();
+		final List<Transition<U>> candidates = new ArrayList<Transition<U>>();
+		boolean inUse = false;
+
+		void clear() {
+			queueConsumingSelf.clear();
+			nonQueueConsumingSelf.clear();
+			queueConsumingRegular.clear();
+			nonQueueConsumingRegular.clear();
+			triggered.clear();
+			candidates.clear();
+		}
+	}
+
+	private static final ThreadLocal<ResolveLists<?>> resolveLists = new ThreadLocal<ResolveLists<?>>() {
+		@Override
+		protected ResolveLists<?> initialValue() {
+			return new ResolveLists<Object>();
+		}
+	};
+
+	// adds the triggered transitions to triggeredTransitions
+	private void getTriggeredTransitions(List<Transition<T>> transitions,
+			List<Transition<T>> triggeredTransitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Transition<T> t = transitions.get(i);
 			if (t.isTransitionTriggered())
 				triggeredTransitions.add(t);
 		}
-		return triggeredTransitions;
 	}
 
+	private boolean isAnyResolveNow(List<Transition<T>> transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			if (transitions.get(i).isResolveNow())
+				return true;
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
 	public void resolve() {
+		ResolveLists<T> lists = (ResolveLists<T>) resolveLists.get();
+		if (lists.inUse) {
+			// resolve was called from inside a resolve on this thread, e.g. by
+			// a transition action
+			lists = new ResolveLists<T>();
+		}
+		lists.inUse = true;
+		try {
+			resolve(lists);
+		} finally {
+			lists.clear();
+			lists.inUse = false;
+		}
+	}
+
+	private void resolve(ResolveLists<T> lists) {
 		// Partition active self transitions into queue consuming and non queue
 		// consuming
-		List<Transition<T>> queueConsumingActiveSelfTransitions = new ArrayList<Transition<T>>();
-		List<Transition<T>> nonQueueConsumingActiveSelfTransitions = new ArrayList<Transition<T>>();
+		List<Transition<T>> queueConsumingActiveSelfTransitions = lists.queueConsumingSelf;
+		List<Transition<T>> nonQueueConsumingActiveSelfTransitions = lists.nonQueueConsumingSelf;
 		partitionQueueConsuming(activeSelfTransitions,
 				queueConsumingActiveSelfTransitions,
 				nonQueueConsumingActiveSelfTransitions);
 
 		// Execute all non queue consuming active self transitions
-		for (Transition<T> t : getTriggeredTransitions(nonQueueConsumingActiveSelfTransitions)) {
-			t.onTransition();
+		List<Transition<T>> triggered = lists.triggered;
+		getTriggeredTransitions(nonQueueConsumingActiveSelfTransitions, triggered);
+		for (int i = 0, n = triggered.size(); i < n; i++) {
+			triggered.get(i).onTransition();
 		}
 
 		// Partition active regular transitions into queue consuming and non
 		// queue consuming
-		List<Transition<T>> queueConsumingActiveRegularTransitions = new ArrayList<Transition<T>>();
-		List<Transition<T>> nonQueueConsumingActiveRegularTransitions = new ArrayList<Transition<T>>();
+		List<Transition<T>> queueConsumingActiveRegularTransitions = lists.queueConsumingRegular;
+		List<Transition<T>> nonQueueConsumingActiveRegularTransitions = lists.nonQueueConsumingRegular;
 		partitionQueueConsuming(activeRegularTransitions,
 				queueConsumingActiveRegularTransitions,
 				nonQueueConsumingActiveRegularTransitions);
 
-		// Find non queue consuming candidate regular transitions
-		List<Transition<T>> nonQueueConsumingRegularCandidates = getTriggeredTransitions(nonQueueConsumingActiveRegularTransitions);
-
-		List<Transition<T>> queueConsumingRegularCandidates = new ArrayList<Transition<T>>();
-
-		List<Transition<T>> allQueueConsumingActiveTransitions = ListUtils.union(
-				queueConsumingActiveSelfTransitions,
-				queueConsumingActiveRegularTransitions);
+		// The candidates are the non queue consuming candidate regular
+		// transitions followed by the queue consuming ones
+		List<Transition<T>> candidates = lists.candidates;
+		getTriggeredTransitions(nonQueueConsumingActiveRegularTransitions, candidates);
+		int nonQueueConsumingCount = candidates.size();
 
 		// This is for the corner case when there is a self transition
 		// and a regular transition that both are valid based on the same
@@ -501,42 +558,38 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		boolean queueConsumingSelfTransitionFollowed = false;
 
 		// Are there no active self or regular queue consuming transitions?
-		if (allQueueConsumingActiveTransitions.isEmpty()) {
+		if (queueConsumingActiveSelfTransitions.isEmpty()
+				&& queueConsumingActiveRegularTransitions.isEmpty()) {
 			queue.clear();
-		} else {
-			boolean foundIsResolveNow = false;
-			for (Transition<T> t : allQueueConsumingActiveTransitions) {
-				if (t.isResolveNow()) {
-					foundIsResolveNow = true;
-					break;
+		} else if (isAnyResolveNow(queueConsumingActiveSelfTransitions)
+				|| isAnyResolveNow(queueConsumingActiveRegularTransitions)) {
+			while (true) {
+				queueConsumingSelfTransitionFollowed = false;
+				// Execute all queue consuming active self transitions
+				triggered.clear();
+				getTriggeredTransitions(queueConsumingActiveSelfTransitions, triggered);
+				for (int i = 0, n = triggered.size(); i < n; i++) {
+					triggered.get(i).onTransition();
+					queueConsumingSelfTransitionFollowed = true;
 				}
-			}
-			if (foundIsResolveNow) {
-				while (true) {
-					queueConsumingSelfTransitionFollowed = false;
-					// Execute all queue consuming active self transitions
-					for (Transition<T> t : getTriggeredTransitions(queueConsumingActiveSelfTransitions)) {
-						t.onTransition();
-						queueConsumingSelfTransitionFollowed = true;
-					}
 
-					// Look for queue consuming regular candidates for current
-					// queue
-					// state
-					queueConsumingRegularCandidates = getTriggeredTransitions(queueConsumingActiveRegularTransitions);
-					if (queueConsumingRegularCandidates.isEmpty()) {
-						queue.poll();
-						if (queue.isEmpty())
-							break;
-					} else {
+				// Look for queue consuming regular candidates for current
+				// queue state, replacing those for the previous queue state
+				while (candidates.size() > nonQueueConsumingCount) {
+					candidates.remove(candidates.size() - 1);
+				}
+				getTriggeredTransitions(queueConsumingActiveRegularTransitions, candidates);
+				if (candidates.size() == nonQueueConsumingCount) {
+					queue.poll();
+					if (queue.isEmpty())
 						break;
-					}
+				} else {
+					break;
 				}
 			}
 		}
-		// Concatenate queue and non queue consuming candidates and choose one
-		Transition<T> t = chooseOneTransition(ListUtils.union(
-				nonQueueConsumingRegularCandidates, queueConsumingRegularCandidates));
+		// Choose one of the queue and non queue consuming candidates
+		Transition<T> t = chooseOneTransition(candidates);
 
 		// reschedule selfTransitions
 		rescheduleTransitions(activeSelfTransitions, false);
@@ -555,6 +608,7 @@ public class DefaultStateChart<T> implements StateChart<T> {
 
 	}
 
+	// Chooses one of the transitions. This may reorder the list.
 	private Transition<T> chooseOneTransition(List<Transition<T>> transitions) {
 		// If no transitions, return null
 		if (transitions.isEmpty())
@@ -569,10 +623,16 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		case NATURAL:
 			return transitions.get(0);
 		case PRIORITY:
-			List<Transition<T>> temp = new ArrayList<Transition<T>>(transitions);
-			SimUtilities.shuffle(temp, RandomHelper.getUniform());
-			Collections.sort(temp, pComp);
-			return temp.get(0);
+			SimUtilities.shuffle(transitions, RandomHelper.getUniform());
+			// the first of the highest priority transitions in the shuffled
+			// order, as a stable sort by priority would put first
+			Transition<T> chosen = transitions.get(0);
+			for (int i = 1, n = transitions.size(); i < n; i++) {
+				Transition<T> tt = transitions.get(i);
+				if (pComp.compare(tt, chosen) < 0)
+					chosen = tt;
+			}
+			return chosen;
 		case RANDOM:
 			int size = transitions.size();
 			Uniform defaultUniform = RandomHelper.getUniform();
@@ -590,13 +650,12 @@ public class DefaultStateChart<T> implements StateChart<T> {
 				.getTickCount();
 		// for each active transition
 		if (regular) {
-			for (Transition<T> t : activeTransitions) {
-				t.rescheduleRegularTransition(this, currentTime);
-
+			for (int i = 0, n = activeTransitions.size(); i < n; i++) {
+				activeTransitions.get(i).rescheduleRegularTransition(this, currentTime);
 			}
 		} else {
-			for (Transition<T> t : activeTransitions) {
-				t.rescheduleSelfTransition(this, currentTime);
+			for (int i = 0, n = activeTransitions.size(); i < n; i++) {
+				activeTransitions.get(i).rescheduleSelfTransition(this, currentTime);
 			}
 		}
 	}
@@ -6,13 +6,30 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import repast.simphony.engine.schedule.IAction;
+import repast.simphony.engine.schedule.ParallelActionExecutor;
 import repast.simphony.random.RandomHelper;
+import repast.simphony.random.SplittableRandomRegistry;
+import repast.simphony.random.SplittableRandomRegistry.StreamBinding;
 import repast.simphony.util.SimUtilities;
 
+/**
+ * Resolves all the statecharts that are registered to resolve at a tick, in
+ * order of priority and randomly within a priority. If the
+ * {@link StateChartScheduler} resolves in parallel and RandomHelper is
+ * splittable, the statecharts with the same priority are resolved in
+ * parallel. Otherwise they are resolved one at a time, as resolving draws
+ * from RandomHelper's default uniform distribution, which can then only be
+ * used by one thread at a time.
+ */
 public class StateChartResolveAction implements IAction {
 
+	// the number of ranges per worker thread that a priority is split into
+	private static final int SPLITS_PER_THREAD = 4;
+
 	Map<StateChart<?>,Long> scCountsMap = new LinkedHashMap<StateChart<?>,Long>();
 
 	// register listeners
@@ -59,17 +76,96 @@ public class StateChartResolveAction implements IAction {
 		}
 	}
 	
+	/**
+	 * Resolves a range of statecharts.
+	 */
+	private static class ResolveRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 4286713009522641733L;
+
+		private final List<StateChart<?>> statecharts;
+		private final int start, end, threshold;
+		private final SplittableRandomRegistry streams;
+		private final long batchSeed;
+
+		ResolveRange(List<StateChart<?>> statecharts, int start, int end, int threshold,
+				SplittableRandomRegistry streams, long batchSeed) {
+			this.statecharts = statecharts;
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+			this.streams = streams;
+			this.batchSeed = batchSeed;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= threshold) {
+				// each statechart draws from the stream of its index
+				StreamBinding binding = streams.bind(batchSeed);
+				try {
+					for (int i = start; i < end; i++) {
+						binding.select(i);
+						statecharts.get(i).resolve();
+					}
+				} finally {
+					streams.unbind(binding);
+				}
+			} else {
+				int mid = (start + end) >>> 1;
+				invokeAll(new ResolveRange(statecharts, start, mid, threshold, streams, batchSeed),
+						new ResolveRange(statecharts, mid, end, threshold, streams, batchSeed));
+			}
+		}
+	}
+
+	// reused between executions
+	private List<StateChart<?>> temp = new ArrayList<StateChart<?>>();
+
 	// notify listeners
 	protected void notifyListeners(){
-		List<StateChart<?>> temp = new ArrayList<StateChart<?>>(scCountsMap.keySet());
-		SimUtilities.shuffle(temp, RandomHelper.getUniform());
-		Collections.sort(temp,pComp);
-		
-		for(StateChart<?> sc : temp){
-			sc.resolve();
+		temp.addAll(scCountsMap.keySet());
+		try {
+			SimUtilities.shuffle(temp, RandomHelper.getUniform());
+			Collections.sort(temp,pComp);
+
+			SplittableRandomRegistry streams = RandomHelper.getSplittableRegistry();
+			if (StateChartScheduler.INSTANCE.isParallelResolve() && streams != null) {
+				resolveInParallel(temp, streams);
+			} else {
+				for (int i = 0, n = temp.size(); i < n; i++) {
+					temp.get(i).resolve();
+				}
+			}
+		} finally {
+			temp.clear();
 		}
 		scCountsMap.clear();
 	}
+
+	// resolves each run of statecharts with the same priority in parallel
+	private void resolveInParallel(List<StateChart<?>> statecharts,
+			SplittableRandomRegistry streams) {
+		ForkJoinPool pool = ParallelActionExecutor.getPool();
+		int start = 0;
+		int size = statecharts.size();
+		while (start < size) {
+			double priority = statecharts.get(start).getPriority();
+			int end = start + 1;
+			while (end < size && statecharts.get(end).getPriority() == priority) {
+				end++;
+			}
+			if (end - start == 1) {
+				statecharts.get(start).resolve();
+			} else {
+				int threshold = Math.max(1, (end - start)
+						/ (pool.getParallelism() * SPLITS_PER_THREAD));
+				long batchSeed = streams.createBatchSeed();
+				pool.invoke(new ResolveRange(statecharts, start, end, threshold, streams, batchSeed));
+			}
+			start = end;
+		}
+	}
 	
 	public boolean hasListeners(){
 		return !scCountsMap.isEmpty();
@@ -77,6 +173,7 @@ public class StateChartResolveAction implements IAction {
 	
 	@Override
 	public void execute() {
+		StateChartScheduler.INSTANCE.resolveStarted();
 		notifyListeners();
 		StateChartScheduler.INSTANCE.clearOldResolveActions();
 	}
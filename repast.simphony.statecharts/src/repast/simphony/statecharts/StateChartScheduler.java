@@ -1,10 +1,5 @@
 package repast.simphony.statecharts;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.IAction;
 import repast.simphony.engine.schedule.ISchedulableAction;
@@ -16,6 +11,11 @@ import repast.simphony.engine.schedule.ScheduleParameters;
  * This is singleton responsible for managing the scheduling of statechart begin
  * and resolve actions. Both of these actions need to be managed because they
  * are added and removed based on statechart or simulation logic.
+ * <p>
+ * All the statecharts that are due to resolve at a tick are resolved by a
+ * single action. By default, they are resolved one at a time in priority
+ * order. With {@link #setParallelResolve(boolean)}, the statecharts with the
+ * same priority are resolved in parallel if RandomHelper is splittable.
  * 
  * @author jozik
  * 
@@ -25,11 +25,47 @@ public enum StateChartScheduler {
 	INSTANCE;
 
 	private final static long MAX_BEFOFE_CLEAR = 100;
-	protected Map<Double, ResolveActionsMapValue> resolveActions = new HashMap<Double, ResolveActionsMapValue>();
+	protected TimeMap<ResolveActionsMapValue> resolveActions = new TimeMap<ResolveActionsMapValue>();
 
-	protected Map<Double, BeginActionsMapValue> beginActions = new HashMap<Double, BeginActionsMapValue>();
+	protected TimeMap<BeginActionsMapValue> beginActions = new TimeMap<BeginActionsMapValue>();
 	protected DefaultIntegrator integrator = new DefaultIntegrator();
 
+	private volatile boolean parallelResolve = false;
+
+	// the time of the last resolve action to start executing
+	private double lastResolveTime = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Sets whether or not the statecharts that resolve at the same tick and
+	 * have the same priority are resolved in parallel. Resolving draws from
+	 * RandomHelper's default uniform distribution, so statecharts are only
+	 * resolved in parallel if RandomHelper is splittable
+	 * ({@link repast.simphony.random.RandomHelper#setSplittable(boolean)}), in
+	 * which case each statechart draws from its own stream. Otherwise this
+	 * setting is ignored. Parallel resolution is also only safe if the
+	 * statecharts are independent, i.e. their triggers, guards and actions
+	 * don't read or write state that the others write, and don't draw from a
+	 * shared random number generator other than RandomHelper's. Scheduling
+	 * and unscheduling statechart resolution is thread safe. The default is
+	 * false.
+	 * 
+	 * @param parallelResolve
+	 *            whether or not to resolve statecharts in parallel
+	 */
+	public void setParallelResolve(boolean parallelResolve) {
+		this.parallelResolve = parallelResolve;
+	}
+
+	/**
+	 * Gets whether or not the statecharts that resolve at the same tick and
+	 * have the same priority are resolved in parallel.
+	 * 
+	 * @return whether or not statecharts are resolved in parallel.
+	 */
+	public boolean isParallelResolve() {
+		return parallelResolve;
+	}
+
 	/**
 	 * Local class to hold resolve action information.
 	 * 
@@ -109,11 +145,13 @@ public enum StateChartScheduler {
 	 * a simulation run, from initialization appropriate places if (e.g., ReLogo
 	 * setup methods, via clearAll())
 	 */
-	public void initialize() {
+	public synchronized void initialize() {
 		integrator.reset();
 		shouldInitialize = false;
 		resolveClearCounter = 0;
 		beginClearCounter = 0;
+		lastResolveTime = Double.NEGATIVE_INFINITY;
+		ConditionTriggerIndex.INSTANCE.clear();
 
 		// remove resolveActions from schedule
 		for (ResolveActionsMapValue ramv : resolveActions.values()) {
@@ -142,43 +180,50 @@ public enum StateChartScheduler {
 	// called by StateChartResolveAction after notifying listeners
 	// this allows for the rTime.compareTo(time) <= 0 expression
 	// since the current time resolve actions have all been run
-	protected void clearOldResolveActions() {
+	protected synchronized void clearOldResolveActions() {
 		resolveClearCounter++;
 		if (resolveClearCounter > MAX_BEFOFE_CLEAR) {
 			double time = RunEnvironment.getInstance().getCurrentSchedule()
 					.getTickCount();
-			List<Double> keysToRemove = new ArrayList<Double>();
-			for (Double rTime : resolveActions.keySet()) {
-				if (rTime.compareTo(time) <= 0)
-					keysToRemove.add(rTime);
-			}
-			for (Double key : keysToRemove) {
-				resolveActions.remove(key);
-			}
+			resolveActions.removeAtOrBefore(time);
 			resolveClearCounter = 0;
 		}
 	}
 
-	protected void clearOldBeginActions() {
+	protected synchronized void clearOldBeginActions() {
 		beginClearCounter++;
 		if (beginClearCounter > MAX_BEFOFE_CLEAR) {
 			double time = RunEnvironment.getInstance().getCurrentSchedule()
 					.getTickCount();
-			List<Double> keysToRemove = new ArrayList<Double>();
-			for (Double rTime : beginActions.keySet()) {
-				if (rTime.compareTo(time) <= 0)
-					keysToRemove.add(rTime);
-			}
-			for (Double key : keysToRemove) {
-				beginActions.remove(key);
-			}
+			beginActions.removeAtOrBefore(time);
 			beginClearCounter = 0;
 		}
 	}
 
+	// called by StateChartResolveAction before resolving the statecharts
+	protected synchronized void resolveStarted() {
+		lastResolveTime = RunEnvironment.getInstance().getCurrentSchedule()
+				.getTickCount();
+	}
+
+	/**
+	 * Gets whether or not the statecharts that resolve at the specified time
+	 * have already started resolving, in which case a statechart scheduled to
+	 * resolve at that time won't be resolved.
+	 * 
+	 * @param time
+	 * @return whether or not the statecharts that resolve at the specified
+	 *         time have already started resolving.
+	 */
+	protected synchronized boolean isResolveStarted(double time) {
+		return Double.compare(time, lastResolveTime) <= 0;
+	}
+
 	private boolean shouldInitialize = true;
 
-	protected void scheduleResolveTime(double nextTime, StateChart<?> sc) {
+	// synchronized as statecharts that are resolved in parallel reschedule
+	// themselves
+	protected synchronized void scheduleResolveTime(double nextTime, StateChart<?> sc) {
 		if (shouldInitialize) {
 			initialize();
 		}
@@ -241,7 +286,7 @@ public enum StateChartScheduler {
 	 * @param nextTime
 	 * @param sc
 	 */
-	public void scheduleBeginTime(double nextTime, final StateChart<?> sc) {
+	public synchronized void scheduleBeginTime(double nextTime, final StateChart<?> sc) {
 		if (shouldInitialize) {
 			initialize();
 		}
@@ -303,7 +348,7 @@ public enum StateChartScheduler {
 	}
 
 	// Called from deactivation of transitions in StateChart
-	protected void removeResolveTime(double nextTime, StateChart<?> sc) {
+	protected synchronized void removeResolveTime(double nextTime, StateChart<?> sc) {
 		if (resolveActions.containsKey(nextTime)) {
 			ResolveActionsMapValue ramv = resolveActions.get(nextTime);
 			ramv.removeListener(sc);
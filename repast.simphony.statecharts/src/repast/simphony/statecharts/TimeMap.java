@@ -0,0 +1,76 @@
+package repast.simphony.statecharts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cern.colt.list.LongArrayList;
+import cern.colt.list.ObjectArrayList;
+import cern.colt.map.OpenLongObjectHashMap;
+
+/**
+ * A map from tick times to values that doesn't box the times. The times are
+ * stored by their bits, so two times are the same key exactly when their
+ * Doubles would be equal.
+ * 
+ * @param <V>
+ *            the type of the values
+ */
+class TimeMap<V> {
+
+	private OpenLongObjectHashMap map = new OpenLongObjectHashMap();
+	private LongArrayList keys = new LongArrayList();
+
+	private static long key(double time) {
+		return Double.doubleToLongBits(time);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(double time) {
+		return (V) map.get(key(time));
+	}
+
+	public void put(double time, V value) {
+		map.put(key(time), value);
+	}
+
+	public boolean containsKey(double time) {
+		return map.containsKey(key(time));
+	}
+
+	public void remove(double time) {
+		map.removeKey(key(time));
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public void clear() {
+		map.clear();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		ObjectArrayList list = map.values();
+		List<V> values = new ArrayList<V>(list.size());
+		for (int i = 0, n = list.size(); i < n; i++) {
+			values.add((V) list.getQuick(i));
+		}
+		return values;
+	}
+
+	/**
+	 * Removes the entries whose times are at or before the specified time.
+	 * 
+	 * @param time
+	 */
+	public void removeAtOrBefore(double time) {
+		map.keys(keys);
+		for (int i = 0, n = keys.size(); i < n; i++) {
+			long key = keys.getQuick(i);
+			if (Double.compare(Double.longBitsToDouble(key), time) <= 0)
+				map.removeKey(key);
+		}
+		keys.clear();
+	}
+}
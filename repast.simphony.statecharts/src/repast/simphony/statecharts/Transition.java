@@ -50,6 +50,10 @@ public class Transition<T> {
 		this.stateChart = stateChart;
 	}
 
+	DefaultStateChart<T> getStateChart() {
+		return stateChart;
+	}
+
 	private Trigger trigger;
 	private AbstractState<T> source, target;
 	private double priority;
@@ -140,7 +144,10 @@ public class Transition<T> {
 
 	protected void initialize(DefaultStateChart<T> sc) {
 		trigger.initialize();
-		sc.scheduleResolveTime(trigger.getNextTime());
+		double nextTime = trigger.getNextTime();
+		// a trigger that waits to be woken has no next time until then
+		if (nextTime != Double.POSITIVE_INFINITY)
+			sc.scheduleResolveTime(nextTime);
 	}
 
 	protected void registerOnTransition(TransitionAction<T> onTransition) {
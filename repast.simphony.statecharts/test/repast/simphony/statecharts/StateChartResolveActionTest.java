@@ -1,6 +1,13 @@
 package repast.simphony.statecharts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -12,6 +19,7 @@ import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.engine.schedule.Schedule;
 import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.random.RandomHelper;
 
 public class StateChartResolveActionTest {
 
@@ -127,5 +135,58 @@ public class StateChartResolveActionTest {
 		assertEquals(true, tc2.resolved);
 	}
 
+	@Test
+	public void testParallelResolve() {
+		StateChartResolveAction scra = new StateChartResolveAction();
+		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule(); 
+		schedule.schedule(ScheduleParameters.createOneTime(1), scra);
+
+		List<TestClass> tcs = new ArrayList<TestClass>();
+		for (int i = 0; i < 1000; i++) {
+			TestClass tc = new TestClass();
+			tcs.add(tc);
+			scra.registerListener(new TestStateChart(tc));
+		}
+
+		RandomHelper.setSplittable(true);
+		StateChartScheduler.INSTANCE.setParallelResolve(true);
+		try {
+			schedule.execute();
+		} finally {
+			StateChartScheduler.INSTANCE.setParallelResolve(false);
+			RandomHelper.setSplittable(false);
+		}
+		for (TestClass tc : tcs) {
+			assertEquals(true, tc.resolved);
+		}
+	}
+
+	@Test
+	public void testParallelResolveNotSplittable() {
+		StateChartResolveAction scra = new StateChartResolveAction();
+		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule(); 
+		schedule.schedule(ScheduleParameters.createOneTime(1), scra);
+
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		for (int i = 0; i < 1000; i++) {
+			scra.registerListener(new TestStateChart(new TestClass()) {
+				@Override
+				public void resolve() {
+					threads.add(Thread.currentThread());
+				}
+			});
+		}
+
+		// the default uniform can't be shared between threads
+		assertNull(RandomHelper.getSplittableRegistry());
+		StateChartScheduler.INSTANCE.setParallelResolve(true);
+		try {
+			schedule.execute();
+		} finally {
+			StateChartScheduler.INSTANCE.setParallelResolve(false);
+		}
+		assertEquals(Collections.singleton(Thread.currentThread()), threads);
+	}
+
 
 }
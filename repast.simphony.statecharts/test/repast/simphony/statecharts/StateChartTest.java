@@ -13,6 +13,9 @@ import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.engine.schedule.Schedule;
 import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.engine.watcher.WatchedFields;
+import repast.simphony.engine.watcher.WatcheeInstrumentor;
+import repast.simphony.engine.watcher.WatcherTrigger;
 import repast.simphony.parameter.Parameters;
 
 public class StateChartTest {
@@ -1118,4 +1121,104 @@ public class StateChartTest {
     assertEquals("two", a.st.getCurrentSimpleState().getId());
   }
 
+
+  /**
+   * For testing condition triggers that are woken when the agent fields that
+   * their condition depends on are set.
+   */
+  private static class MyStateChart8 extends DefaultStateChart<MyAgent8> {
+
+    public MyStateChart8(MyAgent8 agent, InfectedCondition condition) {
+      super(agent);
+
+      SimpleState<MyAgent8> one = new SimpleStateBuilder<MyAgent8>("one").build();
+      this.registerEntryState(one);
+      SimpleState<MyAgent8> two = new SimpleStateBuilder<MyAgent8>("two").build();
+      TransitionBuilder<MyAgent8> tb = new TransitionBuilder<MyAgent8>(one, two);
+      tb.addTrigger(new ConditionTrigger<MyAgent8>(condition, 1));
+      this.addRegularTransition(tb.build());
+    }
+  }
+
+  private static class InfectedCondition implements ConditionTriggerCondition<MyAgent8> {
+
+    public int count;
+
+    @Override
+    @WatchedFields(watcheeClassName = "repast.simphony.statecharts.StateChartTest$MyAgent8", watcheeFieldNames = "infected")
+    public boolean condition(MyAgent8 agent, Transition<MyAgent8> transition, Parameters params) {
+      count++;
+      return agent.infected;
+    }
+  }
+
+  private static class MyAgent8 {
+
+    public boolean infected;
+    public StateChart<MyAgent8> st;
+    public InfectedCondition condition = new InfectedCondition();
+
+    @SuppressWarnings("unused")
+    public void setup() {
+      st = new MyStateChart8(this, condition);
+      st.begin(new Integrator());
+    }
+
+    // sets the field and notifies the way the instrumented class would
+    public void setInfected(boolean infected) {
+      this.infected = infected;
+      WatcherTrigger.getInstance().triggered(MyAgent8.class.getName() + ".infected", this,
+          infected);
+    }
+  }
+
+  @Test
+  public void myStateChart8Scenario1() {
+    WatcherTrigger.initInstance(new WatcheeInstrumentor());
+    WatcheeInstrumentor.getInstrumented().add(MyAgent8.class.getName());
+    try {
+      MyAgent8 a = new MyAgent8();
+      ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+      schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+      schedule.schedule(ScheduleParameters.createOneTime(3), a, "setInfected", false);
+      schedule.schedule(ScheduleParameters.createOneTime(6), a, "setInfected", true);
+      schedule.execute();
+      assertEquals(1, schedule.getTickCount(), 0.0001);
+      assertEquals("one", a.st.getCurrentSimpleState().getId());
+      assertEquals(1, a.condition.count);
+      // the condition is false, so it isn't polled
+      assertEquals(0, StateChartScheduler.INSTANCE.resolveActions.size());
+
+      schedule.execute();
+      assertEquals(3, schedule.getTickCount(), 0.0001);
+      assertEquals("one", a.st.getCurrentSimpleState().getId());
+      assertEquals(2, a.condition.count);
+
+      schedule.execute();
+      assertEquals(6, schedule.getTickCount(), 0.0001);
+      assertEquals("two", a.st.getCurrentSimpleState().getId());
+      assertEquals(3, a.condition.count);
+    } finally {
+      WatcheeInstrumentor.getInstrumented().remove(MyAgent8.class.getName());
+    }
+  }
+
+  @Test
+  public void myStateChart8Uninstrumented() {
+    // the condition is polled if the field isn't instrumented
+    WatcherTrigger.initInstance(new WatcheeInstrumentor());
+    MyAgent8 a = new MyAgent8();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.execute();
+    assertEquals(1, StateChartScheduler.INSTANCE.resolveActions.size());
+    schedule.execute();
+    assertEquals(2, schedule.getTickCount(), 0.0001);
+    assertEquals(2, a.condition.count);
+    a.infected = true;
+    schedule.execute();
+    assertEquals(3, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+  }
+
 }